@@ -1,6 +1,10 @@
 package org.swisspush.gateleen.cache;
 
 import com.google.common.base.Splitter;
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
@@ -11,6 +15,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.swisspush.gateleen.cache.fetch.CacheDataFetcher;
 import org.swisspush.gateleen.cache.storage.CacheStorage;
+import org.swisspush.gateleen.core.lock.Lock;
+import org.swisspush.gateleen.core.util.Address;
 import org.swisspush.gateleen.core.util.ResponseStatusCodeLogUtil;
 import org.swisspush.gateleen.core.util.Result;
 import org.swisspush.gateleen.core.util.StatusCode;
@@ -18,8 +24,10 @@ import org.swisspush.gateleen.core.util.StringUtils;
 
 import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handler class dealing with cached responses.
@@ -34,7 +42,16 @@ public class CacheHandler {
     private static final String NO_CACHE = "no-cache";
     private static final String MAX_AGE = "max-age=";
     private static final String MAX_AGE_ZERO = MAX_AGE + "0";
+    private static final String STALE_WHILE_REVALIDATE = "stale-while-revalidate=";
+    private static final String STALE_IF_ERROR = "stale-if-error=";
+    public static final String WARNING_HEADER = "Warning";
+    public static final String WARNING_RESPONSE_IS_STALE = "110 - \"Response is Stale\"";
+    public static final String WARNING_REVALIDATION_FAILED = "111 - \"Revalidation Failed\"";
+    private static final String LOCAL_CACHE = "localCache";
     private static final int TIMEOUT_MS = 30000;
+    private static final String FETCH_LEASE_PREFIX = "cacheFetch:";
+    private static final long FETCH_LEASE_POLL_INTERVAL_MS = 50;
+    private static final long FETCH_LEASE_MAX_WAIT_MS = 5000;
     private final Logger log = LoggerFactory.getLogger(CacheHandler.class);
 
     private final CacheDataFetcher dataFetcher;
@@ -43,6 +60,10 @@ public class CacheHandler {
 
     private final String cacheControlHeader;
 
+    private final Vertx vertx;
+    private final Lock fetchLock;
+    private final Map<String, Future<Result<Buffer, StatusCode>>> inFlightFetches = new ConcurrentHashMap<>();
+
     /**
      * Constructor for the {@link CacheHandler} using the default `Cache-Control` request header
      *
@@ -63,10 +84,28 @@ public class CacheHandler {
      * @param customCacheControlHeader custom request header for cached requests instead of `Cache-Control`
      */
     public CacheHandler(CacheDataFetcher dataFetcher, CacheStorage cacheStorage, String cacheAdminUri, String customCacheControlHeader) {
+        this(dataFetcher, cacheStorage, cacheAdminUri, customCacheControlHeader, null, null);
+    }
+
+    /**
+     * Constructor for the {@link CacheHandler} using a cluster wide fetch lease. Only one instance at a time fetches
+     * a request not found in the cache, the other instances wait for the request to be cached.
+     *
+     * @param dataFetcher the {@link CacheDataFetcher}
+     * @param cacheStorage the {@link CacheStorage}
+     * @param cacheAdminUri the uri for the admin API
+     * @param customCacheControlHeader custom request header for cached requests instead of `Cache-Control`
+     * @param vertx vertx
+     * @param fetchLock the {@link Lock} used for the fetch leases
+     */
+    public CacheHandler(CacheDataFetcher dataFetcher, CacheStorage cacheStorage, String cacheAdminUri,
+                        String customCacheControlHeader, Vertx vertx, Lock fetchLock) {
         this.dataFetcher = dataFetcher;
         this.cacheStorage = cacheStorage;
         this.cacheAdminUri = cacheAdminUri;
         this.cacheControlHeader = customCacheControlHeader;
+        this.vertx = vertx;
+        this.fetchLock = fetchLock;
     }
 
     public boolean handle(final HttpServerRequest request) {
@@ -96,6 +135,9 @@ public class CacheHandler {
         }
 
         String cacheIdentifier = request.uri();
+        long staleWhileRevalidateMs = extractDirectiveMs(request, STALE_WHILE_REVALIDATE).orElse(0L);
+        long staleIfErrorMs = extractDirectiveMs(request, STALE_IF_ERROR).orElse(0L);
+        CacheDirectives directives = new CacheDirectives(expireMs.get(), staleWhileRevalidateMs, staleIfErrorMs);
         cacheStorage.cachedRequest(cacheIdentifier).onComplete(event -> {
             if(event.failed()){
                 log.warn("Failed to get cached request from storage", event.cause());
@@ -107,42 +149,169 @@ public class CacheHandler {
             if(cachedRequest.isPresent()) {
                 log.debug("Request to {} found in cache storage", request.uri());
                 respondWithPayload(request, cachedRequest.get());
+            } else if (directives.staleWhileRevalidateMs > 0) {
+                respondStaleOrUpdateCache(request, cacheIdentifier, directives);
             } else {
-                updateCacheAndRespond(request, cacheIdentifier, expireMs.get());
+                updateCacheAndRespond(request, cacheIdentifier, directives);
             }
         });
 
         return true;
     }
 
-    private void updateCacheAndRespond(final HttpServerRequest request, String cacheIdentifier, Long expireMs){
+    /**
+     * Responds with the stale cached request when it is stale for less than the stale-while-revalidate period and
+     * refreshes the cache in the background. Otherwise, the request is fetched before responding.
+     */
+    private void respondStaleOrUpdateCache(final HttpServerRequest request, String cacheIdentifier, CacheDirectives directives) {
+        cacheStorage.staleCachedRequest(cacheIdentifier, Duration.ofMillis(directives.staleWhileRevalidateMs)).onComplete(event -> {
+            if (event.failed()) {
+                log.warn("Failed to get stale cached request from storage", event.cause());
+            }
+            if (event.succeeded() && event.result().isPresent()) {
+                log.debug("Request to {} found stale in cache storage, going to refresh it in the background.", request.uri());
+                respondWithPayload(request, event.result().get(), WARNING_RESPONSE_IS_STALE);
+                fetchAndCache(cacheIdentifier, request.headers(), directives).onComplete(refresh -> {
+                    if (refresh.failed()) {
+                        log.warn("Failed to refresh stale cached request {}", cacheIdentifier, refresh.cause());
+                    }
+                });
+            } else {
+                updateCacheAndRespond(request, cacheIdentifier, directives);
+            }
+        });
+    }
+
+    private void updateCacheAndRespond(final HttpServerRequest request, String cacheIdentifier, CacheDirectives directives){
         log.debug("Request to {} not found in cache storage, going to fetch it.", request.uri());
-        HeadersMultiMap headersMultiMap = new HeadersMultiMap();
-        headersMultiMap.addAll(request.headers());
-        dataFetcher.fetchData(request.uri(), headersMultiMap, TIMEOUT_MS).onComplete(event -> {
+        fetchAndCache(cacheIdentifier, request.headers(), directives).onComplete(event -> {
             if(event.failed()) {
                 log.warn("Failed to fetch data from request", event.cause());
-                respondWith(StatusCode.INTERNAL_SERVER_ERROR, request);
+                respondWithStaleOrError(StatusCode.INTERNAL_SERVER_ERROR, request, cacheIdentifier, directives);
                 return;
             }
 
             Result<Buffer, StatusCode> result = event.result();
             if(result.isErr()) {
-                respondWith(result.err(), request);
+                if (result.err().getStatusCode() >= StatusCode.INTERNAL_SERVER_ERROR.getStatusCode()) {
+                    respondWithStaleOrError(result.err(), request, cacheIdentifier, directives);
+                } else {
+                    respondWith(result.err(), request);
+                }
                 return;
             }
+            respondWithPayload(request, result.ok());
+        });
+    }
+
+    /**
+     * Responds with the stale cached request when it is stale for less than the stale-if-error period. Otherwise,
+     * responds with the error.
+     */
+    private void respondWithStaleOrError(StatusCode statusCode, final HttpServerRequest request, String cacheIdentifier,
+                                         CacheDirectives directives) {
+        if (directives.staleIfErrorMs <= 0) {
+            respondWith(statusCode, request);
+            return;
+        }
+        cacheStorage.staleCachedRequest(cacheIdentifier, Duration.ofMillis(directives.staleIfErrorMs)).onComplete(event -> {
+            if (event.succeeded() && event.result().isPresent()) {
+                log.debug("Failed to fetch request to {}, responding with the stale cached request", request.uri());
+                respondWithPayload(request, event.result().get(), WARNING_REVALIDATION_FAILED);
+            } else {
+                if (event.failed()) {
+                    log.warn("Failed to get stale cached request from storage", event.cause());
+                }
+                respondWith(statusCode, request);
+            }
+        });
+    }
+
+    /**
+     * Fetches the data of a request and stores it to the cache. Concurrent fetches of the same request are coalesced
+     * into a single fetch, whose result is used for all of them.
+     */
+    private Future<Result<Buffer, StatusCode>> fetchAndCache(String cacheIdentifier, MultiMap requestHeaders, CacheDirectives directives) {
+        Promise<Result<Buffer, StatusCode>> promise = Promise.promise();
+        Future<Result<Buffer, StatusCode>> inFlightFetch = inFlightFetches.putIfAbsent(cacheIdentifier, promise.future());
+        if (inFlightFetch != null) {
+            log.debug("Request to {} is already being fetched, waiting for the result", cacheIdentifier);
+            return inFlightFetch;
+        }
+
+        HeadersMultiMap headersMultiMap = new HeadersMultiMap();
+        headersMultiMap.addAll(requestHeaders);
+        Future<Result<Buffer, StatusCode>> fetch = fetchLock == null
+                ? fetchAndStore(cacheIdentifier, headersMultiMap, directives)
+                : fetchWithLease(cacheIdentifier, headersMultiMap, directives);
+        fetch.onComplete(event -> {
+            inFlightFetches.remove(cacheIdentifier);
+            promise.handle(event);
+        });
+        return promise.future();
+    }
 
-            Buffer fetchedData = result.ok();
-            cacheStorage.cacheRequest(cacheIdentifier, fetchedData, Duration.ofMillis(expireMs)).onComplete(event1 -> {
-                if (event1.failed()){
-                    log.warn("Failed to store request to cache", event1.cause());
+    private Future<Result<Buffer, StatusCode>> fetchAndStore(String cacheIdentifier, HeadersMultiMap headers, CacheDirectives directives) {
+        return dataFetcher.fetchData(cacheIdentifier, headers, TIMEOUT_MS).compose(result -> {
+            if (result.isErr()) {
+                return Future.succeededFuture(result);
+            }
+            return storeToCache(cacheIdentifier, result.ok(), directives).transform(event -> {
+                if (event.failed()) {
+                    log.warn("Failed to store request to cache", event.cause());
                 }
-                respondWithPayload(request, fetchedData);
+                return Future.succeededFuture(result);
             });
+        });
+    }
+
+    private Future<Void> storeToCache(String cacheIdentifier, Buffer data, CacheDirectives directives) {
+        Duration cacheExpiry = Duration.ofMillis(directives.maxAgeMs);
+        long staleExpiryMs = Math.max(directives.staleWhileRevalidateMs, directives.staleIfErrorMs);
+        if (staleExpiryMs > 0) {
+            return cacheStorage.cacheRequest(cacheIdentifier, data, cacheExpiry, Duration.ofMillis(staleExpiryMs));
+        }
+        return cacheStorage.cacheRequest(cacheIdentifier, data, cacheExpiry);
+    }
 
+    /**
+     * Fetches the data of a request only when no other instance is currently fetching it. Otherwise waits for the
+     * other instance to store the data to the cache.
+     */
+    private Future<Result<Buffer, StatusCode>> fetchWithLease(String cacheIdentifier, HeadersMultiMap headers, CacheDirectives directives) {
+        String lease = FETCH_LEASE_PREFIX + cacheIdentifier;
+        String token = Address.instanceAddress() + "_" + System.currentTimeMillis() + "_" + cacheIdentifier;
+        return fetchLock.acquireLock(lease, token, TIMEOUT_MS).transform(event -> {
+            if (event.failed()) {
+                log.warn("Failed to acquire fetch lease for {}, fetching without lease", cacheIdentifier, event.cause());
+                return fetchAndStore(cacheIdentifier, headers, directives);
+            }
+            if (event.result()) {
+                return fetchAndStore(cacheIdentifier, headers, directives).onComplete(nothing ->
+                        fetchLock.releaseLock(lease, token).onFailure(throwable ->
+                                log.warn("Failed to release fetch lease for {}", cacheIdentifier, throwable)));
+            }
+            log.debug("Request to {} is being fetched by another instance, waiting for the result", cacheIdentifier);
+            return waitForCachedRequest(cacheIdentifier, headers, directives, System.currentTimeMillis() + FETCH_LEASE_MAX_WAIT_MS);
         });
     }
 
+    private Future<Result<Buffer, StatusCode>> waitForCachedRequest(String cacheIdentifier, HeadersMultiMap headers,
+                                                                    CacheDirectives directives, long waitUntil) {
+        Promise<Result<Buffer, StatusCode>> promise = Promise.promise();
+        vertx.setTimer(FETCH_LEASE_POLL_INTERVAL_MS, timerId -> cacheStorage.cachedRequest(cacheIdentifier).onComplete(event -> {
+            if (event.succeeded() && event.result().isPresent()) {
+                promise.complete(Result.ok(event.result().get()));
+            } else if (System.currentTimeMillis() < waitUntil) {
+                waitForCachedRequest(cacheIdentifier, headers, directives, waitUntil).onComplete(promise);
+            } else {
+                log.debug("Request to {} has not been cached by another instance in time, going to fetch it.", cacheIdentifier);
+                fetchAndStore(cacheIdentifier, headers, directives).onComplete(promise);
+            }
+        }));
+        return promise.future();
+    }
+
     private boolean containsCacheHeaders(final HttpServerRequest request) {
         List<String> cacheControlHeaderValues = request.headers().getAll(cacheControlHeader);
         for (String cacheControlHeaderValue : cacheControlHeaderValues) {
@@ -162,21 +331,33 @@ public class CacheHandler {
         if (cacheControlHeaderValue == null || !cacheControlHeaderValue.toLowerCase().contains(MAX_AGE)) {
             return Optional.empty();
         }
+        return extractDirectiveMs(request, MAX_AGE);
+    }
 
-        cacheControlHeaderValue = StringUtils.trim(cacheControlHeaderValue).toLowerCase();
-        List<String> headerValues = Splitter.on(MAX_AGE).omitEmptyStrings().splitToList(cacheControlHeaderValue);
-        if (headerValues.size() != 1) {
+    /**
+     * Extracts the value (in seconds) of a directive like <code>max-age=60</code> from the cache control header
+     * and returns it in milliseconds.
+     */
+    private Optional<Long> extractDirectiveMs(final HttpServerRequest request, String directive) {
+        String cacheControlHeaderValue = request.headers().get(cacheControlHeader);
+        if (cacheControlHeaderValue == null) {
             return Optional.empty();
         }
 
-        String headerValue = headerValues.get(0);
-        try {
-            long expireSeconds = Long.parseLong(headerValue);
-            return Optional.of(expireSeconds * 1000);
-        } catch (NumberFormatException ex) {
-            log.warn("Value of {} max-age header is not a number: {}", cacheControlHeader, headerValue);
-            return Optional.empty();
+        for (String headerValue : Splitter.on(',').trimResults().omitEmptyStrings().split(cacheControlHeaderValue.toLowerCase())) {
+            if (!headerValue.startsWith(directive)) {
+                continue;
+            }
+            String directiveValue = StringUtils.trim(headerValue.substring(directive.length()));
+            try {
+                long seconds = Long.parseLong(directiveValue);
+                return Optional.of(seconds * 1000);
+            } catch (NumberFormatException ex) {
+                log.warn("Value of {} {} header is not a number: {}", cacheControlHeader, directive, directiveValue);
+                return Optional.empty();
+            }
         }
+        return Optional.empty();
     }
 
     private void handleClearCache(final HttpServerRequest request) {
@@ -207,6 +388,7 @@ public class CacheHandler {
                 entriesArray.add(cachedEntry);
             }
             JsonObject entriesObj = new JsonObject().put("entries", entriesArray);
+            addLocalCacheStatistics(entriesObj);
             respondWithPayload(request, Buffer.buffer(entriesObj.encode()));
         });
     }
@@ -221,10 +403,15 @@ public class CacheHandler {
             Long count = event.result();
             log.debug("{} entries in cache", count);
             JsonObject clearedObj = new JsonObject().put("count", count);
+            addLocalCacheStatistics(clearedObj);
             respondWithPayload(request, Buffer.buffer(clearedObj.encode()));
         });
     }
 
+    private void addLocalCacheStatistics(JsonObject responseObj) {
+        cacheStorage.localCacheStatistics().ifPresent(statistics -> responseObj.put(LOCAL_CACHE, statistics));
+    }
+
     private void respondWith(StatusCode statusCode, final HttpServerRequest request) {
         ResponseStatusCodeLogUtil.info(request, statusCode, CacheHandler.class);
         request.response().setStatusCode(statusCode.getStatusCode());
@@ -234,11 +421,30 @@ public class CacheHandler {
     }
 
     private void respondWithPayload(final HttpServerRequest request, Buffer cachedRequestPayload) {
+        respondWithPayload(request, cachedRequestPayload, null);
+    }
+
+    private void respondWithPayload(final HttpServerRequest request, Buffer cachedRequestPayload, String warning) {
         ResponseStatusCodeLogUtil.info(request, StatusCode.OK, CacheHandler.class);
         request.response().setStatusCode(StatusCode.OK.getStatusCode());
         request.response().setStatusMessage(StatusCode.OK.getStatusMessage());
         request.response().headers().add(CONTENT_TYPE_HEADER, CONTENT_TYPE_JSON);
+        if (warning != null) {
+            request.response().headers().add(WARNING_HEADER, warning);
+        }
         request.response().end(cachedRequestPayload);
         request.resume();
     }
+
+    private static class CacheDirectives {
+        private final long maxAgeMs;
+        private final long staleWhileRevalidateMs;
+        private final long staleIfErrorMs;
+
+        CacheDirectives(long maxAgeMs, long staleWhileRevalidateMs, long staleIfErrorMs) {
+            this.maxAgeMs = maxAgeMs;
+            this.staleWhileRevalidateMs = staleWhileRevalidateMs;
+            this.staleIfErrorMs = staleIfErrorMs;
+        }
+    }
 }
@@ -10,7 +10,8 @@ import org.swisspush.gateleen.core.lua.LuaScript;
 public enum CacheLuaScripts implements LuaScript {
 
     CLEAR_CACHE("clear_cache.lua"),
-    CACHE_REQUEST("cache_request.lua");
+    CACHE_REQUEST("cache_request.lua"),
+    CACHED_REQUEST("cached_request.lua");
 
     private String file;
 
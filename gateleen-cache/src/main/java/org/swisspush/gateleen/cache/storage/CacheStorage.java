@@ -1,7 +1,9 @@
 package org.swisspush.gateleen.cache.storage;
 
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
 
 import java.time.Duration;
 import java.util.Optional;
@@ -11,11 +13,71 @@ public interface CacheStorage {
 
     Future<Void> cacheRequest(String cacheIdentifier, Buffer cachedObject, Duration cacheExpiry);
 
+    /**
+     * Caches a request and additionally keeps it as stale cached request for the <code>staleExpiry</code> period
+     * after the <code>cacheExpiry</code>. Storages not supporting stale cached requests only cache the request.
+     *
+     * @param cacheIdentifier the identifier of the cached request
+     * @param cachedObject the payload of the cached request
+     * @param cacheExpiry the period the cached request is fresh
+     * @param staleExpiry the period after the <code>cacheExpiry</code> the cached request is kept as stale cached request
+     * @return a succeeded future when the request was cached
+     */
+    default Future<Void> cacheRequest(String cacheIdentifier, Buffer cachedObject, Duration cacheExpiry, Duration staleExpiry) {
+        return cacheRequest(cacheIdentifier, cachedObject, cacheExpiry);
+    }
+
     Future<Optional<Buffer>> cachedRequest(String cacheIdentifier);
 
+    /**
+     * Returns the last cached payload of a request, regardless whether it is still fresh.
+     *
+     * @param cacheIdentifier the identifier of the cached request
+     * @param maxStaleness the maximum period the cached request may be expired
+     * @return the cached payload or an empty result when the request is not cached or expired for longer than
+     * <code>maxStaleness</code>
+     */
+    default Future<Optional<Buffer>> staleCachedRequest(String cacheIdentifier, Duration maxStaleness) {
+        return Future.succeededFuture(Optional.empty());
+    }
+
+    /**
+     * Returns the remaining time to live of a cached request. Storages not able to tell the remaining
+     * time to live return an empty result.
+     *
+     * @param cacheIdentifier the identifier of the cached request
+     * @return the remaining time to live or an empty result when the request is not cached or never expires
+     */
+    default Future<Optional<Duration>> cachedRequestTimeToLive(String cacheIdentifier) {
+        return Future.succeededFuture(Optional.empty());
+    }
+
+    /**
+     * Returns the payload of a cached request together with its remaining time to live. Storages able to read
+     * both at once override this, the default reads them with {@link #cachedRequest(String)} and
+     * {@link #cachedRequestTimeToLive(String)}.
+     *
+     * @param cacheIdentifier the identifier of the cached request
+     * @return the cached request or an empty result when the request is not cached or expired
+     */
+    default Future<Optional<CachedRequest>> cachedRequestWithTimeToLive(String cacheIdentifier) {
+        Future<Optional<Buffer>> cachedRequest = cachedRequest(cacheIdentifier);
+        Future<Optional<Duration>> timeToLive = cachedRequestTimeToLive(cacheIdentifier);
+        return CompositeFuture.all(cachedRequest, timeToLive).map(nothing -> cachedRequest.result()
+                .map(payload -> new CachedRequest(payload, timeToLive.result().orElse(null))));
+    }
+
     Future<Long> clearCache();
 
     Future<Long> cacheEntriesCount();
 
     Future<Set<String>> cacheEntries();
+
+    /**
+     * @return the statistics of the in-memory cache of this instance or an empty result when the storage
+     * has no in-memory cache
+     */
+    default Optional<JsonObject> localCacheStatistics() {
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,31 @@
+package org.swisspush.gateleen.cache.storage;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * The payload of a cached request together with its remaining time to live.
+ */
+public final class CachedRequest {
+
+    private final Buffer payload;
+    private final Duration timeToLive;
+
+    public CachedRequest(Buffer payload, Duration timeToLive) {
+        this.payload = payload;
+        this.timeToLive = timeToLive;
+    }
+
+    public Buffer getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return the remaining time to live or an empty result when the storage is not able to tell it
+     */
+    public Optional<Duration> getTimeToLive() {
+        return Optional.ofNullable(timeToLive);
+    }
+}
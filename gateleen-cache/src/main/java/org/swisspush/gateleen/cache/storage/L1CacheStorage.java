@@ -0,0 +1,150 @@
+package org.swisspush.gateleen.cache.storage;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.swisspush.gateleen.core.util.Address;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link CacheStorage} keeping the most used cached requests of the delegate storage in memory, so that serving
+ * them does not need a round trip to the delegate storage.
+ * <p>
+ * The in-memory entries expire together with the entries of the delegate storage. Clearing the cache is published
+ * to all instances on the event bus, so that every instance drops its in-memory entries. Entries read from or written
+ * to the delegate storage while the cache is cleared are not kept in memory, since they may already be cleared in the
+ * delegate storage.
+ */
+public class L1CacheStorage implements CacheStorage {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(L1CacheStorage.class);
+
+    private final Vertx vertx;
+    private final CacheStorage delegate;
+    private final SegmentedLruCache cache;
+    private final AtomicLong clearGeneration = new AtomicLong();
+    private final MessageConsumer<Object> invalidationConsumer;
+
+    public L1CacheStorage(Vertx vertx, CacheStorage delegate) {
+        this(vertx, delegate, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param vertx    vertx
+     * @param delegate the storage holding the cached requests
+     * @param maxBytes the maximum size (in bytes) of the cached requests kept in memory
+     */
+    public L1CacheStorage(Vertx vertx, CacheStorage delegate, long maxBytes) {
+        this.vertx = vertx;
+        this.delegate = delegate;
+        this.cache = new SegmentedLruCache(maxBytes);
+        this.invalidationConsumer = vertx.eventBus().consumer(Address.CACHE_INVALIDATION_ADDRESS, message -> {
+            log.debug("Clearing in-memory cache entries");
+            clear();
+        });
+    }
+
+    /**
+     * Stops receiving the cache invalidations of the other instances.
+     *
+     * @return a future completed when the event bus consumer is unregistered
+     */
+    public Future<Void> close() {
+        return invalidationConsumer.unregister();
+    }
+
+    @Override
+    public Future<Void> cacheRequest(String cacheIdentifier, Buffer cachedObject, Duration cacheExpiry) {
+        long expiresAt = System.currentTimeMillis() + cacheExpiry.toMillis();
+        long generation = clearGeneration.get();
+        return delegate.cacheRequest(cacheIdentifier, cachedObject, cacheExpiry)
+                .onSuccess(nothing -> put(cacheIdentifier, cachedObject, expiresAt, generation));
+    }
+
+    @Override
+    public Future<Void> cacheRequest(String cacheIdentifier, Buffer cachedObject, Duration cacheExpiry, Duration staleExpiry) {
+        long expiresAt = System.currentTimeMillis() + cacheExpiry.toMillis();
+        long generation = clearGeneration.get();
+        return delegate.cacheRequest(cacheIdentifier, cachedObject, cacheExpiry, staleExpiry)
+                .onSuccess(nothing -> put(cacheIdentifier, cachedObject, expiresAt, generation));
+    }
+
+    @Override
+    public Future<Optional<Buffer>> cachedRequest(String cacheIdentifier) {
+        Buffer cachedObject = cache.get(cacheIdentifier, System.currentTimeMillis());
+        if (cachedObject != null) {
+            return Future.succeededFuture(Optional.of(cachedObject));
+        }
+        long generation = clearGeneration.get();
+        return delegate.cachedRequestWithTimeToLive(cacheIdentifier).map(cachedRequest -> {
+            cachedRequest.ifPresent(request -> request.getTimeToLive().ifPresent(timeToLive ->
+                    put(cacheIdentifier, request.getPayload(), System.currentTimeMillis() + timeToLive.toMillis(), generation)));
+            return cachedRequest.map(CachedRequest::getPayload);
+        });
+    }
+
+    @Override
+    public Future<Optional<CachedRequest>> cachedRequestWithTimeToLive(String cacheIdentifier) {
+        return delegate.cachedRequestWithTimeToLive(cacheIdentifier);
+    }
+
+    @Override
+    public Future<Optional<Buffer>> staleCachedRequest(String cacheIdentifier, Duration maxStaleness) {
+        return delegate.staleCachedRequest(cacheIdentifier, maxStaleness);
+    }
+
+    @Override
+    public Future<Optional<Duration>> cachedRequestTimeToLive(String cacheIdentifier) {
+        return delegate.cachedRequestTimeToLive(cacheIdentifier);
+    }
+
+    @Override
+    public Future<Long> clearCache() {
+        clear();
+        return delegate.clearCache().onSuccess(count -> vertx.eventBus().publish(Address.CACHE_INVALIDATION_ADDRESS, null));
+    }
+
+    @Override
+    public Future<Long> cacheEntriesCount() {
+        return delegate.cacheEntriesCount();
+    }
+
+    @Override
+    public Future<Set<String>> cacheEntries() {
+        return delegate.cacheEntries();
+    }
+
+    private synchronized void clear() {
+        clearGeneration.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * Keeps the entry in memory unless the cache was cleared since the entry was read or written.
+     */
+    private synchronized void put(String cacheIdentifier, Buffer cachedObject, long expiresAt, long generation) {
+        if (clearGeneration.get() == generation) {
+            cache.put(cacheIdentifier, cachedObject, expiresAt);
+        }
+    }
+
+    @Override
+    public Optional<JsonObject> localCacheStatistics() {
+        return Optional.of(new JsonObject()
+                .put("entries", cache.size())
+                .put("bytes", cache.bytes())
+                .put("hits", cache.hits())
+                .put("misses", cache.misses())
+                .put("evictions", cache.evictions()));
+    }
+}
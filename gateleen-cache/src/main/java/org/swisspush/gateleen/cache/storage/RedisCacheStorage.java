@@ -6,6 +6,7 @@ import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
+import io.vertx.redis.client.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.swisspush.gateleen.core.exception.GateleenExceptionFactory;
@@ -34,9 +35,15 @@ public class RedisCacheStorage implements CacheStorage {
     private final RedisProvider redisProvider;
     private LuaScriptState clearCacheLuaScriptState;
     private LuaScriptState cacheRequestLuaScriptState;
+    private LuaScriptState cachedRequestLuaScriptState;
 
     public static final String CACHED_REQUESTS = "gateleen.cache-cached-requests";
     public static final String CACHE_PREFIX = "gateleen.cache:";
+    /**
+     * Entries with a stale period are kept for this period after their expiry. The expiry timestamp of such an
+     * entry is stored in a key with this prefix, next to the entry.
+     */
+    public static final String EXPIRES_AT_PREFIX = "gateleen.cache-expires-at:";
     public static final String STORAGE_CLEANUP_TASK_LOCK = "cacheStorageCleanupTask";
 
     public RedisCacheStorage(
@@ -51,6 +58,7 @@ public class RedisCacheStorage implements CacheStorage {
         this.redisProvider = redisProvider;
         clearCacheLuaScriptState = new LuaScriptState(CacheLuaScripts.CLEAR_CACHE, redisProvider, exceptionFactory, false);
         cacheRequestLuaScriptState = new LuaScriptState(CacheLuaScripts.CACHE_REQUEST, redisProvider, exceptionFactory, false);
+        cachedRequestLuaScriptState = new LuaScriptState(CacheLuaScripts.CACHED_REQUEST, redisProvider, exceptionFactory, false);
 
         vertx.setPeriodic(storageCleanupIntervalMs, event -> {
             String token = token(STORAGE_CLEANUP_TASK_LOCK);
@@ -86,9 +94,16 @@ public class RedisCacheStorage implements CacheStorage {
 
     @Override
     public Future<Void> cacheRequest(String cacheIdentifier, Buffer cachedObject, Duration cacheExpiry) {
+        return cacheRequest(cacheIdentifier, cachedObject, cacheExpiry, Duration.ZERO);
+    }
+
+    @Override
+    public Future<Void> cacheRequest(String cacheIdentifier, Buffer cachedObject, Duration cacheExpiry, Duration staleExpiry) {
         Promise<Void> promise = Promise.promise();
         List<String> keys = Collections.singletonList(CACHED_REQUESTS);
-        List<String> arguments = List.of(CACHE_PREFIX, cacheIdentifier, cachedObject.toString(), String.valueOf(cacheExpiry.toMillis()));
+        long expiresAt = System.currentTimeMillis() + cacheExpiry.toMillis();
+        List<String> arguments = List.of(CACHE_PREFIX, cacheIdentifier, cachedObject.toString(), String.valueOf(cacheExpiry.toMillis()),
+                EXPIRES_AT_PREFIX, String.valueOf(staleExpiry.toMillis()), String.valueOf(expiresAt));
         CacheRequestRedisCommand cmd = new CacheRequestRedisCommand(cacheRequestLuaScriptState, keys, arguments, redisProvider, log, promise);
         cmd.exec(0);
         return promise.future();
@@ -97,14 +112,18 @@ public class RedisCacheStorage implements CacheStorage {
     @Override
     public Future<Optional<Buffer>> cachedRequest(String cacheIdentifier) {
         Promise<Optional<Buffer>> promise = Promise.promise();
-        redisProvider.redis().onSuccess(redisAPI -> redisAPI.get(CACHE_PREFIX + cacheIdentifier, event -> {
+        List<String> keys = List.of(CACHE_PREFIX + cacheIdentifier, EXPIRES_AT_PREFIX + cacheIdentifier);
+        redisProvider.redis().onSuccess(redisAPI -> redisAPI.mget(keys, event -> {
             if (event.failed()) {
                 String message = "Failed to get cached request '" + cacheIdentifier + "'. Cause: " + logCause(event);
                 log.error(message);
                 promise.fail(message);
             } else {
-                if (event.result() != null) {
-                    promise.complete(Optional.of(Buffer.buffer(event.result().toBytes())));
+                Response value = event.result().get(0);
+                Response expiresAt = event.result().get(1);
+                // an entry kept for its stale period is not returned anymore after its expiry
+                if (value != null && (expiresAt == null || System.currentTimeMillis() < expiresAt.toLong())) {
+                    promise.complete(Optional.of(Buffer.buffer(value.toBytes())));
                 } else {
                     promise.complete(Optional.empty());
                 }
@@ -117,11 +136,94 @@ public class RedisCacheStorage implements CacheStorage {
         return promise.future();
     }
 
+    @Override
+    public Future<Optional<Buffer>> staleCachedRequest(String cacheIdentifier, Duration maxStaleness) {
+        Promise<Optional<Buffer>> promise = Promise.promise();
+        List<String> keys = List.of(CACHE_PREFIX + cacheIdentifier, EXPIRES_AT_PREFIX + cacheIdentifier);
+        redisProvider.redis().onSuccess(redisAPI -> redisAPI.mget(keys, event -> {
+            if (event.failed()) {
+                String message = "Failed to get stale cached request '" + cacheIdentifier + "'. Cause: " + logCause(event);
+                log.error(message);
+                promise.fail(message);
+            } else {
+                Response value = event.result().get(0);
+                Response expiresAt = event.result().get(1);
+                if (value != null && expiresAt != null
+                        && System.currentTimeMillis() - expiresAt.toLong() <= maxStaleness.toMillis()) {
+                    promise.complete(Optional.of(Buffer.buffer(value.toBytes())));
+                } else {
+                    promise.complete(Optional.empty());
+                }
+            }
+        })).onFailure(throwable -> {
+            String message = "Redis: Failed to get stale cached request '" + cacheIdentifier + "'. Cause: " + throwable.getMessage();
+            log.error(message);
+            promise.fail(message);
+        });
+        return promise.future();
+    }
+
+    @Override
+    public Future<Optional<Duration>> cachedRequestTimeToLive(String cacheIdentifier) {
+        Promise<Optional<Duration>> promise = Promise.promise();
+        redisProvider.redis().onSuccess(redisAPI -> redisAPI.get(EXPIRES_AT_PREFIX + cacheIdentifier, expiresAtEvent -> {
+            if (expiresAtEvent.failed()) {
+                String message = "Failed to get time to live of cached request '" + cacheIdentifier + "'. Cause: " + logCause(expiresAtEvent);
+                log.error(message);
+                promise.fail(message);
+                return;
+            }
+            if (expiresAtEvent.result() != null) {
+                // the entry is kept for its stale period, its time to live ends with its expiry
+                long ttlMs = expiresAtEvent.result().toLong() - System.currentTimeMillis();
+                promise.complete(ttlMs > 0 ? Optional.of(Duration.ofMillis(ttlMs)) : Optional.empty());
+                return;
+            }
+            redisAPI.pttl(CACHE_PREFIX + cacheIdentifier, event -> {
+                if (event.failed()) {
+                    String message = "Failed to get time to live of cached request '" + cacheIdentifier + "'. Cause: " + logCause(event);
+                    log.error(message);
+                    promise.fail(message);
+                } else {
+                    // negative values mean that the key does not exist or has no expiry
+                    long ttlMs = event.result().toLong();
+                    promise.complete(ttlMs > 0 ? Optional.of(Duration.ofMillis(ttlMs)) : Optional.empty());
+                }
+            });
+        })).onFailure(throwable -> {
+            String message = "Redis: Failed to get time to live of cached request '" + cacheIdentifier + "'. Cause: " + throwable.getMessage();
+            log.error(message);
+            promise.fail(message);
+        });
+        return promise.future();
+    }
+
+    @Override
+    public Future<Optional<CachedRequest>> cachedRequestWithTimeToLive(String cacheIdentifier) {
+        Promise<Response> promise = Promise.promise();
+        List<String> keys = List.of(CACHE_PREFIX + cacheIdentifier, EXPIRES_AT_PREFIX + cacheIdentifier);
+        CachedRequestRedisCommand cmd = new CachedRequestRedisCommand(cachedRequestLuaScriptState, keys, Collections.emptyList(),
+                redisProvider, log, promise);
+        cmd.exec(0);
+        return promise.future().map(response -> {
+            Response value = response.get(0);
+            Response expiresAt = response.get(1);
+            long now = System.currentTimeMillis();
+            // an entry kept for its stale period is not returned anymore after its expiry
+            if (value == null || (expiresAt != null && now >= expiresAt.toLong())) {
+                return Optional.<CachedRequest>empty();
+            }
+            // negative values mean that the key has no expiry
+            long ttlMs = expiresAt != null ? expiresAt.toLong() - now : response.get(2).toLong();
+            return Optional.of(new CachedRequest(Buffer.buffer(value.toBytes()), ttlMs > 0 ? Duration.ofMillis(ttlMs) : null));
+        }).onFailure(throwable -> log.error("Failed to get cached request '{}'. Cause: {}", cacheIdentifier, throwable.getMessage()));
+    }
+
     @Override
     public Future<Long> clearCache() {
         Promise<Long> promise = Promise.promise();
         List<String> keys = Collections.singletonList(CACHED_REQUESTS);
-        List<String> arguments = List.of(CACHE_PREFIX, "true");
+        List<String> arguments = List.of(CACHE_PREFIX, "true", EXPIRES_AT_PREFIX);
         ClearCacheRedisCommand cmd = new ClearCacheRedisCommand(clearCacheLuaScriptState, keys, arguments, redisProvider, log, promise);
         cmd.exec(0);
         return promise.future();
@@ -176,7 +278,7 @@ public class RedisCacheStorage implements CacheStorage {
     private Future<Long> cleanup() {
         Promise<Long> promise = Promise.promise();
         List<String> keys = Collections.singletonList(CACHED_REQUESTS);
-        List<String> arguments = List.of(CACHE_PREFIX, "false");
+        List<String> arguments = List.of(CACHE_PREFIX, "false", EXPIRES_AT_PREFIX);
         ClearCacheRedisCommand cmd = new ClearCacheRedisCommand(clearCacheLuaScriptState, keys, arguments, redisProvider, log, promise);
         cmd.exec(0);
         return promise.future();
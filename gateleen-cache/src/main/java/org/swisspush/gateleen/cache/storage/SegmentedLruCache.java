@@ -0,0 +1,166 @@
+package org.swisspush.gateleen.cache.storage;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Segmented LRU cache bounded by the size (in bytes) of the cached payloads.
+ * <p>
+ * New entries are added to the probation segment. Entries read again are promoted to the protected segment, so
+ * entries read only once (e.g. by a scan over many resources) cannot evict the frequently read entries. When the
+ * protected segment is full, its least recently used entries are moved back to the probation segment. When the
+ * cache is full, the least recently used entries of the probation segment are evicted first.
+ */
+class SegmentedLruCache {
+
+    static final double PROTECTED_SEGMENT_RATIO = 0.8;
+
+    private final long maxBytes;
+    private final long maxProtectedBytes;
+
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationBytes;
+    private long protectedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes the maximum size (in bytes) of all cached payloads
+     */
+    SegmentedLruCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.maxProtectedBytes = (long) (maxBytes * PROTECTED_SEGMENT_RATIO);
+    }
+
+    /**
+     * @param key the key of the entry
+     * @param now the current time in milliseconds
+     * @return the cached payload or <code>null</code> when not cached or expired
+     */
+    synchronized Buffer get(String key, long now) {
+        Entry entry = protectedSegment.get(key);
+        if (entry == null) {
+            entry = probation.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                promote(key, entry);
+            }
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt <= now) {
+            remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.payload;
+    }
+
+    /**
+     * @param key       the key of the entry
+     * @param payload   the payload to cache
+     * @param expiresAt the time in milliseconds, when the entry expires
+     */
+    synchronized void put(String key, Buffer payload, long expiresAt) {
+        remove(key);
+        if (payload.length() > maxBytes) {
+            return;
+        }
+        probation.put(key, new Entry(payload, expiresAt));
+        probationBytes += payload.length();
+        evict();
+    }
+
+    synchronized void remove(String key) {
+        Entry entry = probation.remove(key);
+        if (entry != null) {
+            probationBytes -= entry.payload.length();
+        }
+        entry = protectedSegment.remove(key);
+        if (entry != null) {
+            protectedBytes -= entry.payload.length();
+        }
+    }
+
+    synchronized void clear() {
+        probation.clear();
+        protectedSegment.clear();
+        probationBytes = 0;
+        protectedBytes = 0;
+    }
+
+    synchronized long size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    synchronized long bytes() {
+        return probationBytes + protectedBytes;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    private void promote(String key, Entry entry) {
+        probation.remove(key);
+        probationBytes -= entry.payload.length();
+        protectedSegment.put(key, entry);
+        protectedBytes += entry.payload.length();
+
+        Iterator<Map.Entry<String, Entry>> iterator = protectedSegment.entrySet().iterator();
+        while (protectedBytes > maxProtectedBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> demoted = iterator.next();
+            if (demoted.getValue() == entry) {
+                break;
+            }
+            iterator.remove();
+            protectedBytes -= demoted.getValue().payload.length();
+            probation.put(demoted.getKey(), demoted.getValue());
+            probationBytes += demoted.getValue().payload.length();
+        }
+    }
+
+    private void evict() {
+        evict(probation.entrySet().iterator(), true);
+        evict(protectedSegment.entrySet().iterator(), false);
+    }
+
+    private void evict(Iterator<Map.Entry<String, Entry>> iterator, boolean fromProbation) {
+        while (probationBytes + protectedBytes > maxBytes && iterator.hasNext()) {
+            long length = iterator.next().getValue().payload.length();
+            iterator.remove();
+            if (fromProbation) {
+                probationBytes -= length;
+            } else {
+                protectedBytes -= length;
+            }
+            evictions++;
+        }
+    }
+
+    private static class Entry {
+        private final Buffer payload;
+        private final long expiresAt;
+
+        Entry(Buffer payload, long expiresAt) {
+            this.payload = payload;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -3,11 +3,22 @@ local cachePrefix = ARGV[1]
 local resourceName = ARGV[2]
 local resourceValue = ARGV[3]
 local expireMillis = tonumber(ARGV[4])
+local expiresAtPrefix = ARGV[5]
+local staleExpireMillis = tonumber(ARGV[6])
+local expiresAt = ARGV[7]
 
 local resourceKey = cachePrefix..resourceName
+local expiresAtKey = expiresAtPrefix..resourceName
 
 redis.call('sadd', cachedSet, resourceName)
-redis.call('psetex', resourceKey, expireMillis, resourceValue)
 
-return "OK"
+-- keep the resource for the stale period after its expiry, the expiry is stored next to it
+if staleExpireMillis > 0 then
+    redis.call('psetex', resourceKey, expireMillis + staleExpireMillis, resourceValue)
+    redis.call('psetex', expiresAtKey, expireMillis + staleExpireMillis, expiresAt)
+else
+    redis.call('psetex', resourceKey, expireMillis, resourceValue)
+    redis.call('del', expiresAtKey)
+end
 
+return "OK"
@@ -0,0 +1,5 @@
+local resourceKey = KEYS[1]
+local expiresAtKey = KEYS[2]
+
+-- the value, the expiry of an entry kept for its stale period and the remaining time to live of the value
+return { redis.call('get', resourceKey), redis.call('get', expiresAtKey), redis.call('pttl', resourceKey) }
@@ -1,6 +1,7 @@
 local cachedSet = KEYS[1]
 local cachePrefix = ARGV[1]
 local clearAll = ARGV[2]
+local expiresAtPrefix = ARGV[3]
 
 local entriesToClear = redis.call('smembers',cachedSet)
 
@@ -9,6 +10,7 @@ local count = 0
 if clearAll == "true" then
     for i, key_name in ipairs(entriesToClear) do
         redis.call('del',cachePrefix..key_name)
+        redis.call('del',expiresAtPrefix..key_name)
         redis.call('srem',cachedSet, key_name)
         count = count + 1
     end
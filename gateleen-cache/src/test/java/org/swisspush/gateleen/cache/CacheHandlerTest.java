@@ -2,6 +2,8 @@ package org.swisspush.gateleen.cache;
 
 import io.vertx.core.Future;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 
 import io.vertx.core.http.HttpMethod;
@@ -21,10 +23,14 @@ import org.swisspush.gateleen.cache.fetch.CacheDataFetcher;
 import org.swisspush.gateleen.cache.storage.CacheStorage;
 import org.swisspush.gateleen.core.http.DummyHttpServerRequest;
 import org.swisspush.gateleen.core.http.DummyHttpServerResponse;
+import org.swisspush.gateleen.core.lock.Lock;
 import org.swisspush.gateleen.core.util.Result;
 import org.swisspush.gateleen.core.util.StatusCode;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -34,6 +40,9 @@ import static org.swisspush.gateleen.cache.CacheHandler.*;
 @RunWith(VertxUnitRunner.class)
 public class CacheHandlerTest {
 
+    private static final int CONCURRENT_REQUESTS = 500;
+
+    private final Vertx vertx = Vertx.vertx();
     private CacheHandler cacheHandler;
     private CacheDataFetcher dataFetcher = mock(CacheDataFetcher.class);
     private CacheStorage cacheStorage = mock(CacheStorage.class);
@@ -132,6 +141,164 @@ public class CacheHandlerTest {
         verify(response, timeout(1000).times(1)).end(eq(dataObj));
     }
 
+    @Test
+    public void testConcurrentCacheMissesAreFetchedOnce(TestContext context) {
+        Buffer dataObj = bufferFromJson(new JsonObject().put("foo", "bar"));
+        Promise<Result<Buffer, StatusCode>> fetch = Promise.promise();
+        when(cacheStorage.cachedRequest(anyString())).thenReturn(Future.succeededFuture(Optional.empty()));
+        when(cacheStorage.cacheRequest(anyString(), any(), any())).thenReturn(Future.succeededFuture());
+        when(dataFetcher.fetchData(anyString(), any(), anyLong())).thenReturn(fetch.future());
+
+        List<HttpServerResponse> responses = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            HttpServerResponse response = spy(new Response());
+            responses.add(response);
+            MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+            headers.add(DEFAULT_CACHE_CONTROL_HEADER, "max-age=120");
+            context.assertTrue(cacheHandler.handle(new Request(HttpMethod.GET, "/some/path", headers, response)));
+        }
+        fetch.complete(Result.ok(dataObj));
+
+        verify(dataFetcher, times(1)).fetchData(anyString(), any(), anyLong());
+        verify(cacheStorage, times(1)).cacheRequest(eq("/some/path"), eq(dataObj), any());
+        for (HttpServerResponse response : responses) {
+            verify(response, timeout(1000).times(1)).end(eq(dataObj));
+        }
+
+        // a later miss fetches again
+        when(dataFetcher.fetchData(anyString(), any(), anyLong())).thenReturn(Future.succeededFuture(Result.ok(dataObj)));
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        headers.add(DEFAULT_CACHE_CONTROL_HEADER, "max-age=120");
+        cacheHandler.handle(new Request(HttpMethod.GET, "/some/path", headers, spy(new Response())));
+        verify(dataFetcher, times(2)).fetchData(anyString(), any(), anyLong());
+    }
+
+    @Test
+    public void testCacheMissWithFetchLease(TestContext context) {
+        Buffer dataObj = bufferFromJson(new JsonObject().put("foo", "bar"));
+        Lock lock = mock(Lock.class);
+        when(lock.acquireLock(anyString(), anyString(), anyLong())).thenReturn(Future.succeededFuture(Boolean.TRUE));
+        when(lock.releaseLock(anyString(), anyString())).thenReturn(Future.succeededFuture(Boolean.TRUE));
+        cacheHandler = new CacheHandler(dataFetcher, cacheStorage, "/playground/server/cache", DEFAULT_CACHE_CONTROL_HEADER, vertx, lock);
+        when(cacheStorage.cachedRequest(anyString())).thenReturn(Future.succeededFuture(Optional.empty()));
+        when(cacheStorage.cacheRequest(anyString(), any(), any())).thenReturn(Future.succeededFuture());
+        when(dataFetcher.fetchData(anyString(), any(), anyLong())).thenReturn(Future.succeededFuture(Result.ok(dataObj)));
+
+        HttpServerResponse response = spy(new Response());
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        headers.add(DEFAULT_CACHE_CONTROL_HEADER, "max-age=120");
+        context.assertTrue(cacheHandler.handle(new Request(HttpMethod.GET, "/some/path", headers, response)));
+
+        verify(response, timeout(1000).times(1)).end(eq(dataObj));
+        verify(lock, times(1)).acquireLock(eq("cacheFetch:/some/path"), anyString(), anyLong());
+        verify(lock, times(1)).releaseLock(eq("cacheFetch:/some/path"), anyString());
+        verify(dataFetcher, times(1)).fetchData(anyString(), any(), anyLong());
+    }
+
+    @Test
+    public void testCacheMissWaitsForFetchLeaseOfOtherInstance(TestContext context) {
+        Buffer dataObj = bufferFromJson(new JsonObject().put("foo", "bar"));
+        Lock lock = mock(Lock.class);
+        when(lock.acquireLock(anyString(), anyString(), anyLong())).thenReturn(Future.succeededFuture(Boolean.FALSE));
+        cacheHandler = new CacheHandler(dataFetcher, cacheStorage, "/playground/server/cache", DEFAULT_CACHE_CONTROL_HEADER, vertx, lock);
+        // the other instance caches the request while this instance is waiting
+        when(cacheStorage.cachedRequest(anyString()))
+                .thenReturn(Future.succeededFuture(Optional.empty()))
+                .thenReturn(Future.succeededFuture(Optional.empty()))
+                .thenReturn(Future.succeededFuture(Optional.of(dataObj)));
+
+        HttpServerResponse response = spy(new Response());
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        headers.add(DEFAULT_CACHE_CONTROL_HEADER, "max-age=120");
+        context.assertTrue(cacheHandler.handle(new Request(HttpMethod.GET, "/some/path", headers, response)));
+
+        verify(response, timeout(1000).times(1)).end(eq(dataObj));
+        verify(dataFetcher, never()).fetchData(anyString(), any(), anyLong());
+        verify(cacheStorage, never()).cacheRequest(anyString(), any(), any());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate(TestContext context) {
+        Buffer staleObj = bufferFromJson(new JsonObject().put("foo", "stale"));
+        Buffer dataObj = bufferFromJson(new JsonObject().put("foo", "bar"));
+        Promise<Result<Buffer, StatusCode>> fetch = Promise.promise();
+        when(cacheStorage.cachedRequest(anyString())).thenReturn(Future.succeededFuture(Optional.empty()));
+        when(cacheStorage.staleCachedRequest(anyString(), any())).thenReturn(Future.succeededFuture(Optional.of(staleObj)));
+        when(cacheStorage.cacheRequest(anyString(), any(), any(), any())).thenReturn(Future.succeededFuture());
+        when(dataFetcher.fetchData(anyString(), any(), anyLong())).thenReturn(fetch.future());
+
+        List<HttpServerResponse> responses = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            HttpServerResponse response = spy(new Response());
+            responses.add(response);
+            MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+            headers.add(DEFAULT_CACHE_CONTROL_HEADER, "max-age=120, stale-while-revalidate=30");
+            context.assertTrue(cacheHandler.handle(new Request(HttpMethod.GET, "/some/path", headers, response)));
+        }
+
+        // all requests are served stale before the refresh has completed
+        for (HttpServerResponse response : responses) {
+            verify(response, times(1)).end(eq(staleObj));
+            context.assertEquals(WARNING_RESPONSE_IS_STALE, response.headers().get(WARNING_HEADER));
+        }
+        verify(cacheStorage, times(10)).staleCachedRequest(eq("/some/path"), eq(Duration.ofSeconds(30)));
+        verify(dataFetcher, times(1)).fetchData(anyString(), any(), anyLong());
+
+        fetch.complete(Result.ok(dataObj));
+        verify(cacheStorage, times(1)).cacheRequest(eq("/some/path"), eq(dataObj), eq(Duration.ofSeconds(120)), eq(Duration.ofSeconds(30)));
+    }
+
+    @Test
+    public void testStaleWhileRevalidateWithoutStaleCachedRequest(TestContext context) {
+        Buffer dataObj = bufferFromJson(new JsonObject().put("foo", "bar"));
+        when(cacheStorage.cachedRequest(anyString())).thenReturn(Future.succeededFuture(Optional.empty()));
+        when(cacheStorage.staleCachedRequest(anyString(), any())).thenReturn(Future.succeededFuture(Optional.empty()));
+        when(cacheStorage.cacheRequest(anyString(), any(), any(), any())).thenReturn(Future.succeededFuture());
+        when(dataFetcher.fetchData(anyString(), any(), anyLong())).thenReturn(Future.succeededFuture(Result.ok(dataObj)));
+
+        HttpServerResponse response = spy(new Response());
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        headers.add(DEFAULT_CACHE_CONTROL_HEADER, "max-age=120, stale-while-revalidate=30");
+        context.assertTrue(cacheHandler.handle(new Request(HttpMethod.GET, "/some/path", headers, response)));
+
+        verify(response, timeout(1000).times(1)).end(eq(dataObj));
+        context.assertNull(response.headers().get(WARNING_HEADER));
+    }
+
+    @Test
+    public void testStaleIfError(TestContext context) {
+        Buffer staleObj = bufferFromJson(new JsonObject().put("foo", "stale"));
+        when(cacheStorage.cachedRequest(anyString())).thenReturn(Future.succeededFuture(Optional.empty()));
+        when(cacheStorage.staleCachedRequest(anyString(), any())).thenReturn(Future.succeededFuture(Optional.of(staleObj)));
+        when(dataFetcher.fetchData(anyString(), any(), anyLong())).thenReturn(Future.failedFuture("Booom"));
+
+        HttpServerResponse response = spy(new Response());
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        headers.add(DEFAULT_CACHE_CONTROL_HEADER, "max-age=120, stale-if-error=600");
+        context.assertTrue(cacheHandler.handle(new Request(HttpMethod.GET, "/some/path", headers, response)));
+
+        verify(response, timeout(1000).times(1)).end(eq(staleObj));
+        verify(response, times(1)).setStatusCode(StatusCode.OK.getStatusCode());
+        context.assertEquals(WARNING_REVALIDATION_FAILED, response.headers().get(WARNING_HEADER));
+        verify(cacheStorage, times(1)).staleCachedRequest(eq("/some/path"), eq(Duration.ofSeconds(600)));
+    }
+
+    @Test
+    public void testStaleIfErrorNotUsedForClientErrors(TestContext context) {
+        Buffer staleObj = bufferFromJson(new JsonObject().put("foo", "stale"));
+        when(cacheStorage.cachedRequest(anyString())).thenReturn(Future.succeededFuture(Optional.empty()));
+        when(cacheStorage.staleCachedRequest(anyString(), any())).thenReturn(Future.succeededFuture(Optional.of(staleObj)));
+        when(dataFetcher.fetchData(anyString(), any(), anyLong())).thenReturn(Future.succeededFuture(Result.err(StatusCode.NOT_FOUND)));
+
+        HttpServerResponse response = spy(new Response());
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        headers.add(DEFAULT_CACHE_CONTROL_HEADER, "max-age=120, stale-if-error=600");
+        context.assertTrue(cacheHandler.handle(new Request(HttpMethod.GET, "/some/path", headers, response)));
+
+        verify(response, timeout(1000).times(1)).setStatusCode(StatusCode.NOT_FOUND.getStatusCode());
+        verify(cacheStorage, never()).staleCachedRequest(anyString(), any());
+    }
+
     @Test
     public void testCachedRequestFromCacheStorageFail(TestContext context) {
         HttpServerResponse response = spy(new Response());
@@ -264,6 +431,19 @@ public class CacheHandlerTest {
         context.assertEquals(CONTENT_TYPE_JSON, response.headers().get(CONTENT_TYPE_HEADER));
     }
 
+    @Test
+    public void testCacheAdminFunctionEntriesCountWithLocalCacheStatistics(TestContext context) {
+        HttpServerResponse response = spy(new Response());
+        when(cacheStorage.cacheEntriesCount()).thenReturn(Future.succeededFuture(15L));
+        JsonObject statistics = new JsonObject().put("hits", 5L).put("misses", 2L).put("evictions", 0L);
+        when(cacheStorage.localCacheStatistics()).thenReturn(Optional.of(statistics));
+
+        Request getRequestWithCacheControlHeaders = new Request(HttpMethod.GET, "/playground/server/cache/count", MultiMap.caseInsensitiveMultiMap(), response);
+        context.assertTrue(cacheHandler.handle(getRequestWithCacheControlHeaders));
+
+        verify(response, timeout(1000).times(1)).end(bufferFromJson(new JsonObject().put("count", 15L).put("localCache", statistics)));
+    }
+
     @Test
     public void testCacheAdminFunctionEntries(TestContext context) {
         HttpServerResponse response = spy(new Response());
@@ -0,0 +1,221 @@
+package org.swisspush.gateleen.cache.storage;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.Timeout;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.swisspush.gateleen.core.util.Address;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the {@link L1CacheStorage} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class L1CacheStorageTest {
+
+    private static final Buffer PAYLOAD = Buffer.buffer(new JsonObject().put("foo", "bar").encode());
+
+    private Vertx vertx;
+    private CacheStorage delegate;
+    private L1CacheStorage storage;
+
+    @org.junit.Rule
+    public Timeout rule = Timeout.seconds(5);
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        delegate = Mockito.mock(CacheStorage.class);
+        when(delegate.cacheRequest(anyString(), any(Buffer.class), any(Duration.class))).thenReturn(Future.succeededFuture());
+        when(delegate.cachedRequest(anyString())).thenReturn(Future.succeededFuture(Optional.of(PAYLOAD)));
+        when(delegate.cachedRequestTimeToLive(anyString())).thenReturn(Future.succeededFuture(Optional.of(Duration.ofSeconds(60))));
+        when(delegate.cachedRequestWithTimeToLive(anyString())).thenCallRealMethod();
+        when(delegate.clearCache()).thenReturn(Future.succeededFuture(1L));
+        storage = new L1CacheStorage(vertx, delegate, 1024);
+    }
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void testCachedRequestIsReadFromDelegateOnlyOnce(TestContext context) {
+        for (int i = 0; i < 10; i++) {
+            context.assertEquals(Optional.of(PAYLOAD), storage.cachedRequest("/some/resource").result());
+        }
+        verify(delegate, times(1)).cachedRequest("/some/resource");
+
+        JsonObject statistics = storage.localCacheStatistics().get();
+        context.assertEquals(9L, statistics.getLong("hits"));
+        context.assertEquals(1L, statistics.getLong("misses"));
+        context.assertEquals(1L, statistics.getLong("entries"));
+    }
+
+    @Test
+    public void testCacheRequestIsKeptInMemory(TestContext context) {
+        storage.cacheRequest("/some/resource", PAYLOAD, Duration.ofSeconds(60));
+
+        context.assertEquals(Optional.of(PAYLOAD), storage.cachedRequest("/some/resource").result());
+        verify(delegate, times(1)).cacheRequest("/some/resource", PAYLOAD, Duration.ofSeconds(60));
+        verify(delegate, never()).cachedRequest(anyString());
+    }
+
+    @Test
+    public void testCacheRequestIsKeptInMemoryOnlyWhenWritten(TestContext context) {
+        Promise<Void> write = Promise.promise();
+        when(delegate.cacheRequest(anyString(), any(Buffer.class), any(Duration.class))).thenReturn(write.future());
+
+        storage.cacheRequest("/some/resource", PAYLOAD, Duration.ofSeconds(60));
+        context.assertEquals(0L, storage.localCacheStatistics().get().getLong("entries"));
+
+        write.complete();
+        context.assertEquals(1L, storage.localCacheStatistics().get().getLong("entries"));
+    }
+
+    @Test
+    public void testFailedCacheRequestIsNotKeptInMemory(TestContext context) {
+        when(delegate.cacheRequest(anyString(), any(Buffer.class), any(Duration.class))).thenReturn(Future.failedFuture("boom"));
+
+        storage.cacheRequest("/some/resource", PAYLOAD, Duration.ofSeconds(60));
+
+        context.assertEquals(0L, storage.localCacheStatistics().get().getLong("entries"));
+    }
+
+    @Test
+    public void testReadDuringClearIsNotKeptInMemory(TestContext context) {
+        Promise<Optional<Buffer>> read = Promise.promise();
+        when(delegate.cachedRequest(anyString())).thenReturn(read.future());
+
+        storage.cachedRequest("/some/resource");
+        storage.clearCache();
+        read.complete(Optional.of(PAYLOAD));
+
+        context.assertEquals(0L, storage.localCacheStatistics().get().getLong("entries"));
+    }
+
+    @Test
+    public void testClosedStorageIgnoresInvalidations(TestContext context) {
+        Async async = context.async();
+        storage.cacheRequest("/some/resource", PAYLOAD, Duration.ofSeconds(60));
+
+        storage.close().onComplete(event -> {
+            context.assertTrue(event.succeeded());
+            vertx.eventBus().publish(Address.CACHE_INVALIDATION_ADDRESS, null);
+            vertx.setTimer(100, id -> {
+                context.assertEquals(1L, storage.localCacheStatistics().get().getLong("entries"));
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testCachedRequestWithoutTimeToLiveIsNotKeptInMemory(TestContext context) {
+        when(delegate.cachedRequestTimeToLive(anyString())).thenReturn(Future.succeededFuture(Optional.empty()));
+
+        storage.cachedRequest("/some/resource");
+        storage.cachedRequest("/some/resource");
+
+        verify(delegate, times(2)).cachedRequest("/some/resource");
+    }
+
+    @Test
+    public void testCachedRequestIsReadFromDelegateInOneCall(TestContext context) {
+        when(delegate.cachedRequestWithTimeToLive(anyString()))
+                .thenReturn(Future.succeededFuture(Optional.of(new CachedRequest(PAYLOAD, Duration.ofSeconds(60)))));
+
+        context.assertEquals(Optional.of(PAYLOAD), storage.cachedRequest("/some/resource").result());
+        context.assertEquals(Optional.of(PAYLOAD), storage.cachedRequest("/some/resource").result());
+
+        verify(delegate, times(1)).cachedRequestWithTimeToLive("/some/resource");
+        verify(delegate, never()).cachedRequest(anyString());
+        verify(delegate, never()).cachedRequestTimeToLive(anyString());
+    }
+
+    @Test
+    public void testNotCachedRequest(TestContext context) {
+        when(delegate.cachedRequest(anyString())).thenReturn(Future.succeededFuture(Optional.empty()));
+
+        context.assertEquals(Optional.empty(), storage.cachedRequest("/some/resource").result());
+        context.assertEquals(Optional.empty(), storage.cachedRequest("/some/resource").result());
+        verify(delegate, times(2)).cachedRequest("/some/resource");
+    }
+
+    @Test
+    public void testExpiredEntryIsReadFromDelegate(TestContext context) {
+        Async async = context.async();
+        storage.cacheRequest("/some/resource", PAYLOAD, Duration.ofMillis(50));
+
+        vertx.setTimer(100, id -> {
+            context.assertEquals(Optional.of(PAYLOAD), storage.cachedRequest("/some/resource").result());
+            verify(delegate, times(1)).cachedRequest("/some/resource");
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testClearCacheIsPublishedToAllInstances(TestContext context) {
+        Async async = context.async();
+        L1CacheStorage otherInstance = new L1CacheStorage(vertx, delegate, 1024);
+        otherInstance.cacheRequest("/some/resource", PAYLOAD, Duration.ofSeconds(60));
+        context.assertEquals(1L, otherInstance.localCacheStatistics().get().getLong("entries"));
+
+        storage.clearCache().onComplete(event -> {
+            context.assertTrue(event.succeeded());
+            vertx.setTimer(100, id -> {
+                context.assertEquals(0L, otherInstance.localCacheStatistics().get().getLong("entries"));
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testEvictionWhenSizeExceeded(TestContext context) {
+        Buffer largePayload = Buffer.buffer(new byte[400]);
+        storage.cacheRequest("/resource/1", largePayload, Duration.ofSeconds(60));
+        storage.cacheRequest("/resource/2", largePayload, Duration.ofSeconds(60));
+        storage.cacheRequest("/resource/3", largePayload, Duration.ofSeconds(60));
+
+        JsonObject statistics = storage.localCacheStatistics().get();
+        context.assertEquals(2L, statistics.getLong("entries"));
+        context.assertEquals(800L, statistics.getLong("bytes"));
+        context.assertEquals(1L, statistics.getLong("evictions"));
+    }
+
+    @Test
+    public void testFrequentlyReadEntriesAreNotEvictedByNewEntries(TestContext context) {
+        SegmentedLruCache cache = new SegmentedLruCache(1000);
+        Buffer payload = Buffer.buffer(new byte[100]);
+        cache.put("hot", payload, Long.MAX_VALUE);
+        cache.get("hot", 0);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("scan-" + i, payload, Long.MAX_VALUE);
+        }
+
+        context.assertNotNull(cache.get("hot", 0));
+        context.assertTrue(cache.bytes() <= 1000);
+    }
+
+    @Test
+    public void testPayloadLargerThanCacheIsNotCached(TestContext context) {
+        storage.cacheRequest("/some/resource", Buffer.buffer(new byte[2000]), Duration.ofSeconds(60));
+
+        context.assertEquals(0L, storage.localCacheStatistics().get().getLong("entries"));
+    }
+}
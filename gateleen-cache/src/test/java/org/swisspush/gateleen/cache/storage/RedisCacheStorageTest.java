@@ -38,6 +38,7 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.swisspush.gateleen.cache.storage.RedisCacheStorage.CACHED_REQUESTS;
 import static org.swisspush.gateleen.cache.storage.RedisCacheStorage.CACHE_PREFIX;
+import static org.swisspush.gateleen.cache.storage.RedisCacheStorage.EXPIRES_AT_PREFIX;
 import static org.swisspush.gateleen.core.exception.GateleenExceptionFactory.newGateleenWastefulExceptionFactory;
 
 /**
@@ -209,6 +210,156 @@ public class RedisCacheStorageTest {
         });
     }
 
+    @Test
+    public void testStaleCachedRequest(TestContext context) {
+        Async async = context.async();
+
+        String resourceName = "cache_item_1";
+        Buffer payload = bufferFromJson(new JsonObject().put("foo", "bar"));
+
+        redisCacheStorage.cacheRequest(resourceName, payload, Duration.ofMillis(200), Duration.ofSeconds(10)).onComplete(event -> {
+            context.assertTrue(event.succeeded());
+            // no copy of the payload, the entry itself is kept for the stale period
+            context.assertTrue(jedis.pttl(CACHE_PREFIX + resourceName) > 9000);
+            context.assertTrue(jedis.exists(EXPIRES_AT_PREFIX + resourceName));
+            context.assertTrue(jedis.pttl(EXPIRES_AT_PREFIX + resourceName) > 9000);
+
+            long expiresAt = Long.parseLong(jedis.get(EXPIRES_AT_PREFIX + resourceName));
+            await().atMost(1, TimeUnit.SECONDS).until(() -> System.currentTimeMillis() > expiresAt, IsEqual.equalTo(true));
+
+            redisCacheStorage.cachedRequest(resourceName).onComplete(event1 -> {
+                context.assertEquals(Optional.empty(), event1.result());
+
+                redisCacheStorage.staleCachedRequest(resourceName, Duration.ofSeconds(5)).onComplete(event2 -> {
+                    context.assertTrue(event2.succeeded());
+                    context.assertEquals(Optional.of(payload), event2.result());
+
+                    redisCacheStorage.staleCachedRequest(resourceName, Duration.ZERO).onComplete(event3 -> {
+                        context.assertTrue(event3.succeeded());
+                        context.assertEquals(Optional.empty(), event3.result(), "stale for longer than allowed");
+
+                        redisCacheStorage.clearCache().onComplete(event4 -> {
+                            context.assertFalse(jedis.exists(CACHE_PREFIX + resourceName));
+                            context.assertFalse(jedis.exists(EXPIRES_AT_PREFIX + resourceName));
+                            async.complete();
+                        });
+                    });
+                });
+            });
+        });
+    }
+
+    @Test
+    public void testCachedRequestTimeToLiveWithStaleExpiry(TestContext context) {
+        Async async = context.async();
+        redisCacheStorage.cacheRequest("cache_item_1", bufferFromJson(jsonObject("payload_1")), Duration.ofSeconds(10),
+                Duration.ofSeconds(60)).onComplete(event -> {
+            context.assertTrue(event.succeeded());
+            redisCacheStorage.cachedRequestTimeToLive("cache_item_1").onComplete(event1 -> {
+                context.assertTrue(event1.succeeded());
+                // the stale period does not extend the time to live
+                context.assertTrue(event1.result().isPresent());
+                context.assertTrue(event1.result().get().toMillis() <= 10000);
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testCacheRequestWithoutStaleExpiry(TestContext context) {
+        Async async = context.async();
+        redisCacheStorage.cacheRequest("cache_item_1", bufferFromJson(jsonObject("payload_1")), Duration.ofSeconds(10)).onComplete(event -> {
+            context.assertTrue(event.succeeded());
+            context.assertFalse(jedis.exists(EXPIRES_AT_PREFIX + "cache_item_1"));
+            redisCacheStorage.staleCachedRequest("cache_item_1", Duration.ofSeconds(10)).onComplete(event1 -> {
+                context.assertEquals(Optional.empty(), event1.result());
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testCachedRequestTimeToLive(TestContext context) {
+        Async async = context.async();
+
+        // prepare
+        jedis.psetex(CACHE_PREFIX + "cache_item_1", 10000, jsonObjectStr("payload_1"));
+        jedis.set(CACHE_PREFIX + "cache_item_2", jsonObjectStr("payload_2"));
+
+        redisCacheStorage.cachedRequestTimeToLive("cache_item_1").onComplete(event -> {
+            context.assertTrue(event.succeeded());
+            context.assertTrue(event.result().isPresent());
+            context.assertTrue(event.result().get().toMillis() > 0 && event.result().get().toMillis() <= 10000);
+
+            redisCacheStorage.cachedRequestTimeToLive("cache_item_2").onComplete(event1 -> {
+                context.assertTrue(event1.succeeded());
+                context.assertEquals(Optional.empty(), event1.result());
+
+                redisCacheStorage.cachedRequestTimeToLive("cache_item_99").onComplete(event2 -> {
+                    context.assertTrue(event2.succeeded());
+                    context.assertEquals(Optional.empty(), event2.result());
+                    async.complete();
+                });
+            });
+        });
+    }
+
+    @Test
+    public void testCachedRequestWithTimeToLive(TestContext context) {
+        Async async = context.async();
+
+        // prepare
+        jedis.psetex(CACHE_PREFIX + "cache_item_1", 10000, jsonObjectStr("payload_1"));
+        jedis.set(CACHE_PREFIX + "cache_item_2", jsonObjectStr("payload_2"));
+
+        redisCacheStorage.cachedRequestWithTimeToLive("cache_item_1").onComplete(event -> {
+            context.assertTrue(event.succeeded());
+            context.assertTrue(event.result().isPresent());
+            context.assertEquals(bufferFromJson(jsonObject("payload_1")), event.result().get().getPayload());
+            long ttlMs = event.result().get().getTimeToLive().get().toMillis();
+            context.assertTrue(ttlMs > 0 && ttlMs <= 10000);
+
+            redisCacheStorage.cachedRequestWithTimeToLive("cache_item_2").onComplete(event1 -> {
+                context.assertTrue(event1.succeeded());
+                context.assertEquals(bufferFromJson(jsonObject("payload_2")), event1.result().get().getPayload());
+                context.assertEquals(Optional.empty(), event1.result().get().getTimeToLive());
+
+                redisCacheStorage.cachedRequestWithTimeToLive("cache_item_99").onComplete(event2 -> {
+                    context.assertTrue(event2.succeeded());
+                    context.assertEquals(Optional.empty(), event2.result());
+                    async.complete();
+                });
+            });
+        });
+    }
+
+    @Test
+    public void testCachedRequestWithTimeToLiveWithStaleExpiry(TestContext context) {
+        Async async = context.async();
+
+        String resourceName = "cache_item_1";
+        Buffer payload = bufferFromJson(new JsonObject().put("foo", "bar"));
+
+        redisCacheStorage.cacheRequest(resourceName, payload, Duration.ofMillis(200), Duration.ofSeconds(10)).onComplete(event -> {
+            context.assertTrue(event.succeeded());
+            redisCacheStorage.cachedRequestWithTimeToLive(resourceName).onComplete(event1 -> {
+                context.assertTrue(event1.succeeded());
+                // the stale period does not extend the time to live
+                context.assertEquals(payload, event1.result().get().getPayload());
+                context.assertTrue(event1.result().get().getTimeToLive().get().toMillis() <= 200);
+
+                long expiresAt = Long.parseLong(jedis.get(EXPIRES_AT_PREFIX + resourceName));
+                await().atMost(1, TimeUnit.SECONDS).until(() -> System.currentTimeMillis() > expiresAt, IsEqual.equalTo(true));
+
+                redisCacheStorage.cachedRequestWithTimeToLive(resourceName).onComplete(event2 -> {
+                    context.assertTrue(event2.succeeded());
+                    context.assertEquals(Optional.empty(), event2.result());
+                    async.complete();
+                });
+            });
+        });
+    }
+
     @Test
     public void testCacheEntries(TestContext context) {
         Async async = context.async();
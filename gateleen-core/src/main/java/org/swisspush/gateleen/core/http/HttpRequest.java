@@ -31,6 +31,11 @@ public class HttpRequest {
      */
     private byte[] payload;
 
+    /**
+     * The shared payload, if this request was created with one. Its bytes are the same as {@link #payload}.
+     */
+    private SharedPayload sharedPayload;
+
     /**
      * A map of all headers in the request, If the request contains multiple headers with the same key, the values will be concatenated together into a single header with the same key value, with each
      * value separated by a comma, as specified <a href="http://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.2" >here</a>.
@@ -49,6 +54,22 @@ public class HttpRequest {
         }
     }
 
+    /**
+     * Creates a request using the given payload without copying it.
+     *
+     * @param method        the http method
+     * @param uri           the uri
+     * @param headers       the headers
+     * @param sharedPayload the payload, shared with other requests
+     * @return the request
+     */
+    public static HttpRequest withSharedPayload(HttpMethod method, String uri, MultiMap headers, SharedPayload sharedPayload) {
+        HttpRequest request = new HttpRequest(method, uri, headers, (byte[]) null);
+        request.sharedPayload = sharedPayload;
+        request.payload = sharedPayload.getBytes();
+        return request;
+    }
+
     /**
      * @param object object
      * @throws IllegalArgumentException When passed in JSON is not in expected format.
@@ -93,7 +114,12 @@ public class HttpRequest {
         if (headers != null) {
             object.put("headers", JsonMultiMap.toJson(headers));
         }
-        object.put("payload", payload);
+        if (sharedPayload != null) {
+            // same representation as the byte[], but encoded only once for all requests sharing the payload
+            object.put("payload", sharedPayload.getBase64());
+        } else {
+            object.put("payload", payload);
+        }
         return object;
     }
 
@@ -105,10 +131,21 @@ public class HttpRequest {
         return uri;
     }
 
+    /**
+     * @return the payload. The array of a request created with {@link #withSharedPayload(HttpMethod, String, MultiMap, SharedPayload)}
+     * is shared with other requests and must not be modified.
+     */
     public byte[] getPayload() {
         return payload;
     }
 
+    /**
+     * @return the payload shared with other requests, <code>null</code> when this request was not created with one
+     */
+    public SharedPayload getSharedPayload() {
+        return sharedPayload;
+    }
+
     public MultiMap getHeaders() {
         return headers;
     }
@@ -0,0 +1,84 @@
+package org.swisspush.gateleen.core.http;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * An immutable request payload which is shared by several {@link HttpRequest}s, e.g. when the same request
+ * is enqueued for many hook listeners.
+ * <p>
+ * The bytes are copied only once when the payload is created, and the base64 form used in the json
+ * representation of the requests (see {@link HttpRequest#toJsonObject()}) as well as the text form are computed
+ * only once as well.
+ * <p>
+ * HINT: The array returned by {@link #getBytes()} is shared and must not be modified.
+ */
+public final class SharedPayload {
+
+    private static final SharedPayload EMPTY = new SharedPayload(new byte[0]);
+
+    private final byte[] bytes;
+    private volatile String base64;
+    private volatile String text;
+    private volatile boolean textDecoded;
+
+    private SharedPayload(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Creates a payload with a copy of the content of the given buffer.
+     *
+     * @param buffer the buffer, may be <code>null</code>
+     * @return the payload
+     */
+    public static SharedPayload of(Buffer buffer) {
+        if (buffer == null || buffer.length() == 0) {
+            return EMPTY;
+        }
+        return new SharedPayload(buffer.getBytes());
+    }
+
+    /**
+     * @return the shared bytes, must not be modified
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * @return the payload encoded the same way as a <code>byte[]</code> value of a {@link io.vertx.core.json.JsonObject},
+     * i.e. as url-safe base64 without padding
+     */
+    public String getBase64() {
+        String encoded = base64;
+        if (encoded == null) {
+            encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+            base64 = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * @return the payload decoded as utf-8 text, <code>null</code> when it is not valid utf-8
+     */
+    public String getText() {
+        if (!textDecoded) {
+            try {
+                text = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+            } catch (CharacterCodingException e) {
+                text = null;
+            }
+            textDecoded = true;
+        }
+        return text;
+    }
+}
@@ -9,6 +9,9 @@ public final class Address {
     private static final String ID = UUID.randomUUID().toString();
 
     public static final String RULE_UPDATE_ADDRESS = "gateleen.routing-rules-updated";
+    public static final String USER_PROFILE_UPDATE_ADDRESS = "gateleen.user-profile-updated";
+    public static final String QUEUE_CIRCUIT_STATE_CHANGED_ADDRESS = "gateleen.queue-circuit-state-changed";
+    public static final String CACHE_INVALIDATION_ADDRESS = "gateleen.cache-invalidated";
 
     private Address(){}
 
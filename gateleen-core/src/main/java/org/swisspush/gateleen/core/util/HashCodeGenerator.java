@@ -2,7 +2,10 @@ package org.swisspush.gateleen.core.util;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
+import io.vertx.core.buffer.Buffer;
 
 /**
  * Generator for HashCode values.
@@ -46,6 +49,32 @@ public final class HashCodeGenerator {
         return Hashing.murmur3_128().hashString(concatenated, Charsets.UTF_8).toString();
     }
 
+    /**
+     * Calculates the HashCode of the uri followed by the raw bytes of the payload, without converting the payload to a
+     * String first. For utf-8 payloads, the result equals the result of {@link #createHashCode(String, String)}.
+     *
+     * @param uri uri
+     * @param payload payload, may be <code>null</code>
+     * @return the HashCode of the uri and the payload
+     */
+    public static HashCode createPayloadHashCode(String uri, Buffer payload) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putString(String.valueOf(trimIfNotNull(uri)), Charsets.UTF_8);
+        if (payload == null) {
+            return hasher.putString("null", Charsets.UTF_8).hash();
+        }
+        // same as String.trim(), which removes all chars up to ' '. These are single bytes in utf-8
+        int start = 0;
+        int end = payload.length();
+        while (start < end && (payload.getByte(start) & 0xff) <= ' ') {
+            start++;
+        }
+        while (end > start && (payload.getByte(end - 1) & 0xff) <= ' ') {
+            end--;
+        }
+        return hasher.putBytes(payload.getByteBuf().nioBuffer(start, end - start)).hash();
+    }
+
     /**
      * Returns the SHA256 hash of the provided String or <code>null</code> if <code>null</code> has been provided.
      *
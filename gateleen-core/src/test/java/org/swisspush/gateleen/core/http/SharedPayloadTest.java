@@ -0,0 +1,66 @@
+package org.swisspush.gateleen.core.http;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SharedPayloadTest {
+
+    private static final String PAYLOAD = "{\"key\":\"value with some bytes äöü\"}";
+
+    @Test
+    public void sharedByRequestsWithoutCopy() {
+        SharedPayload payload = SharedPayload.of(Buffer.buffer(PAYLOAD));
+        HttpRequest request1 = HttpRequest.withSharedPayload(HttpMethod.PUT, "/listener/1", MultiMap.caseInsensitiveMultiMap(), payload);
+        HttpRequest request2 = HttpRequest.withSharedPayload(HttpMethod.PUT, "/listener/2", MultiMap.caseInsensitiveMultiMap(), payload);
+
+        Assert.assertSame(request1.getPayload(), request2.getPayload());
+        Assert.assertArrayEquals(Buffer.buffer(PAYLOAD).getBytes(), request1.getPayload());
+    }
+
+    @Test
+    public void sameJsonAsCopiedPayload() {
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap().add("x-foo", "bar");
+        byte[] bytes = Buffer.buffer(PAYLOAD).getBytes();
+        HttpRequest copied = new HttpRequest(HttpMethod.PUT, "/listener/1", headers, bytes);
+        HttpRequest shared = HttpRequest.withSharedPayload(HttpMethod.PUT, "/listener/1", headers, SharedPayload.of(Buffer.buffer(PAYLOAD)));
+
+        String json = shared.toJsonObject().encode();
+        Assert.assertEquals(copied.toJsonObject().encode(), json);
+        Assert.assertArrayEquals(bytes, new HttpRequest(new JsonObject(json)).getPayload());
+    }
+
+    @Test
+    public void binaryPayloadReadableFromJson() {
+        // encodes to characters which differ between the standard and the url-safe base64 alphabet
+        byte[] bytes = new byte[]{(byte) 0xfb, (byte) 0xff, (byte) 0xbf, 0x01};
+        HttpRequest copied = new HttpRequest(HttpMethod.PUT, "/listener/1", null, bytes);
+        HttpRequest shared = HttpRequest.withSharedPayload(HttpMethod.PUT, "/listener/1", null, SharedPayload.of(Buffer.buffer(bytes)));
+
+        String json = shared.toJsonObject().encode();
+        Assert.assertEquals(copied.toJsonObject().encode(), json);
+        Assert.assertArrayEquals(bytes, new HttpRequest(new JsonObject(json)).getPayload());
+    }
+
+    @Test
+    public void textDecodedOnce() {
+        SharedPayload payload = SharedPayload.of(Buffer.buffer(PAYLOAD));
+        Assert.assertEquals(PAYLOAD, payload.getText());
+        Assert.assertSame(payload.getText(), payload.getText());
+        Assert.assertSame(payload.getBase64(), payload.getBase64());
+
+        Assert.assertNull(SharedPayload.of(Buffer.buffer(new byte[]{(byte) 0xff, (byte) 0xfe})).getText());
+    }
+
+    @Test
+    public void emptyPayload() {
+        Assert.assertEquals(0, SharedPayload.of(null).length());
+        Assert.assertEquals(0, SharedPayload.of(Buffer.buffer()).length());
+        HttpRequest request = HttpRequest.withSharedPayload(HttpMethod.DELETE, "/listener/1", null, SharedPayload.of(null));
+        Assert.assertEquals(0, request.getPayload().length);
+        Assert.assertEquals(0, request.toJsonObject().getBinary("payload").length);
+    }
+}
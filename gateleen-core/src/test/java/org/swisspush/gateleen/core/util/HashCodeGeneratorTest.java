@@ -1,5 +1,6 @@
 package org.swisspush.gateleen.core.util;
 
+import io.vertx.core.buffer.Buffer;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.Test;
@@ -67,4 +68,19 @@ public class HashCodeGeneratorTest {
 		String sameHash = HashCodeGenerator.createHashCode(null, null);
 		context.assertEquals(hash, sameHash, "hash values should be identical");
 	}	
+
+	@Test
+	public void testPayloadHashingEqualsStringHashing(TestContext context){
+		String uri = " /gateleen/server/tests/t1";
+		String payload = "\n {\"property1\": \"välue1\"}\t ";
+
+		String hash = HashCodeGenerator.createHashCode(uri, payload);
+		String payloadHash = HashCodeGenerator.createPayloadHashCode(uri, Buffer.buffer(payload)).toString();
+		context.assertEquals(hash, payloadHash, "hash values should be identical");
+
+		context.assertEquals(HashCodeGenerator.createHashCode(uri, ""),
+				HashCodeGenerator.createPayloadHashCode(uri, Buffer.buffer("  ")).toString(), "hash values should be identical");
+		context.assertEquals(HashCodeGenerator.createHashCode(uri, null),
+				HashCodeGenerator.createPayloadHashCode(uri, null).toString(), "hash values should be identical");
+	}
 }
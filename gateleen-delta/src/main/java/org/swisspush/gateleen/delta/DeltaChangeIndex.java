@@ -0,0 +1,249 @@
+package org.swisspush.gateleen.delta;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.redis.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.swisspush.gateleen.core.exception.GateleenExceptionFactory;
+import org.swisspush.gateleen.core.lua.LuaScriptState;
+import org.swisspush.gateleen.core.redis.RedisProvider;
+import org.swisspush.gateleen.delta.lua.DeltaLuaScripts;
+import org.swisspush.gateleen.delta.lua.QueryChangeIndexRedisCommand;
+import org.swisspush.gateleen.delta.lua.UpdateChangeIndexRedisCommand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per collection index of the changed resources. The index of a collection is a sorted set having the names of the
+ * resources as members and their update-ids as scores, so the resources changed after an update-id can be queried
+ * without listing the whole collection.
+ * <p>
+ * The index is updated by the {@link org.swisspush.gateleen.delta.lua.DeltaLuaScripts#PUT} lua script together with
+ * the update-id of the resource. The expiry of the resources is tracked in a second sorted set per collection.
+ * Expired resources are removed from the index when it is updated or queried.
+ * <p>
+ * The index only knows the resources having an update-id, which were changed after the index has been started. So a
+ * collection is answered from its index only, when
+ * <ul>
+ *     <li>the requested update-id is not lower than the sequence at which the index has been started</li>
+ *     <li>a listing of the collection has shown, that all its resources have an update-id (the collection is
+ *     verified), and no resource without update-id has been PUT to it since</li>
+ *     <li>the collection has an index at all, i.e. it exists</li>
+ * </ul>
+ * Otherwise the collection has to be listed.
+ * <p>
+ * The index is only maintained for the resources below the configured paths, so the requests to other resources do
+ * not cost additional redis calls.
+ */
+class DeltaChangeIndex {
+    private static final Logger log = LoggerFactory.getLogger(DeltaChangeIndex.class);
+
+    static final String INDEX_KEY_PREFIX = "delta:index";
+    static final String EXPIRIES_KEY_PREFIX = "delta:index-expiries";
+    static final String START_KEY = "delta:index-start";
+    static final String COLLECTIONS_KEY = "delta:index-collections";
+    static final String VERIFIED_KEY = "delta:index-verified";
+    static final String VERIFYING_KEY = "delta:index-verifying";
+    static final int CLEANUP_BATCH_SIZE = 100;
+    static final int REMOVE_BATCH_SIZE = 1000;
+    private static final String SLASH = "/";
+
+    private final RedisProvider redisProvider;
+    private final List<String> paths;
+    private final LuaScriptState removeLuaScriptState;
+    private final LuaScriptState queryLuaScriptState;
+    private final LuaScriptState invalidateLuaScriptState;
+    private final LuaScriptState verifyLuaScriptState;
+
+    /**
+     * @param paths the paths of the collections below which the index is maintained
+     */
+    DeltaChangeIndex(RedisProvider redisProvider, GateleenExceptionFactory exceptionFactory, List<String> paths) {
+        this.redisProvider = redisProvider;
+        this.paths = new ArrayList<>();
+        for (String path : paths) {
+            this.paths.add(path.endsWith(SLASH) ? path : path + SLASH);
+        }
+        this.removeLuaScriptState = new LuaScriptState(DeltaLuaScripts.REMOVE_FROM_INDEX, redisProvider, exceptionFactory, false);
+        this.queryLuaScriptState = new LuaScriptState(DeltaLuaScripts.QUERY_INDEX, redisProvider, exceptionFactory, false);
+        this.invalidateLuaScriptState = new LuaScriptState(DeltaLuaScripts.INVALIDATE_INDEX, redisProvider, exceptionFactory, false);
+        this.verifyLuaScriptState = new LuaScriptState(DeltaLuaScripts.VERIFY_INDEX, redisProvider, exceptionFactory, false);
+    }
+
+    /**
+     * @param path the path of a resource or collection
+     * @return <code>true</code> when the path is one of the configured paths or below of one of them
+     */
+    boolean covers(String path) {
+        String collectionPath = path.endsWith(SLASH) ? path : path + SLASH;
+        for (String prefix : paths) {
+            if (collectionPath.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param path the path of a resource
+     * @return the keys of the index and of the expiries of the collection containing the resource, followed by the
+     * keys of the indexed collections and of the start of the index
+     */
+    List<String> keys(String path) {
+        String collectionPath = collectionPath(path);
+        return Arrays.asList(DeltaHandler.key(INDEX_KEY_PREFIX, collectionPath),
+                DeltaHandler.key(EXPIRIES_KEY_PREFIX, collectionPath), COLLECTIONS_KEY, START_KEY);
+    }
+
+    /**
+     * @param path the path of a resource
+     * @return the collection containing the resource, as used in the sets of the collections
+     */
+    static String collectionMember(String path) {
+        return member(collectionPath(path));
+    }
+
+    /**
+     * Removes the delta information of a deleted resource. When the resource was a collection, its index and the
+     * indexes of all its sub collections are removed too. Large collections are removed in several script calls of
+     * at most {@value #REMOVE_BATCH_SIZE} resources each, the collections are no longer answered from the index
+     * after the first call.
+     *
+     * @param resourceKey the key of the update-id of the resource
+     * @param etagKey     the key of the etag of the resource
+     * @param path        the path of the resource
+     * @return a future completed when the delta information has been removed
+     */
+    Future<Void> remove(String resourceKey, String etagKey, String path) {
+        Promise<Void> promise = Promise.promise();
+        List<String> keys = new ArrayList<>(Arrays.asList(resourceKey, etagKey));
+        keys.addAll(keys(path).subList(0, 2));
+        keys.addAll(Arrays.asList(COLLECTIONS_KEY, VERIFIED_KEY, VERIFYING_KEY));
+        List<String> arguments = Arrays.asList(resourceName(path), member(path), INDEX_KEY_PREFIX, EXPIRIES_KEY_PREFIX,
+                DeltaHandler.RESOURCE_KEY_PREFIX, DeltaHandler.ETAG_KEY_PREFIX, String.valueOf(REMOVE_BATCH_SIZE));
+        removeBatch(keys, arguments, promise);
+        return promise.future();
+    }
+
+    private void removeBatch(List<String> keys, List<String> arguments, Promise<Void> promise) {
+        Promise<Response> batch = Promise.promise();
+        new UpdateChangeIndexRedisCommand(removeLuaScriptState, keys, arguments, redisProvider, log, batch).exec(0);
+        batch.future().onComplete(event -> {
+            if (event.failed()) {
+                promise.fail(event.cause());
+            } else if (event.result() != null && event.result().toInteger() == 1) {
+                // more indexes of sub collections are left
+                removeBatch(keys, arguments, promise);
+            } else {
+                promise.complete();
+            }
+        });
+    }
+
+    /**
+     * Invalidates the collection containing a written resource, when the resource has no update-id, and all the
+     * ancestors of the collection, since they list the collection without update-id. Invalidated collections are
+     * listed until they are verified again.
+     *
+     * @param resourceKey the key of the update-id of the resource
+     * @param path        the path of the resource
+     * @return a future completed when the collections have been invalidated
+     */
+    Future<Void> invalidate(String resourceKey, String path) {
+        Promise<Response> promise = Promise.promise();
+        List<String> keys = Arrays.asList(resourceKey, VERIFIED_KEY, VERIFYING_KEY);
+        List<String> arguments = List.of(collectionMember(path));
+        new UpdateChangeIndexRedisCommand(invalidateLuaScriptState, keys, arguments, redisProvider, log, promise).exec(0);
+        return promise.future().mapEmpty();
+    }
+
+    /**
+     * Starts the verification of a collection. Must be completed before the collection is listed.
+     *
+     * @param collectionPath the path of the collection
+     * @return a future completed when the verification has been started
+     */
+    Future<Void> startVerification(String collectionPath) {
+        return redisProvider.redis()
+                .compose(redisAPI -> redisAPI.zadd(Arrays.asList(VERIFYING_KEY, "0", member(collectionPath))))
+                .mapEmpty();
+    }
+
+    /**
+     * Marks a collection as verified, after its listing has shown that all its resources have an update-id. Has no
+     * effect, when the collection has been invalidated since its verification has been started.
+     *
+     * @param collectionPath the path of the collection
+     * @return a future completed when the verification has been completed
+     */
+    Future<Void> verify(String collectionPath) {
+        Promise<Response> promise = Promise.promise();
+        List<String> keys = Arrays.asList(VERIFYING_KEY, VERIFIED_KEY);
+        List<String> arguments = List.of(member(collectionPath));
+        new UpdateChangeIndexRedisCommand(verifyLuaScriptState, keys, arguments, redisProvider, log, promise).exec(0);
+        return promise.future().mapEmpty();
+    }
+
+    /**
+     * Queries the resources of a collection changed after the given update-id.
+     *
+     * @param collectionPath the path of the collection
+     * @param updateId       the update-id of the last known change
+     * @return a future with the names of the changed resources ordered by their update-id and the greatest update-id
+     * of the changed resources or the given update-id when there are no changes. The future has no result, when the
+     * changes cannot be answered from the index and the collection has to be listed.
+     */
+    Future<DeltaHandler.DeltaResourcesContainer> changes(String collectionPath, long updateId) {
+        Promise<Response> promise = Promise.promise();
+        List<String> keys = Arrays.asList(DeltaHandler.key(INDEX_KEY_PREFIX, collectionPath),
+                DeltaHandler.key(EXPIRIES_KEY_PREFIX, collectionPath), START_KEY, VERIFIED_KEY);
+        List<String> arguments = Arrays.asList(String.valueOf(updateId), String.valueOf(System.currentTimeMillis()),
+                member(collectionPath));
+        new QueryChangeIndexRedisCommand(queryLuaScriptState, keys, arguments, redisProvider, log, promise).exec(0);
+        return promise.future().map(response -> {
+            if (response == null) {
+                return null;
+            }
+            List<String> resourceNames = new ArrayList<>();
+            long maxUpdateId = updateId;
+            // the script returns the members and their scores alternately
+            for (int i = 0; i + 1 < response.size(); i += 2) {
+                resourceNames.add(response.get(i).toString());
+                maxUpdateId = Math.max(maxUpdateId, Double.valueOf(response.get(i + 1).toString()).longValue());
+            }
+            return new DeltaHandler.DeltaResourcesContainer(maxUpdateId, resourceNames);
+        });
+    }
+
+    /**
+     * @param path a path
+     * @return the path as used in the sets of the collections, i.e. its segments separated by colons like in the keys
+     */
+    private static String member(String path) {
+        return Joiner.on(":").join(Splitter.on(SLASH).omitEmptyStrings().split(path));
+    }
+
+    private static String collectionPath(String path) {
+        String trimmed = trimTrailingSlashes(path);
+        int index = trimmed.lastIndexOf(SLASH);
+        return index < 0 ? "" : trimmed.substring(0, index);
+    }
+
+    static String resourceName(String path) {
+        String trimmed = trimTrailingSlashes(path);
+        return trimmed.substring(trimmed.lastIndexOf(SLASH) + 1);
+    }
+
+    private static String trimTrailingSlashes(String path) {
+        String trimmed = path;
+        while (trimmed.endsWith(SLASH)) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+}
@@ -4,8 +4,8 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import io.vertx.core.AsyncResult;
-import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.*;
@@ -14,11 +14,15 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.redis.client.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.swisspush.gateleen.core.exception.GateleenExceptionFactory;
 import org.swisspush.gateleen.core.http.RequestLoggerFactory;
+import org.swisspush.gateleen.core.lua.LuaScriptState;
 import org.swisspush.gateleen.core.redis.RedisProvider;
 import org.swisspush.gateleen.core.util.*;
 import org.swisspush.gateleen.core.util.ExpansionDeltaUtil.CollectionResourceContainer;
 import org.swisspush.gateleen.core.util.ExpansionDeltaUtil.SlashHandling;
+import org.swisspush.gateleen.delta.lua.DeltaLuaScripts;
+import org.swisspush.gateleen.delta.lua.DeltaPutRedisCommand;
 import org.swisspush.gateleen.logging.LogAppenderRepository;
 import org.swisspush.gateleen.logging.LoggingHandler;
 import org.swisspush.gateleen.logging.LoggingResourceManager;
@@ -51,13 +55,15 @@ public class DeltaHandler implements RuleProvider.RuleChangesObserver {
     private static final int TIMEOUT = 120000;
 
     private static final String SEQUENCE_KEY = "delta:sequence";
-    private static final String RESOURCE_KEY_PREFIX = "delta:resources";
-    private static final String ETAG_KEY_PREFIX = "delta:etags";
+    static final String RESOURCE_KEY_PREFIX = "delta:resources";
+    static final String ETAG_KEY_PREFIX = "delta:etags";
 
     private HttpClient httpClient;
     private RedisProvider redisProvider;
 
     private boolean rejectLimitOffsetRequests;
+    private final LuaScriptState putLuaScriptState;
+    private final DeltaChangeIndex changeIndex;
 
     private RuleProvider ruleProvider;
 
@@ -74,6 +80,20 @@ public class DeltaHandler implements RuleProvider.RuleChangesObserver {
     public DeltaHandler(Vertx vertx, RedisProvider redisProvider, HttpClient httpClient, RuleProvider ruleProvider,
                         LoggingResourceManager loggingResourceManager, LogAppenderRepository logAppenderRepository,
                         boolean rejectLimitOffsetRequests) {
+        this(vertx, redisProvider, httpClient, ruleProvider, loggingResourceManager, logAppenderRepository,
+                rejectLimitOffsetRequests, null, GateleenExceptionFactory.newGateleenThriftyExceptionFactory());
+    }
+
+    /**
+     * @param changeIndexPaths the paths of the collections below which a change index per collection is maintained on
+     *                         PUT and DELETE requests and delta GET requests are answered from it without listing the
+     *                         collection. <code>null</code> or empty to not use a change index
+     * @param exceptionFactory the exception factory used by the lua scripts
+     */
+    public DeltaHandler(Vertx vertx, RedisProvider redisProvider, HttpClient httpClient, RuleProvider ruleProvider,
+                        LoggingResourceManager loggingResourceManager, LogAppenderRepository logAppenderRepository,
+                        boolean rejectLimitOffsetRequests, List<String> changeIndexPaths,
+                        GateleenExceptionFactory exceptionFactory) {
         this.vertx = vertx;
         this.redisProvider = redisProvider;
         this.httpClient = httpClient;
@@ -83,6 +103,9 @@ public class DeltaHandler implements RuleProvider.RuleChangesObserver {
         this.loggingResourceManager = loggingResourceManager;
         this.logAppenderRepository = logAppenderRepository;
         this.ruleProvider.registerObserver(this);
+        this.putLuaScriptState = new LuaScriptState(DeltaLuaScripts.PUT, redisProvider, exceptionFactory, false);
+        this.changeIndex = changeIndexPaths == null || changeIndexPaths.isEmpty() ? null
+                : new DeltaChangeIndex(redisProvider, exceptionFactory, changeIndexPaths);
     }
 
     @Override
@@ -92,7 +115,31 @@ public class DeltaHandler implements RuleProvider.RuleChangesObserver {
     }
 
     public boolean isDeltaRequest(HttpServerRequest request) {
-        return isDeltaGETRequest(request) || isDeltaPUTRequest(request);
+        // the GET check removes the delta backend header, which is needed by the other checks
+        return isDeltaPUTRequest(request) || isUnversionedPUTRequest(request) || isDeltaDELETERequest(request)
+                || isDeltaGETRequest(request);
+    }
+
+    private boolean isDeltaDELETERequest(HttpServerRequest request) {
+        // deletions are only tracked by the change index, all of them, since any resource could have an update-id
+        return HttpMethod.DELETE == request.method() && usesChangeIndex(request) && !isBackendDeltaRequest(request);
+    }
+
+    /**
+     * PUT requests without update-id are tracked by the change index, since the collections containing resources
+     * without update-id cannot be answered from the index.
+     */
+    private boolean isUnversionedPUTRequest(HttpServerRequest request) {
+        return HttpMethod.PUT == request.method() && usesChangeIndex(request) && !isDeltaPUTRequest(request)
+                && !isBackendDeltaRequest(request);
+    }
+
+    private boolean usesChangeIndex(HttpServerRequest request) {
+        return changeIndex != null && changeIndex.covers(request.path());
+    }
+
+    private boolean isBackendDeltaRequest(HttpServerRequest request) {
+        return request.headers().contains(DELTA_BACKEND_HEADER) || isBackendDelta(request.uri());
     }
 
     private boolean isDeltaPUTRequest(HttpServerRequest request) {
@@ -125,13 +172,26 @@ public class DeltaHandler implements RuleProvider.RuleChangesObserver {
         if (isDeltaPUTRequest(request)) {
             handleResourcePUT(request, router, log);
         }
+        if (isUnversionedPUTRequest(request)) {
+            handleUnversionedResourcePUT(request, router, log);
+        }
+        if (isDeltaDELETERequest(request)) {
+            handleResourceDELETE(request, router, log);
+        }
         if (isDeltaGETRequest(request)) {
             String updateId = extractStringDeltaParameter(request, log);
             if (updateId != null) {
                 if (rejectLimitOffsetRequests(request)) {
                     respondLimitOffsetParameterForbidden(request, log);
+                } else if (isChangeIndexRequest(request)) {
+                    Long updateIdNumber = extractNumberDeltaParameter(updateId, request, log);
+                    if (updateIdNumber != null && updateIdNumber > 0) {
+                        handleCollectionGETFromChangeIndex(request, updateId, updateIdNumber, log);
+                    } else if (updateIdNumber != null) {
+                        handleCollectionGET(request, updateId, false, log);
+                    }
                 } else {
-                    handleCollectionGET(request, updateId, log);
+                    handleCollectionGET(request, updateId, false, log);
                 }
             }
         }
@@ -139,106 +199,65 @@ public class DeltaHandler implements RuleProvider.RuleChangesObserver {
 
     private void handleResourcePUT(final HttpServerRequest request, final Router router, final Logger log) {
         request.pause(); // pause the request to avoid problems with starting another async request (storage)
-        handleDeltaEtag(request, log, updateDelta -> {
-            if (updateDelta) {
-                // increment and get update-id
-                redisProvider.redis().onSuccess(redisAPI -> redisAPI.incr(SEQUENCE_KEY, reply -> {
-                    if (reply.failed()) {
-                        log.error("incr command for redisKey {} failed with cause: {}", SEQUENCE_KEY, logCause(reply));
-                        handleError(request, "error incrementing/accessing sequence for update-id");
-                        return;
-                    }
-
-                    final String resourceKey = getResourceKey(request.path(), false);
-                    Long expireAfter = getExpireAfterValue(request, log);
-                    String updateId = String.valueOf(reply.result());
-
-                    // save to storage
-                    saveDelta(resourceKey, updateId, expireAfter, event -> {
-                        if (event.failed()) {
-                            log.error("setex command for redisKey {} failed with cause: {}", resourceKey, logCause(event));
-                            handleError(request, "error saving delta information");
-                            request.resume();
-                        } else {
-                            request.resume();
-                            router.route(request);
-                        }
-                    });
-                })).onFailure(throwable -> {
-                    log.error("Redis: handleResourcePUT failed", throwable);
-                    handleError(request, "handleResourcePUT: error incrementing/accessing sequence for update-id ");
-                });
-            } else {
-                log.debug("skip updating delta, resume request");
-                request.resume();
-                router.route(request);
-            }
-        });
-    }
 
-    private void handleDeltaEtag(final HttpServerRequest request, final Logger log, final Handler<Boolean> callback) {
-        /*
-         * When no Etag is provided we just do the delta update
-         */
-        if (!request.headers().contains(IF_NONE_MATCH_HEADER)) {
-            callback.handle(Boolean.TRUE);
-            return;
+        final String resourceKey = getResourceKey(request.path(), false);
+        List<String> keys = new ArrayList<>(Arrays.asList(SEQUENCE_KEY, resourceKey, getResourceKey(request.path(), true)));
+        Long expireAfter = getExpireAfterValue(request, log);
+        List<String> arguments = new ArrayList<>(Arrays.asList(Objects.toString(request.headers().get(IF_NONE_MATCH_HEADER), ""),
+                Objects.toString(expireAfter, ""), DeltaChangeIndex.resourceName(request.path()),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(DeltaChangeIndex.CLEANUP_BATCH_SIZE)));
+        if (usesChangeIndex(request)) {
+            keys.addAll(changeIndex.keys(request.path()));
+            arguments.add(DeltaChangeIndex.collectionMember(request.path()));
+            invalidateChangeIndexAfterResponse(request, resourceKey, log);
         }
 
-        /*
-         * Loading Delta-Etag from storage to compare with header
-         */
-        final String requestEtag = request.headers().get(IF_NONE_MATCH_HEADER);
-        final String etagResourceKey = getResourceKey(request.path(), true);
-        redisProvider.redis().onSuccess(redisAPI -> redisAPI.get(etagResourceKey, event -> {
+        // etag comparison, update-id increment and storage in one round trip
+        Promise<Long> promise = Promise.promise();
+        new DeltaPutRedisCommand(putLuaScriptState, keys, arguments, redisProvider, log, promise).exec(0);
+        promise.future().onComplete(event -> {
             if (event.failed()) {
-                log.error("get command for redisKey {} failed with cause: {}", etagResourceKey, logCause(event));
-                callback.handle(Boolean.TRUE);
-                return;
-            }
-
-            String etagFromStorage = Objects.toString(event.result(), "");
-            if (StringUtils.isEmpty(etagFromStorage)) {
-                /*
-                 * No Etag entry found. Store it and then do the delta update
-                 */
-                saveOrUpdateDeltaEtag(etagResourceKey, request, log, aBoolean -> callback.handle(Boolean.TRUE));
+                log.error("delta update for redisKey {} failed with cause: {}", resourceKey, logCause(event));
+                handleError(request, "handleResourcePUT: error saving delta information");
+                request.resume();
             } else {
-                /*
-                 * If etags match, no delta update has to be made.
-                 * If not, store/update the etag and then update the delta
-                 */
-                if (etagFromStorage.equals(requestEtag)) {
-                    callback.handle(Boolean.FALSE);
-                } else {
-                    saveOrUpdateDeltaEtag(etagResourceKey, request, log, aBoolean -> callback.handle(Boolean.TRUE));
+                if (event.result() == 0) {
+                    log.debug("skip updating delta, resume request");
                 }
+                request.resume();
+                router.route(request);
             }
-        })).onFailure(throwable -> {
-            log.error("Redis: handleDeltaEtag failed for redisKey {}", etagResourceKey, throwable);
-            callback.handle(Boolean.TRUE);
         });
     }
 
-    private void saveOrUpdateDeltaEtag(final String etagResourceKey, final HttpServerRequest request, final Logger log, final Handler<Boolean> updateCallback) {
-        final String requestEtag = request.headers().get(IF_NONE_MATCH_HEADER);
-        Long expireAfter = getExpireAfterValue(request, log);
-        saveDelta(etagResourceKey, requestEtag, expireAfter, event -> {
-            if (event.failed()) {
-                log.error("setex command for redisKey {} failed with cause: {}", etagResourceKey, logCause(event));
-            }
-            updateCallback.handle(Boolean.TRUE);
-        });
+    private void handleUnversionedResourcePUT(final HttpServerRequest request, final Router router, final Logger log) {
+        invalidateChangeIndexAfterResponse(request, getResourceKey(request.path(), false), log);
+        router.route(request);
     }
 
-    private void saveDelta(String deltaKey, String deltaValue, Long expireAfter, Handler<AsyncResult<Object>> handler) {
-        redisProvider.redis().onSuccess(redisAPI -> {
-            if (expireAfter == null) {
-                redisAPI.set(Arrays.asList(deltaKey, deltaValue), (Handler) handler);
+    /**
+     * The collections are invalidated when the resource has been written, so a collection listed for its verification
+     * meanwhile either contains the resource or is invalidated after it has been verified.
+     */
+    private void invalidateChangeIndexAfterResponse(final HttpServerRequest request, final String resourceKey, final Logger log) {
+        final String path = request.path();
+        request.response().bodyEndHandler(nothing -> changeIndex.invalidate(resourceKey, path).onFailure(cause ->
+                log.error("invalidating change index for {} failed with cause: {}", path, cause.getMessage())));
+    }
+
+    private void handleResourceDELETE(final HttpServerRequest request, final Router router, final Logger log) {
+        request.pause(); // pause the request to avoid problems with starting another async request (storage)
+        final String resourceKey = getResourceKey(request.path(), false);
+        changeIndex.remove(resourceKey, getResourceKey(request.path(), true), request.path()).onComplete(event -> {
+            if (event.failed()) {
+                log.error("removing redisKey {} from change index failed with cause: {}", resourceKey, logCause(event));
+                handleError(request, "error removing delta information");
+                request.resume();
             } else {
-                redisAPI.setex(deltaKey, String.valueOf(expireAfter), deltaValue, (Handler) handler);
+                request.resume();
+                router.route(request);
             }
-        }).onFailure(throwable -> handler.handle(new FailedAsyncResult<>(throwable)));
+        });
     }
 
     private String extractStringDeltaParameter(HttpServerRequest request, Logger log) {
@@ -297,7 +316,64 @@ public class DeltaHandler implements RuleProvider.RuleChangesObserver {
         return new DeltaResourcesContainer(maxUpdateId, deltaResourceNames);
     }
 
-    private void handleCollectionGET(final HttpServerRequest request, final String updateId, final Logger log) {
+    /**
+     * The change index only knows the changes, so it cannot answer requests for the whole collection or pages of it.
+     * Requests with an update-id of zero are answered by listing the collection too.
+     */
+    private boolean isChangeIndexRequest(HttpServerRequest request) {
+        return usesChangeIndex(request) && !request.params().contains(LIMIT_PARAM) && !request.params().contains(OFFSET_PARAM);
+    }
+
+    /**
+     * Collections which cannot be answered from the change index are listed, and verified by the listing when all
+     * their resources have an update-id.
+     */
+    private void handleCollectionGETFromChangeIndex(final HttpServerRequest request, final String updateIdValue,
+                                                    final long updateId, final Logger log) {
+        request.pause();
+        changeIndex.changes(request.path(), updateId).onComplete(event -> {
+            if (event.failed()) {
+                log.error("change index query for {} failed with cause: {}", request.path(), logCause(event));
+                handleError(request, "error reading delta information");
+                request.resume();
+                return;
+            }
+            DeltaResourcesContainer deltaResourcesContainer = event.result();
+            if (deltaResourcesContainer == null) {
+                log.debug("change index cannot answer {}, listing the collection", request.path());
+                changeIndex.startVerification(request.path()).onComplete(verification -> {
+                    if (verification.failed()) {
+                        log.warn("starting verification of {} failed with cause: {}", request.path(), logCause(verification));
+                    }
+                    handleCollectionGET(request, updateIdValue, verification.succeeded(), log);
+                });
+                return;
+            }
+            request.resume();
+            final LoggingHandler loggingHandler = new LoggingHandler(loggingResourceManager, logAppenderRepository, request, vertx.eventBus());
+            loggingHandler.request(request.headers());
+            if (log.isTraceEnabled()) {
+                log.trace("DeltaHandler: changed resources of {} from change index: {}", request.path(),
+                        deltaResourcesContainer.getResourceNames());
+            }
+            JsonObject result = buildResultJsonObject(deltaResourcesContainer.getResourceNames(),
+                    DeltaChangeIndex.resourceName(request.path()));
+            String responseBody = result.toString();
+            HttpServerResponse response = request.response();
+            response.putHeader(DELTA_HEADER, "" + deltaResourcesContainer.getMaxUpdateId());
+            response.putHeader("Content-Type", "application/json");
+            loggingHandler.appendResponsePayload(Buffer.buffer(responseBody), response.headers());
+            loggingHandler.log(request.uri(), request.method(), StatusCode.OK.getStatusCode(),
+                    StatusCode.OK.getStatusMessage(), request.headers(), response.headers());
+            response.end(responseBody);
+        });
+    }
+
+    /**
+     * @param verify <code>true</code> to verify the collection for the change index, when all listed resources have
+     *               an update-id
+     */
+    private void handleCollectionGET(final HttpServerRequest request, final String updateId, final boolean verify, final Logger log) {
         request.pause();
 
         final LoggingHandler loggingHandler = new LoggingHandler(loggingResourceManager, logAppenderRepository, request, vertx.eventBus());
@@ -362,6 +438,10 @@ public class DeltaHandler implements RuleProvider.RuleChangesObserver {
                                             return;
                                         }
                                         Response mgetValues = event.result();
+                                        if (verify && hasUpdateIds(mgetValues)) {
+                                            changeIndex.verify(request.path()).onFailure(cause ->
+                                                    log.warn("verifying {} failed with cause: {}", request.path(), cause.getMessage()));
+                                        }
                                         DeltaResourcesContainer deltaResourcesContainer = getDeltaResourceNames(subResourceNames,
                                                 mgetValues, updateIdNumber);
 
@@ -410,6 +490,17 @@ public class DeltaHandler implements RuleProvider.RuleChangesObserver {
         });
     }
 
+    private boolean hasUpdateIds(Response storageUpdateIds) {
+        for (int i = 0; i < storageUpdateIds.size(); i++) {
+            try {
+                Long.parseLong(storageUpdateIds.get(i) != null ? storageUpdateIds.get(i).toString() : null);
+            } catch (NumberFormatException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private List<String> buildDeltaResourceKeys(String requestPath, List<String> subResourceNames) {
         List<String> storageResourceKeys = new ArrayList<>();
         String resourceKeyPrefix = getResourceKey(requestPath, false);
@@ -441,12 +532,12 @@ public class DeltaHandler implements RuleProvider.RuleChangesObserver {
     }
 
     private String getResourceKey(String path, boolean useEtagPrefix) {
+        return key(useEtagPrefix ? ETAG_KEY_PREFIX : RESOURCE_KEY_PREFIX, path);
+    }
+
+    static String key(String prefix, String path) {
         List<String> pathSegments = Lists.newArrayList(Splitter.on(SLASH).omitEmptyStrings().split(path));
-        if (useEtagPrefix) {
-            pathSegments.add(0, ETAG_KEY_PREFIX);
-        } else {
-            pathSegments.add(0, RESOURCE_KEY_PREFIX);
-        }
+        pathSegments.add(0, prefix);
         return Joiner.on(":").skipNulls().join(pathSegments);
     }
 
@@ -475,7 +566,7 @@ public class DeltaHandler implements RuleProvider.RuleChangesObserver {
         }
     }
 
-    private static class DeltaResourcesContainer {
+    static class DeltaResourcesContainer {
         private final long maxUpdateId;
         private final List<String> resourceNames;
 
@@ -0,0 +1,24 @@
+package org.swisspush.gateleen.delta.lua;
+
+import org.swisspush.gateleen.core.lua.LuaScript;
+
+/**
+ * Enum containing the file names of the delta feature related lua scripts.
+ */
+public enum DeltaLuaScripts implements LuaScript {
+
+    PUT("delta_put.lua"),
+    REMOVE_FROM_INDEX("delta_index_remove.lua"),
+    QUERY_INDEX("delta_index_query.lua"),
+    INVALIDATE_INDEX("delta_index_invalidate.lua"),
+    VERIFY_INDEX("delta_index_verify.lua");
+
+    private String file;
+
+    DeltaLuaScripts(String file) { this.file = file; }
+
+    @Override
+    public String getFilename() {
+        return file;
+    }
+}
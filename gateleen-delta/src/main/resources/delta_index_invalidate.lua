@@ -0,0 +1,28 @@
+local resourceKey = KEYS[1]
+local verifiedKey = KEYS[2]
+local verifyingKey = KEYS[3]
+local collectionPath = ARGV[1]
+
+local invalid = {}
+
+-- the resource could be in a new sub collection, which is listed without update-id by all ancestors
+if collectionPath ~= '' then
+    invalid[#invalid + 1] = ''
+    local position = string.find(collectionPath, ':', 1, true)
+    while position ~= nil do
+        invalid[#invalid + 1] = string.sub(collectionPath, 1, position - 1)
+        position = string.find(collectionPath, ':', position + 1, true)
+    end
+end
+
+-- a resource without update-id is listed by its collection
+if redis.call('exists',resourceKey) == 0 then
+    invalid[#invalid + 1] = collectionPath
+end
+
+if #invalid > 0 then
+    redis.call('zrem',verifiedKey,unpack(invalid))
+    redis.call('zrem',verifyingKey,unpack(invalid))
+end
+
+return #invalid
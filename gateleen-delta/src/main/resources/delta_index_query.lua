@@ -0,0 +1,35 @@
+local indexKey = KEYS[1]
+local expiriesKey = KEYS[2]
+local startKey = KEYS[3]
+local verifiedKey = KEYS[4]
+local updateId = ARGV[1]
+local currentTS = tonumber(ARGV[2])
+local collectionPath = ARGV[3]
+
+-- the changes made before the index was started are not in the index
+local start = redis.call('get',startKey)
+if start == false or tonumber(updateId) < tonumber(start) then
+    return false
+end
+
+-- the collection could contain resources without update-id
+if redis.call('zscore',verifiedKey,collectionPath) == false then
+    return false
+end
+
+-- remove the expired resources from the index
+local expired = redis.call('zrangebyscore',expiriesKey,'-inf',currentTS)
+if #expired > 0 then
+    for i = 1, #expired, 1000 do
+        local batch = {unpack(expired, i, math.min(i + 999, #expired))}
+        redis.call('zrem',indexKey,unpack(batch))
+        redis.call('zrem',expiriesKey,unpack(batch))
+    end
+end
+
+-- without index the collection could not exist at all
+if redis.call('exists',indexKey) == 0 then
+    return false
+end
+
+return redis.call('zrangebyscore',indexKey,'(' .. updateId,'+inf','WITHSCORES')
@@ -0,0 +1,76 @@
+local resourceKey = KEYS[1]
+local etagKey = KEYS[2]
+local indexKey = KEYS[3]
+local expiriesKey = KEYS[4]
+local collectionsKey = KEYS[5]
+local verifiedKey = KEYS[6]
+local verifyingKey = KEYS[7]
+local resourceName = ARGV[1]
+local path = ARGV[2]
+local indexPrefix = ARGV[3]
+local expiriesPrefix = ARGV[4]
+local resourcePrefix = ARGV[5]
+local etagPrefix = ARGV[6]
+local batchSize = tonumber(ARGV[7])
+
+local function join(first, second)
+    if first == '' then
+        return second
+    end
+    if second == '' then
+        return first
+    end
+    return first .. ':' .. second
+end
+
+redis.call('unlink',resourceKey,etagKey)
+redis.call('zrem',indexKey,resourceName)
+redis.call('zrem',expiriesKey,resourceName)
+
+-- the removed resource could have been a collection, remove its index and the ones of all its sub collections
+local ranges
+if path == '' then
+    ranges = {{'-', '+'}}
+else
+    ranges = {{'[' .. path, '[' .. path}, {'[' .. path .. ':', '(' .. path .. ';'}}
+end
+
+-- the collections are no longer answered from the index, while their indexes are removed
+for _, range in ipairs(ranges) do
+    redis.call('zremrangebylex',verifiedKey,range[1],range[2])
+    redis.call('zremrangebylex',verifyingKey,range[1],range[2])
+end
+
+-- at most batchSize resources or collections are removed per call, so redis is not blocked by large collections
+local budget = batchSize
+for _, range in ipairs(ranges) do
+    local collections = redis.call('zrangebylex',collectionsKey,range[1],range[2],'LIMIT',0,budget)
+    for _, collection in ipairs(collections) do
+        local collectionIndexKey = join(indexPrefix, collection)
+        local names = redis.call('zrange',collectionIndexKey,0,budget - 1)
+        if #names > 0 then
+            local keys = {}
+            for _, name in ipairs(names) do
+                keys[#keys + 1] = join(resourcePrefix, join(collection, name))
+                keys[#keys + 1] = join(etagPrefix, join(collection, name))
+            end
+            redis.call('unlink',unpack(keys))
+            redis.call('zrem',collectionIndexKey,unpack(names))
+            redis.call('zrem',join(expiriesPrefix, collection),unpack(names))
+            budget = budget - #names
+        end
+        if redis.call('exists',collectionIndexKey) == 1 then
+            -- more resources left in this index
+            return 1
+        end
+        redis.call('unlink',join(expiriesPrefix, collection))
+        redis.call('zrem',collectionsKey,collection)
+        budget = budget - 1
+        if budget <= 0 then
+            return 1
+        end
+    end
+end
+
+-- 0 when everything has been removed, 1 when the script has to be called again
+return 0
@@ -0,0 +1,12 @@
+local verifyingKey = KEYS[1]
+local verifiedKey = KEYS[2]
+local collectionPath = ARGV[1]
+
+-- the collection has been invalidated while it was listed
+if redis.call('zscore',verifyingKey,collectionPath) == false then
+    return 0
+end
+
+redis.call('zrem',verifyingKey,collectionPath)
+redis.call('zadd',verifiedKey,0,collectionPath)
+return 1
@@ -0,0 +1,55 @@
+local sequenceKey = KEYS[1]
+local resourceKey = KEYS[2]
+local etagKey = KEYS[3]
+local indexKey = KEYS[4]
+local expiriesKey = KEYS[5]
+local collectionsKey = KEYS[6]
+local startKey = KEYS[7]
+local etag = ARGV[1]
+local expireAfter = tonumber(ARGV[2])
+local resourceName = ARGV[3]
+local currentTS = tonumber(ARGV[4])
+local cleanupBatchSize = tonumber(ARGV[5])
+local collectionPath = ARGV[6]
+
+local function save(key, value)
+    if expireAfter == nil then
+        redis.call('set',key,value)
+    else
+        redis.call('setex',key,expireAfter,value)
+    end
+end
+
+-- no update, when the etag did not change
+if etag ~= '' then
+    if redis.call('get',etagKey) == etag then
+        return 0
+    end
+    save(etagKey, etag)
+end
+
+local updateId = redis.call('incr',sequenceKey)
+save(resourceKey, updateId)
+
+-- the change index is only maintained, when its keys are provided
+if indexKey ~= nil then
+    -- the index only knows the changes made after it has been started
+    redis.call('setnx',startKey,updateId - 1)
+    redis.call('zadd',collectionsKey,0,collectionPath)
+
+    -- remove some expired resources from the index, to keep it bounded even when it is never queried
+    local expired = redis.call('zrangebyscore',expiriesKey,'-inf',currentTS,'LIMIT',0,cleanupBatchSize)
+    if #expired > 0 then
+        redis.call('zrem',indexKey,unpack(expired))
+        redis.call('zrem',expiriesKey,unpack(expired))
+    end
+
+    if expireAfter == nil then
+        redis.call('zrem',expiriesKey,resourceName)
+    else
+        redis.call('zadd',expiriesKey,currentTS + expireAfter * 1000,resourceName)
+    end
+    redis.call('zadd',indexKey,updateId,resourceName)
+end
+
+return updateId
@@ -1,6 +1,7 @@
 package org.swisspush.gateleen.delta;
 
 import io.vertx.core.*;
+import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
@@ -8,24 +9,33 @@ import io.vertx.core.http.impl.headers.HeadersMultiMap;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.Response;
+import io.vertx.redis.client.impl.types.MultiType;
+import io.vertx.redis.client.impl.types.NumberType;
+import io.vertx.redis.client.impl.types.SimpleStringType;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.swisspush.gateleen.core.exception.GateleenExceptionFactory;
 import org.swisspush.gateleen.core.http.DummyHttpServerRequest;
 import org.swisspush.gateleen.core.http.DummyHttpServerResponse;
 import org.swisspush.gateleen.core.redis.RedisProvider;
 import org.swisspush.gateleen.core.util.StatusCode;
 import org.swisspush.gateleen.logging.LogAppenderRepository;
+import org.swisspush.gateleen.logging.LoggingResource;
 import org.swisspush.gateleen.logging.LoggingResourceManager;
 import org.swisspush.gateleen.routing.Router;
 import org.swisspush.gateleen.routing.Rule;
 import org.swisspush.gateleen.routing.RuleProvider;
 
-import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -53,12 +63,6 @@ public class DeltaHandlerTest {
         redisProvider = mock(RedisProvider.class);
         when(redisProvider.redis()).thenReturn(Future.succeededFuture(redisAPI));
 
-        doAnswer(invocation -> {
-            Handler<AsyncResult<Long>> handler = (Handler<AsyncResult<Long>>) invocation.getArguments()[1];
-            handler.handle(Future.succeededFuture(555L));
-            return null;
-        }).when(redisAPI).incr(eq("delta:sequence"), any());
-
         requestHeaders = MultiMap.caseInsensitiveMultiMap();
         requestHeaders.add("x-delta", "auto");
 
@@ -156,23 +160,41 @@ public class DeltaHandlerTest {
     }
 
     @Test
-    public void testDeltaNoExpiry() {
+    public void testDeltaNoExpiry(TestContext context) {
+        ArgumentCaptor<List<String>> argsCaptor = mockEvalsha(NumberType.create(555L));
+
         DeltaHandler deltaHandler = new DeltaHandler(vertx, redisProvider, null, ruleProvider, loggingResourceManager, logAppenderRepository);
         deltaHandler.handle(request, router);
 
-        verify(redisAPI, times(1)).set(eq(Arrays.asList("delta:resources:a:b:c", "555")), any());
-        verify(redisAPI, never()).setex(any(), any(), any(), any());
+        context.assertEquals(List.of("3", "delta:sequence", "delta:resources:a:b:c", "delta:etags:a:b:c", "", "", "c"),
+                argsCaptor.getValue().subList(1, 8));
+        verify(redisAPI, never()).incr(any(), any());
+        verify(router, times(1)).route(request);
     }
 
     @Test
-    public void testDeltaWithExpiry() {
+    public void testDeltaWithExpiry(TestContext context) {
         requestHeaders.add("x-expire-after", "123");
+        ArgumentCaptor<List<String>> argsCaptor = mockEvalsha(NumberType.create(555L));
+
+        DeltaHandler deltaHandler = new DeltaHandler(vertx, redisProvider, null, ruleProvider, loggingResourceManager, logAppenderRepository);
+        deltaHandler.handle(request, router);
+
+        context.assertEquals(List.of("3", "delta:sequence", "delta:resources:a:b:c", "delta:etags:a:b:c", "", "123", "c"),
+                argsCaptor.getValue().subList(1, 8));
+        verify(router, times(1)).route(request);
+    }
+
+    @Test
+    public void testDeltaWithUnchangedEtag(TestContext context) {
+        requestHeaders.add("if-none-match", "etag_1");
+        ArgumentCaptor<List<String>> argsCaptor = mockEvalsha(NumberType.create(0L));
 
         DeltaHandler deltaHandler = new DeltaHandler(vertx, redisProvider, null, ruleProvider, loggingResourceManager, logAppenderRepository);
         deltaHandler.handle(request, router);
 
-        verify(redisAPI, times(1)).setex(eq("delta:resources:a:b:c"), eq("123"), eq("555"), any());
-        verify(redisAPI, never()).set(any(), any());
+        context.assertEquals("etag_1", argsCaptor.getValue().get(5));
+        verify(router, times(1)).route(request);
     }
 
     @Test
@@ -221,6 +243,182 @@ public class DeltaHandlerTest {
         context.assertEquals(StatusCode.BAD_REQUEST.getStatusCode(), request.response().getStatusCode(), "StatusCode should be 400");
     }
 
+    @Test
+    public void testChangeIndexPUT(TestContext context) {
+        requestHeaders.add("x-expire-after", "123");
+        ArgumentCaptor<List<String>> argsCaptor = mockEvalsha(NumberType.create(555L));
+        ArgumentCaptor<Handler<Void>> bodyEndHandlerCaptor = ArgumentCaptor.forClass(Handler.class);
+
+        newChangeIndexDeltaHandler().handle(request, router);
+
+        context.assertEquals(List.of("7", "delta:sequence", "delta:resources:a:b:c", "delta:etags:a:b:c",
+                "delta:index:a:b", "delta:index-expiries:a:b", "delta:index-collections", "delta:index-start", "",
+                "123", "c"), argsCaptor.getValue().subList(1, 12));
+        context.assertEquals("a:b", argsCaptor.getValue().get(14));
+        verify(router, times(1)).route(request);
+
+        // the ancestors are invalidated when the resource has been written
+        verify(response, times(1)).bodyEndHandler(bodyEndHandlerCaptor.capture());
+        bodyEndHandlerCaptor.getValue().handle(null);
+        context.assertEquals(List.of("3", "delta:resources:a:b:c", "delta:index-verified", "delta:index-verifying", "a:b"),
+                argsCaptor.getValue().subList(1, 6));
+    }
+
+    @Test
+    public void testChangeIndexUnversionedPUT(TestContext context) {
+        requestHeaders.remove("x-delta");
+        ArgumentCaptor<List<String>> argsCaptor = mockEvalsha(NumberType.create(1L));
+        ArgumentCaptor<Handler<Void>> bodyEndHandlerCaptor = ArgumentCaptor.forClass(Handler.class);
+
+        DeltaHandler deltaHandler = newChangeIndexDeltaHandler();
+        context.assertTrue(deltaHandler.isDeltaRequest(request));
+        deltaHandler.handle(request, router);
+
+        verify(router, times(1)).route(request);
+        verify(redisAPI, never()).evalsha(any(), any());
+
+        verify(response, times(1)).bodyEndHandler(bodyEndHandlerCaptor.capture());
+        bodyEndHandlerCaptor.getValue().handle(null);
+        context.assertEquals(List.of("3", "delta:resources:a:b:c", "delta:index-verified", "delta:index-verifying", "a:b"),
+                argsCaptor.getValue().subList(1, 6));
+    }
+
+    @Test
+    public void testUnversionedPUTWithoutChangeIndex(TestContext context) {
+        requestHeaders.remove("x-delta");
+
+        DeltaHandler deltaHandler = new DeltaHandler(vertx, redisProvider, null, ruleProvider, loggingResourceManager, logAppenderRepository);
+        context.assertFalse(deltaHandler.isDeltaRequest(request));
+    }
+
+    @Test
+    public void testChangeIndexDELETE(TestContext context) {
+        requestHeaders.remove("x-delta");
+        when(request.method()).thenReturn(HttpMethod.DELETE);
+        ArgumentCaptor<List<String>> argsCaptor = mockEvalsha(null);
+
+        DeltaHandler deltaHandler = newChangeIndexDeltaHandler();
+        context.assertTrue(deltaHandler.isDeltaRequest(request));
+        deltaHandler.handle(request, router);
+
+        context.assertEquals(List.of("7", "delta:resources:a:b:c", "delta:etags:a:b:c", "delta:index:a:b",
+                "delta:index-expiries:a:b", "delta:index-collections", "delta:index-verified", "delta:index-verifying",
+                "c", "a:b:c", "delta:index", "delta:index-expiries", "delta:resources", "delta:etags", "1000"),
+                argsCaptor.getValue().subList(1, 16));
+        verify(router, times(1)).route(request);
+    }
+
+    @Test
+    public void testChangeIndexDELETEOfLargeCollection(TestContext context) {
+        requestHeaders.remove("x-delta");
+        when(request.method()).thenReturn(HttpMethod.DELETE);
+        // the first two calls leave sub collections to remove
+        doAnswer(new Answer<Void>() {
+            private int calls;
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                Handler<AsyncResult<Response>> handler = (Handler<AsyncResult<Response>>) invocation.getArguments()[1];
+                handler.handle(Future.succeededFuture(NumberType.create(++calls < 3 ? 1L : 0L)));
+                return null;
+            }
+        }).when(redisAPI).evalsha(any(), any());
+
+        newChangeIndexDeltaHandler().handle(request, router);
+
+        verify(redisAPI, times(3)).evalsha(any(), any());
+        verify(router, times(1)).route(request);
+    }
+
+    @Test
+    public void testChangeIndexNotUsedOutsideOfPaths(TestContext context) {
+        requestHeaders.remove("x-delta");
+        when(request.path()).thenReturn("/other/b/c");
+        DeltaHandler deltaHandler = newChangeIndexDeltaHandler();
+
+        // neither unversioned PUT nor DELETE requests are tracked
+        context.assertFalse(deltaHandler.isDeltaRequest(request));
+        when(request.method()).thenReturn(HttpMethod.DELETE);
+        context.assertFalse(deltaHandler.isDeltaRequest(request));
+
+        // delta PUT requests do not update the index
+        when(request.method()).thenReturn(HttpMethod.PUT);
+        requestHeaders.add("x-delta", "auto");
+        ArgumentCaptor<List<String>> argsCaptor = mockEvalsha(NumberType.create(555L));
+        deltaHandler.handle(request, router);
+        context.assertEquals("3", argsCaptor.getValue().get(1));
+        verify(response, never()).bodyEndHandler(any());
+    }
+
+    @Test
+    public void testChangeIndexDELETEOnBackend(TestContext context) {
+        when(request.method()).thenReturn(HttpMethod.DELETE);
+        requestHeaders.add("x-delta-backend", "true");
+
+        context.assertFalse(newChangeIndexDeltaHandler().isDeltaRequest(request));
+    }
+
+    @Test
+    public void testDELETEWithoutChangeIndex(TestContext context) {
+        when(request.method()).thenReturn(HttpMethod.DELETE);
+
+        DeltaHandler deltaHandler = new DeltaHandler(vertx, redisProvider, null, ruleProvider, loggingResourceManager, logAppenderRepository);
+        context.assertFalse(deltaHandler.isDeltaRequest(request));
+    }
+
+    @Test
+    public void testChangeIndexGET(TestContext context) {
+        MultiType changes = MultiType.create(4, false);
+        Stream.of("res_1", "7", "res_2", "9").forEach(value -> changes.add(SimpleStringType.create(value)));
+        ArgumentCaptor<List<String>> argsCaptor = mockEvalsha(changes);
+        when(loggingResourceManager.getLoggingResource()).thenReturn(new LoggingResource());
+
+        DummyHttpServerResponse response = new DummyHttpServerResponse();
+        DeltaRequest request = new DeltaRequest(MultiMap.caseInsensitiveMultiMap().add("delta", "5"), response);
+        newChangeIndexDeltaHandler().handle(request, router);
+
+        context.assertEquals(List.of("4", "delta:index:gateleen:server:deltaResources",
+                "delta:index-expiries:gateleen:server:deltaResources", "delta:index-start", "delta:index-verified", "5"),
+                argsCaptor.getValue().subList(1, 7));
+        context.assertEquals("gateleen:server:deltaResources", argsCaptor.getValue().get(8));
+        context.assertEquals("{\"deltaResources\":[\"res_1\",\"res_2\"]}", response.getResultBuffer());
+        context.assertEquals("9", response.headers().get("x-delta"));
+    }
+
+    @Test
+    public void testChangeIndexGETFallsBackToListing(TestContext context) {
+        mockEvalsha(null);
+        when(redisAPI.zadd(any())).thenReturn(Future.succeededFuture());
+        when(loggingResourceManager.getLoggingResource()).thenReturn(new LoggingResource());
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.request(any(HttpMethod.class), anyString())).thenReturn(Future.failedFuture("no backend"));
+
+        DummyHttpServerResponse response = new DummyHttpServerResponse();
+        DeltaRequest request = new DeltaRequest(MultiMap.caseInsensitiveMultiMap().add("delta", "5"), response);
+        new DeltaHandler(vertx, redisProvider, httpClient, ruleProvider, loggingResourceManager, logAppenderRepository,
+                false, CHANGE_INDEX_PATHS, GateleenExceptionFactory.newGateleenThriftyExceptionFactory()).handle(request, router);
+
+        verify(redisAPI, times(1)).zadd(List.of("delta:index-verifying", "0", "gateleen:server:deltaResources"));
+        verify(httpClient, times(1)).request(eq(HttpMethod.GET), eq("/gateleen/server/deltaResources?delta=5"));
+    }
+
+    private static final List<String> CHANGE_INDEX_PATHS = List.of("/a", "/gateleen/server/");
+
+    private DeltaHandler newChangeIndexDeltaHandler() {
+        return new DeltaHandler(vertx, redisProvider, null, ruleProvider, loggingResourceManager, logAppenderRepository,
+                false, CHANGE_INDEX_PATHS, GateleenExceptionFactory.newGateleenThriftyExceptionFactory());
+    }
+
+    private ArgumentCaptor<List<String>> mockEvalsha(Response response) {
+        ArgumentCaptor<List<String>> argsCaptor = ArgumentCaptor.forClass(List.class);
+        doAnswer(invocation -> {
+            Handler<AsyncResult<Response>> handler = (Handler<AsyncResult<Response>>) invocation.getArguments()[1];
+            handler.handle(Future.succeededFuture(response));
+            return null;
+        }).when(redisAPI).evalsha(argsCaptor.capture(), any());
+        return argsCaptor;
+    }
+
     private Rule rule(String url, boolean deltaOnBackend) {
         Rule rule = new Rule();
         rule.setUrlPattern(url);
@@ -248,6 +446,11 @@ public class DeltaHandlerTest {
             return "/gateleen/server/deltaResources";
         }
 
+        @Override
+        public String path() {
+            return "/gateleen/server/deltaResources";
+        }
+
         @Override
         public MultiMap params() {
             return params;
@@ -258,6 +461,16 @@ public class DeltaHandlerTest {
             return response;
         }
 
+        @Override
+        public HttpServerRequest pause() {
+            return this;
+        }
+
+        @Override
+        public HttpServerRequest resume() {
+            return this;
+        }
+
         @Override
         public MultiMap headers() {
             return MultiMap.caseInsensitiveMultiMap();
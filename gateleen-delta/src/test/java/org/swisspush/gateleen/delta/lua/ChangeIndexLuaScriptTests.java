@@ -0,0 +1,240 @@
+package org.swisspush.gateleen.delta.lua;
+
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.gateleen.testhelper.AbstractLuaScriptTest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for the {@link DeltaLuaScripts#REMOVE_FROM_INDEX}, {@link DeltaLuaScripts#QUERY_INDEX},
+ * {@link DeltaLuaScripts#INVALIDATE_INDEX} and {@link DeltaLuaScripts#VERIFY_INDEX} lua scripts.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ChangeIndexLuaScriptTests extends AbstractLuaScriptTest {
+
+    private final String indexKey = "delta:index:coll";
+    private final String expiriesKey = "delta:index-expiries:coll";
+    private final String startKey = "delta:index-start";
+    private final String collectionsKey = "delta:index-collections";
+    private final String verifiedKey = "delta:index-verified";
+    private final String verifyingKey = "delta:index-verifying";
+
+    @Test
+    public void testQueryIndex() {
+        jedis.set(startKey, "0");
+        jedis.zadd(verifiedKey, 0, "coll");
+        addToIndex("res_1", 1, null, 0);
+        addToIndex("res_2", 2, null, 0);
+        addToIndex("res_3", 3, null, 0);
+        addToIndex("res_1", 4, null, 0);
+
+        assertThat(evalScriptQuery(0, 0), equalTo(Arrays.asList("res_2", "2", "res_3", "3", "res_1", "4")));
+        assertThat(evalScriptQuery(2, 0), equalTo(Arrays.asList("res_3", "3", "res_1", "4")));
+        assertThat(evalScriptQuery(4, 0), equalTo(Collections.emptyList()));
+    }
+
+    @Test
+    public void testQueryIndexRemovesExpiredResources() {
+        jedis.set(startKey, "0");
+        jedis.zadd(verifiedKey, 0, "coll");
+        addToIndex("res_1", 1, 10L, 0);
+        addToIndex("res_2", 2, 100L, 0);
+        addToIndex("res_3", 3, null, 0);
+
+        assertThat(evalScriptQuery(0, 10000), equalTo(Arrays.asList("res_2", "2", "res_3", "3")));
+        assertThat(jedis.zcard(indexKey), equalTo(2L));
+        assertThat(jedis.zcard(expiriesKey), equalTo(1L));
+
+        assertThat(evalScriptQuery(0, 200000), equalTo(Arrays.asList("res_3", "3")));
+        assertThat(jedis.exists(expiriesKey), is(false));
+    }
+
+    @Test
+    public void testQueryIndexBeforeStart() {
+        jedis.zadd(verifiedKey, 0, "coll");
+        addToIndex("res_1", 6, null, 0);
+        assertThat(evalScriptQuery(5, 0), is(nullValue()));
+
+        jedis.set(startKey, "5");
+        assertThat(evalScriptQuery(4, 0), is(nullValue()));
+        assertThat(evalScriptQuery(5, 0), equalTo(Arrays.asList("res_1", "6")));
+    }
+
+    @Test
+    public void testQueryIndexOfUnverifiedCollection() {
+        jedis.set(startKey, "0");
+        addToIndex("res_1", 1, null, 0);
+
+        assertThat(evalScriptQuery(0, 0), is(nullValue()));
+    }
+
+    @Test
+    public void testQueryWithoutIndex() {
+        jedis.set(startKey, "0");
+        jedis.zadd(verifiedKey, 0, "coll");
+        addToIndex("res_1", 1, 10L, 0);
+
+        assertThat(evalScriptQuery(0, 0), equalTo(Arrays.asList("res_1", "1")));
+        assertThat(evalScriptQuery(0, 20000), is(nullValue()));
+    }
+
+    @Test
+    public void testRemoveFromIndex() {
+        addToIndex("res_1", 1, 10L, 0);
+        addToIndex("res_2", 2, null, 0);
+        jedis.set("delta:resources:coll:res_1", "1");
+        jedis.set("delta:etags:coll:res_1", "etag_1");
+        jedis.zadd(verifiedKey, 0, "coll");
+
+        assertThat(evalScriptRemove("res_1", 1000), equalTo(0L));
+
+        assertThat(jedis.exists("delta:resources:coll:res_1"), is(false));
+        assertThat(jedis.exists("delta:etags:coll:res_1"), is(false));
+        assertThat(jedis.zrange(indexKey, 0, -1), equalTo(Collections.singletonList("res_2")));
+        assertThat(jedis.exists(expiriesKey), is(false));
+        assertThat(jedis.zrange(verifiedKey, 0, -1), equalTo(Collections.singletonList("coll")));
+    }
+
+    @Test
+    public void testRemoveCollectionFromIndexRecursively() {
+        addToIndex("sub", 1, null, 0);
+        jedis.zadd(collectionsKey, 0, "coll");
+        jedis.zadd("delta:index:coll:sub", 2, "res_1");
+        jedis.zadd("delta:index-expiries:coll:sub", 1000, "res_1");
+        jedis.zadd(collectionsKey, 0, "coll:sub");
+        jedis.zadd("delta:index:coll:sub:sub2", 3, "res_2");
+        jedis.zadd(collectionsKey, 0, "coll:sub:sub2");
+        jedis.zadd("delta:index:coll:sub_other", 4, "res_3");
+        jedis.zadd(collectionsKey, 0, "coll:sub_other");
+        jedis.set("delta:resources:coll:sub:res_1", "2");
+        jedis.set("delta:etags:coll:sub:res_1", "etag_1");
+        jedis.set("delta:resources:coll:sub:sub2:res_2", "3");
+        jedis.set("delta:resources:coll:sub_other:res_3", "4");
+        jedis.zadd(verifiedKey, 0, "coll:sub:sub2");
+        jedis.zadd(verifyingKey, 0, "coll:sub");
+
+        assertThat(evalScriptRemove("sub", 1000), equalTo(0L));
+
+        assertThat(jedis.exists(indexKey), is(false));
+        assertThat(jedis.exists("delta:index:coll:sub"), is(false));
+        assertThat(jedis.exists("delta:index-expiries:coll:sub"), is(false));
+        assertThat(jedis.exists("delta:index:coll:sub:sub2"), is(false));
+        assertThat(jedis.exists("delta:resources:coll:sub:res_1"), is(false));
+        assertThat(jedis.exists("delta:etags:coll:sub:res_1"), is(false));
+        assertThat(jedis.exists("delta:resources:coll:sub:sub2:res_2"), is(false));
+        assertThat(jedis.zrange(collectionsKey, 0, -1), equalTo(Arrays.asList("coll", "coll:sub_other")));
+        assertThat(jedis.exists(verifiedKey), is(false));
+        assertThat(jedis.exists(verifyingKey), is(false));
+
+        // a collection with a similar name is kept
+        assertThat(jedis.exists("delta:index:coll:sub_other"), is(true));
+        assertThat(jedis.get("delta:resources:coll:sub_other:res_3"), equalTo("4"));
+    }
+
+    @Test
+    public void testRemoveLargeCollectionInBatches() {
+        addToIndex("sub", 1, null, 0);
+        jedis.zadd(collectionsKey, 0, "coll");
+        jedis.zadd(collectionsKey, 0, "coll:sub");
+        for (int i = 0; i < 5; i++) {
+            jedis.zadd("delta:index:coll:sub", i, "res_" + i);
+            jedis.set("delta:resources:coll:sub:res_" + i, String.valueOf(i));
+        }
+        jedis.zadd(verifiedKey, 0, "coll:sub");
+
+        // the collection is no longer answered from the index after the first call
+        assertThat(evalScriptRemove("sub", 2), equalTo(1L));
+        assertThat(jedis.exists(verifiedKey), is(false));
+        assertThat(jedis.zcard("delta:index:coll:sub"), equalTo(3L));
+        assertThat(jedis.exists("delta:resources:coll:sub:res_0"), is(false));
+        assertThat(jedis.exists("delta:resources:coll:sub:res_4"), is(true));
+
+        assertThat(evalScriptRemove("sub", 2), equalTo(1L));
+        assertThat(evalScriptRemove("sub", 2), equalTo(1L));
+        assertThat(evalScriptRemove("sub", 2), equalTo(0L));
+        assertThat(jedis.exists("delta:index:coll:sub"), is(false));
+        assertThat(jedis.exists("delta:resources:coll:sub:res_4"), is(false));
+        assertThat(jedis.zrange(collectionsKey, 0, -1), equalTo(Collections.singletonList("coll")));
+    }
+
+    @Test
+    public void testInvalidate() {
+        jedis.zadd(verifiedKey, 0, "");
+        jedis.zadd(verifiedKey, 0, "a");
+        jedis.zadd(verifiedKey, 0, "a:b");
+        jedis.zadd(verifiedKey, 0, "a:b:c");
+        jedis.zadd(verifiedKey, 0, "a:bc");
+        jedis.zadd(verifyingKey, 0, "a:b");
+        jedis.set("delta:resources:a:b:c:res_1", "1");
+
+        // a resource having an update-id invalidates only the ancestors
+        assertThat(evalScriptInvalidate("delta:resources:a:b:c:res_1", "a:b:c"), equalTo(3L));
+        assertThat(jedis.zrange(verifiedKey, 0, -1), equalTo(Arrays.asList("a:b:c", "a:bc")));
+        assertThat(jedis.exists(verifyingKey), is(false));
+
+        // a resource without update-id invalidates its collection too
+        assertThat(evalScriptInvalidate("delta:resources:a:b:c:res_2", "a:b:c"), equalTo(4L));
+        assertThat(jedis.zrange(verifiedKey, 0, -1), equalTo(Collections.singletonList("a:bc")));
+    }
+
+    @Test
+    public void testVerify() {
+        assertThat(evalScriptVerify("coll"), equalTo(0L));
+        assertThat(jedis.exists(verifiedKey), is(false));
+
+        jedis.zadd(verifyingKey, 0, "coll");
+        assertThat(evalScriptVerify("coll"), equalTo(1L));
+        assertThat(jedis.zrange(verifiedKey, 0, -1), equalTo(Collections.singletonList("coll")));
+        assertThat(jedis.exists(verifyingKey), is(false));
+
+        // invalidated while listing
+        jedis.zadd(verifyingKey, 0, "coll_2");
+        evalScriptInvalidate("delta:resources:coll_2:res_1", "coll_2");
+        assertThat(evalScriptVerify("coll_2"), equalTo(0L));
+        assertThat(jedis.zrange(verifiedKey, 0, -1), equalTo(Collections.singletonList("coll")));
+    }
+
+    private void addToIndex(String resource, long updateId, Long expireAfter, long currentTS) {
+        jedis.zadd(indexKey, updateId, resource);
+        if (expireAfter != null) {
+            jedis.zadd(expiriesKey, currentTS + expireAfter * 1000, resource);
+        }
+    }
+
+    private Long evalScriptRemove(String resource, int batchSize) {
+        String script = readScript(DeltaLuaScripts.REMOVE_FROM_INDEX.getFilename());
+        List<String> keys = Arrays.asList("delta:resources:coll:" + resource, "delta:etags:coll:" + resource,
+                indexKey, expiriesKey, collectionsKey, verifiedKey, verifyingKey);
+        List<String> arguments = Arrays.asList(resource, "coll:" + resource, "delta:index", "delta:index-expiries",
+                "delta:resources", "delta:etags", String.valueOf(batchSize));
+        return (Long) jedis.eval(script, keys, arguments);
+    }
+
+    private List evalScriptQuery(long updateId, long currentTS) {
+        String script = readScript(DeltaLuaScripts.QUERY_INDEX.getFilename());
+        List<String> keys = Arrays.asList(indexKey, expiriesKey, startKey, verifiedKey);
+        List<String> arguments = Arrays.asList(String.valueOf(updateId), String.valueOf(currentTS), "coll");
+        return (List) jedis.eval(script, keys, arguments);
+    }
+
+    private Long evalScriptInvalidate(String resourceKey, String collection) {
+        String script = readScript(DeltaLuaScripts.INVALIDATE_INDEX.getFilename());
+        List<String> keys = Arrays.asList(resourceKey, verifiedKey, verifyingKey);
+        return (Long) jedis.eval(script, keys, Collections.singletonList(collection));
+    }
+
+    private Long evalScriptVerify(String collection) {
+        String script = readScript(DeltaLuaScripts.VERIFY_INDEX.getFilename());
+        List<String> keys = Arrays.asList(verifyingKey, verifiedKey);
+        return (Long) jedis.eval(script, keys, Collections.singletonList(collection));
+    }
+}
@@ -0,0 +1,118 @@
+package org.swisspush.gateleen.delta.lua;
+
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.gateleen.testhelper.AbstractLuaScriptTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for the {@link DeltaLuaScripts#PUT} lua script.
+ */
+@RunWith(VertxUnitRunner.class)
+public class DeltaPutLuaScriptTests extends AbstractLuaScriptTest {
+
+    private final String sequenceKey = "delta:sequence";
+    private final String indexKey = "delta:index:coll";
+    private final String expiriesKey = "delta:index-expiries:coll";
+
+    @Test
+    public void testPutIncrementsSequence() {
+        assertThat(evalScriptPut("res_1", null, null, false, 0), equalTo(1L));
+        assertThat(evalScriptPut("res_2", null, null, false, 0), equalTo(2L));
+        assertThat(evalScriptPut("res_1", null, null, false, 0), equalTo(3L));
+
+        assertThat(jedis.get(sequenceKey), equalTo("3"));
+        assertThat(jedis.get("delta:resources:coll:res_1"), equalTo("3"));
+        assertThat(jedis.get("delta:resources:coll:res_2"), equalTo("2"));
+        assertThat(jedis.ttl("delta:resources:coll:res_1"), equalTo(-1L));
+        assertThat(jedis.exists(indexKey), is(false));
+    }
+
+    @Test
+    public void testPutWithExpiry() {
+        assertThat(evalScriptPut("res_1", "etag_1", 60L, false, 0), equalTo(1L));
+
+        assertThat(jedis.get("delta:resources:coll:res_1"), equalTo("1"));
+        assertThat(jedis.ttl("delta:resources:coll:res_1") > 0, is(true));
+        assertThat(jedis.get("delta:etags:coll:res_1"), equalTo("etag_1"));
+        assertThat(jedis.ttl("delta:etags:coll:res_1") > 0, is(true));
+    }
+
+    @Test
+    public void testPutWithUnchangedEtag() {
+        assertThat(evalScriptPut("res_1", "etag_1", null, false, 0), equalTo(1L));
+        assertThat(evalScriptPut("res_1", "etag_1", null, false, 0), equalTo(0L));
+
+        assertThat(jedis.get(sequenceKey), equalTo("1"));
+        assertThat(jedis.get("delta:resources:coll:res_1"), equalTo("1"));
+
+        assertThat(evalScriptPut("res_1", "etag_2", null, false, 0), equalTo(2L));
+        assertThat(jedis.get("delta:etags:coll:res_1"), equalTo("etag_2"));
+        assertThat(jedis.get("delta:resources:coll:res_1"), equalTo("2"));
+    }
+
+    @Test
+    public void testPutUpdatesChangeIndex() {
+        evalScriptPut("res_1", null, null, true, 1000);
+        evalScriptPut("res_2", null, 60L, true, 1000);
+
+        assertThat(jedis.zscore(indexKey, "res_1"), equalTo(1.0));
+        assertThat(jedis.zscore(indexKey, "res_2"), equalTo(2.0));
+        assertThat(jedis.zscore(expiriesKey, "res_2"), equalTo(61000.0));
+        assertThat(jedis.get("delta:index-start"), equalTo("0"));
+        assertThat(jedis.zrange("delta:index-collections", 0, -1), equalTo(Collections.singletonList("coll")));
+
+        // an update without expiry removes the expiry
+        evalScriptPut("res_2", null, null, true, 2000);
+        assertThat(jedis.zscore(indexKey, "res_2"), equalTo(3.0));
+        assertThat(jedis.exists(expiriesKey), is(false));
+    }
+
+    @Test
+    public void testChangeIndexStartsAtFirstIndexedPut() {
+        evalScriptPut("res_1", null, null, false, 0);
+        evalScriptPut("res_2", null, null, false, 0);
+        assertThat(jedis.exists("delta:index-start"), is(false));
+
+        evalScriptPut("res_3", null, null, true, 0);
+        evalScriptPut("res_4", null, null, true, 0);
+
+        assertThat(jedis.get("delta:index-start"), equalTo("2"));
+        assertThat(jedis.zrange(indexKey, 0, -1), equalTo(Arrays.asList("res_3", "res_4")));
+    }
+
+    @Test
+    public void testPutRemovesExpiredResourcesFromChangeIndex() {
+        evalScriptPut("res_1", null, 10L, true, 0);
+        evalScriptPut("res_2", null, 100L, true, 0);
+
+        evalScriptPut("res_3", null, null, true, 50000);
+
+        assertThat(jedis.zrange(indexKey, 0, -1), equalTo(Arrays.asList("res_2", "res_3")));
+        assertThat(jedis.zrange(expiriesKey, 0, -1), equalTo(Collections.singletonList("res_2")));
+    }
+
+    private Long evalScriptPut(String resource, String etag, Long expireAfter, boolean changeIndex, long currentTS) {
+        String script = readScript(DeltaLuaScripts.PUT.getFilename());
+        List<String> keys = new ArrayList<>(Arrays.asList(sequenceKey, "delta:resources:coll:" + resource,
+                "delta:etags:coll:" + resource));
+        if (changeIndex) {
+            keys.add(indexKey);
+            keys.add(expiriesKey);
+            keys.add("delta:index-collections");
+            keys.add("delta:index-start");
+        }
+        List<String> arguments = Arrays.asList(etag == null ? "" : etag,
+                expireAfter == null ? "" : String.valueOf(expireAfter), resource, String.valueOf(currentTS), "100", "coll");
+        return (Long) jedis.eval(script, keys, arguments);
+    }
+}
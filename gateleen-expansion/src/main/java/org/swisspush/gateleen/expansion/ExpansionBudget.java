@@ -0,0 +1,65 @@
+package org.swisspush.gateleen.expansion;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Limits the number of concurrent sub requests of all expansions together. A {@link SubRequestScheduler} not getting
+ * a permit is woken up, when a permit is released by any expansion.
+ */
+class ExpansionBudget {
+
+    private final int maxConcurrentSubRequests;
+    private final Deque<SubRequestScheduler> waitingSchedulers = new ArrayDeque<>();
+    private int inFlight;
+
+    ExpansionBudget(int maxConcurrentSubRequests) {
+        this.maxConcurrentSubRequests = maxConcurrentSubRequests;
+    }
+
+    /**
+     * Tries to get a permit for a sub request. When no permit is available, the scheduler is woken up as soon as a
+     * permit has been released.
+     *
+     * @param scheduler the scheduler asking for the permit
+     * @return <code>true</code> when the permit has been acquired
+     */
+    synchronized boolean tryAcquire(SubRequestScheduler scheduler) {
+        if (inFlight < maxConcurrentSubRequests) {
+            inFlight++;
+            return true;
+        }
+        if (!waitingSchedulers.contains(scheduler)) {
+            waitingSchedulers.add(scheduler);
+        }
+        return false;
+    }
+
+    void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        wakeUpNext();
+    }
+
+    /**
+     * Wakes up the next waiting scheduler. Used as well by a woken up scheduler not needing the permit anymore.
+     */
+    void wakeUpNext() {
+        SubRequestScheduler next;
+        synchronized (this) {
+            next = waitingSchedulers.poll();
+        }
+        if (next != null) {
+            next.wakeUp();
+        }
+    }
+
+    synchronized void removeWaiting(SubRequestScheduler scheduler) {
+        waitingSchedulers.remove(scheduler);
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+}
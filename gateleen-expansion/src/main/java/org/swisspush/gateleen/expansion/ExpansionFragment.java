@@ -0,0 +1,37 @@
+package org.swisspush.gateleen.expansion;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A part of a streamed expansion. Holds the already serialized json of the part together with the eTags of the
+ * resources contained in the part, in the order they have to be hashed.
+ */
+class ExpansionFragment {
+
+    private final Buffer json;
+    private final List<String> eTags;
+
+    ExpansionFragment() {
+        this(Buffer.buffer(), new ArrayList<>());
+    }
+
+    ExpansionFragment(Buffer json, List<String> eTags) {
+        this.json = json;
+        this.eTags = eTags;
+    }
+
+    Buffer getJson() {
+        return json;
+    }
+
+    List<String> getETags() {
+        return eTags;
+    }
+
+    boolean isEmpty() {
+        return json.length() == 0 && eTags.isEmpty();
+    }
+}
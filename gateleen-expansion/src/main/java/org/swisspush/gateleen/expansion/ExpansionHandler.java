@@ -81,6 +81,7 @@ public class ExpansionHandler implements RuleChangesObserver {
     public static final String SERIOUS_EXCEPTION = "a serious exception happend ";
     public static final String EXPAND_PARAM = "expand";
     public static final String ZIP_PARAM = "zip";
+    public static final String STREAM_PARAM = "stream";
 
     private static final int NO_PARAMETER_FOUND = -1;
     private static final int START_INDEX = 0;
@@ -93,13 +94,24 @@ public class ExpansionHandler implements RuleChangesObserver {
     public static final String MAX_EXPANSION_LEVEL_HARD_PROPERTY = "max.expansion.level.hard";
     public static final String MAX_SUBREQUEST_PROPERTY = "max.expansion.subrequests";
     private static final int MAX_SUBREQUEST_COUNT_DEFAULT = 20000;
+    public static final String MAX_CONCURRENCY_PROPERTY = "max.expansion.concurrency";
+    private static final int MAX_CONCURRENCY_DEFAULT = 100;
+    public static final String MAX_CONCURRENCY_GLOBAL_PROPERTY = "max.expansion.concurrency.global";
+    private static final int MAX_CONCURRENCY_GLOBAL_DEFAULT = 1000;
+    public static final String TIMEOUT_PROPERTY = "max.expansion.timeout.ms";
 
     private static final String ETAG_HEADER = "Etag";
+    private static final String IF_NONE_MATCH_HEADER = "if-none-match";
+    private static final String DELTA_PARAM = "delta";
     private static final String SELF_REQUEST_HEADER = "x-self-request";
 
     private static final Handler<Buffer> DEV_NULL = buf -> {};
 
     private int maxSubRequestCount;
+    private int maxConcurrency;
+    private int maxConcurrencyGlobal;
+    private long expansionTimeoutMs;
+    private ExpansionBudget expansionBudget;
 
     private int maxExpansionLevelSoft = Integer.MAX_VALUE;
     private int maxExpansionLevelHard = Integer.MAX_VALUE;
@@ -176,6 +188,18 @@ public class ExpansionHandler implements RuleChangesObserver {
         return maxSubRequestCount;
     }
 
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getMaxConcurrencyGlobal() {
+        return maxConcurrencyGlobal;
+    }
+
+    public long getExpansionTimeoutMs() {
+        return expansionTimeoutMs;
+    }
+
     /**
      * Initialize the lists which defines, when which parameter
      * is removed (if any).
@@ -190,6 +214,7 @@ public class ExpansionHandler implements RuleChangesObserver {
          * -----
          */
         parameter_to_remove_for_all_request.add(EXPAND_PARAM);
+        parameter_to_remove_for_all_request.add(STREAM_PARAM);
         // -----
 
         /*
@@ -247,6 +272,32 @@ public class ExpansionHandler implements RuleChangesObserver {
             log.info("Setting maximum expansion level soft hard to a default of {}, since no property {} is defined!",
                     maxExpansionLevelHard, MAX_EXPANSION_LEVEL_HARD_PROPERTY);
         }
+
+        maxConcurrency = (int) positiveNumberProperty(MAX_CONCURRENCY_PROPERTY, MAX_CONCURRENCY_DEFAULT,
+                "maximum concurrent subrequests per expansion");
+        maxConcurrencyGlobal = (int) positiveNumberProperty(MAX_CONCURRENCY_GLOBAL_PROPERTY, MAX_CONCURRENCY_GLOBAL_DEFAULT,
+                "maximum concurrent subrequests of all expansions");
+        expansionTimeoutMs = positiveNumberProperty(TIMEOUT_PROPERTY, TIMEOUT, "expansion timeout");
+        expansionBudget = new ExpansionBudget(maxConcurrencyGlobal);
+    }
+
+    private long positiveNumberProperty(String property, long defaultValue, String description) {
+        if (properties != null && properties.containsKey(property)) {
+            try {
+                long value = Long.parseLong((String) properties.get(property));
+                if (value > 0) {
+                    log.info("Setting {} to {} from properties", description, value);
+                    return value;
+                }
+            } catch (Exception e) {
+                // logged below
+            }
+            log.warn("Setting {} to a default of {}, since defined value for {} in properties is not a positive number",
+                    description, defaultValue, property);
+        } else {
+            log.info("Setting {} to a default of {}, since no property {} is defined!", description, defaultValue, property);
+        }
+        return defaultValue;
     }
 
     /**
@@ -300,6 +351,20 @@ public class ExpansionHandler implements RuleChangesObserver {
         return ok && !isBackendExpand(request.uri());
     }
 
+    /**
+     * Returns true when the expansion of the given request can be streamed. The request must have the parameter
+     * {@code stream=true}. Since the eTag and the x-delta value of a streamed expansion are not known before the
+     * response is started, conditional (if-none-match) and delta requests are never streamed.
+     *
+     * @param request request
+     * @return boolean
+     */
+    public boolean isStreamingRequest(HttpServerRequest request) {
+        return "true".equalsIgnoreCase(request.params().get(STREAM_PARAM))
+                && !request.params().contains(DELTA_PARAM)
+                && request.headers().get(IF_NONE_MATCH_HEADER) == null;
+    }
+
     /**
      * Makes a request to get the collection with the names of the resources to fetch.
      * A result of this first request could look like this:
@@ -397,9 +462,15 @@ public class ExpansionHandler implements RuleChangesObserver {
                      * an exception is thrown and handled
                      * by the handler right away.
                      */
+                    DeltaHandler<ResourceNode> rootHandler = RecursiveHandlerFactory.createRootHandler(recursiveHandlerType,
+                            req, serverRoot, data, finalOriginalParams);
+                    SubRequestScheduler scheduler = new SubRequestScheduler(Vertx.currentContext(), maxConcurrency,
+                            expansionBudget, expansionTimeoutMs, rootHandler);
+                    if (rootHandler instanceof RecursiveZipRootHandler) {
+                        ((RecursiveZipRootHandler) rootHandler).throttle(scheduler);
+                    }
                     makeResourceSubRequest(targetUri, req, finalExpandLevel, new AtomicInteger(),
-                            recursiveHandlerType,
-                            RecursiveHandlerFactory.createRootHandler(recursiveHandlerType, req, serverRoot, data, finalOriginalParams), true);
+                            recursiveHandlerType, scheduler.rootHandler(), true, scheduler);
                 });
                 cRes.exceptionHandler(ExpansionDeltaUtil.createResponseExceptionHandler(req, targetUri, ExpansionHandler.class));
             };
@@ -463,7 +534,11 @@ public class ExpansionHandler implements RuleChangesObserver {
      */
     public void handleExpansionRecursion(final HttpServerRequest request) {
         removeZipParameter(request);
-        handleExpansionRequest(request, RecursiveHandlerFactory.RecursiveHandlerTypes.EXPANSION);
+        if (isStreamingRequest(request)) {
+            handleExpansionRequest(request, RecursiveHandlerFactory.RecursiveHandlerTypes.EXPANSION_STREAM);
+        } else {
+            handleExpansionRequest(request, RecursiveHandlerFactory.RecursiveHandlerTypes.EXPANSION);
+        }
     }
 
     /**
@@ -572,8 +647,9 @@ public class ExpansionHandler implements RuleChangesObserver {
      * @param recursionHandlerType - the type of the desired handler
      * @param handler              - the parent handler
      * @param collection           - indicates if the just passed targetUri belongs to a collection or a resource
+     * @param scheduler            - the scheduler limiting the concurrent sub requests of the expansion
      */
-    private void makeResourceSubRequest(final String targetUri, final HttpServerRequest req, final int recursionLevel, final AtomicInteger subRequestCounter, final RecursiveHandlerFactory.RecursiveHandlerTypes recursionHandlerType, final DeltaHandler<ResourceNode> handler, final boolean collection) {
+    private void makeResourceSubRequest(final String targetUri, final HttpServerRequest req, final int recursionLevel, final AtomicInteger subRequestCounter, final RecursiveHandlerFactory.RecursiveHandlerTypes recursionHandlerType, final DeltaHandler<ResourceNode> handler, final boolean collection, final SubRequestScheduler scheduler) {
 
         Logger log = RequestLoggerFactory.getLogger(ExpansionHandler.class, req);
 
@@ -591,74 +667,89 @@ public class ExpansionHandler implements RuleChangesObserver {
 
         subRequestCounter.incrementAndGet();
 
-        // request target uri
-        httpClient.request(HttpMethod.GET, targetUri).onComplete(asyncResult -> {
-            if (asyncResult.failed()) {
-                log.warn("Failed request to {}: {}", targetUri, asyncResult.cause());
-                return;
-            }
-            HttpClientRequest cReq = asyncResult.result();
-
+        // the sub request is queued until the scheduler lets it run
+        scheduler.schedule(slot -> {
+            // request target uri
+            httpClient.request(HttpMethod.GET, targetUri).onComplete(asyncResult -> {
+                if (asyncResult.failed()) {
+                    log.warn("Failed request to {}: {}", targetUri, asyncResult.cause());
+                    slot.release();
+                    handler.handle(new ResourceNode(SERIOUS_EXCEPTION, new ResourceCollectionException(asyncResult.cause().getMessage(), INTERNAL_SERVER_ERROR)));
+                    return;
+                }
+                HttpClientRequest cReq = asyncResult.result();
+                slot.track(cReq);
 
-            if (log.isTraceEnabled()) {
-                log.trace("set the cReq headers for the subRequest");
-            }
-            cReq.idleTimeout(TIMEOUT);
-            cReq.headers().setAll(req.headers());
-            cReq.headers().set("Accept", "application/json");
-            cReq.headers().set(SELF_REQUEST_HEADER, "true");
-            cReq.setChunked(true);
 
-            cReq.exceptionHandler(ExpansionDeltaUtil.createRequestExceptionHandler(req, targetUri, ExpansionHandler.class));
+                if (log.isTraceEnabled()) {
+                    log.trace("set the cReq headers for the subRequest");
+                }
+                cReq.idleTimeout(TIMEOUT);
+                cReq.headers().setAll(req.headers());
+                cReq.headers().set("Accept", "application/json");
+                cReq.headers().set(SELF_REQUEST_HEADER, "true");
+                cReq.setChunked(true);
 
-            if (log.isTraceEnabled()) {
-                log.trace("end the cReq for the subRequest");
-            }
-            cReq.send(event -> {
-                HttpClientResponse cRes = event.result();
+                cReq.exceptionHandler(ExpansionDeltaUtil.createRequestExceptionHandler(req, targetUri, ExpansionHandler.class));
 
                 if (log.isTraceEnabled()) {
-                    log.trace(" x-delta for {} is {}", targetUri, cRes.headers().get("x-delta"));
+                    log.trace("end the cReq for the subRequest");
                 }
+                cReq.send(event -> {
+                    if (event.failed()) {
+                        log.debug("GET {}", targetUri, event.cause());
+                        slot.release();
+                        handler.handle(new ResourceNode(SERIOUS_EXCEPTION, new ResourceCollectionException(event.cause().getMessage(), INTERNAL_SERVER_ERROR)));
+                        return;
+                    }
+                    HttpClientResponse cRes = event.result();
 
-                handler.storeXDeltaResponseHeader(cRes.headers().get("x-delta"));
+                    if (log.isTraceEnabled()) {
+                        log.trace(" x-delta for {} is {}", targetUri, cRes.headers().get("x-delta"));
+                    }
 
-                cRes.bodyHandler(data -> {
-                    /*
-                     * extract eTag from response, it can be used for the collection, as well as the resource
-                     */
-                    String eTag = geteTag(cRes.headers());
+                    handler.storeXDeltaResponseHeader(cRes.headers().get("x-delta"));
+
+                    cRes.bodyHandler(data -> {
+                        // let the next queued sub request run
+                        slot.release();
 
-                    if (StatusCode.NOT_FOUND.getStatusCode() == cRes.statusCode()) {
-                        log.debug("requested resource could not be found: {}", targetUri);
-                        handler.handle(new ResourceNode(SERIOUS_EXCEPTION, new ResourceCollectionException(cRes.statusMessage(), StatusCode.NOT_FOUND)));
-                    } else if (StatusCode.INTERNAL_SERVER_ERROR.getStatusCode() == cRes.statusCode()) {
-                        log.debug("error in request resource : {}", targetUri);
-                        handler.handle(new ResourceNode(SERIOUS_EXCEPTION, new ResourceCollectionException(cRes.statusMessage(), StatusCode.INTERNAL_SERVER_ERROR)));
-                    } else {
                         /*
-                         * If the request is marked as a request for a collection,
-                         * the handler for collections is invoked.
-                         * This handler can throw an exception if the indicated request
-                         * doesn't point to a collection.
-                         * This can only happen at the beginning of the recursion and
-                         * indicates the incorrect use of the parameter "expand". In
-                         * this case the handling is passed to the simple resource handler,
-                         * which is capable of even handling exceptions.
+                         * extract eTag from response, it can be used for the collection, as well as the resource
                          */
-                        if (collection) {
-                            try {
-                                handleCollectionResource(removeParameters(targetUri), req, recursionLevel, subRequestCounter, recursionHandlerType, handler, data, eTag);
-                            } catch (ResourceCollectionException e) {
-                                if (log.isTraceEnabled()) {
-                                    log.trace("handling collection failed with: {}", e.getMessage());
+                        String eTag = geteTag(cRes.headers());
+
+                        if (StatusCode.NOT_FOUND.getStatusCode() == cRes.statusCode()) {
+                            log.debug("requested resource could not be found: {}", targetUri);
+                            handler.handle(new ResourceNode(SERIOUS_EXCEPTION, new ResourceCollectionException(cRes.statusMessage(), StatusCode.NOT_FOUND)));
+                        } else if (StatusCode.INTERNAL_SERVER_ERROR.getStatusCode() == cRes.statusCode()) {
+                            log.debug("error in request resource : {}", targetUri);
+                            handler.handle(new ResourceNode(SERIOUS_EXCEPTION, new ResourceCollectionException(cRes.statusMessage(), StatusCode.INTERNAL_SERVER_ERROR)));
+                        } else {
+                            /*
+                             * If the request is marked as a request for a collection,
+                             * the handler for collections is invoked.
+                             * This handler can throw an exception if the indicated request
+                             * doesn't point to a collection.
+                             * This can only happen at the beginning of the recursion and
+                             * indicates the incorrect use of the parameter "expand". In
+                             * this case the handling is passed to the simple resource handler,
+                             * which is capable of even handling exceptions.
+                             */
+                            if (collection) {
+                                try {
+                                    handleCollectionResource(removeParameters(targetUri), req, recursionLevel, subRequestCounter, recursionHandlerType, handler, data, eTag, scheduler);
+                                } catch (ResourceCollectionException e) {
+                                    if (log.isTraceEnabled()) {
+                                        log.trace("handling collection failed with: {}", e.getMessage());
+                                    }
+                                    handleSimpleResource(removeParameters(targetUri), handler, data, eTag);
                                 }
+                            } else {
                                 handleSimpleResource(removeParameters(targetUri), handler, data, eTag);
                             }
-                        } else {
-                            handleSimpleResource(removeParameters(targetUri), handler, data, eTag);
                         }
-                    }
+                    });
                 });
             });
         });
@@ -722,9 +813,10 @@ public class ExpansionHandler implements RuleChangesObserver {
      * @param handler              - the parent handler
      * @param data                 - the data from the response of the request
      * @param eTag                 - eTag of the actual request
+     * @param scheduler            - the scheduler limiting the concurrent sub requests of the expansion
      * @throws ResourceCollectionException - thrown if the response does not belong to a collection
      */
-    private void handleCollectionResource(final String targetUri, final HttpServerRequest req, final int recursionLevel, final AtomicInteger subRequestCounter, final RecursiveHandlerFactory.RecursiveHandlerTypes recursionHandlerType, final DeltaHandler<ResourceNode> handler, final Buffer data, final String eTag) throws ResourceCollectionException {
+    private void handleCollectionResource(final String targetUri, final HttpServerRequest req, final int recursionLevel, final AtomicInteger subRequestCounter, final RecursiveHandlerFactory.RecursiveHandlerTypes recursionHandlerType, final DeltaHandler<ResourceNode> handler, final Buffer data, final String eTag, final SubRequestScheduler scheduler) throws ResourceCollectionException {
         CollectionResourceContainer collectionResourceContainer = ExpansionDeltaUtil.verifyCollectionResponse(targetUri, data, null);
         Logger log = RequestLoggerFactory.getLogger(ExpansionHandler.class, req);
         if (log.isTraceEnabled()) {
@@ -765,7 +857,7 @@ public class ExpansionHandler implements RuleChangesObserver {
                         boolean collection = isCollection(childResourceName);
 
                         final String collectionURI = ExpansionDeltaUtil.constructRequestUri(targetUri, req.params(), parameter_to_remove_after_initial_request, childResourceName, SlashHandling.END_WITHOUT_SLASH);
-                        makeResourceSubRequest((collection ? collectionURI : removeParameters(collectionURI)), req, recursionLevel - DECREMENT_BY_ONE, subRequestCounter, recursionHandlerType, parentHandler, collection);
+                        makeResourceSubRequest((collection ? collectionURI : removeParameters(collectionURI)), req, recursionLevel - DECREMENT_BY_ONE, subRequestCounter, recursionHandlerType, parentHandler, collection, scheduler);
                     }
                 }
             }
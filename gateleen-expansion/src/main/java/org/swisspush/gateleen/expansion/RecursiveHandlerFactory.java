@@ -28,7 +28,7 @@ public final class RecursiveHandlerFactory {
      * @author https://github.com/ljucam [Mario Ljuca]
      */
     public enum RecursiveHandlerTypes {
-        EXPANSION, ZIP, STORE
+        EXPANSION, EXPANSION_STREAM, ZIP, STORE
     }
 
     /**
@@ -51,6 +51,8 @@ public final class RecursiveHandlerFactory {
         switch (type) {
         case EXPANSION:
             return new RecursiveExpansionHandler(subResourceNames, collectionName, collectioneTag, parentHandler);
+        case EXPANSION_STREAM:
+            return new StreamingExpansionHandler(subResourceNames, collectionName, collectioneTag, parentHandler);
         case ZIP:
         case STORE:
             return new RecursiveZipHandler(subResourceNames, collectionName, parentHandler);
@@ -79,6 +81,8 @@ public final class RecursiveHandlerFactory {
         switch (type) {
         case EXPANSION:
             return new RecursiveExpansionRootHandler(request, data, finalOriginalParams);
+        case EXPANSION_STREAM:
+            return new StreamingExpansionRootHandler(request, data, finalOriginalParams);
         case ZIP:
         case STORE:
             return new RecursiveZipRootHandler(request, serverRoot, data, finalOriginalParams, type);
@@ -1,7 +1,6 @@
 package org.swisspush.gateleen.expansion;
 
 import org.swisspush.gateleen.core.util.ResourceCollectionException;
-import io.vertx.core.buffer.Buffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,6 +11,8 @@ import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A handler that allows to put all handeld Json Resources to a zip stream.
+ * The resources are passed to the {@link RecursiveZipRootHandler} as soon as they arrive, so they are not collected
+ * until the whole tree has been fetched.
  * 
  * @author https://github.com/ljucam [Mario Ljuca]
  */
@@ -27,6 +28,7 @@ public class RecursiveZipHandler implements DeltaHandler<ResourceNode> {
     private DeltaHandler<ResourceNode> parentHandler;
     private List<ResourceNode> nodes;
     private AtomicLong xDeltaResponseNumber;
+    private RecursiveZipRootHandler rootHandler;
 
     /**
      * Creates an new instance of the RecursiveZipHandler.
@@ -41,6 +43,11 @@ public class RecursiveZipHandler implements DeltaHandler<ResourceNode> {
         processCount = new AtomicInteger(subResourceNames.size());
         nodes = new ArrayList<>();
         xDeltaResponseNumber = new AtomicLong(0);
+        if (parentHandler instanceof RecursiveZipHandler) {
+            rootHandler = ((RecursiveZipHandler) parentHandler).rootHandler;
+        } else {
+            rootHandler = RecursiveZipRootHandler.of(parentHandler);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -78,15 +85,14 @@ public class RecursiveZipHandler implements DeltaHandler<ResourceNode> {
                         log.trace("adding resource '{}' to collection '{}'.", node.getNodeName(), collectionName);
                     }
 
-                    /*
-                     * In order to have the objects zipped,
-                     * we need a byte array. Because it's faster
-                     * to create the byte arrays asynchronously,
-                     * we do it in this handler and not in the
-                     * corresponding root handler.
-                     */
-                    node.setObject(((Buffer) node.getObject()).getBytes());
-                    nodes.add(node);
+                    if (rootHandler != null) {
+                        // zip the resource right away, unless the zip is going to fail anyway
+                        if (seriousError == null) {
+                            rootHandler.addEntry(node);
+                        }
+                    } else {
+                        nodes.add(node);
+                    }
                 }
             }
         }
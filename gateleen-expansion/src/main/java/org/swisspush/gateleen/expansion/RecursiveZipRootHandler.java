@@ -1,5 +1,6 @@
 package org.swisspush.gateleen.expansion;
 
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServerRequest;
 import org.swisspush.gateleen.core.util.ExpansionDeltaUtil;
@@ -7,19 +8,18 @@ import org.swisspush.gateleen.core.util.ResourceCollectionException;
 import org.swisspush.gateleen.core.util.ResponseStatusCodeLogUtil;
 import org.swisspush.gateleen.core.util.StatusCode;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 /**
  * Creates a root handler for the recursive ZIP GET.
+ * <p>
+ * The resources are zipped by a {@link StreamingZipWriter} as soon as they arrive and written to the chunked response
+ * right away. Since the response status is sent with the first entry, errors occurring afterwards reset the response.
+ * Delta requests are responded at the end, since the x-delta header is only known when all resources have arrived.
  * 
  * @author https://github.com/ljucam [Mario Ljuca]
  */
 public class RecursiveZipRootHandler extends RecursiveRootHandlerBase {
-    private static final int DATA_BLOCK_SIZE = 2048;
     private static final String CONTENT_TYPE_HEADER = "Content-type";
     private static final String CONTENT_TYPE_ZIP = "application/octet-stream";
 
@@ -28,7 +28,13 @@ public class RecursiveZipRootHandler extends RecursiveRootHandlerBase {
 
     private final Buffer data;
     private final Set<String> finalOriginalParams;
-    private final RecursiveHandlerFactory.RecursiveHandlerTypes zipType;
+    private final boolean delta;
+    private final StreamingZipWriter zipWriter;
+    private final Buffer deltaResponse = Buffer.buffer();
+
+    private boolean started;
+    private boolean written;
+    private boolean finished;
 
     /**
      * Creates an instance of the root handler for the
@@ -45,7 +51,59 @@ public class RecursiveZipRootHandler extends RecursiveRootHandlerBase {
         this.serverRoot = serverRoot;
         this.data = data;
         this.finalOriginalParams = finalOriginalParams;
-        this.zipType = zipType;
+        this.delta = finalOriginalParams.contains("delta");
+
+        if (log.isTraceEnabled() && zipType.equals(RecursiveHandlerFactory.RecursiveHandlerTypes.STORE)) {
+            log.trace("setting zip level to store");
+        }
+        this.zipWriter = new StreamingZipWriter(Vertx.currentContext(),
+                zipType.equals(RecursiveHandlerFactory.RecursiveHandlerTypes.STORE), this::writeZip,
+                () -> written && req.response().writeQueueFull());
+    }
+
+    /**
+     * Returns the zip root handler, when the given handler is one or is wrapping one.
+     *
+     * @param handler handler
+     * @return the zip root handler or <code>null</code>
+     */
+    static RecursiveZipRootHandler of(DeltaHandler<ResourceNode> handler) {
+        if (handler instanceof SubRequestScheduler.GuardedRootHandler) {
+            handler = ((SubRequestScheduler.GuardedRootHandler) handler).delegate();
+        }
+        return handler instanceof RecursiveZipRootHandler ? (RecursiveZipRootHandler) handler : null;
+    }
+
+    /**
+     * Stops the scheduler from starting further sub requests while the zip writer holds too many entries not yet
+     * written, so the resources of a large expansion are not fetched faster than they can be sent.
+     *
+     * @param scheduler the scheduler of the expansion
+     */
+    void throttle(SubRequestScheduler scheduler) {
+        scheduler.pauseWhile(zipWriter::writeQueueFull);
+        zipWriter.drainHandler(nothing -> scheduler.resume());
+    }
+
+    /**
+     * Zips the given resource right away.
+     *
+     * @param resourceNode a node holding the data of a resource
+     */
+    void addEntry(ResourceNode resourceNode) {
+        if (finished) {
+            return;
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Create zip for: {}", resourceNode.getNodeName());
+            log.trace("   >> {}", resourceNode.getPath());
+        }
+        try {
+            start();
+            zipWriter.addEntry(createNewZipEntryName(resourceNode.getPath()), (Buffer) resourceNode.getObject());
+        } catch (ResourceCollectionException exception) {
+            fail(exception);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -54,86 +112,91 @@ public class RecursiveZipRootHandler extends RecursiveRootHandlerBase {
         if (log.isTraceEnabled()) {
             log.trace("parent handler called");
         }
+        if (finished) {
+            return;
+        }
 
         try {
-            ExpansionDeltaUtil.verifyCollectionResponse(req, data, finalOriginalParams);
-
             // throw the given error (if any)
             checkIfError(node);
+            start();
 
-            /*
-             * Zip Streams are not thread safe.
-             * You can't access / write them asynchronously.
-             * For this reason you have to collect the needed
-             * data and put it together at the end.
-             */
-
-            // zip the collection
-            try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                    ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
-
-                // set level for store
-                if (zipType.equals(RecursiveHandlerFactory.RecursiveHandlerTypes.STORE)) {
-                    if (log.isTraceEnabled() ) {
-                        log.trace("setting zip level to store");
-                    }
+            // resources not zipped yet
+            for (ResourceNode resourceNode : (Iterable<ResourceNode>) node.getObject()) {
+                addEntry(resourceNode);
+            }
 
-                    zipOutputStream.setLevel(ZipOutputStream.STORED);
+            zipWriter.finish().onComplete(event -> {
+                if (finished) {
+                    return;
                 }
-
-                Iterable<ResourceNode> zipableNodes = (Iterable<ResourceNode>) node.getObject();
-
-                for (ResourceNode resourceNode : zipableNodes) {
-                    if (log.isTraceEnabled()) {
-                        log.trace("Create zip for: {}", resourceNode.getNodeName());
-                        log.trace("   >> {}", resourceNode.getPath());
+                finished = true;
+                if (event.failed()) {
+                    log.error("Error while writing zip: {}", event.cause().getMessage(), event.cause());
+                    if (written) {
+                        req.response().reset();
+                    } else {
+                        createErrorResponse(event.cause());
                     }
-
-                    zipEntry(zipOutputStream, resourceNode);
-                }
-
-                zipOutputStream.finish();
-
-                req.response().headers().set(CONTENT_TYPE_HEADER, CONTENT_TYPE_ZIP);
-
-                if (finalOriginalParams.contains("delta")) {
+                } else if (delta) {
                     req.response().headers().set("x-delta", "" + xDeltaResponseNumber);
+                    req.response().end(deltaResponse);
+                } else {
+                    req.response().end();
                 }
-
-                ResponseStatusCodeLogUtil.debug(req, StatusCode.OK, RecursiveExpansionRootHandler.class);
-                req.response().end(Buffer.buffer(outputStream.toByteArray()));
-            } catch (Exception e) {
-                log.error("Error while writing zip: {}", e.getMessage(), e);
+            });
+        } catch (ResourceCollectionException exception) {
+            fail(exception);
+        } catch (Exception e) {
+            log.error("Error while writing zip: {}", e.getMessage(), e);
+            finished = true;
+            zipWriter.abort();
+            if (written) {
+                req.response().reset();
+            } else {
                 createErrorResponse(e);
             }
-        } catch (ResourceCollectionException exception) {
-            handleResponseError(req, exception);
         }
     }
 
     /**
-     * Zips the given ResourceNode.
-     * 
-     * @param zipOutputStream zipOutputStream
-     * @param resourceNode resourceNode
+     * Verifies the collection and prepares the response with the first entry.
      */
-    private void zipEntry(ZipOutputStream zipOutputStream, ResourceNode resourceNode) {
-        try (ByteArrayInputStream inputStream = new ByteArrayInputStream((byte[]) resourceNode.getObject())) {
-
-            ZipEntry zipEntry = new ZipEntry(createNewZipEntryName(resourceNode.getPath()));
-            zipOutputStream.putNextEntry(zipEntry);
+    private void start() throws ResourceCollectionException {
+        if (started) {
+            return;
+        }
+        ExpansionDeltaUtil.verifyCollectionResponse(req, data, finalOriginalParams);
+        started = true;
 
-            byte[] b = new byte[DATA_BLOCK_SIZE];
-            int byteCount;
+        req.response().headers().set(CONTENT_TYPE_HEADER, CONTENT_TYPE_ZIP);
+        if (!delta) {
+            req.response().setChunked(true);
+            req.response().drainHandler(nothing -> zipWriter.resume());
+        }
+        ResponseStatusCodeLogUtil.debug(req, StatusCode.OK, RecursiveZipRootHandler.class);
+    }
 
-            while ((byteCount = inputStream.read(b, 0, DATA_BLOCK_SIZE)) != -1) {
-                zipOutputStream.write(b, 0, byteCount);
-            }
+    private void writeZip(Buffer zip) {
+        if (finished) {
+            return;
+        }
+        if (delta) {
+            deltaResponse.appendBuffer(zip);
+        } else {
+            written = true;
+            req.response().write(zip);
+        }
+    }
 
-            zipOutputStream.closeEntry();
-            inputStream.close();
-        } catch (Exception e) {
-            log.error("Error while writing zip entry '{}'.", resourceNode.getNodeName(), e);
+    private void fail(ResourceCollectionException exception) {
+        finished = true;
+        zipWriter.abort();
+        if (written) {
+            log.warn("Zip expansion failed after the response has been started, resetting the response: {}", exception.getMessage());
+            req.response().reset();
+        } else {
+            handleResponseError(req, exception);
         }
     }
 
@@ -142,7 +205,7 @@ public class RecursiveZipRootHandler extends RecursiveRootHandlerBase {
      * 
      * @param exception exception
      */
-    private void createErrorResponse(Exception exception) {
+    private void createErrorResponse(Throwable exception) {
         ResponseStatusCodeLogUtil.info(req, StatusCode.INTERNAL_SERVER_ERROR, RecursiveZipRootHandler.class);
         req.response().setStatusCode(StatusCode.INTERNAL_SERVER_ERROR.getStatusCode());
         req.response().setStatusMessage(StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage());
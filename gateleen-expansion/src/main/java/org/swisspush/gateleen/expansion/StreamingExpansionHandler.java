@@ -0,0 +1,175 @@
+package org.swisspush.gateleen.expansion;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.swisspush.gateleen.core.util.ResourceCollectionException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handles one collection of a streamed recursive get request.
+ * <p>
+ * The children are serialized as soon as they arrive and appended to the output in the order of the collection.
+ * The handler of the expanded collection passes each completed part of its output to the
+ * {@link StreamingExpansionRootHandler} right away. The handlers of the nested collections pass their output to
+ * their parent handler, when all of their children have arrived.
+ */
+public class StreamingExpansionHandler implements DeltaHandler<ResourceNode> {
+    private Logger log = LoggerFactory.getLogger(StreamingExpansionHandler.class);
+
+    private final String collectionName;
+    private final DeltaHandler<ResourceNode> parentHandler;
+    private final StreamingExpansionRootHandler rootHandler;
+    private final List<String> childNames;
+    private final Map<String, Integer> childIndexes;
+    private final ExpansionFragment[] completedChildren;
+    private final Map<String, ResourceCollectionException> resourceCollectionExceptionMap = new HashMap<>();
+    private final AtomicLong xDeltaResponseNumber = new AtomicLong(0);
+
+    private ExpansionFragment output;
+    private ResourceNode seriousError;
+    private int processCount;
+    private int nextChild;
+
+    /**
+     * Creates a new instance of the StreamingExpansionHandler.
+     *
+     * @param subResourceNames - a list with the child names, needed for preserving the order of the resources
+     * @param collectionName - the name of the collection
+     * @param collectioneTag - eTag of the request that lead to this collection
+     * @param parentHandler - the parent handler
+     */
+    public StreamingExpansionHandler(List<String> subResourceNames, String collectionName, String collectioneTag, DeltaHandler<ResourceNode> parentHandler) {
+        if (log.isTraceEnabled()) {
+            log.trace("StreamingExpansionHandler created for collection '{}' with a child count of {}.", collectionName, subResourceNames.size());
+        }
+
+        this.collectionName = collectionName;
+        this.parentHandler = parentHandler;
+        this.rootHandler = StreamingExpansionRootHandler.of(parentHandler);
+        this.processCount = subResourceNames.size();
+
+        childNames = new ArrayList<>(subResourceNames.size());
+        childIndexes = new HashMap<>(subResourceNames.size());
+        for (String resourceName : subResourceNames) {
+            String childName = resourceName.replace("/", "");
+            childIndexes.put(childName, childNames.size());
+            childNames.add(childName);
+        }
+        completedChildren = new ExpansionFragment[childNames.size()];
+
+        output = new ExpansionFragment();
+        output.getJson().appendString("{");
+        output.getETags().add(collectioneTag);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void handle(ResourceNode node) {
+        if (output == null) {
+            return;
+        }
+        processCount--;
+
+        if (node != null) {
+            Object object = node.getObject();
+
+            // pure data
+            if (object instanceof Buffer) {
+                try {
+                    object = new JsonObject(((Buffer) object).toString("UTF-8"));
+                } catch (Exception e) {
+                    log.error("Error in result of sub resource with path '{}' Message: {}", node.getPath(), e.getMessage());
+                    object = new ResourceCollectionException(e.getMessage());
+                }
+            }
+
+            if (object instanceof JsonObject || object instanceof JsonArray) {
+                Buffer json = object instanceof JsonObject ? ((JsonObject) object).toBuffer() : ((JsonArray) object).toBuffer();
+                complete(node.getNodeName(), new ExpansionFragment(json, Collections.singletonList(node.geteTag())));
+            } else if (object instanceof ExpansionFragment) {
+                complete(node.getNodeName(), (ExpansionFragment) object);
+            } else if (object instanceof ResourceCollectionException) {
+                // only the first serious error (eg. max. request limit exceeded) will be 'passed' down the handler
+                if (node.getNodeName().equals(ExpansionHandler.SERIOUS_EXCEPTION)) {
+                    if (seriousError == null) {
+                        seriousError = node;
+                    }
+                } else {
+                    resourceCollectionExceptionMap.put(node.getNodeName(), (ResourceCollectionException) object);
+                }
+            } else if (object instanceof Map<?, ?>) {
+                resourceCollectionExceptionMap.putAll((Map<String, ResourceCollectionException>) object);
+            } else {
+                if (log.isTraceEnabled()) {
+                    log.trace("No match found for handling node. This should not happen!");
+                }
+            }
+        }
+
+        if (processCount == 0) {
+            if (seriousError != null) {
+                parentHandler.handle(seriousError);
+            } else if (!resourceCollectionExceptionMap.isEmpty()) {
+                parentHandler.handle(new ResourceNode(collectionName, resourceCollectionExceptionMap));
+            } else {
+                output.getJson().appendString("}");
+                parentHandler.storeXDeltaResponseHeader("" + xDeltaResponseNumber.get());
+                parentHandler.handle(new ResourceNode(collectionName, output));
+            }
+            output = null;
+        }
+    }
+
+    /**
+     * Appends the completed child and all following already completed children to the output.
+     */
+    private void complete(String childName, ExpansionFragment child) {
+        Integer index = childIndexes.get(childName);
+        if (index == null || seriousError != null || !resourceCollectionExceptionMap.isEmpty()) {
+            return;
+        }
+        completedChildren[index] = child;
+
+        int firstChild = nextChild;
+        while (nextChild < completedChildren.length && completedChildren[nextChild] != null) {
+            ExpansionFragment next = completedChildren[nextChild];
+            completedChildren[nextChild] = null;
+            if (nextChild > 0) {
+                output.getJson().appendString(",");
+            }
+            output.getJson().appendString(Json.encode(childNames.get(nextChild))).appendString(":").appendBuffer(next.getJson());
+            output.getETags().addAll(next.getETags());
+            nextChild++;
+        }
+
+        // the expanded collection writes every completed part right away, except the last one closing the collection
+        if (rootHandler != null && nextChild > firstChild && nextChild < completedChildren.length) {
+            rootHandler.write(output);
+            output = new ExpansionFragment();
+        }
+    }
+
+    @Override
+    public void storeXDeltaResponseHeader(String xDeltaResponseNumber) {
+        if (xDeltaResponseNumber != null) {
+            try {
+                long tempxDeltaResponseNumber = Long.parseLong(xDeltaResponseNumber);
+                if (this.xDeltaResponseNumber.get() < tempxDeltaResponseNumber) {
+                    this.xDeltaResponseNumber.set(tempxDeltaResponseNumber);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Delta response value was not a number", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.swisspush.gateleen.expansion;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.swisspush.gateleen.core.util.ExpansionDeltaUtil;
+import org.swisspush.gateleen.core.util.ExpansionDeltaUtil.CollectionResourceContainer;
+import org.swisspush.gateleen.core.util.ResourceCollectionException;
+import org.swisspush.gateleen.core.util.ResponseStatusCodeLogUtil;
+import org.swisspush.gateleen.core.util.StatusCode;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Creates a root handler for the recursive HTTP GET writing the expanded resources as chunked response, as soon as
+ * they are available in the order of the collection.
+ * <p>
+ * Since the response status is sent with the first part of the expansion, errors occurring afterwards reset the
+ * response. The eTag of the expansion is hashed incrementally and sent as trailer.
+ */
+public class StreamingExpansionRootHandler extends RecursiveRootHandlerBase {
+    private static final String ETAG_HEADER = "Etag";
+
+    private final HttpServerRequest req;
+    private final Buffer data;
+    private final Set<String> finalOriginalParams;
+    private final Hasher eTagHasher = Hashing.sha256().newHasher();
+
+    private boolean eTagHashed;
+    private boolean started;
+    private boolean finished;
+
+    /**
+     * Creates an instance of the streaming root handler for the recursive HTTP GET.
+     *
+     * @param req req
+     * @param data data
+     * @param finalOriginalParams finalOriginalParams
+     */
+    public StreamingExpansionRootHandler(final HttpServerRequest req, Buffer data, Set<String> finalOriginalParams) {
+        this.req = req;
+        this.data = data;
+        this.finalOriginalParams = finalOriginalParams;
+    }
+
+    /**
+     * Returns the streaming root handler, when the given handler is one or is wrapping one.
+     *
+     * @param handler handler
+     * @return the streaming root handler or <code>null</code>
+     */
+    static StreamingExpansionRootHandler of(DeltaHandler<ResourceNode> handler) {
+        if (handler instanceof SubRequestScheduler.GuardedRootHandler) {
+            handler = ((SubRequestScheduler.GuardedRootHandler) handler).delegate();
+        }
+        return handler instanceof StreamingExpansionRootHandler ? (StreamingExpansionRootHandler) handler : null;
+    }
+
+    /**
+     * Writes a completed part of the expanded collection.
+     *
+     * @param fragment fragment
+     */
+    void write(ExpansionFragment fragment) {
+        if (finished) {
+            return;
+        }
+        try {
+            start();
+            writeFragment(fragment);
+        } catch (ResourceCollectionException exception) {
+            fail(exception);
+        }
+    }
+
+    @Override
+    public void handle(ResourceNode node) {
+        if (log.isTraceEnabled()) {
+            log.trace("streaming parent handler called > {}", (node != null ? node.getNodeName() : "not found"));
+        }
+        if (finished) {
+            return;
+        }
+
+        try {
+            // pure data
+            if (node.getObject() instanceof Buffer) {
+                try {
+                    node.setObject(new JsonObject(((Buffer) node.getObject()).toString("UTF-8")));
+                } catch (Exception e) {
+                    log.error("Error in result of sub resource '{}' Message: {}", node.getNodeName(), e.getMessage());
+                    node.setObject(new ResourceCollectionException(e.getMessage()));
+                }
+            }
+
+            checkIfError(node);
+            start();
+
+            if (node.getObject() instanceof ExpansionFragment) {
+                writeFragment((ExpansionFragment) node.getObject());
+            } else {
+                Buffer json = node.getObject() instanceof JsonObject ? ((JsonObject) node.getObject()).toBuffer()
+                        : ((JsonArray) node.getObject()).toBuffer();
+                writeFragment(new ExpansionFragment(json, node.geteTag() == null ? Collections.emptyList()
+                        : Collections.singletonList(node.geteTag())));
+            }
+
+            finished = true;
+            req.response().write("}");
+            if (eTagHashed) {
+                req.response().trailers().set(ETAG_HEADER, eTagHasher.hash().toString());
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("end streamed response");
+            }
+            req.response().end();
+        } catch (ResourceCollectionException exception) {
+            fail(exception);
+        } catch (Exception exception) {
+            fail(new ResourceCollectionException(exception.getMessage(), StatusCode.INTERNAL_SERVER_ERROR));
+        }
+    }
+
+    /**
+     * Sends the status and the name of the collection with the first part of the expansion.
+     */
+    private void start() throws ResourceCollectionException {
+        if (started) {
+            return;
+        }
+        CollectionResourceContainer collection = ExpansionDeltaUtil.verifyCollectionResponse(req, data, finalOriginalParams);
+        started = true;
+
+        ResponseStatusCodeLogUtil.debug(req, StatusCode.OK, StreamingExpansionRootHandler.class);
+        req.response().setChunked(true);
+        req.response().headers().set("Content-Type", "application/json");
+        req.response().headers().set("Trailer", ETAG_HEADER);
+        req.response().write("{" + Json.encode(collection.getCollectionName()) + ":");
+    }
+
+    private void writeFragment(ExpansionFragment fragment) {
+        for (String eTag : fragment.getETags()) {
+            eTagHasher.putString(String.valueOf(eTag), Charsets.UTF_8);
+            eTagHashed = true;
+        }
+        if (fragment.getJson().length() > 0) {
+            req.response().write(fragment.getJson());
+        }
+    }
+
+    private void fail(ResourceCollectionException exception) {
+        finished = true;
+        if (started) {
+            log.warn("Expansion failed after the response has been started, resetting the response: {}", exception.getMessage());
+            req.response().reset();
+        } else {
+            handleResponseError(req, exception);
+        }
+    }
+}
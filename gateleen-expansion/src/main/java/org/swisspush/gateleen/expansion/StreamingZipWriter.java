@@ -0,0 +1,215 @@
+package org.swisspush.gateleen.expansion;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.function.BooleanSupplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a zip archive entry by entry to an output. The entries are compressed one after the other on a worker
+ * thread and each compressed entry is passed to the output as soon as it is ready, so only the entries not yet
+ * written are held in memory.
+ * <p>
+ * While the output is full, no further entry is compressed until {@link #resume()} is called. The entries keep being
+ * added meanwhile, so the producer has to stop adding entries while {@link #writeQueueFull()} tells so and continue
+ * when the handler given with {@link #drainHandler(Handler)} is called.
+ * <p>
+ * All methods must be called on the given context.
+ */
+class StreamingZipWriter {
+    private static final Logger log = LoggerFactory.getLogger(StreamingZipWriter.class);
+    static final int MAX_PENDING_ENTRIES = 16;
+
+    private final Context context;
+    private final Handler<Buffer> output;
+    private final BooleanSupplier outputFull;
+    private final BufferOutputStream compressed = new BufferOutputStream();
+    private final ZipOutputStream zipOutputStream = new ZipOutputStream(compressed);
+    private final Deque<Entry> pendingEntries = new ArrayDeque<>();
+
+    private Handler<Void> drainHandler;
+    private Promise<Void> finished;
+    private boolean compressing;
+    private boolean aborted;
+
+    /**
+     * @param context    the context to compress on a worker of or <code>null</code> to compress right away
+     * @param store      <code>true</code> to store the entries without compression
+     * @param output     the output receiving the zip archive
+     * @param outputFull tells whether the output is full
+     */
+    StreamingZipWriter(Context context, boolean store, Handler<Buffer> output, BooleanSupplier outputFull) {
+        this.context = context;
+        this.output = output;
+        this.outputFull = outputFull;
+        if (store) {
+            zipOutputStream.setLevel(ZipOutputStream.STORED);
+        }
+    }
+
+    /**
+     * Adds an entry to the zip archive.
+     *
+     * @param name    the name of the entry
+     * @param content the content of the entry
+     */
+    void addEntry(String name, Buffer content) {
+        if (aborted || finished != null) {
+            return;
+        }
+        pendingEntries.add(new Entry(name, content));
+        writeNext();
+    }
+
+    /**
+     * Finishes the zip archive after the added entries.
+     *
+     * @return a future completed, when the whole zip archive has been passed to the output
+     */
+    Future<Void> finish() {
+        if (finished == null) {
+            finished = Promise.promise();
+            writeNext();
+        }
+        return finished.future();
+    }
+
+    /**
+     * @return <code>true</code> when {@link #MAX_PENDING_ENTRIES} or more entries are waiting to be written
+     */
+    boolean writeQueueFull() {
+        return pendingEntries.size() >= MAX_PENDING_ENTRIES;
+    }
+
+    /**
+     * @param drainHandler the handler called when the pending entries have dropped to half of
+     *                     {@link #MAX_PENDING_ENTRIES}
+     */
+    void drainHandler(Handler<Void> drainHandler) {
+        this.drainHandler = drainHandler;
+    }
+
+    /**
+     * Continues writing after the output was full.
+     */
+    void resume() {
+        writeNext();
+    }
+
+    /**
+     * Stops writing. The pending entries are dropped.
+     */
+    void abort() {
+        aborted = true;
+        pendingEntries.clear();
+    }
+
+    private void writeNext() {
+        if (compressing || aborted || outputFull.getAsBoolean()) {
+            return;
+        }
+        Entry entry = pendingEntries.poll();
+        if (entry == null && (finished == null || finished.future().isComplete())) {
+            return;
+        }
+        compressing = true;
+        if (entry != null && drainHandler != null && pendingEntries.size() == MAX_PENDING_ENTRIES / 2) {
+            drainHandler.handle(null);
+        }
+        Callable<Buffer> task = entry != null ? () -> compress(entry) : this::compressEnd;
+        Future<Buffer> result;
+        if (context != null) {
+            result = context.executeBlocking(task, false);
+        } else {
+            try {
+                result = Future.succeededFuture(task.call());
+            } catch (Exception e) {
+                result = Future.failedFuture(e);
+            }
+        }
+        result.onComplete(event -> {
+            compressing = false;
+            if (aborted) {
+                return;
+            }
+            if (event.failed()) {
+                aborted = true;
+                if (finished == null) {
+                    finished = Promise.promise();
+                }
+                finished.tryFail(event.cause());
+                return;
+            }
+            if (event.result().length() > 0) {
+                output.handle(event.result());
+            }
+            if (entry == null) {
+                finished.tryComplete();
+            } else {
+                writeNext();
+            }
+        });
+    }
+
+    private Buffer compress(Entry entry) throws IOException {
+        try {
+            zipOutputStream.putNextEntry(new ZipEntry(entry.name));
+            zipOutputStream.write(entry.content.getBytes());
+            zipOutputStream.closeEntry();
+        } catch (ZipException e) {
+            log.error("Error while writing zip entry '{}'.", entry.name, e);
+        }
+        return compressed.drain();
+    }
+
+    private Buffer compressEnd() throws IOException {
+        zipOutputStream.finish();
+        return compressed.drain();
+    }
+
+    private static class Entry {
+        private final String name;
+        private final Buffer content;
+
+        Entry(String name, Buffer content) {
+            this.name = name;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Collects the compressed bytes until they are drained.
+     */
+    private static class BufferOutputStream extends OutputStream {
+        private Buffer buffer = Buffer.buffer();
+
+        @Override
+        public void write(int b) {
+            buffer.appendByte((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.appendBytes(b, off, len);
+        }
+
+        Buffer drain() {
+            Buffer drained = buffer;
+            buffer = Buffer.buffer();
+            return drained;
+        }
+    }
+}
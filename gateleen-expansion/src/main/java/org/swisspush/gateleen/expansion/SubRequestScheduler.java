@@ -0,0 +1,209 @@
+package org.swisspush.gateleen.expansion;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpClientRequest;
+import org.swisspush.gateleen.core.util.ResourceCollectionException;
+import org.swisspush.gateleen.core.util.StatusCode;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Schedules the sub requests of a single expansion. At most <code>maxConcurrentSubRequests</code> sub requests of the
+ * expansion and at most the sub requests allowed by the shared {@link ExpansionBudget} of all expansions are running at
+ * the same time. The other sub requests are queued and started as soon as a running sub request has received its
+ * response.
+ * <p>
+ * When the expansion is not completed within its timeout, the queued sub requests are dropped, the running sub
+ * requests are reset and the expansion is answered with {@link StatusCode#TIMEOUT}.
+ * <p>
+ * While the write queue given with {@link #pauseWhile(BooleanSupplier)} is full, no queued sub request is started
+ * until {@link #resume()} is called.
+ * <p>
+ * All methods except {@link #wakeUp()} must be called on the context of the expansion.
+ */
+class SubRequestScheduler {
+
+    private final Context context;
+    private final int maxConcurrentSubRequests;
+    private final ExpansionBudget budget;
+    private final DeltaHandler<ResourceNode> rootHandler;
+
+    private final Deque<Handler<Slot>> pendingSubRequests = new ArrayDeque<>();
+    private final Set<Slot> runningSlots = new HashSet<>();
+    private BooleanSupplier writeQueueFull = () -> false;
+    private boolean completed;
+    private boolean aborted;
+    private long timerId = -1;
+
+    /**
+     * @param context                  the context of the expansion or <code>null</code> when not running on a context
+     * @param maxConcurrentSubRequests the maximum number of concurrent sub requests of the expansion
+     * @param budget                   the budget shared by all expansions
+     * @param timeoutMs                the time (in milliseconds) the expansion has to complete
+     * @param rootHandler              the root handler of the expansion
+     */
+    SubRequestScheduler(Context context, int maxConcurrentSubRequests, ExpansionBudget budget, long timeoutMs,
+                        DeltaHandler<ResourceNode> rootHandler) {
+        this.context = context;
+        this.maxConcurrentSubRequests = maxConcurrentSubRequests;
+        this.budget = budget;
+        this.rootHandler = rootHandler;
+        if (context != null) {
+            timerId = context.owner().setTimer(timeoutMs, id -> abort());
+        }
+    }
+
+    /**
+     * @return the root handler of the expansion, which is called only once, either with the result of the expansion
+     * or with the timeout
+     */
+    DeltaHandler<ResourceNode> rootHandler() {
+        return new GuardedRootHandler();
+    }
+
+    /**
+     * Schedules a sub request. The sub request gets a {@link Slot}, which has to be released as soon as the response
+     * of the sub request has been received.
+     *
+     * @param subRequest the sub request to run
+     */
+    void schedule(Handler<Slot> subRequest) {
+        if (aborted) {
+            return;
+        }
+        pendingSubRequests.add(subRequest);
+        drain();
+    }
+
+    /**
+     * Pauses starting sub requests while the given write queue is full.
+     *
+     * @param writeQueueFull tells whether the write queue receiving the results of the sub requests is full
+     */
+    void pauseWhile(BooleanSupplier writeQueueFull) {
+        this.writeQueueFull = writeQueueFull;
+    }
+
+    /**
+     * Starts the queued sub requests again after the write queue has been drained.
+     */
+    void resume() {
+        drain();
+    }
+
+    /**
+     * Called by the {@link ExpansionBudget} when a permit has been released.
+     */
+    void wakeUp() {
+        if (context != null) {
+            context.runOnContext(nothing -> drainOrPassOn());
+        } else {
+            drainOrPassOn();
+        }
+    }
+
+    int runningSubRequests() {
+        return runningSlots.size();
+    }
+
+    int pendingSubRequests() {
+        return pendingSubRequests.size();
+    }
+
+    private void drainOrPassOn() {
+        if (aborted || pendingSubRequests.isEmpty() || writeQueueFull.getAsBoolean()) {
+            budget.wakeUpNext();
+        } else {
+            drain();
+        }
+    }
+
+    private void drain() {
+        while (!aborted && !pendingSubRequests.isEmpty() && runningSlots.size() < maxConcurrentSubRequests
+                && !writeQueueFull.getAsBoolean() && budget.tryAcquire(this)) {
+            Slot slot = new Slot();
+            runningSlots.add(slot);
+            pendingSubRequests.poll().handle(slot);
+        }
+    }
+
+    private void abort() {
+        if (completed) {
+            return;
+        }
+        aborted = true;
+        pendingSubRequests.clear();
+        budget.removeWaiting(this);
+        for (Slot slot : runningSlots) {
+            budget.release();
+            if (slot.request != null) {
+                slot.request.reset();
+            }
+        }
+        runningSlots.clear();
+        rootHandler().handle(new ResourceNode(ExpansionHandler.SERIOUS_EXCEPTION,
+                new ResourceCollectionException("Expansion did not complete in time", StatusCode.TIMEOUT)));
+    }
+
+    /**
+     * Root handler forwarding only the first result to the root handler of the expansion.
+     */
+    class GuardedRootHandler implements DeltaHandler<ResourceNode> {
+
+        /**
+         * @return the root handler of the expansion
+         */
+        DeltaHandler<ResourceNode> delegate() {
+            return rootHandler;
+        }
+
+        @Override
+        public void storeXDeltaResponseHeader(String xDeltaResponseNumber) {
+            rootHandler.storeXDeltaResponseHeader(xDeltaResponseNumber);
+        }
+
+        @Override
+        public void handle(ResourceNode node) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            if (timerId != -1) {
+                context.owner().cancelTimer(timerId);
+            }
+            rootHandler.handle(node);
+        }
+    }
+
+    /**
+     * A running sub request.
+     */
+    class Slot {
+        private HttpClientRequest request;
+
+        /**
+         * @param request the request of the sub request, which is reset when the expansion times out
+         */
+        void track(HttpClientRequest request) {
+            this.request = request;
+            if (aborted) {
+                request.reset();
+            }
+        }
+
+        /**
+         * Releases the slot to let the next queued sub request run. Releasing a slot more than once has no effect.
+         */
+        void release() {
+            if (runningSlots.remove(this)) {
+                budget.release();
+                drain();
+            }
+        }
+    }
+}
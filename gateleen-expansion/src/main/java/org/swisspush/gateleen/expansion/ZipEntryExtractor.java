@@ -0,0 +1,259 @@
+package org.swisspush.gateleen.expansion;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Extracts a single entry from a zip stream, while the chunks of the zip stream arrive.
+ * <p>
+ * The local file headers are parsed as they arrive. The data of other entries is skipped, deflated entries of
+ * unknown size are inflated into a discarded window to find their end. The data of the requested entry is returned
+ * from {@link #feed(Buffer)} as soon as it has been inflated, so only the unparsed rest of a chunk and the inflate
+ * window are held in memory.
+ * <p>
+ * Not thread safe, the chunks have to be fed one after the other.
+ */
+class ZipEntryExtractor {
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int LOCAL_FILE_HEADER_LENGTH = 30;
+    private static final int ZIP64_EXTRA_FIELD = 0x0001;
+    private static final long ZIP64_SIZE = 0xFFFFFFFFL;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int INFLATE_WINDOW_SIZE = 8192;
+
+    private enum State {
+        HEADER, DATA, DATA_DESCRIPTOR, DONE
+    }
+
+    private final String entryName;
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] inflateWindow = new byte[INFLATE_WINDOW_SIZE];
+
+    private Buffer unparsed = Buffer.buffer();
+    private State state = State.HEADER;
+    private boolean entryFound;
+    private boolean requestedEntry;
+    private boolean deflated;
+    private boolean dataDescriptor;
+    private boolean zip64DataDescriptor;
+    private long remainingData;
+
+    /**
+     * @param entryName the name of the entry to extract (case insensitive)
+     */
+    ZipEntryExtractor(String entryName) {
+        this.entryName = entryName;
+    }
+
+    /**
+     * @return <code>true</code> when the local header of the requested entry has been found
+     */
+    boolean isEntryFound() {
+        return entryFound;
+    }
+
+    /**
+     * @return <code>true</code> when the requested entry has been extracted completely or the zip stream has no
+     * further entries. The rest of the zip stream is not needed anymore.
+     */
+    boolean isDone() {
+        return state == State.DONE;
+    }
+
+    /**
+     * Parses the next chunk of the zip stream.
+     *
+     * @param chunk the next chunk of the zip stream
+     * @return the data of the requested entry contained in the chunk, may be empty
+     * @throws ZipException when the zip stream is not valid
+     */
+    Buffer feed(Buffer chunk) throws ZipException {
+        Buffer input = unparsed.length() > 0 ? unparsed.appendBuffer(chunk) : chunk;
+        Buffer content = Buffer.buffer();
+        int position = 0;
+        boolean needsInput = false;
+
+        while (!needsInput && state != State.DONE && position < input.length()) {
+            switch (state) {
+                case HEADER:
+                    int headerLength = readLocalFileHeader(input, position);
+                    if (headerLength < 0) {
+                        needsInput = true;
+                    } else {
+                        position += headerLength;
+                    }
+                    break;
+                case DATA:
+                    position = readData(input, position, content);
+                    needsInput = state == State.DATA;
+                    break;
+                case DATA_DESCRIPTOR:
+                    int descriptorLength = readDataDescriptor(input, position);
+                    if (descriptorLength < 0) {
+                        needsInput = true;
+                    } else {
+                        position += descriptorLength;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        unparsed = state == State.DONE || position >= input.length() ? Buffer.buffer() : input.getBuffer(position, input.length());
+        if (state == State.DONE) {
+            inflater.end();
+        }
+        return content;
+    }
+
+    /**
+     * @return the length of the header or -1 when the header is not complete yet
+     */
+    private int readLocalFileHeader(Buffer input, int position) throws ZipException {
+        if (input.length() - position < 4) {
+            return -1;
+        }
+        if (input.getIntLE(position) != LOCAL_FILE_HEADER_SIGNATURE) {
+            // central directory, there are no further entries
+            state = State.DONE;
+            return 0;
+        }
+        if (input.length() - position < LOCAL_FILE_HEADER_LENGTH) {
+            return -1;
+        }
+        int flags = input.getUnsignedShortLE(position + 6);
+        int method = input.getUnsignedShortLE(position + 8);
+        long compressedSize = input.getUnsignedIntLE(position + 18);
+        int nameLength = input.getUnsignedShortLE(position + 26);
+        int extraLength = input.getUnsignedShortLE(position + 28);
+        int headerLength = LOCAL_FILE_HEADER_LENGTH + nameLength + extraLength;
+        if (input.length() - position < headerLength) {
+            return -1;
+        }
+
+        String name = input.getString(position + LOCAL_FILE_HEADER_LENGTH,
+                position + LOCAL_FILE_HEADER_LENGTH + nameLength, StandardCharsets.UTF_8.name());
+        if (compressedSize == ZIP64_SIZE) {
+            compressedSize = readZip64CompressedSize(input, position + LOCAL_FILE_HEADER_LENGTH + nameLength, extraLength);
+        }
+
+        if (method != METHOD_STORED && method != METHOD_DEFLATED) {
+            throw new ZipException("unsupported compression method " + method + " of entry " + name);
+        }
+        dataDescriptor = (flags & FLAG_DATA_DESCRIPTOR) != 0;
+        deflated = method == METHOD_DEFLATED;
+        if (dataDescriptor && !deflated) {
+            throw new ZipException("only deflated entries can have a data descriptor, entry " + name);
+        }
+        requestedEntry = name.equalsIgnoreCase(entryName);
+        entryFound = entryFound || requestedEntry;
+        remainingData = compressedSize;
+        inflater.reset();
+        state = State.DATA;
+        if (!deflated && remainingData == 0) {
+            endOfData();
+        }
+        return headerLength;
+    }
+
+    private long readZip64CompressedSize(Buffer input, int position, int extraLength) throws ZipException {
+        int end = position + extraLength;
+        while (position + 4 <= end) {
+            int id = input.getUnsignedShortLE(position);
+            int size = input.getUnsignedShortLE(position + 2);
+            if (id == ZIP64_EXTRA_FIELD && size >= 16) {
+                return input.getLongLE(position + 4 + 8);
+            }
+            position += 4 + size;
+        }
+        throw new ZipException("zip64 extra field missing");
+    }
+
+    /**
+     * @return the position after the consumed data
+     */
+    private int readData(Buffer input, int position, Buffer content) throws ZipException {
+        if (!deflated) {
+            int length = (int) Math.min(remainingData, input.length() - position);
+            if (requestedEntry) {
+                content.appendBuffer(input, position, length);
+            }
+            remainingData -= length;
+            if (remainingData == 0) {
+                endOfData();
+            }
+            return position + length;
+        }
+
+        if (!dataDescriptor && !requestedEntry) {
+            // size is known, no need to inflate
+            int length = (int) Math.min(remainingData, input.length() - position);
+            remainingData -= length;
+            if (remainingData == 0) {
+                endOfData();
+            }
+            return position + length;
+        }
+
+        int length = input.length() - position;
+        inflater.setInput(input.getBytes(position, input.length()));
+        try {
+            while (!inflater.finished() && !inflater.needsInput()) {
+                int inflated = inflater.inflate(inflateWindow);
+                if (requestedEntry && inflated > 0) {
+                    content.appendBytes(inflateWindow, 0, inflated);
+                }
+                if (inflated == 0 && inflater.needsDictionary()) {
+                    throw new ZipException("invalid deflate stream");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+        if (inflater.finished()) {
+            int consumed = length - inflater.getRemaining();
+            endOfData();
+            return position + consumed;
+        }
+        return input.length();
+    }
+
+    private void endOfData() {
+        // same as ZipInputStream, the sizes in the data descriptor are 8 bytes long, when they do not fit into 4 bytes
+        zip64DataDescriptor = inflater.getBytesRead() > ZIP64_SIZE || inflater.getBytesWritten() > ZIP64_SIZE;
+        if (requestedEntry) {
+            state = State.DONE;
+        } else if (dataDescriptor) {
+            state = State.DATA_DESCRIPTOR;
+        } else {
+            state = State.HEADER;
+        }
+    }
+
+    /**
+     * @return the length of the data descriptor or -1 when the data descriptor is not complete yet
+     */
+    private int readDataDescriptor(Buffer input, int position) {
+        int sizesLength = zip64DataDescriptor ? 16 : 8;
+        if (input.length() - position < 4) {
+            return -1;
+        }
+        int length = 4 + sizesLength;
+        if (input.getIntLE(position) == DATA_DESCRIPTOR_SIGNATURE) {
+            length += 4;
+        }
+        if (input.length() - position < length) {
+            return -1;
+        }
+        state = State.HEADER;
+        return length;
+    }
+}
@@ -1,5 +1,8 @@
 package org.swisspush.gateleen.expansion;
 
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.*;
 import org.slf4j.Logger;
@@ -8,22 +11,21 @@ import org.swisspush.gateleen.core.util.ResponseStatusCodeLogUtil;
 import org.swisspush.gateleen.core.util.StatusCode;
 import org.swisspush.reststorage.MimeTypeResolver;
 
-import java.io.ByteArrayInputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-
 /**
  * Enables you to directly browse into a zip file and get the underlying resource. <br>
  * <code>
  * GET /gateleen/zips/111111.zip/this/is/my/resource
  * </code>
+ * <p>
+ * The zip is parsed on a worker thread while it is downloaded. The resource is streamed to the client as soon as it
+ * is found and the download of the zip is cancelled, when the resource is complete.
  *
  * @author https://github.com/ljucam [Mario Ljuca]
  */
 public class ZipExtractHandler {
     private static final String ZIP_RESOURCE_FLAG = ".zip/";
     private static final int DEFAULT_TIMEOUT = 120000;
-    private static final byte[] ZIP_BUFFER_SIZE = new byte[2048];
+    private static final int MAX_PENDING_CHUNKS = 4;
     private static final String DEFAULT_MIME_TYPE = "application/json";
 
     private final HttpClient selfClient;
@@ -89,9 +91,14 @@ public class ZipExtractHandler {
 
             // fire
             selfRequest.send(event -> {
+                if (event.failed()) {
+                    log.warn("GET of zip resource {} failed: {}", zipUrl, event.cause().getMessage());
+                    createResponse(req, StatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage(), null, null);
+                    return;
+                }
                 HttpClientResponse response = event.result();
                 if (response.statusCode() == StatusCode.OK.getStatusCode()) {
-                    extractResourceFromZip(req, zipUrl, insidePath, response);
+                    new Extraction(req, zipUrl, insidePath, selfRequest, response).start();
                 } else {
                     log.debug("GET of zip resource {} failed.", zipUrl);
                     createResponse(req, response.statusCode(), response.statusMessage(), null, null);
@@ -126,56 +133,136 @@ public class ZipExtractHandler {
     }
 
     /**
-     * Extract the wished resource from the zip file.
-     *
-     * @param req
-     * @param zipUrl
-     * @param insidePath
-     * @param response
+     * Extracts the wished resource from the zip file, while the zip file is downloaded.
      */
-    private void extractResourceFromZip(final HttpServerRequest req, final String zipUrl, final String insidePath, final HttpClientResponse response) {
-        Logger log = RequestLoggerFactory.getLogger(ZipExtractHandler.class, req);
-
-        response.bodyHandler(buffer -> {
-            // read the zip from the buffer
-
-            try (ByteArrayInputStream bInputStream = new ByteArrayInputStream(buffer.getBytes());
-                 ZipInputStream inputStream = new ZipInputStream(bInputStream)) {
+    private class Extraction {
+        private final HttpServerRequest req;
+        private final String zipUrl;
+        private final String insidePath;
+        private final HttpClientRequest selfRequest;
+        private final HttpClientResponse response;
+        private final Context context = Vertx.currentContext();
+        private final ZipEntryExtractor extractor;
+        private final Logger log;
 
-                ZipEntry entry;
-                Buffer contentBuffer = Buffer.buffer();
-                boolean foundEntry = false;
+        private Future<Void> processing = Future.succeededFuture();
+        private int pendingChunks;
+        private boolean paused;
+        private boolean started;
+        private boolean finished;
 
-                while ((entry = inputStream.getNextEntry()) != null) {
-                    // if name does not match, go on ...
-                    if (!entry.getName().equalsIgnoreCase(insidePath)) {
-                        continue;
-                    }
-
-                    // extract the specific resource
-                    int len = 0;
-                    while ((len = inputStream.read(ZIP_BUFFER_SIZE)) > 0) {
-                        contentBuffer.appendBytes(ZIP_BUFFER_SIZE, 0, len);
-                    }
+        Extraction(HttpServerRequest req, String zipUrl, String insidePath, HttpClientRequest selfRequest, HttpClientResponse response) {
+            this.req = req;
+            this.zipUrl = zipUrl;
+            this.insidePath = insidePath;
+            this.selfRequest = selfRequest;
+            this.response = response;
+            this.extractor = new ZipEntryExtractor(insidePath);
+            this.log = RequestLoggerFactory.getLogger(ZipExtractHandler.class, req);
+        }
 
-                    foundEntry = true;
+        void start() {
+            req.response().drainHandler(nothing -> updateFlow());
+            response.exceptionHandler(exception -> fail(exception.getMessage()));
+            response.handler(chunk -> {
+                if (finished) {
+                    return;
+                }
+                pendingChunks++;
+                updateFlow();
+                processing = processing
+                        .compose(nothing -> finished ? Future.succeededFuture(Buffer.buffer()) : extract(chunk))
+                        .map(content -> {
+                            pendingChunks--;
+                            handleContent(content);
+                            updateFlow();
+                            return null;
+                        });
+                processing.onFailure(exception -> fail(exception.getMessage()));
+            });
+            response.endHandler(nothing -> processing.onSuccess(v -> {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                if (started) {
+                    // the zip ended within the resource
+                    log.error("zip {} ended before {} was complete", zipUrl, insidePath);
+                    req.response().reset();
+                } else {
+                    log.error("could not extract {} from {}", insidePath, zipUrl);
+                    createResponse(req, StatusCode.NOT_FOUND.getStatusCode(), StatusCode.NOT_FOUND.getStatusMessage(), null, null);
+                }
+            }));
+        }
 
-                    // only one resource my be extracted this way
-                    break;
+        /**
+         * Parses the chunk on a worker thread. The chunks are parsed one after the other.
+         */
+        private Future<Buffer> extract(Buffer chunk) {
+            if (context == null) {
+                try {
+                    return Future.succeededFuture(extractor.feed(chunk));
+                } catch (Exception e) {
+                    return Future.failedFuture(e);
                 }
+            }
+            return context.executeBlocking(() -> extractor.feed(chunk), false);
+        }
 
-                if (foundEntry) {
-                    // append content to response
-                    createResponse(req, StatusCode.OK.getStatusCode(), StatusCode.OK.getStatusMessage(), contentBuffer, mimeTypeResolver.resolveMimeType(insidePath));
+        private void handleContent(Buffer content) {
+            if (finished) {
+                return;
+            }
+            if (extractor.isEntryFound() && !started) {
+                started = true;
+                ResponseStatusCodeLogUtil.info(req, StatusCode.OK, ZipExtractHandler.class);
+                req.response().setStatusCode(StatusCode.OK.getStatusCode());
+                req.response().setStatusMessage(StatusCode.OK.getStatusMessage());
+                req.response().headers().add("Content-Type", mimeTypeResolver.resolveMimeType(insidePath));
+                req.response().setChunked(true);
+            }
+            if (content.length() > 0) {
+                req.response().write(content);
+            }
+            if (extractor.isDone()) {
+                finished = true;
+                // the rest of the zip is not needed
+                selfRequest.reset();
+                if (started) {
+                    req.response().end();
                 } else {
-                    // return 404 - not found
                     log.error("could not extract {} from {}", insidePath, zipUrl);
                     createResponse(req, StatusCode.NOT_FOUND.getStatusCode(), StatusCode.NOT_FOUND.getStatusMessage(), null, null);
                 }
-            } catch (Exception e) {
-                log.error("could not extract {} from {}: {}", insidePath, zipUrl, e.getMessage());
+            }
+        }
+
+        /**
+         * Pauses the download, while too many chunks wait to be parsed or the client does not read fast enough.
+         */
+        private void updateFlow() {
+            boolean pause = !finished && (pendingChunks >= MAX_PENDING_CHUNKS || (started && req.response().writeQueueFull()));
+            if (pause && !paused) {
+                response.pause();
+            } else if (!pause && paused) {
+                response.resume();
+            }
+            paused = pause;
+        }
+
+        private void fail(String message) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            log.error("could not extract {} from {}: {}", insidePath, zipUrl, message);
+            selfRequest.reset();
+            if (started) {
+                req.response().reset();
+            } else {
                 createResponse(req, StatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage(), null, null);
             }
-        });
+        }
     }
 }
@@ -24,6 +24,7 @@ import java.util.Map;
 
 import static org.mockito.Mockito.*;
 import static org.swisspush.gateleen.expansion.ExpansionHandler.EXPAND_PARAM;
+import static org.swisspush.gateleen.expansion.ExpansionHandler.STREAM_PARAM;
 import static org.swisspush.gateleen.expansion.ExpansionHandler.ZIP_PARAM;
 
 /**
@@ -58,6 +59,9 @@ public class ExpansionHandlerTest {
         context.assertEquals(Integer.MAX_VALUE, expansionHandler.getMaxExpansionLevelSoft(), "max.expansion.level.soft should have the default value");
         context.assertEquals(Integer.MAX_VALUE, expansionHandler.getMaxExpansionLevelHard(), "max.expansion.level.soft should have the default value");
         context.assertEquals(20000, expansionHandler.getMaxSubRequestCount(), "max.expansion.subrequests should have the default value");
+        context.assertEquals(100, expansionHandler.getMaxConcurrency(), "max.expansion.concurrency should have the default value");
+        context.assertEquals(1000, expansionHandler.getMaxConcurrencyGlobal(), "max.expansion.concurrency.global should have the default value");
+        context.assertEquals(120000L, expansionHandler.getExpansionTimeoutMs(), "max.expansion.timeout.ms should have the default value");
     }
 
     @Test
@@ -67,12 +71,18 @@ public class ExpansionHandlerTest {
         properties.put("max.expansion.subrequests", "500");
         properties.put("max.expansion.level.soft", "1000");
         properties.put("max.expansion.level.hard", "1500");
+        properties.put("max.expansion.concurrency", "20");
+        properties.put("max.expansion.concurrency.global", "200");
+        properties.put("max.expansion.timeout.ms", "30000");
 
         expansionHandler = new ExpansionHandler(vertx, storage, httpClient, properties, ROOT, RULES_ROOT);
 
         context.assertEquals(1000, expansionHandler.getMaxExpansionLevelSoft(), "max.expansion.level.soft should have the default value");
         context.assertEquals(1500, expansionHandler.getMaxExpansionLevelHard(), "max.expansion.level.soft should have the default value");
         context.assertEquals(500, expansionHandler.getMaxSubRequestCount(), "max.expansion.subrequests should have the default value");
+        context.assertEquals(20, expansionHandler.getMaxConcurrency(), "max.expansion.concurrency should have the custom value");
+        context.assertEquals(200, expansionHandler.getMaxConcurrencyGlobal(), "max.expansion.concurrency.global should have the custom value");
+        context.assertEquals(30000L, expansionHandler.getExpansionTimeoutMs(), "max.expansion.timeout.ms should have the custom value");
     }
 
     @Test
@@ -82,12 +92,18 @@ public class ExpansionHandlerTest {
         properties.put("max.expansion.subrequests", "abc");
         properties.put("max.expansion.level.soft", "xyz");
         properties.put("max.expansion.level.hard", "123x");
+        properties.put("max.expansion.concurrency", "0");
+        properties.put("max.expansion.concurrency.global", "-5");
+        properties.put("max.expansion.timeout.ms", "soon");
 
         expansionHandler = new ExpansionHandler(vertx, storage, httpClient, properties, ROOT, RULES_ROOT);
 
         context.assertEquals(Integer.MAX_VALUE, expansionHandler.getMaxExpansionLevelSoft(), "max.expansion.level.soft should have the default value");
         context.assertEquals(Integer.MAX_VALUE, expansionHandler.getMaxExpansionLevelHard(), "max.expansion.level.soft should have the default value");
         context.assertEquals(20000, expansionHandler.getMaxSubRequestCount(), "max.expansion.subrequests should have the default value");
+        context.assertEquals(100, expansionHandler.getMaxConcurrency(), "max.expansion.concurrency should have the default value");
+        context.assertEquals(1000, expansionHandler.getMaxConcurrencyGlobal(), "max.expansion.concurrency.global should have the default value");
+        context.assertEquals(120000L, expansionHandler.getExpansionTimeoutMs(), "max.expansion.timeout.ms should have the default value");
     }
 
     @Test
@@ -150,6 +166,29 @@ public class ExpansionHandlerTest {
                 "GET request with correct params and configured as expandOnBackend should not be zip requests");
     }
 
+    @Test
+    public void testIsStreamingRequest(TestContext context) {
+        expansionHandler = new ExpansionHandler(vertx, storage, httpClient, new HashMap<>(), ROOT, RULES_ROOT);
+
+        MultiMap params = MultiMap.caseInsensitiveMultiMap();
+        params.set(EXPAND_PARAM, "2");
+        context.assertFalse(expansionHandler.isStreamingRequest(new Request(HttpMethod.GET, "/some/uri", params)),
+                "requests without stream param should not be streamed");
+
+        params.set(STREAM_PARAM, "true");
+        context.assertTrue(expansionHandler.isStreamingRequest(new Request(HttpMethod.GET, "/some/uri", params)),
+                "requests with stream param should be streamed");
+
+        Request conditionalRequest = new Request(HttpMethod.GET, "/some/uri", params);
+        conditionalRequest.headers().set("if-none-match", "some-etag");
+        context.assertFalse(expansionHandler.isStreamingRequest(conditionalRequest),
+                "conditional requests should not be streamed");
+
+        params.set("delta", "0");
+        context.assertFalse(expansionHandler.isStreamingRequest(new Request(HttpMethod.GET, "/some/uri", params)),
+                "delta requests should not be streamed");
+    }
+
     @Test
     public void testIsBackendExpand(TestContext context) {
         expansionHandler = new ExpansionHandler(vertx, storage, httpClient, new HashMap<>(), ROOT, RULES_ROOT);
@@ -279,6 +318,7 @@ public class ExpansionHandlerTest {
         private HttpMethod httpMethod;
         private String uri;
         private HttpServerResponse response;
+        private MultiMap headers = MultiMap.caseInsensitiveMultiMap();
 
         public Request(HttpMethod httpMethod, String uri, MultiMap params) {
             this(httpMethod, uri, params, null);
@@ -302,7 +342,7 @@ public class ExpansionHandlerTest {
         @Override public HttpServerResponse response() {return response; }
 
         @Override
-        public MultiMap headers() { return MultiMap.caseInsensitiveMultiMap(); }
+        public MultiMap headers() { return headers; }
 
         @Override
         public HttpServerRequest pause() { return this; }
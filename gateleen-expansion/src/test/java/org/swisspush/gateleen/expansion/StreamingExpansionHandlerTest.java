@@ -0,0 +1,143 @@
+package org.swisspush.gateleen.expansion;
+
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.impl.headers.HeadersMultiMap;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.gateleen.core.http.DummyHttpServerRequest;
+import org.swisspush.gateleen.core.http.DummyHttpServerResponse;
+import org.swisspush.gateleen.core.util.HashCodeGenerator;
+import org.swisspush.gateleen.core.util.ResourceCollectionException;
+import org.swisspush.gateleen.core.util.StatusCode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the {@link StreamingExpansionHandler} and {@link StreamingExpansionRootHandler} classes
+ */
+@RunWith(VertxUnitRunner.class)
+public class StreamingExpansionHandlerTest {
+
+    private static final Buffer COLLECTION = Buffer.buffer(new JsonObject().put("coll", Arrays.asList("a", "b", "c/")).encode());
+
+    private Response response;
+    private StreamingExpansionRootHandler rootHandler;
+
+    @Before
+    public void setUp() {
+        response = new Response();
+        rootHandler = new StreamingExpansionRootHandler(new Request(response), COLLECTION, Collections.emptySet());
+    }
+
+    @Test
+    public void testCompletedChildrenAreWrittenInOrder(TestContext context) {
+        StreamingExpansionHandler collectionHandler = new StreamingExpansionHandler(List.of("a", "b", "c/"), "coll",
+                "etag-coll", rootHandler);
+
+        collectionHandler.handle(new ResourceNode("b", json("v", 2), "etag-b"));
+        context.assertEquals("", response.written.toString(), "b must wait for a");
+
+        collectionHandler.handle(new ResourceNode("a", json("v", 1), "etag-a"));
+        context.assertEquals("{\"coll\":{\"a\":{\"v\":1},\"b\":{\"v\":2}", response.written.toString());
+        context.assertFalse(response.ended);
+
+        StreamingExpansionHandler nestedHandler = new StreamingExpansionHandler(List.of("x"), "c", "etag-c",
+                collectionHandler);
+        nestedHandler.handle(new ResourceNode("x", json("v", 3), "etag-x"));
+
+        context.assertTrue(response.ended);
+        context.assertEquals(new JsonObject("{\"coll\":{\"a\":{\"v\":1},\"b\":{\"v\":2},\"c\":{\"x\":{\"v\":3}}}}"),
+                new JsonObject(response.written));
+        context.assertEquals(HashCodeGenerator.createSHA256HashCode("etag-colletag-aetag-betag-cetag-x"),
+                response.trailers().get("Etag"), "eTag must equal the eTag of the non streamed expansion");
+    }
+
+    @Test
+    public void testErrorBeforeFirstWriteIsResponded(TestContext context) {
+        StreamingExpansionHandler collectionHandler = new StreamingExpansionHandler(List.of("a"), "coll",
+                "etag-coll", rootHandler);
+
+        collectionHandler.handle(new ResourceNode(ExpansionHandler.SERIOUS_EXCEPTION,
+                new ResourceCollectionException("boom", StatusCode.TIMEOUT)));
+
+        context.assertEquals(StatusCode.TIMEOUT.getStatusCode(), response.getStatusCode());
+        context.assertEquals("boom", response.getResultBuffer());
+        context.assertFalse(response.reset);
+    }
+
+    @Test
+    public void testErrorAfterFirstWriteResetsResponse(TestContext context) {
+        StreamingExpansionHandler collectionHandler = new StreamingExpansionHandler(List.of("a", "b"), "coll",
+                "etag-coll", rootHandler);
+
+        collectionHandler.handle(new ResourceNode("a", json("v", 1), "etag-a"));
+        context.assertTrue(response.written.length() > 0);
+
+        collectionHandler.handle(new ResourceNode("b", new ResourceCollectionException("not found", StatusCode.NOT_FOUND)));
+
+        context.assertTrue(response.reset);
+        context.assertFalse(response.ended);
+    }
+
+    private static Buffer json(String key, int value) {
+        return Buffer.buffer(new JsonObject().put(key, value).encode());
+    }
+
+    private static class Request extends DummyHttpServerRequest {
+        private final HttpServerResponse response;
+
+        Request(HttpServerResponse response) {
+            this.response = response;
+        }
+
+        @Override public String path() { return "/server/tests/coll/"; }
+
+        @Override public MultiMap headers() { return MultiMap.caseInsensitiveMultiMap(); }
+
+        @Override public HttpServerResponse response() { return response; }
+    }
+
+    private static class Response extends DummyHttpServerResponse {
+        private final Buffer written = Buffer.buffer();
+        private final MultiMap trailers = new HeadersMultiMap();
+        private boolean ended;
+        private boolean reset;
+
+        @Override public HttpServerResponse setChunked(boolean chunked) { return this; }
+
+        @Override public MultiMap trailers() { return trailers; }
+
+        @Override
+        public Future<Void> write(String chunk) {
+            written.appendString(chunk);
+            return Future.succeededFuture();
+        }
+
+        @Override
+        public Future<Void> write(Buffer chunk) {
+            written.appendBuffer(chunk);
+            return Future.succeededFuture();
+        }
+
+        @Override
+        public Future<Void> end() {
+            ended = true;
+            return Future.succeededFuture();
+        }
+
+        @Override
+        public boolean reset(long code) {
+            reset = true;
+            return true;
+        }
+    }
+}
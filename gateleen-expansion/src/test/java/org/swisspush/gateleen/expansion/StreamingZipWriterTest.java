@@ -0,0 +1,140 @@
+package org.swisspush.gateleen.expansion;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.Timeout;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Tests for the {@link StreamingZipWriter} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class StreamingZipWriterTest {
+
+    private Vertx vertx;
+    private Context vertxContext;
+
+    @org.junit.Rule
+    public Timeout rule = Timeout.seconds(5);
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        vertxContext = vertx.getOrCreateContext();
+    }
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void testEntriesAreWrittenAsTheyArrive(TestContext context) {
+        Async async = context.async();
+        Buffer zip = Buffer.buffer();
+        AtomicInteger chunks = new AtomicInteger();
+        vertxContext.runOnContext(v -> {
+            StreamingZipWriter writer = new StreamingZipWriter(vertxContext, false, chunk -> {
+                chunks.incrementAndGet();
+                zip.appendBuffer(chunk);
+            }, () -> false);
+            writer.addEntry("tests/a", Buffer.buffer("{\"v\":1}"));
+            writer.addEntry("tests/b", Buffer.buffer("{\"v\":2}"));
+            writer.finish().onComplete(event -> {
+                context.assertTrue(event.succeeded());
+                context.assertEquals(3, chunks.get(), "one chunk per entry and one for the central directory");
+
+                Map<String, String> entries = unzip(zip);
+                context.assertEquals(2, entries.size());
+                context.assertEquals("{\"v\":1}", entries.get("tests/a"));
+                context.assertEquals("{\"v\":2}", entries.get("tests/b"));
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testNoEntryIsWrittenWhileOutputIsFull(TestContext context) {
+        Async async = context.async();
+        Buffer zip = Buffer.buffer();
+        AtomicBoolean outputFull = new AtomicBoolean(true);
+        vertxContext.runOnContext(v -> {
+            StreamingZipWriter writer = new StreamingZipWriter(vertxContext, true, zip::appendBuffer, outputFull::get);
+            writer.addEntry("tests/a", Buffer.buffer("{\"v\":1}"));
+            writer.finish().onComplete(event -> {
+                context.assertTrue(event.succeeded());
+                context.assertEquals("{\"v\":1}", unzip(zip).get("tests/a"));
+                async.complete();
+            });
+
+            vertx.setTimer(100, id -> {
+                context.assertEquals(0, zip.length());
+                outputFull.set(false);
+                writer.resume();
+            });
+        });
+    }
+
+    @Test
+    public void testWriteQueueFullUntilEntriesAreWritten(TestContext context) {
+        Buffer zip = Buffer.buffer();
+        AtomicBoolean outputFull = new AtomicBoolean(true);
+        AtomicInteger drained = new AtomicInteger();
+        StreamingZipWriter writer = new StreamingZipWriter(null, true, zip::appendBuffer, outputFull::get);
+        writer.drainHandler(nothing -> drained.incrementAndGet());
+        for (int i = 0; i < StreamingZipWriter.MAX_PENDING_ENTRIES; i++) {
+            context.assertFalse(writer.writeQueueFull());
+            writer.addEntry("tests/" + i, Buffer.buffer("{\"v\":" + i + "}"));
+        }
+        context.assertTrue(writer.writeQueueFull());
+        context.assertEquals(0, drained.get());
+
+        outputFull.set(false);
+        writer.resume();
+        context.assertFalse(writer.writeQueueFull());
+        context.assertEquals(1, drained.get(), "drain handler should be called once the queue is half empty");
+        context.assertTrue(writer.finish().succeeded());
+        context.assertEquals(StreamingZipWriter.MAX_PENDING_ENTRIES, unzip(zip).size());
+    }
+
+    @Test
+    public void testAbortedWriterDropsEntries(TestContext context) {
+        Buffer zip = Buffer.buffer();
+        StreamingZipWriter writer = new StreamingZipWriter(null, false, zip::appendBuffer, () -> true);
+        writer.addEntry("tests/a", Buffer.buffer("{\"v\":1}"));
+        writer.abort();
+        writer.resume();
+
+        context.assertEquals(0, zip.length());
+    }
+
+    private static Map<String, String> unzip(Buffer zip) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(zip.getBytes()))) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,184 @@
+package org.swisspush.gateleen.expansion;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.Timeout;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.swisspush.gateleen.core.util.ResourceCollectionException;
+import org.swisspush.gateleen.core.util.StatusCode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the {@link SubRequestScheduler} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class SubRequestSchedulerTest {
+
+    private Vertx vertx;
+    private Context vertxContext;
+
+    @org.junit.Rule
+    public Timeout rule = Timeout.seconds(5);
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        vertxContext = vertx.getOrCreateContext();
+    }
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void testConcurrentSubRequestsAreLimitedPerExpansion(TestContext context) {
+        Async async = context.async();
+        vertxContext.runOnContext(v -> {
+            ExpansionBudget budget = new ExpansionBudget(100);
+            SubRequestScheduler scheduler = new SubRequestScheduler(vertxContext, 3, budget, 10000, new RecordingHandler());
+            List<SubRequestScheduler.Slot> slots = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                scheduler.schedule(slots::add);
+            }
+            context.assertEquals(3, slots.size());
+            context.assertEquals(3, scheduler.runningSubRequests());
+            context.assertEquals(7, scheduler.pendingSubRequests());
+
+            slots.get(0).release();
+            slots.get(0).release();
+            context.assertEquals(4, slots.size());
+            context.assertEquals(3, scheduler.runningSubRequests());
+            context.assertEquals(6, scheduler.pendingSubRequests());
+            context.assertEquals(3, budget.inFlight());
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testConcurrentSubRequestsAreLimitedForAllExpansions(TestContext context) {
+        Async async = context.async();
+        vertxContext.runOnContext(v -> {
+            ExpansionBudget budget = new ExpansionBudget(4);
+            SubRequestScheduler first = new SubRequestScheduler(vertxContext, 5, budget, 10000, new RecordingHandler());
+            SubRequestScheduler second = new SubRequestScheduler(vertxContext, 5, budget, 10000, new RecordingHandler());
+            List<SubRequestScheduler.Slot> firstSlots = new ArrayList<>();
+            List<SubRequestScheduler.Slot> secondSlots = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                first.schedule(firstSlots::add);
+                second.schedule(secondSlots::add);
+            }
+            context.assertEquals(3, firstSlots.size());
+            context.assertEquals(1, secondSlots.size());
+            context.assertEquals(4, budget.inFlight());
+
+            firstSlots.get(0).release();
+            vertx.setTimer(50, id -> {
+                context.assertEquals(2, secondSlots.size(), "waiting expansion should get the released permit");
+                context.assertEquals(4, budget.inFlight());
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testSubRequestsArePausedWhileWriteQueueIsFull(TestContext context) {
+        Async async = context.async();
+        vertxContext.runOnContext(v -> {
+            ExpansionBudget budget = new ExpansionBudget(100);
+            SubRequestScheduler scheduler = new SubRequestScheduler(vertxContext, 3, budget, 10000, new RecordingHandler());
+            AtomicBoolean writeQueueFull = new AtomicBoolean(true);
+            scheduler.pauseWhile(writeQueueFull::get);
+            List<SubRequestScheduler.Slot> slots = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                scheduler.schedule(slots::add);
+            }
+            context.assertEquals(0, slots.size(), "no sub request should start while the write queue is full");
+            context.assertEquals(5, scheduler.pendingSubRequests());
+            context.assertEquals(0, budget.inFlight());
+
+            writeQueueFull.set(false);
+            scheduler.resume();
+            context.assertEquals(3, slots.size());
+            context.assertEquals(2, scheduler.pendingSubRequests());
+
+            writeQueueFull.set(true);
+            slots.get(0).release();
+            context.assertEquals(3, slots.size(), "released slot should not start a sub request while the write queue is full");
+            context.assertEquals(2, budget.inFlight());
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testExpansionIsAbortedWhenDeadlineExceeded(TestContext context) {
+        Async async = context.async();
+        RecordingHandler rootHandler = new RecordingHandler();
+        ExpansionBudget budget = new ExpansionBudget(100);
+        HttpClientRequest request = Mockito.mock(HttpClientRequest.class);
+        vertxContext.runOnContext(v -> {
+            SubRequestScheduler scheduler = new SubRequestScheduler(vertxContext, 1, budget, 100, rootHandler);
+            scheduler.schedule(slot -> slot.track(request));
+            scheduler.schedule(slot -> context.fail("queued sub request should not run after the deadline"));
+
+            vertx.setTimer(300, id -> {
+                context.assertEquals(1, rootHandler.nodes.size());
+                ResourceNode node = rootHandler.nodes.get(0);
+                context.assertEquals(ExpansionHandler.SERIOUS_EXCEPTION, node.getNodeName());
+                context.assertEquals(StatusCode.TIMEOUT, ((ResourceCollectionException) node.getObject()).getStatusCode());
+                verify(request, times(1)).reset();
+                context.assertEquals(0, scheduler.runningSubRequests());
+                context.assertEquals(0, scheduler.pendingSubRequests());
+                context.assertEquals(0, budget.inFlight());
+
+                // late responses of aborted sub requests are dropped
+                scheduler.rootHandler().handle(new ResourceNode("late", "data"));
+                context.assertEquals(1, rootHandler.nodes.size());
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testRootHandlerIsCalledOnlyOnce(TestContext context) {
+        Async async = context.async();
+        RecordingHandler rootHandler = new RecordingHandler();
+        vertxContext.runOnContext(v -> {
+            SubRequestScheduler scheduler = new SubRequestScheduler(vertxContext, 1, new ExpansionBudget(1), 100, rootHandler);
+            scheduler.rootHandler().handle(new ResourceNode("first", "data"));
+            scheduler.rootHandler().handle(new ResourceNode("second", "data"));
+
+            vertx.setTimer(300, id -> {
+                context.assertEquals(1, rootHandler.nodes.size(), "deadline should be cancelled by the result");
+                context.assertEquals("first", rootHandler.nodes.get(0).getNodeName());
+                async.complete();
+            });
+        });
+    }
+
+    private static class RecordingHandler implements DeltaHandler<ResourceNode> {
+        private final List<ResourceNode> nodes = new ArrayList<>();
+
+        @Override
+        public void storeXDeltaResponseHeader(String xdeltaResponseNumber) {
+        }
+
+        @Override
+        public void handle(ResourceNode node) {
+            nodes.add(node);
+        }
+    }
+}
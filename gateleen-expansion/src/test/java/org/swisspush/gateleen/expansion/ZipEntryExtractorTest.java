@@ -0,0 +1,107 @@
+package org.swisspush.gateleen.expansion;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests for the {@link ZipEntryExtractor} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class ZipEntryExtractorTest {
+
+    private static final String LARGE_CONTENT = "{\"content\":\"" + "0123456789".repeat(5000) + "\"}";
+
+    @Test
+    public void testExtractDeflatedEntryInSmallChunks(TestContext context) throws Exception {
+        Buffer zip = zip(false);
+        ZipEntryExtractor extractor = new ZipEntryExtractor("tests/b");
+
+        Buffer content = Buffer.buffer();
+        int position = 0;
+        while (!extractor.isDone() && position < zip.length()) {
+            int end = Math.min(position + 7, zip.length());
+            content.appendBuffer(extractor.feed(zip.getBuffer(position, end)));
+            position = end;
+        }
+
+        context.assertTrue(extractor.isEntryFound());
+        context.assertTrue(extractor.isDone());
+        context.assertEquals(LARGE_CONTENT, content.toString());
+        context.assertTrue(position < zip.length(), "the rest of the zip should not be needed");
+    }
+
+    @Test
+    public void testExtractStoredEntry(TestContext context) throws Exception {
+        ZipEntryExtractor extractor = new ZipEntryExtractor("TESTS/C");
+
+        Buffer content = extractor.feed(zip(true));
+
+        context.assertTrue(extractor.isEntryFound());
+        context.assertTrue(extractor.isDone());
+        context.assertEquals("{\"v\":3}", content.toString());
+    }
+
+    @Test
+    public void testEntryNotFound(TestContext context) throws Exception {
+        ZipEntryExtractor extractor = new ZipEntryExtractor("tests/unknown");
+
+        Buffer content = extractor.feed(zip(false));
+
+        context.assertFalse(extractor.isEntryFound());
+        context.assertTrue(extractor.isDone(), "central directory should end the extraction");
+        context.assertEquals(0, content.length());
+    }
+
+    @Test
+    public void testInvalidZip(TestContext context) {
+        ZipEntryExtractor extractor = new ZipEntryExtractor("tests/a");
+        Buffer invalid = Buffer.buffer().appendIntLE(0x04034b50).appendShortLE((short) 20).appendShortLE((short) 0)
+                .appendShortLE((short) 12).appendBytes(new byte[20]);
+
+        try {
+            extractor.feed(invalid);
+            context.fail("unsupported compression method should fail");
+        } catch (ZipException e) {
+            context.assertTrue(e.getMessage().contains("unsupported compression method"));
+        }
+    }
+
+    private static Buffer zip(boolean storeLastEntry) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+            zipOutputStream.putNextEntry(new ZipEntry("tests/a"));
+            zipOutputStream.write("{\"v\":1}".getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+
+            zipOutputStream.putNextEntry(new ZipEntry("tests/b"));
+            zipOutputStream.write(LARGE_CONTENT.getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+
+            byte[] last = "{\"v\":3}".getBytes(StandardCharsets.UTF_8);
+            ZipEntry lastEntry = new ZipEntry("tests/c");
+            if (storeLastEntry) {
+                CRC32 crc = new CRC32();
+                crc.update(last);
+                lastEntry.setMethod(ZipEntry.STORED);
+                lastEntry.setSize(last.length);
+                lastEntry.setCompressedSize(last.length);
+                lastEntry.setCrc(crc.getValue());
+            }
+            zipOutputStream.putNextEntry(lastEntry);
+            zipOutputStream.write(last);
+            zipOutputStream.closeEntry();
+        }
+        return Buffer.buffer(outputStream.toByteArray());
+    }
+}
@@ -0,0 +1,102 @@
+package org.swisspush.gateleen.hook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps track of the expiration times of hooks, ordered by expiry epoch millis in a min-heap.
+ * <p>
+ * Checking for expired hooks only looks at the head of the heap, so the costs are proportional to the number of
+ * expired hooks instead of the number of registered hooks. Rescheduled or cancelled keys leave their old heap entry
+ * behind, such stale entries are skipped when they reach the head and are dropped when they outnumber the live ones.
+ * <p>
+ * HINT: This class is not thread safe, like the repositories of the {@link HookHandler}.
+ *
+ * @param <K> type of the keys (listener ids, route url patterns)
+ */
+class ExpiryIndex<K> {
+
+    private static final int MIN_COMPACTION_SIZE = 64;
+
+    private final PriorityQueue<Entry<K>> queue = new PriorityQueue<>();
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+
+    private static final class Entry<K> implements Comparable<Entry<K>> {
+        private final K key;
+        private final long expiresAt;
+
+        private Entry(K key, long expiresAt) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+
+        @Override
+        public int compareTo(Entry<K> other) {
+            return Long.compare(expiresAt, other.expiresAt);
+        }
+    }
+
+    /**
+     * Schedules the expiration of the given key. A former expiration of the same key is replaced.
+     *
+     * @param key       the key
+     * @param expiresAt the expiration time in epoch millis
+     */
+    void schedule(K key, long expiresAt) {
+        Entry<K> entry = new Entry<>(key, expiresAt);
+        entries.put(key, entry);
+        queue.add(entry);
+        compactIfNeeded();
+    }
+
+    /**
+     * Cancels the expiration of the given key, e.g. because it was unregistered or will never expire.
+     *
+     * @param key the key
+     */
+    void cancel(K key) {
+        if (entries.remove(key) != null) {
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Removes and returns all keys which expired at the given time.
+     *
+     * @param now the current time in epoch millis
+     * @return the expired keys, ordered by expiration time. An immutable empty list when nothing expired.
+     */
+    List<K> pollExpired(long now) {
+        List<K> expired = null;
+        Entry<K> head;
+        while ((head = queue.peek()) != null && head.expiresAt <= now) {
+            queue.poll();
+            if (entries.get(head.key) == head) {
+                entries.remove(head.key);
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+                expired.add(head.key);
+            }
+        }
+        return expired == null ? Collections.emptyList() : expired;
+    }
+
+    /**
+     * @return the number of scheduled keys
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private void compactIfNeeded() {
+        if (queue.size() > MIN_COMPACTION_SIZE && queue.size() > 2 * entries.size()) {
+            queue.clear();
+            queue.addAll(entries.values());
+        }
+    }
+}
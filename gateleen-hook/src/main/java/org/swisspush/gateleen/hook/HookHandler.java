@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import org.swisspush.gateleen.core.http.HeaderFunction;
 import org.swisspush.gateleen.core.http.HeaderFunctions;
 import org.swisspush.gateleen.core.http.HttpRequest;
+import org.swisspush.gateleen.core.http.SharedPayload;
 import org.swisspush.gateleen.core.logging.LoggableResource;
 import org.swisspush.gateleen.core.logging.RequestLogger;
 import org.swisspush.gateleen.core.storage.ResourceStorage;
@@ -47,6 +48,7 @@ import org.swisspush.gateleen.logging.LogAppenderRepository;
 import org.swisspush.gateleen.logging.LoggingResourceManager;
 import org.swisspush.gateleen.monitoring.MonitoringHandler;
 import org.swisspush.gateleen.queue.expiry.ExpiryCheckHandler;
+import org.swisspush.gateleen.queue.queuing.EnqueueBatchEntry;
 import org.swisspush.gateleen.queue.queuing.QueueClient;
 import org.swisspush.gateleen.queue.queuing.QueueProcessor;
 import org.swisspush.gateleen.queue.queuing.RequestQueue;
@@ -64,7 +66,6 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -153,6 +154,10 @@ public class HookHandler implements LoggableResource {
 
     private final QueueSplitter queueSplitter;
 
+    private final ExpiryIndex<String> listenerExpiries = new ExpiryIndex<>();
+    private final ExpiryIndex<String> routeExpiries = new ExpiryIndex<>();
+    private long cleanupInterval = DEFAULT_CLEANUP_TIME;
+
 
     /**
      * Creates a new HookHandler.
@@ -321,52 +326,84 @@ public class HookHandler implements LoggableResource {
         this.logHookConfigurationResourceChanges = resourceLoggingEnabled;
     }
 
+    /**
+     * Sets the interval in which expired listeners and routes are removed. This is the resolution of the
+     * hook expiration, defaults to 15 seconds. As a check only looks at the next expiring hooks, much
+     * shorter intervals are cheap as well. Must be called before {@link #init()}.
+     *
+     * @param cleanupInterval the interval in milliseconds
+     */
+    public void setCleanupInterval(long cleanupInterval) {
+        if (cleanupInterval <= 0) {
+            throw new IllegalArgumentException("cleanupInterval must be greater than 0 but was " + cleanupInterval);
+        }
+        this.cleanupInterval = cleanupInterval;
+    }
+
     /**
      * Registers a cleanup timer
      *
      * @param readyHandler - the ready handler
      */
     private void registerCleanupHandler(Handler<Void> readyHandler) {
-        vertx.setPeriodic(DEFAULT_CLEANUP_TIME, timerID -> {
-            log.trace("Running hook cleanup ...");
+        vertx.setPeriodic(cleanupInterval, timerID -> removeExpiredHooks(System.currentTimeMillis()));
 
-            DateTime now = DateTime.now();
+        // method done / no async processing pending
+        readyHandler.handle(null);
+    }
 
-            // Loop through listeners first
-            for (Listener listener : listenerRepository.getListeners()) {
+    /**
+     * Removes the listeners and routes which expired at the given time. Only the expired entries of the
+     * expiry indexes are visited, hooks without expiration are never looked at.
+     *
+     * @param now the current time in epoch millis
+     */
+    private void removeExpiredHooks(long now) {
+        List<String> expiredListeners = listenerExpiries.pollExpired(now);
+        for (String listenerId : expiredListeners) {
+            log.debug("Listener {} expired, current time is {}", listenerId, now);
+            listenerRepository.removeListener(listenerId);
+            String listenerRoute = hookRootUri + LISTENER_HOOK_TARGET_PATH + listenerId;
+            routeRepository.removeRoute(listenerRoute);
+            routeExpiries.cancel(listenerRoute);
+        }
 
-                final Optional<DateTime> expirationTime = listener.getHook().getExpirationTime();
-                if (expirationTime.isEmpty()) {
-                    if (log.isTraceEnabled()) {
-                        log.trace("Listener {} will never expire.", listener.getListenerId());
-                    }
-                } else if (expirationTime.get().isBefore(now)) {
-                    log.debug("Listener {} expired at {} and current time is {}", listener.getListenerId(), expirationTime.get(), now);
-                    listenerRepository.removeListener(listener.getListenerId());
-                    routeRepository.removeRoute(hookRootUri + LISTENER_HOOK_TARGET_PATH + listener.getListenerId());
-                }
+        List<String> expiredRoutes = routeExpiries.pollExpired(now);
+        for (String urlPattern : expiredRoutes) {
+            /*
+             * The route may have been removed in the meantime. Then a parent route is found,
+             * which is only removed when it expired as well.
+             */
+            Route route = routeRepository.getRoute(urlPattern);
+            if (route != null && isExpired(route.getHook(), now)) {
+                log.debug("Route {} expired, current time is {}", urlPattern, now);
+                routeRepository.removeRoute(urlPattern);
             }
+        }
 
-            // Loop through routes
-            Map<String, Route> routes = routeRepository.getRoutes();
-            for (String key : routes.keySet()) {
-                Route route = routes.get(key);
-                final Optional<DateTime> expirationTime = route.getHook().getExpirationTime();
-                if (expirationTime.isEmpty()) {
-                    if (log.isTraceEnabled()) {
-                        log.trace("Route {} will never expire.", key);
-                    }
-                } else if (expirationTime.get().isBefore(now)) {
-                    routeRepository.removeRoute(key);
-                }
-            }
+        if (!expiredListeners.isEmpty()) {
             monitoringHandler.updateListenerCount(listenerRepository.size());
+        }
+        if (!expiredListeners.isEmpty() || !expiredRoutes.isEmpty()) {
             monitoringHandler.updateRoutesCount(routeRepository.getRoutes().size());
-            log.trace("done");
-        });
+        }
+    }
 
-        // method done / no async processing pending
-        readyHandler.handle(null);
+    private static boolean isExpired(HttpHook hook, long now) {
+        Optional<DateTime> expirationTime = hook.getExpirationTime();
+        return expirationTime.isPresent() && expirationTime.get().getMillis() <= now;
+    }
+
+    /**
+     * Schedules the removal of the given listener or route at the expiration time of its hook.
+     */
+    private static void scheduleExpiry(ExpiryIndex<String> expiries, String key, HttpHook hook) {
+        Optional<DateTime> expirationTime = hook.getExpirationTime();
+        if (expirationTime.isPresent()) {
+            expiries.schedule(key, expirationTime.get().getMillis());
+        } else {
+            expiries.cancel(key);
+        }
     }
 
     /**
@@ -757,12 +794,15 @@ public class HookHandler implements LoggableResource {
             List<Listener> beforeListener = getFilteredListeners(listeners, HookTriggerType.BEFORE);
             List<Listener> afterListener = getFilteredListeners(listeners, HookTriggerType.AFTER);
 
+            // Copy the payload only once, it is shared by the requests enqueued for all listeners
+            SharedPayload payload = SharedPayload.of(buffer);
+
             // Create handlers for before/after - cases
-            Handler<Void> afterHandler = installAfterHandler(ctx, buffer, afterListener);
+            Handler<Void> afterHandler = installAfterHandler(ctx, buffer, payload, afterListener);
             Handler<Void> beforeHandler = installBeforeHandler(ctx, buffer, beforeListener, afterHandler);
 
             // call the listeners (before)
-            callListener(ctx, buffer, beforeListener, beforeHandler);
+            callListener(ctx, buffer, payload, beforeListener, beforeHandler);
         });
     }
 
@@ -771,11 +811,13 @@ public class HookHandler implements LoggableResource {
      *
      * @param ctx               original request context
      * @param buffer            buffer
+     * @param payload           the payload of the buffer, shared by all enqueued requests
      * @param filteredListeners all listeners which should be called
      * @param handler           the handler, which should handle the requests
      */
-    private void callListener(RoutingContext ctx, final Buffer buffer, final List<Listener> filteredListeners, final Handler<Void> handler) {
+    private void callListener(RoutingContext ctx, final Buffer buffer, final SharedPayload payload, final List<Listener> filteredListeners, final Handler<Void> handler) {
         HttpServerRequest request = ctx.request();
+        List<EnqueueBatchEntry> enqueueBatch = new ArrayList<>(filteredListeners.size());
         for (Listener listener : filteredListeners) {
             log.debug("Enqueue request matching {} {} with listener {}", request.method(), listener.getMonitoredUrl(), listener.getListener());
 
@@ -832,12 +874,12 @@ public class HookHandler implements LoggableResource {
             QueueingStrategy queueingStrategy = listener.getHook().getQueueingStrategy();
 
             if (queueingStrategy instanceof DefaultQueueingStrategy) {
-                requestQueue.enqueue(new HttpRequest(request.method(), targetUri, queueHeaders, buffer.getBytes()), queue, handler);
+                enqueueBatch.add(EnqueueBatchEntry.of(HttpRequest.withSharedPayload(request.method(), targetUri, queueHeaders, payload), queue));
             } else if (queueingStrategy instanceof DiscardPayloadQueueingStrategy) {
                 if (HttpRequestHeader.containsHeader(queueHeaders, CONTENT_LENGTH)) {
                     queueHeaders.set(CONTENT_LENGTH.getName(), "0");
                 }
-                requestQueue.enqueue(new HttpRequest(request.method(), targetUri, queueHeaders, null), queue, handler);
+                enqueueBatch.add(EnqueueBatchEntry.of(new HttpRequest(request.method(), targetUri, queueHeaders, null), queue));
             } else if (queueingStrategy instanceof ReducedPropagationQueueingStrategy) {
                 if (reducedPropagationManager != null) {
                     reducedPropagationManager.processIncomingRequest(request.method(), targetUri, queueHeaders, buffer,
@@ -852,6 +894,19 @@ public class HookHandler implements LoggableResource {
             }
         }
 
+        // enqueue the requests of all listeners at once, the handler is called once per request like for single enqueues
+        if (!enqueueBatch.isEmpty()) {
+            requestQueue.enqueueBatch(enqueueBatch).onComplete(event -> {
+                if (event.failed()) {
+                    log.warn("Failed to enqueue some of the {} requests for {} {}: {}", enqueueBatch.size(),
+                            request.method(), request.uri(), event.cause().getMessage());
+                }
+                if (handler != null) {
+                    enqueueBatch.forEach(entry -> handler.handle(null));
+                }
+            });
+        }
+
         // if for e.g. the beforListeners are empty,
         // we have to ensure, that the original request
         // is executed. This way the after handler will
@@ -869,11 +924,12 @@ public class HookHandler implements LoggableResource {
      *
      * @param ctx           original request context
      * @param buffer        buffer
+     * @param payload       the payload of the buffer, shared by all enqueued requests
      * @param afterListener list of listeners which should be called after the original request
      * @return the after handler
      */
-    private Handler<Void> installAfterHandler(final RoutingContext ctx, final Buffer buffer, final List<Listener> afterListener) {
-        return event -> callListener(ctx, buffer, afterListener, null);
+    private Handler<Void> installAfterHandler(final RoutingContext ctx, final Buffer buffer, final SharedPayload payload, final List<Listener> afterListener) {
+        return event -> callListener(ctx, buffer, payload, afterListener, null);
     }
 
     /**
@@ -1294,6 +1350,7 @@ public class HookHandler implements LoggableResource {
         log.debug("Unregister route {}", routedUrl);
 
         routeRepository.removeRoute(routedUrl);
+        routeExpiries.cancel(routedUrl);
         monitoringHandler.updateRoutesCount(routeRepository.getRoutes().size());
     }
 
@@ -1307,8 +1364,11 @@ public class HookHandler implements LoggableResource {
 
         log.debug("Unregister listener {}", listenerId);
 
-        routeRepository.removeRoute(hookRootUri + LISTENER_HOOK_TARGET_PATH + getListenerUrlSegment(requestUrl));
+        String listenerRoute = hookRootUri + LISTENER_HOOK_TARGET_PATH + getListenerUrlSegment(requestUrl);
+        routeRepository.removeRoute(listenerRoute);
+        routeExpiries.cancel(listenerRoute);
         listenerRepository.removeListener(listenerId);
+        listenerExpiries.cancel(listenerId);
         monitoringHandler.updateListenerCount(listenerRepository.size());
     }
 
@@ -1421,6 +1481,7 @@ public class HookHandler implements LoggableResource {
         } else {
             String urlPattern = hookRootUri + LISTENER_HOOK_TARGET_PATH + target;
             routeRepository.addRoute(urlPattern, createRoute(urlPattern, hook));
+            scheduleExpiry(routeExpiries, urlPattern, hook);
 
             if (log.isTraceEnabled()) {
                 log.trace("external target, add route for urlPattern: {}", urlPattern);
@@ -1433,6 +1494,7 @@ public class HookHandler implements LoggableResource {
 
         // create and add a new listener (or update an already existing listener)
         listenerRepository.addListener(new Listener(listenerId, getMonitoredUrlSegment(requestUrl), target, hook));
+        scheduleExpiry(listenerExpiries, listenerId, hook);
         monitoringHandler.updateListenerCount(listenerRepository.size());
     }
 
@@ -1613,6 +1675,7 @@ public class HookHandler implements LoggableResource {
             existingRoute.getRule().setHeaderFunction(hook.getHeaderFunction());
             existingRoute.getHook().setExpirationTime(hook.getExpirationTime().orElse(null));
         }
+        scheduleExpiry(routeExpiries, routedUrl, hook);
         monitoringHandler.updateRoutesCount(routeRepository.getRoutes().size());
     }
 
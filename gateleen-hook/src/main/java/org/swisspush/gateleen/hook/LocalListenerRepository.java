@@ -13,24 +13,27 @@ import java.util.regex.Pattern;
  * 
  * @author https://github.com/ljucam [Mario Ljuca]
  */
-public class LocalListenerRepository extends ListenerRepositoryBase<Map<String, Set<Listener>>>implements ListenerRepository {
+public class LocalListenerRepository extends ListenerRepositoryBase<PathSegmentTrie<Set<Listener>>>implements ListenerRepository {
     private Logger log = LoggerFactory.getLogger(LocalListenerRepository.class);
 
+    private static final List<String> METHODS = List.of("GET", "HEAD", "POST", "PUT", "DELETE", "PATCH", "OPTIONS", "TRACE", "CONNECT");
+
     /*
      * For search purposes we have two maps.
      * Both contain listeners.
-     * The url map contains all listeners
-     * directly monitoring this url.
+     * The url trie contains all listeners
+     * directly monitoring this url, together
+     * with the methods they are interested in.
      * The listener map contains all listeners.
      */
-    private Map<String, Set<Listener>> urlToListenersMap;
+    private PathSegmentTrie<Set<Listener>> urlToListenersMap;
     private Map<String, Listener> listenerToUrlMap;
 
     /**
      * Creates a new instance of the local in-memory LocalHookListenerRepository.
      */
     public LocalListenerRepository() {
-        urlToListenersMap = new HashMap<>();
+        urlToListenersMap = new PathSegmentTrie<>();
         listenerToUrlMap = new HashMap<>();
     }
 
@@ -56,13 +59,30 @@ public class LocalListenerRepository extends ListenerRepositoryBase<Map<String,
 
         listeners.add(listener);
 
-        urlToListenersMap.put(listener.getMonitoredUrl(), listeners);
+        urlToListenersMap.put(listener.getMonitoredUrl(), listeners, methodMask(listeners));
         listenerToUrlMap.put(listener.getListenerId(), listener);
     }
 
     @Override
     public List<Listener> findListeners(String url) {
-        return findListeners(urlToListenersMap, url);
+        return findListeners(url, PathSegmentTrie.ALL);
+    }
+
+    private List<Listener> findListeners(String url, int methodMask) {
+        List<Set<Listener>> listenerSets = urlToListenersMap.findAll(url, methodMask);
+        if (listenerSets.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Listener> foundListener = new ArrayList<>();
+        for (Set<Listener> listeners : listenerSets) {
+            for (Listener listener : listeners) {
+                Pattern pattern = listener.getHook().getFilter();
+                if (pattern == null || pattern.matcher(url).matches()) {
+                    foundListener.add(listener);
+                }
+            }
+        }
+        return foundListener;
     }
 
     @Override
@@ -79,6 +99,8 @@ public class LocalListenerRepository extends ListenerRepositoryBase<Map<String,
 
             if (listeners.isEmpty()) {
                 urlToListenersMap.remove(listenerToRemove.getMonitoredUrl());
+            } else {
+                urlToListenersMap.put(listenerToRemove.getMonitoredUrl(), listeners, methodMask(listeners));
             }
         }
     }
@@ -94,13 +116,13 @@ public class LocalListenerRepository extends ListenerRepositoryBase<Map<String,
     }
 
     @Override
-    public Set<Listener> get(Map<String, Set<Listener>> container, String key) {
+    public Set<Listener> get(PathSegmentTrie<Set<Listener>> container, String key) {
         return container.get(key);
     }
 
     @Override
-    boolean containsKey(Map<String, Set<Listener>> container, String key) {
-        return container.containsKey(key);
+    boolean containsKey(PathSegmentTrie<Set<Listener>> container, String key) {
+        return container.get(key) != null;
     }
 
     @Override
@@ -110,9 +132,14 @@ public class LocalListenerRepository extends ListenerRepositoryBase<Map<String,
 
     @Override
     public List<Listener> findListeners(String url, String method, MultiMap headers) {
+        List<Listener> candidates = findListeners(url, methodBit(method));
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
         List<Listener> result = new ArrayList<>();
 
-        for (Listener listener : findListeners(url)) {
+        for (Listener listener : candidates) {
             if (doesMethodMatch(listener, method) && doHeadersMatch(listener, headers)) {
                 result.add(listener);
             }
@@ -121,6 +148,31 @@ public class LocalListenerRepository extends ListenerRepositoryBase<Map<String,
         return result;
     }
 
+    /**
+     * Gets the bit of the given http method. All methods not known here share one bit.
+     */
+    private static int methodBit(String method) {
+        int index = METHODS.indexOf(method);
+        return 1 << (index < 0 ? METHODS.size() : index);
+    }
+
+    /**
+     * Gets the bits of all http methods the given listeners are interested in.
+     */
+    private static int methodMask(Set<Listener> listeners) {
+        int mask = 0;
+        for (Listener listener : listeners) {
+            List<String> methods = listener.getHook().getMethods();
+            if (methods.isEmpty()) {
+                return PathSegmentTrie.ALL;
+            }
+            for (String method : methods) {
+                mask |= methodBit(method);
+            }
+        }
+        return mask;
+    }
+
     private boolean doesMethodMatch(Listener listener, String method) {
         return listener.getHook().getMethods().isEmpty() || listener.getHook().getMethods().contains(method);
     }
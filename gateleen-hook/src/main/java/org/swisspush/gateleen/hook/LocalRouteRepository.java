@@ -17,12 +17,14 @@ public class LocalRouteRepository extends RouteRepositoryBase<Map<String, Route>
     private Logger log = LoggerFactory.getLogger(LocalRouteRepository.class);
 
     private Map<String, Route> routes;
+    private PathSegmentTrie<Route> routeIndex;
 
     /**
      * Creates a new instance of a local in-memory HookRouteRepository.
      */
     public LocalRouteRepository() {
         routes = new HashMap<>();
+        routeIndex = new PathSegmentTrie<>();
     }
 
     @Override
@@ -44,6 +46,7 @@ public class LocalRouteRepository extends RouteRepositoryBase<Map<String, Route>
         cleanupRoute(routes.get(urlPattern));
 
         routes.put(urlPattern, route);
+        routeIndex.put(urlPattern, route, PathSegmentTrie.ALL);
     }
 
     @Override
@@ -55,6 +58,7 @@ public class LocalRouteRepository extends RouteRepositoryBase<Map<String, Route>
         if (routeKey != null) {
             cleanupRoute(getRoute(routeKey));
             routes.remove(routeKey);
+            routeIndex.remove(routeKey);
         }
     }
 
@@ -64,6 +68,20 @@ public class LocalRouteRepository extends RouteRepositoryBase<Map<String, Route>
         return key != null ? routes.get(key) : null;
     }
 
+    /**
+     * Uses the route index instead of probing the map with every parent path of the url.
+     */
+    @Override
+    String findFirstMatchingKey(Map<String, Route> container, String url) {
+        String key = routeIndex.findFirstMatchingKey(url);
+        if (key != null) {
+            return key;
+        }
+
+        // nothing found or root route
+        return url.startsWith("/") && containsKey(container, "/") ? "/" : null;
+    }
+
     @Override
     boolean containsKey(Map<String, Route> container, String key) {
         return container.containsKey(key);
@@ -0,0 +1,282 @@
+package org.swisspush.gateleen.hook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of values registered for urls, organized by the path segments of the urls.
+ * <p>
+ * A lookup walks the segments of the requested url once (ignoring url parameters) and visits the same prefixes the
+ * former <code>lastIndexOf('/')</code> / <code>substring</code> probing did: the url itself and every parent path
+ * containing at least one '/'. The children of a node are kept in an open addressing table which is probed with the
+ * segment boundaries of the url, so a lookup without hits does not allocate anything.
+ * <p>
+ * Every node carries a bitmask (e.g. of the http methods its value is interested in), nodes whose mask does not
+ * intersect the requested mask are skipped.
+ * <p>
+ * HINT: This class is not thread safe, like the repositories using it.
+ *
+ * @param <V> type of the values
+ */
+class PathSegmentTrie<V> {
+
+    static final int ALL = -1;
+
+    private final Node<V> root = new Node<>();
+    private int size = 0;
+
+    /**
+     * Registers the value for the given url. An existing value for the same url is replaced.
+     *
+     * @param url   the url
+     * @param value the value
+     * @param mask  the mask of the value, {@link #ALL} to match every requested mask
+     */
+    void put(String url, V value, int mask) {
+        Node<V> node = root;
+        int start = 0;
+        while (true) {
+            int end = segmentEnd(url, start, url.length());
+            node = node.addChild(url.substring(start, end));
+            if (end == url.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        if (node.value == null) {
+            size++;
+        }
+        node.key = url;
+        node.value = value;
+        node.mask = mask;
+    }
+
+    /**
+     * @param url the url exactly as registered
+     * @return the value registered for the url or <code>null</code>
+     */
+    V get(String url) {
+        Node<V> node = node(url);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Removes the value registered for the given url.
+     *
+     * @param url the url exactly as registered
+     * @return the removed value or <code>null</code>
+     */
+    V remove(String url) {
+        List<Node<V>> parents = new ArrayList<>();
+        List<String> segments = new ArrayList<>();
+        Node<V> node = root;
+        int start = 0;
+        while (true) {
+            int end = segmentEnd(url, start, url.length());
+            parents.add(node);
+            segments.add(url.substring(start, end));
+            node = node.child(url, start, end);
+            if (node == null) {
+                return null;
+            }
+            if (end == url.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        V value = node.value;
+        if (value == null) {
+            return null;
+        }
+        node.key = null;
+        node.value = null;
+        node.mask = 0;
+        size--;
+
+        // prune the nodes which are not needed anymore
+        for (int i = parents.size() - 1; i >= 0 && node.isEmpty(); i--) {
+            node = parents.get(i);
+            node.removeChild(segments.get(i));
+        }
+        return value;
+    }
+
+    /**
+     * Finds all values registered for the given url or one of its parents.
+     *
+     * @param url  the requested url, url parameters are ignored
+     * @param mask only values whose mask intersects this mask are returned
+     * @return the values, the most specific one first. An immutable empty list when nothing matches.
+     */
+    List<V> findAll(String url, int mask) {
+        List<V> found = null;
+        int urlEnd = pathEnd(url);
+        Node<V> node = root;
+        int segments = 0;
+        int start = 0;
+        while (true) {
+            int end = segmentEnd(url, start, urlEnd);
+            node = node.child(url, start, end);
+            if (node == null) {
+                break;
+            }
+            segments++;
+            if (segments > 1 && node.value != null && (node.mask & mask) != 0) {
+                if (found == null) {
+                    found = new ArrayList<>(2);
+                }
+                found.add(node.value);
+            }
+            if (end == urlEnd) {
+                break;
+            }
+            start = end + 1;
+        }
+        if (found == null) {
+            return Collections.emptyList();
+        }
+        Collections.reverse(found);
+        return found;
+    }
+
+    /**
+     * Finds the registered url which is the most specific one for the given url.
+     *
+     * @param url the requested url, url parameters are ignored
+     * @return the registered url or <code>null</code>
+     */
+    String findFirstMatchingKey(String url) {
+        int urlEnd = pathEnd(url);
+        String key = null;
+        Node<V> node = root;
+        int segments = 0;
+        int start = 0;
+        while (true) {
+            int end = segmentEnd(url, start, urlEnd);
+            node = node.child(url, start, end);
+            if (node == null) {
+                break;
+            }
+            segments++;
+            if (segments > 1 && node.value != null) {
+                key = node.key;
+            }
+            if (end == urlEnd) {
+                break;
+            }
+            start = end + 1;
+        }
+        return key;
+    }
+
+    /**
+     * @return the number of registered urls
+     */
+    int size() {
+        return size;
+    }
+
+    private Node<V> node(String url) {
+        Node<V> node = root;
+        int start = 0;
+        while (true) {
+            int end = segmentEnd(url, start, url.length());
+            node = node.child(url, start, end);
+            if (node == null || end == url.length()) {
+                return node;
+            }
+            start = end + 1;
+        }
+    }
+
+    private static int pathEnd(String url) {
+        int index = url.indexOf('?');
+        return index < 0 ? url.length() : index;
+    }
+
+    private static int segmentEnd(String url, int start, int urlEnd) {
+        int index = url.indexOf('/', start);
+        return index < 0 || index > urlEnd ? urlEnd : index;
+    }
+
+    private static final class Node<V> {
+        private String key;
+        private V value;
+        private int mask;
+        private String[] segments;
+        private Node<V>[] children;
+        private int childCount = 0;
+
+        private boolean isEmpty() {
+            return value == null && childCount == 0;
+        }
+
+        private Node<V> child(String url, int start, int end) {
+            if (childCount == 0) {
+                return null;
+            }
+            int length = end - start;
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + url.charAt(i);
+            }
+            int tableMask = segments.length - 1;
+            for (int i = spread(hash) & tableMask; segments[i] != null; i = (i + 1) & tableMask) {
+                String segment = segments[i];
+                if (segment.length() == length && url.regionMatches(start, segment, 0, length)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node<V> addChild(String segment) {
+            Node<V> child = child(segment, 0, segment.length());
+            if (child == null) {
+                if (segments == null || (childCount + 1) * 2 > segments.length) {
+                    resize(segments == null ? 4 : segments.length * 2, null);
+                }
+                child = new Node<>();
+                insert(segment, child);
+                childCount++;
+            }
+            return child;
+        }
+
+        private void removeChild(String segment) {
+            resize(segments.length, segment);
+            childCount--;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void resize(int capacity, String skippedSegment) {
+            String[] oldSegments = segments;
+            Node<V>[] oldChildren = children;
+            segments = new String[capacity];
+            children = (Node<V>[]) new Node[capacity];
+            if (oldSegments == null) {
+                return;
+            }
+            for (int i = 0; i < oldSegments.length; i++) {
+                if (oldSegments[i] != null && !oldSegments[i].equals(skippedSegment)) {
+                    insert(oldSegments[i], oldChildren[i]);
+                }
+            }
+        }
+
+        private void insert(String segment, Node<V> child) {
+            int tableMask = segments.length - 1;
+            int i = spread(segment.hashCode()) & tableMask;
+            while (segments[i] != null) {
+                i = (i + 1) & tableMask;
+            }
+            segments[i] = segment;
+            children[i] = child;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
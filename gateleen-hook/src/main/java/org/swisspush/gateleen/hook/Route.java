@@ -14,6 +14,7 @@ import org.swisspush.gateleen.logging.LogAppenderRepository;
 import org.swisspush.gateleen.logging.LoggingResourceManager;
 import org.swisspush.gateleen.monitoring.MonitoringHandler;
 import org.swisspush.gateleen.routing.Forwarder;
+import org.swisspush.gateleen.routing.HttpClientRegistry;
 import org.swisspush.gateleen.routing.Rule;
 
 import java.util.regex.Matcher;
@@ -208,6 +209,8 @@ public class Route {
      * Creates an instance of the http client for this
      * request forwarder. If it's a local request, the
      * selfClient will ne used instead!
+     * Routes to the same destination share the pooled client
+     * of the {@link HttpClientRegistry}.
      *
      */
     private void createHttpClient() {
@@ -218,7 +221,7 @@ public class Route {
         // url request
         else {
             HttpClientOptions options = rule.buildHttpClientOptions();
-            client = vertx.createHttpClient(options);
+            client = HttpClientRegistry.shared(vertx).acquire(options);
         }
     }
 
@@ -253,7 +256,8 @@ public class Route {
     }
 
     /**
-     * Closes the http client of the route.
+     * Closes the http client of the route. This releases the lease
+     * on the shared pool, which is closed when no longer used.
      */
     public void cleanup() {
         if ( ! rule.getScheme().equals("local") ) {
@@ -0,0 +1,72 @@
+package org.swisspush.gateleen.hook;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the ExpiryIndex class
+ */
+@RunWith(VertxUnitRunner.class)
+public class ExpiryIndexTest {
+
+    @Test
+    public void testPollExpiredInExpirationOrder(TestContext context) {
+        ExpiryIndex<String> index = new ExpiryIndex<>();
+        index.schedule("c", 300);
+        index.schedule("a", 100);
+        index.schedule("b", 200);
+
+        context.assertEquals(Collections.emptyList(), index.pollExpired(99));
+        context.assertEquals(List.of("a", "b"), index.pollExpired(200));
+        context.assertEquals(1, index.size());
+        context.assertEquals(Collections.emptyList(), index.pollExpired(200));
+        context.assertEquals(List.of("c"), index.pollExpired(1000));
+        context.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testReschedule(TestContext context) {
+        ExpiryIndex<String> index = new ExpiryIndex<>();
+        index.schedule("a", 100);
+        index.schedule("a", 500);
+
+        context.assertEquals(Collections.emptyList(), index.pollExpired(100));
+        context.assertEquals(List.of("a"), index.pollExpired(500));
+
+        index.schedule("b", 500);
+        index.schedule("b", 100);
+        context.assertEquals(List.of("b"), index.pollExpired(100));
+        context.assertEquals(Collections.emptyList(), index.pollExpired(500));
+    }
+
+    @Test
+    public void testCancel(TestContext context) {
+        ExpiryIndex<String> index = new ExpiryIndex<>();
+        index.schedule("a", 100);
+        index.schedule("b", 100);
+        index.cancel("a");
+        index.cancel("unknown");
+
+        context.assertEquals(1, index.size());
+        context.assertEquals(List.of("b"), index.pollExpired(100));
+    }
+
+    @Test
+    public void testManyRenewals(TestContext context) {
+        ExpiryIndex<String> index = new ExpiryIndex<>();
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 1000; i++) {
+                index.schedule("listener" + i, 10_000 + round);
+            }
+        }
+        context.assertEquals(1000, index.size());
+        context.assertEquals(Collections.emptyList(), index.pollExpired(10_098));
+        context.assertEquals(1000, index.pollExpired(10_099).size());
+        context.assertEquals(0, index.size());
+    }
+}
@@ -15,6 +15,7 @@ import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatcher;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,15 +23,18 @@ import org.swisspush.gateleen.core.http.DummyHttpServerRequest;
 import org.swisspush.gateleen.core.http.DummyHttpServerResponse;
 import org.swisspush.gateleen.core.http.FastFailHttpServerRequest;
 import org.swisspush.gateleen.core.http.FastFailHttpServerResponse;
+import org.swisspush.gateleen.core.http.HttpRequest;
 import org.swisspush.gateleen.core.storage.MockResourceStorage;
 import org.swisspush.gateleen.hook.reducedpropagation.ReducedPropagationManager;
 import org.swisspush.gateleen.logging.LogAppenderRepository;
 import org.swisspush.gateleen.logging.LoggingResourceManager;
 import org.swisspush.gateleen.monitoring.MonitoringHandler;
 import org.swisspush.gateleen.queue.expiry.ExpiryCheckHandler;
+import org.swisspush.gateleen.queue.queuing.EnqueueBatchEntry;
 import org.swisspush.gateleen.queue.queuing.RequestQueue;
 import org.swisspush.gateleen.routing.Router;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -77,6 +81,7 @@ public class HookHandlerTest {
         logAppenderRepository = Mockito.mock(LogAppenderRepository.class);
         monitoringHandler = Mockito.mock(MonitoringHandler.class);
         requestQueue = Mockito.mock(RequestQueue.class);
+        Mockito.when(requestQueue.enqueueBatch(any())).thenReturn(CompositeFuture.join(new ArrayList<>()));
         reducedPropagationManager = Mockito.mock(ReducedPropagationManager.class);
 
 
@@ -85,6 +90,10 @@ public class HookHandlerTest {
         hookHandler.init();
     }
 
+    private static ArgumentMatcher<List<EnqueueBatchEntry>> singleEntry(ArgumentMatcher<HttpRequest> requestMatcher) {
+        return entries -> entries.size() == 1 && requestMatcher.matches(entries.get(0).getRequest());
+    }
+
     private void setListenerStorageEntryAndTriggerUpdate(JsonObject listenerConfig) {
         storage.putMockData("pathToListenerResource", listenerConfig.encode());
         vertx.eventBus().request("gateleen.hook-listener-insert", "pathToListenerResource");
@@ -138,12 +147,12 @@ public class HookHandlerTest {
         hookHandler.handle(routingContext);
 
         // verify that enqueue has been called WITH the payload
-        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueue(Mockito.argThat(req -> {
+        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueueBatch(Mockito.argThat(singleEntry(req -> {
             return HttpMethod.PUT == req.getMethod()
                     && req.getUri().contains(uri)
                     && Integer.valueOf(99).equals(getInteger(req.getHeaders(), CONTENT_LENGTH)) // Content-Length header should not have changed
                     && Arrays.equals(req.getPayload(), Buffer.buffer(originalPayload).getBytes()); // payload should not have changed
-        }), anyString(), any(Handler.class));
+        })));
     }
 
     @Test
@@ -164,12 +173,12 @@ public class HookHandlerTest {
         hookHandler.handle(routingContext);
 
         // verify that enqueue has been called WITH the payload
-        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueue(Mockito.argThat(req -> {
+        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueueBatch(Mockito.argThat(singleEntry(req -> {
             return HttpMethod.PUT == req.getMethod()
                     && req.getUri().contains(uri)
                     && Integer.valueOf(99).equals(getInteger(req.getHeaders(), CONTENT_LENGTH)) // Content-Length header should not have changed
                     && Arrays.equals(req.getPayload(), Buffer.buffer(originalPayload).getBytes()); // payload should not have changed
-        }), anyString(), any(Handler.class));
+        })));
     }
 
     @Test
@@ -189,24 +198,24 @@ public class HookHandlerTest {
         hookHandler.handle(routingContext);
 
         // verify that enqueue has been called WITHOUT the payload but with 'Content-Length : 0' header
-        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueue(Mockito.argThat(req -> {
+        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueueBatch(Mockito.argThat(singleEntry(req -> {
             return HttpMethod.PUT == req.getMethod()
                     && req.getUri().contains(uri)
                     && Integer.valueOf(0).equals(getInteger(req.getHeaders(), CONTENT_LENGTH))
                     && Arrays.equals(req.getPayload(), new byte[0]); // should not be original payload anymore
-        }), anyString(), any(Handler.class));
+        })));
 
         PUTRequest putRequestWithoutContentLengthHeader = new PUTRequest(uri, originalPayload);
         Mockito.when(routingContext.request()).thenReturn(putRequestWithoutContentLengthHeader);
         hookHandler.handle(routingContext);
 
         // verify that enqueue has been called WITHOUT the payload and WITHOUT 'Content-Length' header
-        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueue(Mockito.argThat(req -> {
+        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueueBatch(Mockito.argThat(singleEntry(req -> {
             return HttpMethod.PUT == req.getMethod()
                     && req.getUri().contains(uri)
                     && !containsHeader(req.getHeaders(), CONTENT_LENGTH)
                     && Arrays.equals(req.getPayload(), new byte[0]); // should not be original payload anymore
-        }), anyString(), any(Handler.class));
+        })));
     }
 
     @Test
@@ -278,12 +287,12 @@ public class HookHandlerTest {
         hookHandler.handle(routingContext);
 
         // verify that enqueue has been called WITH the payload
-        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueue(Mockito.argThat(req -> {
+        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueueBatch(Mockito.argThat(singleEntry(req -> {
             return HttpMethod.PUT == req.getMethod()
                     && req.getUri().contains(uri)
                     && Integer.valueOf(99).equals(getInteger(req.getHeaders(), CONTENT_LENGTH)) // Content-Length header should not have changed
                     && Arrays.equals(req.getPayload(), Buffer.buffer(originalPayload).getBytes()); // payload should not have changed
-        }), anyString(), any(Handler.class));
+        })));
     }
 
     @Test
@@ -305,12 +314,12 @@ public class HookHandlerTest {
         hookHandler.handle(routingContext);
 
         // verify that enqueue has been called WITH the payload
-        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueue(Mockito.argThat(req -> {
+        Mockito.verify(requestQueue, Mockito.timeout(2000).times(1)).enqueueBatch(Mockito.argThat(singleEntry(req -> {
             return HttpMethod.PUT == req.getMethod()
                     && req.getUri().contains(uri)
                     && Integer.valueOf(99).equals(getInteger(req.getHeaders(), CONTENT_LENGTH)) // Content-Length header should not have changed
                     && Arrays.equals(req.getPayload(), Buffer.buffer(originalPayload).getBytes()); // payload should not have changed
-        }), anyString(), any(Handler.class));
+        })));
     }
 
     @Test
@@ -0,0 +1,90 @@
+package org.swisspush.gateleen.hook;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the PathSegmentTrie class
+ */
+@RunWith(VertxUnitRunner.class)
+public class PathSegmentTrieTest {
+
+    private static final int GET = 1;
+    private static final int PUT = 2;
+
+    @Test
+    public void testFindAllMostSpecificFirst(TestContext context) {
+        PathSegmentTrie<String> trie = new PathSegmentTrie<>();
+        trie.put("/gateleen/server", "server", PathSegmentTrie.ALL);
+        trie.put("/gateleen/server/users", "users", PathSegmentTrie.ALL);
+        trie.put("/gateleen/other", "other", PathSegmentTrie.ALL);
+
+        context.assertEquals(List.of("users", "server"), trie.findAll("/gateleen/server/users/123?expand=1", GET));
+        context.assertEquals(List.of("server"), trie.findAll("/gateleen/server/usersx", GET));
+        context.assertEquals(List.of("server"), trie.findAll("/gateleen/server?x=/gateleen/server/users", GET));
+        context.assertEquals(Collections.emptyList(), trie.findAll("/gateleen/unknown/path", GET));
+        context.assertEquals(Collections.emptyList(), trie.findAll("/gateleen", GET));
+    }
+
+    @Test
+    public void testSameSegmentsAsParentPathProbing(TestContext context) {
+        PathSegmentTrie<String> trie = new PathSegmentTrie<>();
+        trie.put("/", "root", PathSegmentTrie.ALL);
+        trie.put("/gateleen/", "trailing", PathSegmentTrie.ALL);
+
+        // the root is only found for the root itself, parents need at least one '/'
+        context.assertEquals(List.of("root"), trie.findAll("/", GET));
+        context.assertEquals(Collections.emptyList(), trie.findAll("/gateleen", GET));
+        context.assertEquals(List.of("trailing"), trie.findAll("/gateleen/", GET));
+        context.assertNull(trie.findFirstMatchingKey("/gateleen/a"));
+    }
+
+    @Test
+    public void testMask(TestContext context) {
+        PathSegmentTrie<String> trie = new PathSegmentTrie<>();
+        trie.put("/gateleen/server", "put", PUT);
+        trie.put("/gateleen/server/users", "get", GET);
+
+        context.assertEquals(List.of("get"), trie.findAll("/gateleen/server/users/1", GET));
+        context.assertEquals(List.of("put"), trie.findAll("/gateleen/server/users/1", PUT));
+        context.assertEquals(List.of("get", "put"), trie.findAll("/gateleen/server/users/1", GET | PUT));
+    }
+
+    @Test
+    public void testFindFirstMatchingKey(TestContext context) {
+        PathSegmentTrie<String> trie = new PathSegmentTrie<>();
+        trie.put("/gateleen/server", "server", PathSegmentTrie.ALL);
+        trie.put("/gateleen/server/users", "users", PathSegmentTrie.ALL);
+
+        context.assertEquals("/gateleen/server/users", trie.findFirstMatchingKey("/gateleen/server/users/1?a=b"));
+        context.assertEquals("/gateleen/server", trie.findFirstMatchingKey("/gateleen/server/x"));
+        context.assertNull(trie.findFirstMatchingKey("/gateleen/x"));
+    }
+
+    @Test
+    public void testRemove(TestContext context) {
+        PathSegmentTrie<String> trie = new PathSegmentTrie<>();
+        for (int i = 0; i < 100; i++) {
+            trie.put("/gateleen/server/" + i + "/hook", "hook" + i, PathSegmentTrie.ALL);
+        }
+        trie.put("/gateleen/server", "server", PathSegmentTrie.ALL);
+        context.assertEquals(101, trie.size());
+
+        context.assertEquals("hook42", trie.remove("/gateleen/server/42/hook"));
+        context.assertNull(trie.remove("/gateleen/server/42/hook"));
+        context.assertNull(trie.remove("/gateleen/server/42"));
+        context.assertEquals(List.of("server"), trie.findAll("/gateleen/server/42/hook", GET));
+        context.assertEquals(List.of("hook43", "server"), trie.findAll("/gateleen/server/43/hook", GET));
+
+        context.assertEquals("server", trie.remove("/gateleen/server"));
+        context.assertEquals(List.of("hook43"), trie.findAll("/gateleen/server/43/hook", GET));
+        context.assertEquals(99, trie.size());
+        context.assertEquals("hook43", trie.get("/gateleen/server/43/hook"));
+        context.assertNull(trie.get("/gateleen/server/43"));
+    }
+}
@@ -0,0 +1,58 @@
+package org.swisspush.gateleen.monitoring;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.swisspush.gateleen.monitoring.MonitoringHandler.MARK;
+import static org.swisspush.gateleen.monitoring.MonitoringHandler.METRIC_ACTION;
+import static org.swisspush.gateleen.monitoring.MonitoringHandler.METRIC_NAME;
+
+/**
+ * Publishes the flushed metrics to the mod-metrics module. Meters are marked and counters incremented or decremented
+ * by the flushed amount with one message per changed metric.
+ * <p>
+ * Durations are not batched: every single flushed duration is published with its own update message, since the timers
+ * of mod-metrics count the updates and compute their percentiles from the published values (see e.g. the QoS
+ * handler). The histograms are not used.
+ */
+public class EventBusMetricsSink implements MetricsSink {
+
+    private static final Logger log = LoggerFactory.getLogger(EventBusMetricsSink.class);
+
+    private final Vertx vertx;
+    private final String monitoringAddress;
+
+    public EventBusMetricsSink(Vertx vertx, String monitoringAddress) {
+        this.vertx = vertx;
+        this.monitoringAddress = monitoringAddress;
+    }
+
+    @Override
+    public void flush(Map<String, Long> meters, Map<String, Long> counters, Map<String, LatencyHistogram.Snapshot> histograms,
+                      Map<String, List<Double>> durations) {
+        meters.forEach((name, count) -> publish(name, MARK, count));
+        counters.forEach((name, change) -> publish(name, change > 0 ? "inc" : "dec", Math.abs(change)));
+        durations.forEach((name, values) -> {
+            for (Double millis : values) {
+                vertx.eventBus().publish(monitoringAddress,
+                        new JsonObject().put(METRIC_NAME, name).put(METRIC_ACTION, "update").put("n", millis));
+            }
+        });
+        histograms.forEach((name, snapshot) -> {
+            long skipped = snapshot.getCount() - durations.getOrDefault(name, List.of()).size();
+            if (skipped > 0) {
+                log.warn("{} durations of {} exceeded the limit per flush and were not published", skipped, name);
+            }
+        });
+    }
+
+    private void publish(String name, String action, long n) {
+        vertx.eventBus().publish(monitoringAddress,
+                new JsonObject().put(METRIC_NAME, name).put(METRIC_ACTION, action).put("n", n));
+    }
+}
@@ -0,0 +1,96 @@
+package org.swisspush.gateleen.monitoring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values (e.g. durations in microseconds) with a bounded relative error.
+ * <p>
+ * Like a HdrHistogram, the values are counted in buckets growing exponentially. Every power of two is split in
+ * {@value #SUB_BUCKET_COUNT} linear sub-buckets, so a recorded value is reported with an error of at most about 6%.
+ * Recording a value is a single atomic increment, so the histogram can be shared by all event loops.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * The highest trackable value, higher values are counted as this value. In microseconds, this is more than an hour.
+     */
+    static final long MAX_VALUE = (1L << 32) - 1;
+    private static final int BUCKET_COUNT = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * @param value the value to record, negative values are recorded as 0
+     */
+    public void record(long value) {
+        counts.incrementAndGet(index(Math.max(0, Math.min(value, MAX_VALUE))));
+    }
+
+    /**
+     * Takes the values recorded since the last call. Values recorded concurrently are either part of the returned
+     * snapshot or of the next one, but never lost.
+     *
+     * @return the values recorded since the last call
+     */
+    public Snapshot snapshotAndReset() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.getAndSet(i, 0);
+            count += snapshot[i];
+        }
+        return new Snapshot(snapshot, count);
+    }
+
+    static int index(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >> shift);
+    }
+
+    /**
+     * @return the value in the middle of the bucket with the given index
+     */
+    static long value(int index) {
+        int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+        long lowest = (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+        return lowest + ((1L << shift) - 1) / 2;
+    }
+
+    /**
+     * The values recorded by a {@link LatencyHistogram} in one interval.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+
+        Snapshot(long[] counts, long count) {
+            this.counts = counts;
+            this.count = count;
+        }
+
+        /**
+         * @return the number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @param quantile the quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+         * @return the value at the given quantile, 0 when no values were recorded
+         */
+        public long getValueAtQuantile(double quantile) {
+            long rank = Math.max(1, (long) Math.ceil(Math.min(1, quantile) * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return value(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
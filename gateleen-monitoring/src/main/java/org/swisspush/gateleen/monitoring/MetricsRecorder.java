@@ -0,0 +1,128 @@
+package org.swisspush.gateleen.monitoring;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records meters, counters and durations in-process, so recording a metric does not cost an event bus message.
+ * The recorded values are passed to a {@link MetricsSink} on {@link #flush(MetricsSink)}.
+ * <p>
+ * Every duration is recorded in a {@link LatencyHistogram}. Additionally, the single durations are kept for the sinks
+ * needing them (e.g. the {@link EventBusMetricsSink}), but only up to a limit per metric and flush interval, so the
+ * memory used between two flushes is bounded.
+ */
+public class MetricsRecorder {
+
+    static final int DEFAULT_MAX_DURATIONS_PER_FLUSH = 10_000;
+
+    private final Map<String, LongAdder> meters = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Durations> durations = new ConcurrentHashMap<>();
+    private final int maxDurationsPerFlush;
+
+    public MetricsRecorder() {
+        this(DEFAULT_MAX_DURATIONS_PER_FLUSH);
+    }
+
+    /**
+     * @param maxDurationsPerFlush the maximum number of single durations kept per metric between two flushes
+     */
+    MetricsRecorder(int maxDurationsPerFlush) {
+        this.maxDurationsPerFlush = maxDurationsPerFlush;
+    }
+
+    public void mark(String name) {
+        meters.computeIfAbsent(name, n -> new LongAdder()).increment();
+    }
+
+    public void increment(String name) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).increment();
+    }
+
+    public void decrement(String name) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).decrement();
+    }
+
+    /**
+     * @param name   the name of the duration metric
+     * @param micros the duration in microseconds
+     */
+    public void recordDuration(String name, long micros) {
+        durations.computeIfAbsent(name, n -> new Durations()).record(micros, maxDurationsPerFlush);
+    }
+
+    /**
+     * Passes the metrics recorded since the last flush to the sink. Metrics without changes are not passed.
+     *
+     * @param sink the sink receiving the metrics
+     */
+    public void flush(MetricsSink sink) {
+        Map<String, Long> meterValues = sumThenReset(meters);
+        Map<String, Long> counterValues = sumThenReset(counters);
+        Map<String, LatencyHistogram.Snapshot> histogramValues = new HashMap<>();
+        Map<String, List<Double>> durationValues = new HashMap<>();
+        durations.forEach((name, recorded) -> {
+            LatencyHistogram.Snapshot snapshot = recorded.histogram.snapshotAndReset();
+            if (snapshot.getCount() > 0) {
+                histogramValues.put(name, snapshot);
+            }
+            List<Double> values = recorded.takeValues();
+            if (!values.isEmpty()) {
+                durationValues.put(name, values);
+            }
+        });
+        if (!meterValues.isEmpty() || !counterValues.isEmpty() || !histogramValues.isEmpty()) {
+            sink.flush(meterValues, counterValues, histogramValues, durationValues);
+        }
+    }
+
+    private static Map<String, Long> sumThenReset(Map<String, LongAdder> adders) {
+        Map<String, Long> values = new HashMap<>();
+        adders.forEach((name, adder) -> {
+            long value = adder.sumThenReset();
+            if (value != 0) {
+                values.put(name, value);
+            }
+        });
+        return values;
+    }
+
+    /**
+     * The durations of one metric: all of them in a histogram and a bounded number of single values.
+     */
+    private static class Durations {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final Queue<Double> values = new ConcurrentLinkedQueue<>();
+        // the number of kept values, including the ones being added
+        private final AtomicInteger size = new AtomicInteger();
+
+        void record(long micros, int maxValues) {
+            histogram.record(micros);
+            if (size.incrementAndGet() <= maxValues) {
+                values.add(micros / 1000d);
+            } else {
+                size.decrementAndGet();
+            }
+        }
+
+        /**
+         * @return the kept values in milliseconds
+         */
+        List<Double> takeValues() {
+            List<Double> taken = new ArrayList<>();
+            Double value;
+            while ((value = values.poll()) != null) {
+                taken.add(value);
+            }
+            size.addAndGet(-taken.size());
+            return taken;
+        }
+    }
+}
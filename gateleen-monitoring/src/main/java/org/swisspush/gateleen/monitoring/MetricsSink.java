@@ -0,0 +1,24 @@
+package org.swisspush.gateleen.monitoring;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Receives the metrics recorded by the {@link MonitoringHandler} in one flush interval.
+ * <p>
+ * The names contain the prefix of the {@link MonitoringHandler} and only metrics having changed since the last flush
+ * are passed.
+ */
+public interface MetricsSink {
+
+    /**
+     * @param meters     the number of marks per meter since the last flush
+     * @param counters   the change of each counter since the last flush, negative when decremented
+     * @param histograms all durations recorded per metric since the last flush, in microseconds
+     * @param durations  the single durations recorded per metric since the last flush in the order they were recorded,
+     *                   in milliseconds. Only a limited number of durations is kept per metric and flush, so a list
+     *                   may contain fewer values than the count of the histogram of the same metric.
+     */
+    void flush(Map<String, Long> meters, Map<String, Long> counters, Map<String, LatencyHistogram.Snapshot> histograms,
+               Map<String, List<Double>> durations);
+}
@@ -75,13 +75,18 @@ public class MonitoringHandler {
     public static final String REQUEST_PER_RULE_EXPIRY_PROPERTY = "org.swisspush.request.rule.expiry";
     public static final long REQUEST_PER_RULE_DEFAULT_SAMPLING = 60000; // 60 seconds
     public static final long REQUEST_PER_RULE_DEFAULT_EXPIRY = 86400; // 24 hours
+    public static final String METRICS_FLUSH_INTERVAL_PROPERTY = "org.swisspush.metrics.flush.interval";
+    public static final long METRICS_DEFAULT_FLUSH_INTERVAL = 1000; // 1 second
     private final String UNKNOWN_VALUE = "unknown";
     private final String EXPIRE_AFTER_HEADER = "x-expire-after";
 
     private String prefix;
     private long requestPerRuleSampling;
     private long requestPerRuleExpiry;
+    private long metricsFlushInterval;
     private final UUID uuid;
+    private final MetricsRecorder metrics = new MetricsRecorder();
+    private final MetricsSink metricsSink;
 
     public interface MonitoringCallback {
 
@@ -120,14 +125,29 @@ public class MonitoringHandler {
     }
 
     public MonitoringHandler(Vertx vertx, final ResourceStorage storage, String prefix, String requestPerRulePath) {
+        this(vertx, storage, prefix, requestPerRulePath, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param metricsSink the sink receiving the request metrics on every flush. When <code>null</code>, the metrics are
+     *                    published to the monitoring address
+     */
+    public MonitoringHandler(Vertx vertx, final ResourceStorage storage, String prefix, String requestPerRulePath,
+                             MetricsSink metricsSink) {
         this.vertx = vertx;
         this.storage = storage;
         this.prefix = prefix;
         this.requestPerRuleMonitoringPath = initRequestPerRuleMonitoringPath(requestPerRulePath);
         this.uuid = UUID.randomUUID();
+        this.metricsSink = metricsSink != null ? metricsSink : new EventBusMetricsSink(vertx, getMonitoringAddress());
 
         registerQueueSizeTrackingTimer();
 
+        configureMetricsFlushInterval();
+        registerMetricsFlushTimer();
+
         initRequestPerRuleMonitoring();
 
         final Logger metricLogger = LoggerFactory.getLogger("Metrics");
@@ -224,6 +244,37 @@ public class MonitoringHandler {
         vertx.setPeriodic(QUEUE_SIZE_REFRESH_TIME, event -> updateQueueCountInformation());
     }
 
+    private void registerMetricsFlushTimer() {
+        vertx.setPeriodic(metricsFlushInterval, event -> flushMetrics());
+    }
+
+    private void configureMetricsFlushInterval() {
+        String interval = System.getProperty(METRICS_FLUSH_INTERVAL_PROPERTY, String.valueOf(METRICS_DEFAULT_FLUSH_INTERVAL));
+        try {
+            this.metricsFlushInterval = Long.parseLong(interval);
+        } catch (NumberFormatException ex) {
+            this.metricsFlushInterval = -1;
+        }
+        if (metricsFlushInterval < 1) {
+            log.warn("Invalid value '{}' of system property '{}'. Using default value instead: {}",
+                    interval, METRICS_FLUSH_INTERVAL_PROPERTY, METRICS_DEFAULT_FLUSH_INTERVAL);
+            this.metricsFlushInterval = METRICS_DEFAULT_FLUSH_INTERVAL;
+        }
+        log.info("Initializing metrics with a flush interval of [ms] {}", metricsFlushInterval);
+    }
+
+    public long getMetricsFlushInterval() {
+        return metricsFlushInterval;
+    }
+
+    /**
+     * Passes the request metrics recorded since the last flush to the metrics sink. This is done periodically, see
+     * {@link #METRICS_FLUSH_INTERVAL_PROPERTY}.
+     */
+    public void flushMetrics() {
+        metrics.flush(metricsSink);
+    }
+
     private void registerRequestPerRuleMonitoringTimer(){
         vertx.setPeriodic(requestPerRuleSampling, event -> submitRequestPerRuleMonitoringMetrics());
     }
@@ -261,7 +312,7 @@ public class MonitoringHandler {
 
     public void updateIncomingRequests(HttpServerRequest request) {
         if (!HttpServerRequestUtil.isRemoteAddressLoopbackAddress(request) && shouldBeTracked(request.uri())) {
-            vertx.eventBus().publish(getMonitoringAddress(), new JsonObject().put(METRIC_NAME, prefix + REQUESTS_INCOMING_NAME).put(METRIC_ACTION, MARK));
+            metrics.mark(prefix + REQUESTS_INCOMING_NAME);
         }
     }
 
@@ -315,9 +366,9 @@ public class MonitoringHandler {
     public void updateRequestsMeter(String target, String uri) {
         if (shouldBeTracked(uri)) {
             if (isRequestToExternalTarget(target)) {
-                vertx.eventBus().publish(getMonitoringAddress(), new JsonObject().put(METRIC_NAME, prefix + REQUESTS_BACKENDS_NAME).put(METRIC_ACTION, MARK));
+                metrics.mark(prefix + REQUESTS_BACKENDS_NAME);
             } else {
-                vertx.eventBus().publish(getMonitoringAddress(), new JsonObject().put(METRIC_NAME, prefix + REQUESTS_CLIENT_NAME).put(METRIC_ACTION, MARK));
+                metrics.mark(prefix + REQUESTS_CLIENT_NAME);
             }
         }
     }
@@ -334,7 +385,7 @@ public class MonitoringHandler {
         if (shouldBeTracked(targetUri)) {
             if (metricName != null) {
                 time = System.nanoTime();
-                vertx.eventBus().publish(getMonitoringAddress(), new JsonObject().put(METRIC_NAME, prefix + "routing." + metricName).put(METRIC_ACTION, MARK));
+                metrics.mark(prefix + "routing." + metricName);
             }
             updatePendingRequestCount(true);
         }
@@ -351,18 +402,18 @@ public class MonitoringHandler {
     public void stopRequestMetricTracking(final String metricName, long startTime, String targetUri) {
         if (shouldBeTracked(targetUri)) {
             if (metricName != null) {
-                double duration = (System.nanoTime() - startTime) / 1000000d;
-                vertx.eventBus().publish(getMonitoringAddress(),
-                        new JsonObject().put(METRIC_NAME, prefix + "routing." + metricName + ".duration").put(METRIC_ACTION, "update").put("n", duration));
+                metrics.recordDuration(prefix + "routing." + metricName + ".duration", (System.nanoTime() - startTime) / 1000);
             }
             updatePendingRequestCount(false);
         }
     }
 
     private void updatePendingRequestCount(boolean incrementCount) {
-        final String action = incrementCount ? "inc" : "dec";
-        log.trace("Updating count for pending requests: {} remaining", action);
-        vertx.eventBus().publish(getMonitoringAddress(), new JsonObject().put(METRIC_NAME, prefix + PENDING_REQUESTS_METRIC).put(METRIC_ACTION, action));
+        if (incrementCount) {
+            metrics.increment(prefix + PENDING_REQUESTS_METRIC);
+        } else {
+            metrics.decrement(prefix + PENDING_REQUESTS_METRIC);
+        }
     }
 
     /**
@@ -459,11 +510,11 @@ public class MonitoringHandler {
     }
 
     public void updateEnqueue() {
-        vertx.eventBus().publish(getMonitoringAddress(), new JsonObject().put(METRIC_NAME, prefix + ENQUEUE_METRIC).put(METRIC_ACTION, MARK));
+        metrics.mark(prefix + ENQUEUE_METRIC);
     }
 
     public void updateDequeue() {
-        vertx.eventBus().publish(getMonitoringAddress(), new JsonObject().put(METRIC_NAME, prefix + DEQUEUE_METRIC).put(METRIC_ACTION, MARK));
+        metrics.mark(prefix + DEQUEUE_METRIC);
     }
 
     public void updateListenerCount(long count){
@@ -0,0 +1,66 @@
+package org.swisspush.gateleen.monitoring;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for the {@link LatencyHistogram} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketPrecision(TestContext testContext) {
+        for (long value = 0; value < 10_000_000; value += value < 1000 ? 1 : 997) {
+            long reported = LatencyHistogram.value(LatencyHistogram.index(value));
+            testContext.assertTrue(Math.abs(reported - value) <= Math.max(1, value / LatencyHistogram.SUB_BUCKET_COUNT),
+                    "value " + value + " reported as " + reported);
+        }
+    }
+
+    @Test
+    public void testQuantiles(TestContext testContext) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+
+        testContext.assertEquals(1000L, snapshot.getCount());
+        assertAbout(testContext, 500_000, snapshot.getValueAtQuantile(0.5));
+        assertAbout(testContext, 990_000, snapshot.getValueAtQuantile(0.99));
+        assertAbout(testContext, 1_000_000, snapshot.getValueAtQuantile(1));
+        assertAbout(testContext, 1000, snapshot.getValueAtQuantile(0));
+    }
+
+    @Test
+    public void testSnapshotResets(TestContext testContext) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5);
+        testContext.assertEquals(1L, histogram.snapshotAndReset().getCount());
+
+        LatencyHistogram.Snapshot empty = histogram.snapshotAndReset();
+        testContext.assertEquals(0L, empty.getCount());
+        testContext.assertEquals(0L, empty.getValueAtQuantile(0.99));
+    }
+
+    @Test
+    public void testOutOfRangeValues(TestContext testContext) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+
+        testContext.assertEquals(0L, snapshot.getValueAtQuantile(0));
+        assertAbout(testContext, LatencyHistogram.MAX_VALUE, snapshot.getValueAtQuantile(1));
+    }
+
+    private static void assertAbout(TestContext testContext, long expected, long actual) {
+        testContext.assertTrue(Math.abs(expected - actual) <= expected / LatencyHistogram.SUB_BUCKET_COUNT,
+                "expected about " + expected + " but was " + actual);
+    }
+}
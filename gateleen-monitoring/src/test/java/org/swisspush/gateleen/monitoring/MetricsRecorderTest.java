@@ -0,0 +1,46 @@
+package org.swisspush.gateleen.monitoring;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the {@link MetricsRecorder} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class MetricsRecorderTest {
+
+    @Test
+    public void testDurationsAreLimitedPerFlush(TestContext testContext) {
+        MetricsRecorder recorder = new MetricsRecorder(3);
+        Map<String, LatencyHistogram.Snapshot> histograms = new HashMap<>();
+        Map<String, List<Double>> durations = new HashMap<>();
+        MetricsSink sink = (m, c, h, d) -> {
+            histograms.clear();
+            histograms.putAll(h);
+            durations.clear();
+            durations.putAll(d);
+        };
+
+        for (int i = 1; i <= 5; i++) {
+            recorder.recordDuration("duration", i * 1000L);
+        }
+        recorder.flush(sink);
+
+        // the histogram has all durations, only the first ones are kept as single values
+        testContext.assertEquals(5L, histograms.get("duration").getCount());
+        testContext.assertEquals(Arrays.asList(1d, 2d, 3d), durations.get("duration"));
+
+        // the limit applies per flush
+        recorder.recordDuration("duration", 4000L);
+        recorder.flush(sink);
+        testContext.assertEquals(1L, histograms.get("duration").getCount());
+        testContext.assertEquals(Arrays.asList(4d), durations.get("duration"));
+    }
+}
@@ -19,6 +19,8 @@ import org.swisspush.gateleen.core.http.DummyHttpServerRequest;
 import org.swisspush.gateleen.core.storage.MockResourceStorage;
 import org.swisspush.gateleen.core.util.Address;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import static org.awaitility.Awaitility.await;
@@ -51,6 +53,7 @@ public class MonitoringHandlerTest {
         System.clearProperty(MonitoringHandler.REQUEST_PER_RULE_PROPERTY);
         System.clearProperty(MonitoringHandler.REQUEST_PER_RULE_SAMPLING_PROPERTY);
         System.clearProperty(MonitoringHandler.REQUEST_PER_RULE_EXPIRY_PROPERTY);
+        System.clearProperty(MonitoringHandler.METRICS_FLUSH_INTERVAL_PROPERTY);
     }
 
     @Test
@@ -97,6 +100,79 @@ public class MonitoringHandlerTest {
         testContext.assertEquals(120L, mh.getRequestPerRuleExpiry());
     }
 
+    @Test
+    public void testInitMetricsFlushInterval(TestContext testContext){
+        MonitoringHandler mh = new MonitoringHandler(vertx, storage, PREFIX);
+        testContext.assertEquals(MonitoringHandler.METRICS_DEFAULT_FLUSH_INTERVAL, mh.getMetricsFlushInterval());
+
+        System.setProperty(MonitoringHandler.METRICS_FLUSH_INTERVAL_PROPERTY, "5000");
+        mh = new MonitoringHandler(vertx, storage, PREFIX);
+        testContext.assertEquals(5000L, mh.getMetricsFlushInterval());
+
+        System.setProperty(MonitoringHandler.METRICS_FLUSH_INTERVAL_PROPERTY, "0");
+        mh = new MonitoringHandler(vertx, storage, PREFIX);
+        testContext.assertEquals(MonitoringHandler.METRICS_DEFAULT_FLUSH_INTERVAL, mh.getMetricsFlushInterval());
+    }
+
+    @Test
+    public void testFlushRequestMetrics(TestContext testContext){
+        Map<String, Long> meters = new HashMap<>();
+        Map<String, Long> counters = new HashMap<>();
+        Map<String, LatencyHistogram.Snapshot> histograms = new HashMap<>();
+        Map<String, List<Double>> durations = new HashMap<>();
+        MonitoringHandler mh = new MonitoringHandler(vertx, storage, PREFIX, null, (m, c, h, d) -> {
+            meters.putAll(m);
+            counters.putAll(c);
+            histograms.putAll(h);
+            durations.putAll(d);
+        });
+
+        long startTime = mh.startRequestMetricTracking("my_rule", "/playground/server/some_resource");
+        mh.startRequestMetricTracking("my_rule", "/playground/server/some_resource");
+        mh.stopRequestMetricTracking("my_rule", startTime, "/playground/server/some_resource");
+        mh.updateRequestsMeter("localhost", "/playground/server/some_resource");
+        mh.updateRequestsMeter("http://backend/", "/playground/server/some_resource");
+        mh.updateRequestsMeter("localhost", "/playground/server/jmx/some_resource");
+        mh.updateEnqueue();
+        mh.flushMetrics();
+
+        testContext.assertEquals(2L, meters.get("gateleen.routing.my_rule"));
+        testContext.assertEquals(1L, meters.get("gateleen." + MonitoringHandler.REQUESTS_CLIENT_NAME));
+        testContext.assertEquals(1L, meters.get("gateleen." + MonitoringHandler.REQUESTS_BACKENDS_NAME));
+        testContext.assertEquals(1L, meters.get("gateleen." + MonitoringHandler.ENQUEUE_METRIC));
+        testContext.assertEquals(1L, counters.get("gateleen." + MonitoringHandler.PENDING_REQUESTS_METRIC));
+        testContext.assertEquals(1L, histograms.get("gateleen.routing.my_rule.duration").getCount());
+        testContext.assertEquals(1, durations.get("gateleen.routing.my_rule.duration").size());
+
+        // only the changes since the last flush are passed
+        meters.clear();
+        counters.clear();
+        mh.stopRequestMetricTracking("my_rule", startTime, "/playground/server/some_resource");
+        mh.flushMetrics();
+        testContext.assertTrue(meters.isEmpty());
+        testContext.assertEquals(-1L, counters.get("gateleen." + MonitoringHandler.PENDING_REQUESTS_METRIC));
+    }
+
+    @Test
+    public void testFlushPublishesEveryDuration(TestContext testContext){
+        Async async = testContext.async(20);
+        MonitoringHandler mh = new MonitoringHandler(vertx, storage, PREFIX);
+
+        vertx.eventBus().consumer(Address.monitoringAddress(), (Handler<Message<JsonObject>>) message -> {
+            final JsonObject body = message.body();
+            if ("gateleen.routing.my_rule.duration".equals(body.getString("name"))) {
+                testContext.assertEquals("update", body.getString("action"));
+                async.countDown();
+            }
+        });
+
+        for (int i = 0; i < 20; i++) {
+            long startTime = mh.startRequestMetricTracking("my_rule", "/playground/server/some_resource");
+            mh.stopRequestMetricTracking("my_rule", startTime, "/playground/server/some_resource");
+        }
+        mh.flushMetrics();
+    }
+
     @Test
     public void testConsumeMonitoringAddress(TestContext testContext){
         Async async = testContext.async();
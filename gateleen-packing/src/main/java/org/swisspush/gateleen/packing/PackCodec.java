@@ -0,0 +1,138 @@
+package org.swisspush.gateleen.packing;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.swisspush.gateleen.core.http.HttpRequest;
+import org.swisspush.gateleen.core.json.JsonMultiMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes and decodes the frames of a pack.
+ * <p>
+ * A pack is a sequence of frames. Each frame consists of
+ * <ul>
+ * <li>the length of the head as 4 bytes (big endian)</li>
+ * <li>the head as UTF-8 encoded json object</li>
+ * <li>the length of the body as 4 bytes (big endian)</li>
+ * <li>the body</li>
+ * </ul>
+ * The head of a request frame contains <code>method</code>, <code>uri</code> and <code>headers</code>, the head of a
+ * response frame contains <code>statusCode</code>, <code>statusMessage</code> and <code>headers</code>. The headers
+ * are an array of name/value arrays.
+ */
+public final class PackCodec {
+
+    private static final int LENGTH_SIZE = 4;
+
+    private PackCodec() {
+    }
+
+    /**
+     * @param request the request to encode, its payload is the body of the frame
+     * @return the request frame
+     */
+    public static Buffer encodeRequest(HttpRequest request) {
+        JsonObject head = new JsonObject()
+                .put("method", request.getMethod().name())
+                .put("uri", request.getUri());
+        if (request.getHeaders() != null) {
+            head.put("headers", JsonMultiMap.toJson(request.getHeaders()));
+        }
+        return encodeFrame(head, Buffer.buffer(request.getPayload()));
+    }
+
+    /**
+     * @param pack the request frames
+     * @return the requests contained in the pack
+     * @throws IllegalArgumentException when the pack is not valid
+     */
+    public static List<HttpRequest> decodeRequests(Buffer pack) {
+        List<HttpRequest> requests = new ArrayList<>();
+        int position = 0;
+        while (position < pack.length()) {
+            JsonObject head = readHead(pack, position);
+            position += LENGTH_SIZE + pack.getInt(position);
+            Buffer body = readBlock(pack, position);
+            position += LENGTH_SIZE + body.length();
+
+            HttpRequest request;
+            try {
+                request = new HttpRequest(head);
+            } catch (IllegalArgumentException | NullPointerException | ClassCastException e) {
+                throw new IllegalArgumentException("Invalid request " + requests.size() + ": " + e.getMessage());
+            }
+            requests.add(new HttpRequest(request.getMethod(), request.getUri(), request.getHeaders(), body.getBytes()));
+        }
+        return requests;
+    }
+
+    /**
+     * @param response the response to encode
+     * @return the response frame
+     */
+    public static Buffer encodeResponse(PackResponse response) {
+        JsonObject head = new JsonObject()
+                .put("statusCode", response.getStatusCode())
+                .put("statusMessage", response.getStatusMessage())
+                .put("headers", JsonMultiMap.toJson(response.getHeaders()));
+        return encodeFrame(head, response.getPayload());
+    }
+
+    /**
+     * @param pack the response frames
+     * @return the responses contained in the pack
+     * @throws IllegalArgumentException when the pack is not valid
+     */
+    public static List<PackResponse> decodeResponses(Buffer pack) {
+        List<PackResponse> responses = new ArrayList<>();
+        int position = 0;
+        while (position < pack.length()) {
+            JsonObject head = readHead(pack, position);
+            position += LENGTH_SIZE + pack.getInt(position);
+            Buffer body = readBlock(pack, position);
+            position += LENGTH_SIZE + body.length();
+
+            Integer statusCode = head.getInteger("statusCode");
+            if (statusCode == null) {
+                throw new IllegalArgumentException("Response field 'statusCode' must be set");
+            }
+            JsonArray headers = head.getJsonArray("headers");
+            responses.add(new PackResponse(statusCode, head.getString("statusMessage"),
+                    headers != null ? JsonMultiMap.fromJson(headers) : null, body));
+        }
+        return responses;
+    }
+
+    private static Buffer encodeFrame(JsonObject head, Buffer body) {
+        Buffer headBuffer = head.toBuffer();
+        return Buffer.buffer(2 * LENGTH_SIZE + headBuffer.length() + body.length())
+                .appendInt(headBuffer.length())
+                .appendBuffer(headBuffer)
+                .appendInt(body.length())
+                .appendBuffer(body);
+    }
+
+    private static JsonObject readHead(Buffer pack, int position) {
+        Buffer head = readBlock(pack, position);
+        try {
+            return new JsonObject(head);
+        } catch (DecodeException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid frame head at position " + position + ": " + e.getMessage());
+        }
+    }
+
+    private static Buffer readBlock(Buffer pack, int position) {
+        if (pack.length() - position < LENGTH_SIZE) {
+            throw new IllegalArgumentException("Incomplete frame at position " + position);
+        }
+        int length = pack.getInt(position);
+        if (length < 0 || pack.length() - position - LENGTH_SIZE < length) {
+            throw new IllegalArgumentException("Invalid frame length " + length + " at position " + position);
+        }
+        return pack.getBuffer(position + LENGTH_SIZE, position + LENGTH_SIZE + length);
+    }
+}
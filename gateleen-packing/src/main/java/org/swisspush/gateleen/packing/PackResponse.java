@@ -0,0 +1,50 @@
+package org.swisspush.gateleen.packing;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import org.swisspush.gateleen.core.util.StatusCode;
+
+/**
+ * The response to one request of a pack.
+ */
+public class PackResponse {
+
+    private final int statusCode;
+    private final String statusMessage;
+    private final MultiMap headers;
+    private final Buffer payload;
+
+    public PackResponse(int statusCode, String statusMessage, MultiMap headers, Buffer payload) {
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.headers = headers != null ? headers : MultiMap.caseInsensitiveMultiMap();
+        this.payload = payload != null ? payload : Buffer.buffer();
+    }
+
+    /**
+     * @param statusCode the status of the failed request
+     * @param message    the message sent as text payload
+     * @return the response of a request, which could not be executed
+     */
+    public static PackResponse error(StatusCode statusCode, String message) {
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap().add("Content-Type", "text/plain");
+        return new PackResponse(statusCode.getStatusCode(), statusCode.getStatusMessage(), headers,
+                Buffer.buffer(message != null ? message : statusCode.getStatusMessage()));
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    public MultiMap getHeaders() {
+        return headers;
+    }
+
+    public Buffer getPayload() {
+        return payload;
+    }
+}
@@ -1,37 +1,231 @@
 package org.swisspush.gateleen.packing;
 
-import io.vertx.core.Handler;
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import org.slf4j.Logger;
+import org.swisspush.gateleen.core.http.HttpRequest;
+import org.swisspush.gateleen.core.http.RequestLoggerFactory;
+import org.swisspush.gateleen.core.util.StatusCode;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Extract requests from a packing request and forward them to a handler.
+ * Extract requests from a packing request and execute them.
+ * <p>
+ * The body of a packing request contains the requests as frames described in {@link PackCodec}, the number of
+ * requests is given in the {@value #PACK_HEADER} header. The requests are executed through the given client, so they
+ * pass the whole handler chain. Only the identity headers of the pack (see {@link #DEFAULT_INHERITED_HEADERS}) are
+ * inherited by its requests.
+ * <p>
+ * The responses are streamed back as response frames in the order of the requests, as soon as all preceding responses
+ * are written. At most the configured number of requests are running or waiting with their response for the
+ * preceding responses, so a slow request does not let the responses of the following requests pile up in memory.
+ * A failing request is answered with its own status code in its frame, the pack itself is answered with
+ * status 200, as long as the pack could be decoded.
  *
  * @author https://github.com/lbovet [Laurent Bovet]
  */
-public class PackingHandler implements Handler<Buffer> {
-
-    private HttpServerRequest request;
-    private Handler<Buffer> nextHandler;
+public class PackingHandler {
 
     public static final String PACK_HEADER = "X-Pack-Size";
+    public static final String PACK_CONTENT_TYPE = "application/x-gateleen-pack";
+    public static final int DEFAULT_PARALLELISM = 10;
+    private static final int TIMEOUT = 120000;
+    private static final String CONTENT_TYPE = "Content-Type";
+
+    /**
+     * The headers of a pack which are inherited by its requests, i.e. the headers identifying the user.
+     */
+    public static final List<String> DEFAULT_INHERITED_HEADERS = List.of("Authorization", "Cookie", "x-rp-usr",
+            "x-rp-grp", "x-rp-deviceid", "x-rp-lang");
+
+    private final HttpClient httpClient;
+    private final int parallelism;
+    private final Collection<String> inheritedHeaderNames;
 
     public static boolean isPacked(HttpServerRequest request) {
         return request.headers().get(PACK_HEADER) != null;
     }
 
     /**
-     * @param request request
-     * @param nextHandler the handle to forward the unpacked
+     * @param httpClient the client executing the requests of a pack
+     */
+    public PackingHandler(HttpClient httpClient) {
+        this(httpClient, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @param httpClient  the client executing the requests of a pack
+     * @param parallelism the maximum number of requests of a pack running or waiting for the preceding responses
+     */
+    public PackingHandler(HttpClient httpClient, int parallelism) {
+        this(httpClient, parallelism, DEFAULT_INHERITED_HEADERS);
+    }
+
+    /**
+     * @param httpClient           the client executing the requests of a pack
+     * @param parallelism          the maximum number of requests of a pack running or waiting for the preceding responses
+     * @param inheritedHeaderNames the names of the headers of a pack which are inherited by its requests
      */
-    public PackingHandler(HttpServerRequest request, Handler<Buffer> nextHandler) {
-        super();
-        this.request = request;
-        this.nextHandler = nextHandler;
+    public PackingHandler(HttpClient httpClient, int parallelism, Collection<String> inheritedHeaderNames) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive but was " + parallelism);
+        }
+        this.httpClient = httpClient;
+        this.parallelism = parallelism;
+        this.inheritedHeaderNames = List.copyOf(inheritedHeaderNames);
+    }
+
+    public void handle(final HttpServerRequest request) {
+        Logger log = RequestLoggerFactory.getLogger(PackingHandler.class, request);
+        request.bodyHandler(body -> {
+            List<HttpRequest> requests;
+            try {
+                requests = PackCodec.decodeRequests(body);
+            } catch (IllegalArgumentException e) {
+                respondBadRequest(request, log, e.getMessage());
+                return;
+            }
+            String packSize = request.headers().get(PACK_HEADER);
+            if (!String.valueOf(requests.size()).equals(packSize)) {
+                respondBadRequest(request, log, "Header " + PACK_HEADER + " is " + packSize + " but the pack contains "
+                        + requests.size() + " requests");
+                return;
+            }
+            log.debug("executing pack of {} requests", requests.size());
+            new Pack(request, requests, log).start();
+        });
     }
 
-    @Override
-    public void handle(Buffer event) {
-        request.bodyHandler(event1 -> nextHandler.handle(event1));
+    private void respondBadRequest(HttpServerRequest request, Logger log, String message) {
+        log.warn("Invalid pack: {}", message);
+        request.response().setStatusCode(StatusCode.BAD_REQUEST.getStatusCode());
+        request.response().setStatusMessage(StatusCode.BAD_REQUEST.getStatusMessage());
+        request.response().end(message);
+    }
+
+    /**
+     * The execution of the requests of one pack.
+     */
+    private class Pack {
+        private final HttpServerResponse response;
+        private final List<HttpRequest> requests;
+        private final PackResponse[] responses;
+        private final MultiMap inheritedHeaders;
+        private final Logger log;
+        private int nextRequest;
+        private int nextResponse;
+        private boolean closed;
+
+        Pack(HttpServerRequest request, List<HttpRequest> requests, Logger log) {
+            this.response = request.response();
+            this.requests = requests;
+            this.responses = new PackResponse[requests.size()];
+            this.log = log;
+            this.inheritedHeaders = MultiMap.caseInsensitiveMultiMap();
+            for (String name : inheritedHeaderNames) {
+                List<String> values = request.headers().getAll(name);
+                if (!values.isEmpty()) {
+                    inheritedHeaders.set(name, values);
+                }
+            }
+        }
+
+        void start() {
+            response.setStatusCode(StatusCode.OK.getStatusCode());
+            response.setStatusMessage(StatusCode.OK.getStatusMessage());
+            response.putHeader(CONTENT_TYPE, PACK_CONTENT_TYPE);
+            response.putHeader(PACK_HEADER, String.valueOf(requests.size()));
+            response.setChunked(true);
+            response.closeHandler(v -> closed = true);
+            response.drainHandler(v -> sendNext());
+            if (requests.isEmpty()) {
+                response.end();
+                return;
+            }
+            sendNext();
+        }
+
+        private void sendNext() {
+            // a request is started only when at most parallelism responses are running or not yet written, and no
+            // further requests are started while the client does not read the responses
+            while (!closed && nextRequest - nextResponse < parallelism && nextRequest < requests.size()
+                    && !response.writeQueueFull()) {
+                final int index = nextRequest++;
+                send(requests.get(index)).onComplete(event -> {
+                    responses[index] = event.result();
+                    writeCompleted();
+                    sendNext();
+                });
+            }
+        }
+
+        private void writeCompleted() {
+            while (nextResponse < responses.length && responses[nextResponse] != null) {
+                if (!closed) {
+                    response.write(PackCodec.encodeResponse(responses[nextResponse]));
+                }
+                // the response is not needed anymore
+                responses[nextResponse++] = null;
+            }
+            if (nextResponse == responses.length && !closed) {
+                response.end();
+            }
+        }
+
+        /**
+         * @return a future always succeeding, failures are converted to error responses
+         */
+        private Future<PackResponse> send(HttpRequest packed) {
+            Promise<PackResponse> promise = Promise.promise();
+            httpClient.request(packed.getMethod(), packed.getUri()).onComplete(asyncResult -> {
+                if (asyncResult.failed()) {
+                    log.warn("Failed request to {}: {}", packed.getUri(), asyncResult.cause().getMessage());
+                    promise.tryComplete(errorResponse(asyncResult.cause()));
+                    return;
+                }
+                HttpClientRequest cReq = asyncResult.result();
+                cReq.idleTimeout(TIMEOUT);
+                cReq.headers().setAll(inheritedHeaders);
+                if (packed.getHeaders() != null) {
+                    cReq.headers().setAll(packed.getHeaders());
+                }
+                cReq.exceptionHandler(exception -> {
+                    log.warn("Failed request to {}: {}", packed.getUri(), exception.getMessage());
+                    promise.tryComplete(errorResponse(exception));
+                });
+                cReq.send(Buffer.buffer(packed.getPayload()), event -> {
+                    if (event.failed()) {
+                        log.warn("Failed request to {}: {}", packed.getUri(), event.cause().getMessage());
+                        promise.tryComplete(errorResponse(event.cause()));
+                        return;
+                    }
+                    HttpClientResponse cRes = event.result();
+                    cRes.exceptionHandler(exception -> {
+                        log.warn("Failed response from {}: {}", packed.getUri(), exception.getMessage());
+                        promise.tryComplete(errorResponse(exception));
+                    });
+                    cRes.bodyHandler(data -> promise.tryComplete(new PackResponse(cRes.statusCode(),
+                            cRes.statusMessage(), MultiMap.caseInsensitiveMultiMap().setAll(cRes.headers()), data)));
+                });
+            });
+            return promise.future();
+        }
+
+        private PackResponse errorResponse(Throwable cause) {
+            if (cause instanceof TimeoutException) {
+                return PackResponse.error(StatusCode.TIMEOUT, cause.getMessage());
+            }
+            return PackResponse.error(StatusCode.INTERNAL_SERVER_ERROR, cause.getMessage());
+        }
     }
 }
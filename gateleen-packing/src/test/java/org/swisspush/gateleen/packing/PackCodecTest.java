@@ -0,0 +1,80 @@
+package org.swisspush.gateleen.packing;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.gateleen.core.http.HttpRequest;
+import org.swisspush.gateleen.core.util.StatusCode;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link PackCodec} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class PackCodecTest {
+
+    @Test
+    public void testRequestsRoundTrip(TestContext context) {
+        Buffer pack = Buffer.buffer()
+                .appendBuffer(PackCodec.encodeRequest(new HttpRequest(HttpMethod.PUT, "/server/tests/a",
+                        MultiMap.caseInsensitiveMultiMap().add("x-expire-after", "60"), "{\"v\":1}".getBytes())))
+                .appendBuffer(PackCodec.encodeRequest(new HttpRequest(HttpMethod.GET, "/server/tests/b", null, null)));
+
+        List<HttpRequest> requests = PackCodec.decodeRequests(pack);
+
+        context.assertEquals(2, requests.size());
+        context.assertEquals(HttpMethod.PUT, requests.get(0).getMethod());
+        context.assertEquals("/server/tests/a", requests.get(0).getUri());
+        context.assertEquals("60", requests.get(0).getHeaders().get("X-Expire-After"));
+        context.assertEquals("{\"v\":1}", new String(requests.get(0).getPayload()));
+        context.assertEquals(HttpMethod.GET, requests.get(1).getMethod());
+        context.assertNull(requests.get(1).getHeaders());
+        context.assertEquals(0, requests.get(1).getPayload().length);
+    }
+
+    @Test
+    public void testResponsesRoundTrip(TestContext context) {
+        Buffer pack = Buffer.buffer()
+                .appendBuffer(PackCodec.encodeResponse(new PackResponse(200, "OK",
+                        MultiMap.caseInsensitiveMultiMap().add("Etag", "e1"), Buffer.buffer("{\"v\":1}"))))
+                .appendBuffer(PackCodec.encodeResponse(PackResponse.error(StatusCode.TIMEOUT, "timeout")));
+
+        List<PackResponse> responses = PackCodec.decodeResponses(pack);
+
+        context.assertEquals(2, responses.size());
+        context.assertEquals(200, responses.get(0).getStatusCode());
+        context.assertEquals("e1", responses.get(0).getHeaders().get("etag"));
+        context.assertEquals("{\"v\":1}", responses.get(0).getPayload().toString());
+        context.assertEquals(504, responses.get(1).getStatusCode());
+        context.assertEquals("timeout", responses.get(1).getPayload().toString());
+    }
+
+    @Test
+    public void testInvalidPacks(TestContext context) {
+        Buffer valid = PackCodec.encodeRequest(new HttpRequest(HttpMethod.GET, "/server/tests/a", null, null));
+
+        assertInvalid(context, valid.getBuffer(0, valid.length() - 1));
+        assertInvalid(context, Buffer.buffer().appendInt(5).appendString("nojso").appendInt(0));
+        assertInvalid(context, Buffer.buffer().appendInt(-1));
+        assertInvalid(context, frame("{\"method\":\"CONNECT\",\"uri\":\"/server/tests/a\"}"));
+        assertInvalid(context, frame("{\"method\":\"GET\"}"));
+    }
+
+    private static Buffer frame(String head) {
+        return Buffer.buffer().appendInt(head.length()).appendString(head).appendInt(0);
+    }
+
+    private static void assertInvalid(TestContext context, Buffer pack) {
+        try {
+            PackCodec.decodeRequests(pack);
+            context.fail("pack should be invalid");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
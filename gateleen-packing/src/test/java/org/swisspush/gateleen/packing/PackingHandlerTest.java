@@ -0,0 +1,162 @@
+package org.swisspush.gateleen.packing;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.Timeout;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.gateleen.core.http.HttpRequest;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the {@link PackingHandler} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class PackingHandlerTest {
+
+    private Vertx vertx;
+    private HttpClient client;
+    private PackingHandler packingHandler;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger startedBeforeFirstResponse = new AtomicInteger();
+
+    @org.junit.Rule
+    public Timeout rule = Timeout.seconds(10);
+
+    @Before
+    public void setUp(TestContext context) {
+        vertx = Vertx.vertx();
+        HttpServer server = vertx.createHttpServer();
+        server.requestHandler(this::handle).listen(0, context.asyncAssertSuccess(httpServer ->
+                client = vertx.createHttpClient(new HttpClientOptions().setDefaultHost("localhost")
+                        .setDefaultPort(httpServer.actualPort()))));
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private void handle(HttpServerRequest request) {
+        if (PackingHandler.isPacked(request)) {
+            packingHandler.handle(request);
+            return;
+        }
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        started.incrementAndGet();
+        request.bodyHandler(body -> {
+            // the first request answers last, to check the order of the responses
+            boolean first = request.path().endsWith("/0");
+            vertx.setTimer(first ? 200 : 10, id -> {
+                running.decrementAndGet();
+                if (first) {
+                    startedBeforeFirstResponse.set(started.get());
+                }
+                if (request.path().contains("fail")) {
+                    request.response().setStatusCode(500).setStatusMessage("Internal Server Error").end("failed");
+                    return;
+                }
+                request.response().putHeader("x-echo-user", String.valueOf(request.getHeader("x-rp-usr")))
+                        .putHeader("x-echo-queue", String.valueOf(request.getHeader("x-queue")))
+                        .end(request.method().name() + " " + request.path() + " " + body);
+            });
+        });
+    }
+
+    @Test
+    public void testResponsesInRequestOrder(TestContext context) {
+        packingHandler = new PackingHandler(client, 2);
+        Buffer pack = Buffer.buffer();
+        for (int i = 0; i < 5; i++) {
+            pack.appendBuffer(PackCodec.encodeRequest(new HttpRequest(HttpMethod.PUT, "/tests/" + i, null,
+                    ("v" + i).getBytes())));
+        }
+        pack.appendBuffer(PackCodec.encodeRequest(new HttpRequest(HttpMethod.GET, "/tests/fail", null, null)));
+
+        Async async = context.async();
+        sendPack(context, pack, "6", (statusCode, body) -> {
+            context.assertEquals(200, statusCode);
+            List<PackResponse> responses = PackCodec.decodeResponses(body);
+            context.assertEquals(6, responses.size());
+            for (int i = 0; i < 5; i++) {
+                context.assertEquals(200, responses.get(i).getStatusCode());
+                context.assertEquals("PUT /tests/" + i + " v" + i, responses.get(i).getPayload().toString());
+                context.assertEquals("user_1", responses.get(i).getHeaders().get("x-echo-user"),
+                        "headers of the pack should be inherited");
+                context.assertEquals("null", responses.get(i).getHeaders().get("x-echo-queue"),
+                        "only the identity headers of the pack should be inherited");
+            }
+            context.assertEquals(500, responses.get(5).getStatusCode(), "a failing request should not fail the pack");
+            context.assertEquals("failed", responses.get(5).getPayload().toString());
+            context.assertEquals(2, maxRunning.get());
+            context.assertEquals(2, startedBeforeFirstResponse.get(),
+                    "no requests should be started while the first response is not written");
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testUnreachableTarget(TestContext context) {
+        packingHandler = new PackingHandler(vertx.createHttpClient(new HttpClientOptions().setDefaultHost("localhost")
+                .setDefaultPort(1)));
+        Buffer pack = PackCodec.encodeRequest(new HttpRequest(HttpMethod.GET, "/tests/0", null, null));
+
+        Async async = context.async();
+        sendPack(context, pack, "1", (statusCode, body) -> {
+            context.assertEquals(200, statusCode);
+            List<PackResponse> responses = PackCodec.decodeResponses(body);
+            context.assertEquals(1, responses.size());
+            context.assertEquals(500, responses.get(0).getStatusCode());
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testInvalidPackSize(TestContext context) {
+        packingHandler = new PackingHandler(client);
+        Buffer pack = PackCodec.encodeRequest(new HttpRequest(HttpMethod.GET, "/tests/0", null, null));
+
+        Async async = context.async();
+        sendPack(context, pack, "2", (statusCode, body) -> {
+            context.assertEquals(400, statusCode);
+            context.assertEquals(0, maxRunning.get());
+            async.complete();
+        });
+    }
+
+    private interface PackResponseHandler {
+        void handle(int statusCode, Buffer body);
+    }
+
+    private void sendPack(TestContext context, Buffer pack, String packSize, PackResponseHandler handler) {
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+                .add(PackingHandler.PACK_HEADER, packSize)
+                .add("x-rp-usr", "user_1")
+                .add("x-queue", "pack_queue");
+        client.request(HttpMethod.POST, "/pack")
+                .compose(request -> {
+                    request.headers().addAll(headers);
+                    return request.send(pack);
+                })
+                .compose(response -> response.body().map(body -> {
+                    handler.handle(response.statusCode(), body);
+                    return body;
+                }))
+                .onFailure(context::fail);
+    }
+}
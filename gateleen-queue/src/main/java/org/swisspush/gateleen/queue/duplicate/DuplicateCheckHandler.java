@@ -1,15 +1,18 @@
 package org.swisspush.gateleen.queue.duplicate;
 
-import com.google.common.collect.ImmutableList;
-import io.vertx.core.AsyncResult;
+import com.google.common.hash.HashCode;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.buffer.Buffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.swisspush.gateleen.core.redis.RedisProvider;
 import org.swisspush.gateleen.core.util.HashCodeGenerator;
 
-import java.util.Objects;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class which is responsible for checking wheter a request is duplicate or not
@@ -24,14 +27,34 @@ public final class DuplicateCheckHandler {
 
     private static Logger log = LoggerFactory.getLogger(DuplicateCheckHandler.class);
 
+    private static volatile DuplicateCheckPrefilter prefilter;
+
+    /**
+     * Keys of requests accepted by the prefilter, whose entries are not yet written to redis
+     */
+    private static final Set<String> pendingRedisKeys = ConcurrentHashMap.newKeySet();
+
     private DuplicateCheckHandler() {
         // Prevent instantiation
     }
 
+    /**
+     * Sets the local prefilter, which answers the check without waiting for redis when a request has definitely
+     * never been seen before. See {@link DuplicateCheckPrefilter} for the restrictions. Disabled by default.
+     *
+     * @param duplicateCheckPrefilter the prefilter or <code>null</code> to disable the prefilter
+     */
+    public static void setPrefilter(DuplicateCheckPrefilter duplicateCheckPrefilter) {
+        prefilter = duplicateCheckPrefilter;
+    }
+
     /**
      * This method checks if an entry for the provided information (uri and buffer) is stored in the redis database. When no entry was found
      * in the database, a new entry will be saved to the database using a key which is created from the given parameters (uri and buffer).
      * The new entry expires after ttl has expired.
+     * <p>
+     * The check and the creation of the entry is a single atomic command, so of several concurrent duplicates exactly one
+     * is accepted. When the command fails, the request is not treated as duplicate.
      *
      * @param redisProvider provider for redis
      * @param uri      the request uri
@@ -40,12 +63,53 @@ public final class DuplicateCheckHandler {
      * @param callback the result callback. Returns true if the request is a duplicate else returns false
      */
     public static void checkDuplicateRequest(RedisProvider redisProvider, String uri, Buffer buffer, String ttl, Handler<Boolean> callback) {
-        Integer timeToLive = parseTimeToLive(ttl);
-        String redisKey = getRedisKey(uri, HashCodeGenerator.createHashCode(uri, buffer.toString()));
-        handleStorage(redisProvider, redisKey, timeToLive, callback);
+        int timeToLive = parseTimeToLive(ttl);
+        HashCode hash = HashCodeGenerator.createPayloadHashCode(uri, buffer);
+        String redisKey = getRedisKey(uri, hash.toString());
+
+        DuplicateCheckPrefilter currentPrefilter = prefilter;
+        if (currentPrefilter != null) {
+            boolean isNew;
+            boolean isPending;
+            synchronized (currentPrefilter) {
+                isNew = currentPrefilter.isNew(hash, timeToLive);
+                isPending = !isNew && pendingRedisKeys.contains(redisKey);
+                if (isNew) {
+                    pendingRedisKeys.add(redisKey);
+                }
+            }
+            if (isNew) {
+                // the entry is still written, so that later duplicates are found in redis
+                setIfAbsent(redisProvider, redisKey, timeToLive).onComplete(event -> {
+                    pendingRedisKeys.remove(redisKey);
+                    if (event.failed()) {
+                        log.error("set command for redisKey '{}' resulted in cause {}", redisKey, event.cause().getMessage());
+                    }
+                });
+                callback.handle(Boolean.FALSE);
+                return;
+            }
+            if (isPending) {
+                log.info("received a duplicate request for redisKey: {}", redisKey);
+                callback.handle(Boolean.TRUE);
+                return;
+            }
+        }
+
+        setIfAbsent(redisProvider, redisKey, timeToLive).onComplete(event -> {
+            if (event.failed()) {
+                log.error("set command for redisKey '{}' resulted in cause {}", redisKey, event.cause().getMessage());
+                callback.handle(Boolean.FALSE);
+            } else if (event.result()) {
+                callback.handle(Boolean.FALSE);
+            } else {
+                log.info("received a duplicate request for redisKey: {}", redisKey);
+                callback.handle(Boolean.TRUE);
+            }
+        });
     }
 
-    private static Integer parseTimeToLive(String ttl) {
+    private static int parseTimeToLive(String ttl) {
         int timeToLive;
         try {
             timeToLive = Integer.parseInt(ttl);
@@ -60,42 +124,21 @@ public final class DuplicateCheckHandler {
         return String.format(REDIS_KEY_TEMPLATE, uri, hash);
     }
 
-    private static void handleStorage(RedisProvider redisProvider, final String redisKey, int ttl, final Handler<Boolean> callback) {
-
-        // read from storage
-        redisProvider.redis().onSuccess(redisAPI -> redisAPI.get(redisKey, reply -> {
+    /**
+     * Writes the entry unless it exists already.
+     *
+     * @return a future holding <code>true</code> when the entry has been written, <code>false</code> when it existed already
+     */
+    private static Future<Boolean> setIfAbsent(RedisProvider redisProvider, String redisKey, int ttl) {
+        Promise<Boolean> promise = Promise.promise();
+        redisProvider.redis().onSuccess(redisAPI -> redisAPI.set(Arrays.asList(redisKey, DEFAULT_REDIS_ENTRY_VALUE, "NX", "EX", String.valueOf(ttl)), reply -> {
             if (reply.failed()) {
-                log.error("get command for redisKey '{}' resulted in cause {}", redisKey, logCause(reply));
-                return;
-            }
-
-            if (!DEFAULT_REDIS_ENTRY_VALUE.equals(Objects.toString(reply.result(), ""))) {
-                // save to storage
-                redisAPI.setnx(redisKey, DEFAULT_REDIS_ENTRY_VALUE, setnxReply -> {
-                    if (setnxReply.failed()) {
-                        log.error("set command for redisKey '{}' resulted in cause {}", redisKey, logCause(setnxReply));
-                        return;
-                    }
-
-                    // set expire
-                    redisAPI.expire(ImmutableList.of(redisKey, String.valueOf(ttl)), expireReply -> {
-                        if (expireReply.failed()) {
-                            log.error("expire command for redisKey '{}' resulted in cause {}", redisKey, logCause(expireReply));
-                        }
-                    });
-                });
-                callback.handle(Boolean.FALSE);
+                promise.fail(reply.cause());
             } else {
-                log.info("received a duplicate request for redisKey: {}", redisKey);
-                callback.handle(Boolean.TRUE);
+                // the reply is null when the entry exists already
+                promise.complete(reply.result() != null);
             }
-        })).onFailure(throwable -> log.error("Redis: get command for redisKey '{}' resulted in cause {}", redisKey, throwable.getMessage()));
-    }
-
-    private static String logCause(AsyncResult result) {
-        if (result.cause() != null) {
-            return result.cause().getMessage();
-        }
-        return null;
+        })).onFailure(promise::fail);
+        return promise.future();
     }
 }
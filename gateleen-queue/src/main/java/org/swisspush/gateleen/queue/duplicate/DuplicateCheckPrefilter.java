@@ -0,0 +1,58 @@
+package org.swisspush.gateleen.queue.duplicate;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+
+/**
+ * Local bloom filter of the requests checked by the {@link DuplicateCheckHandler}. When the filter has definitely
+ * never seen a request, the request cannot be a duplicate and the {@link DuplicateCheckHandler} does not have to wait
+ * for the reply of redis.
+ * <p>
+ * This is only correct when all requests, which could be duplicates of each other, are checked by the same instance.
+ * So do not use the prefilter when several instances are running behind a load balancer without sticky routing.
+ * <p>
+ * A new (empty) filter does not know the requests checked before it was created. So the filter is only used for a
+ * request when it was created longer than the time to live of the request ago. When the filter is full, it is replaced
+ * by a new one.
+ */
+public class DuplicateCheckPrefilter {
+
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+
+    private BloomFilter<byte[]> filter;
+    private long filterCreated;
+
+    /**
+     * @param expectedInsertions       the amount of requests to check before the filter is replaced
+     * @param falsePositiveProbability the probability for a request to be checked against redis even though
+     *                                 it was never seen before
+     */
+    public DuplicateCheckPrefilter(long expectedInsertions, double falsePositiveProbability) {
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+        resetFilter();
+    }
+
+    /**
+     * Records the request and returns whether it has definitely never been seen before.
+     *
+     * @param hash       the hash of the request
+     * @param timeToLive the time to live (in seconds) of the duplicate check entry of the request
+     * @return <code>true</code> when the request has definitely never been seen before within its time to live,
+     * <code>false</code> when the request has to be checked against redis
+     */
+    public synchronized boolean isNew(HashCode hash, int timeToLive) {
+        if (filter.approximateElementCount() >= expectedInsertions) {
+            resetFilter();
+        }
+        boolean changed = filter.put(hash.asBytes());
+        return changed && System.currentTimeMillis() - filterCreated >= timeToLive * 1000L;
+    }
+
+    private void resetFilter() {
+        filter = BloomFilter.create(Funnels.byteArrayFunnel(), expectedInsertions, falsePositiveProbability);
+        filterCreated = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,58 @@
+package org.swisspush.gateleen.queue.queuing;
+
+import org.swisspush.gateleen.core.http.HttpRequest;
+
+import javax.annotation.Nullable;
+
+/**
+ * A request to be enqueued with {@link RequestQueue#enqueueBatch(java.util.List)}.
+ */
+public class EnqueueBatchEntry {
+
+    private final HttpRequest request;
+    private final String queue;
+    @Nullable
+    private final String lockRequestedBy;
+
+    private EnqueueBatchEntry(HttpRequest request, String queue, @Nullable String lockRequestedBy) {
+        this.request = request;
+        this.queue = queue;
+        this.lockRequestedBy = lockRequestedBy;
+    }
+
+    /**
+     * @param request the request to enqueue
+     * @param queue   the queue
+     * @return an entry enqueueing the request into the queue
+     */
+    public static EnqueueBatchEntry of(HttpRequest request, String queue) {
+        return new EnqueueBatchEntry(request, queue, null);
+    }
+
+    /**
+     * @param request         the request to enqueue
+     * @param queue           the queue
+     * @param lockRequestedBy the user requesting the lock
+     * @return an entry enqueueing the request into the queue and locking the queue
+     */
+    public static EnqueueBatchEntry locked(HttpRequest request, String queue, String lockRequestedBy) {
+        return new EnqueueBatchEntry(request, queue, lockRequestedBy);
+    }
+
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    public String getQueue() {
+        return queue;
+    }
+
+    public boolean isLocked() {
+        return lockRequestedBy != null;
+    }
+
+    @Nullable
+    public String getLockRequestedBy() {
+        return lockRequestedBy;
+    }
+}
@@ -13,6 +13,9 @@ import org.swisspush.gateleen.core.util.ResponseStatusCodeLogUtil;
 import org.swisspush.gateleen.core.util.StatusCode;
 import org.swisspush.gateleen.monitoring.MonitoringHandler;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.swisspush.redisques.util.RedisquesAPI.*;
 
 /**
@@ -25,6 +28,7 @@ public class QueueClient implements RequestQueue {
     public static final Logger log = LoggerFactory.getLogger(QueueClient.class);
     private MonitoringHandler monitoringHandler;
     private Vertx vertx;
+    private final boolean envelopeFormat;
 
     /**
      * Creates a new instance of the QueueClient.
@@ -33,8 +37,21 @@ public class QueueClient implements RequestQueue {
      * @param monitoringHandler monitoringHandler
      */
     public QueueClient(Vertx vertx, MonitoringHandler monitoringHandler) {
+        this(vertx, monitoringHandler, false);
+    }
+
+    /**
+     * Creates a new instance of the QueueClient.
+     *
+     * @param vertx             vertx
+     * @param monitoringHandler monitoringHandler
+     * @param envelopeFormat    when <code>true</code>, requests are enqueued as {@link QueuedRequestEnvelope} instead of json.
+     *                          The {@link QueueProcessor} reads both formats, so this can be enabled while the queues contain json items.
+     */
+    public QueueClient(Vertx vertx, MonitoringHandler monitoringHandler, boolean envelopeFormat) {
         this.vertx = vertx;
         this.monitoringHandler = monitoringHandler;
+        this.envelopeFormat = envelopeFormat;
     }
 
     /**
@@ -107,7 +124,7 @@ public class QueueClient implements RequestQueue {
     @Override
     public void lockedEnqueue(HttpRequest queuedRequest, String queue, String lockRequestedBy, Handler<Void> doneHandler) {
         vertx.eventBus().request(getRedisquesAddress(), buildLockedEnqueueOperation(queue,
-                queuedRequest.toJsonObject().put(QUEUE_TIMESTAMP, System.currentTimeMillis()).encode(), lockRequestedBy),
+                encodeQueueItem(queuedRequest, System.currentTimeMillis()), lockRequestedBy),
                 (Handler<AsyncResult<Message<JsonObject>>>) event -> {
                     if (OK.equals(event.result().body().getString(STATUS))) {
                         monitoringHandler.updateLastUsedQueueSizeInformation(queue);
@@ -169,7 +186,7 @@ public class QueueClient implements RequestQueue {
     public Future<Void> enqueueFuture(HttpRequest queuedRequest, String queue) {
         Promise<Void> promise = Promise.promise();
         vertx.eventBus().request(getRedisquesAddress(), buildEnqueueOperation(queue,
-                queuedRequest.toJsonObject().put(QUEUE_TIMESTAMP, System.currentTimeMillis()).encode()),
+                encodeQueueItem(queuedRequest, System.currentTimeMillis())),
                 (Handler<AsyncResult<Message<JsonObject>>>) event -> {
                     if (OK.equals(event.result().body().getString(STATUS))) {
                         monitoringHandler.updateLastUsedQueueSizeInformation(queue);
@@ -182,6 +199,71 @@ public class QueueClient implements RequestQueue {
         return promise.future();
     }
 
+    /**
+     * Encodes the request as queue item, either as json or as {@link QueuedRequestEnvelope}.
+     *
+     * @param queuedRequest  the request
+     * @param queueTimestamp the time the request is enqueued
+     * @return the queue item
+     */
+    private String encodeQueueItem(HttpRequest queuedRequest, long queueTimestamp) {
+        if (envelopeFormat) {
+            return QueuedRequestEnvelope.encode(queuedRequest, queueTimestamp);
+        }
+        return queuedRequest.toJsonObject().put(QUEUE_TIMESTAMP, queueTimestamp).encode();
+    }
+
+    /**
+     * Enqueues all given entries. The enqueue and lockedEnqueue operations of all entries are sent to redisques
+     * without waiting for each other, so every entry is subject to the same checks (e.g. the memory usage limit) as
+     * a single enqueue and has its own result.
+     * <p>
+     * Like for single enqueues, the monitoring is updated for each enqueued entry.
+     *
+     * @param entries the requests with their queues
+     * @return a future completed when all entries are processed, with the result of each entry at its index
+     */
+    @Override
+    public CompositeFuture enqueueBatch(List<EnqueueBatchEntry> entries) {
+        long queueTimestamp = System.currentTimeMillis();
+        @SuppressWarnings("rawtypes") //https://github.com/eclipse-vertx/vert.x/issues/2627
+        List<Future> results = new ArrayList<>(entries.size());
+        for (EnqueueBatchEntry entry : entries) {
+            results.add(enqueueBatchEntry(entry, queueTimestamp));
+        }
+        return CompositeFuture.join(results);
+    }
+
+    private Future<Void> enqueueBatchEntry(EnqueueBatchEntry entry, long queueTimestamp) {
+        HttpRequest queuedRequest = entry.getRequest();
+        if (!QueueProcessor.httpMethodIsQueueable(queuedRequest.getMethod())) {
+            log.warn("Ignore enqueue of unsupported HTTP method in '{} {}'.", queuedRequest.getMethod(), queuedRequest.getUri());
+            return Future.failedFuture("Unsupported HTTP method " + queuedRequest.getMethod());
+        }
+        String item = encodeQueueItem(queuedRequest, queueTimestamp);
+        JsonObject operation = entry.isLocked()
+                ? buildLockedEnqueueOperation(entry.getQueue(), item, entry.getLockRequestedBy())
+                : buildEnqueueOperation(entry.getQueue(), item);
+
+        Promise<Void> promise = Promise.promise();
+        vertx.eventBus().request(getRedisquesAddress(), operation, (Handler<AsyncResult<Message<JsonObject>>>) event -> {
+            if (event.failed()) {
+                promise.fail(event.cause());
+            } else if (OK.equals(event.result().body().getString(STATUS))) {
+                enqueued(entry.getQueue());
+                promise.complete();
+            } else {
+                promise.fail(event.result().body().getString(MESSAGE));
+            }
+        });
+        return promise.future();
+    }
+
+    private void enqueued(String queue) {
+        monitoringHandler.updateLastUsedQueueSizeInformation(queue);
+        monitoringHandler.updateEnqueue();
+    }
+
     /**
      * Enqueues a request. <br />
      * If no X-Server-Timestamp and / or X-Expire-After headers
@@ -213,7 +295,7 @@ public class QueueClient implements RequestQueue {
             if (doneHandler != null) doneHandler.handle(null);
             return;
         }
-        vertx.eventBus().request(getRedisquesAddress(), buildEnqueueOperation(queue, queuedRequest.toJsonObject().put(QUEUE_TIMESTAMP, System.currentTimeMillis()).encode()),
+        vertx.eventBus().request(getRedisquesAddress(), buildEnqueueOperation(queue, encodeQueueItem(queuedRequest, System.currentTimeMillis())),
                 (Handler<AsyncResult<Message<JsonObject>>>) event -> {
                     if (OK.equals(event.result().body().getString(STATUS))) {
                         monitoringHandler.updateLastUsedQueueSizeInformation(queue);
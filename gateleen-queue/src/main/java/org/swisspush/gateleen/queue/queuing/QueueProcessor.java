@@ -81,16 +81,17 @@ public class QueueProcessor {
         if (this.consumer == null || !this.consumer.isRegistered()) {
             log.info("about to register consumer to start queue processing");
             this.consumer = vertx.eventBus().consumer(getQueueProcessorAddress(), (Handler<Message<JsonObject>>) message -> {
-                HttpRequest queuedRequestTry = null;
-                JsonObject jsonRequest = new JsonObject(message.body().getString("payload"));
+                QueuedRequestEnvelope queuedItem;
                 try {
-                    queuedRequestTry = new HttpRequest(jsonRequest);
+                    // items are either json or envelopes, depending on the format the QueueClient enqueued them with
+                    queuedItem = QueuedRequestEnvelope.read(message.body().getString("payload"));
                 } catch (Exception exception) {
                     log.error("Could not build request: {} error is {}", message.body().toString(), exception.getMessage());
                     message.reply(new JsonObject().put(STATUS, ERROR).put(MESSAGE, exception.getMessage()));
                     return;
                 }
-                final HttpRequest queuedRequest = queuedRequestTry;
+                final HttpRequest queuedRequest = queuedItem.getRequest();
+                final Long queueTimestamp = queuedItem.getQueueTimestamp();
                 final Logger logger = RequestLoggerFactory.getLogger(QueueProcessor.class, queuedRequest.getHeaders());
                 if (logger.isTraceEnabled()) {
                     logger.trace("process message: " + message);
@@ -99,7 +100,7 @@ public class QueueProcessor {
                 String queueName = message.body().getString("queue");
 
                 if (!isCircuitCheckEnabled()) {
-                    executeQueuedRequest(message, logger, queuedRequest, jsonRequest, queueName, null);
+                    executeQueuedRequest(message, logger, queuedRequest, queueTimestamp, queueName, null);
                 } else {
                     queueCircuitBreaker.handleQueuedRequest(queueName, queuedRequest).onComplete(event -> {
                         if (event.failed()) {
@@ -112,7 +113,7 @@ public class QueueProcessor {
                         if (QueueCircuitState.OPEN == state) {
                             message.reply(new JsonObject().put(STATUS, ERROR).put(MESSAGE, "Circuit for queue " + queueName + " is " + state + ". Queues using this endpoint are not allowed to be executed right now"));
                         } else {
-                            executeQueuedRequest(message, logger, queuedRequest, jsonRequest, queueName, state);
+                            executeQueuedRequest(message, logger, queuedRequest, queueTimestamp, queueName, state);
                         }
                     });
                 }
@@ -232,10 +233,10 @@ public class QueueProcessor {
     }
 
     private void executeQueuedRequest(Message<JsonObject> message, Logger logger, HttpRequest queuedRequest,
-                                      JsonObject jsonRequest, String queueName, QueueCircuitState state) {
+                                      Long queueTimestamp, String queueName, QueueCircuitState state) {
 
         logger.debug("performing request " + queuedRequest.getMethod() + " " + queuedRequest.getUri());
-        if (ExpiryCheckHandler.isExpired(queuedRequest.getHeaders(), jsonRequest.getLong(QueueClient.QUEUE_TIMESTAMP))) {
+        if (ExpiryCheckHandler.isExpired(queuedRequest.getHeaders(), queueTimestamp)) {
             logger.info("request expired to " + queuedRequest.getUri());
             message.reply(new JsonObject().put(STATUS, OK));
             return;
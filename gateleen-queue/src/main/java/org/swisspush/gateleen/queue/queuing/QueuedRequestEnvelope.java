@@ -0,0 +1,226 @@
+package org.swisspush.gateleen.queue.queuing;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import org.swisspush.gateleen.core.http.HttpRequest;
+import org.swisspush.gateleen.core.http.SharedPayload;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Compact representation of a queued request, used instead of the json representation of
+ * {@link HttpRequest#toJsonObject()} when enabled in the {@link QueueClient}.
+ * <p>
+ * Redisques stores queue items as strings, so the envelope is a string as well. It starts with the
+ * {@link #MARKER} and the {@link #VERSION}, followed by these fields:
+ * <pre>
+ * method, uri, queue timestamp, header count, header names and values, payload encoding, payload
+ * </pre>
+ * Each field is written as its length, a ':' and its characters. The payload encoding is 't' when the payload
+ * is valid utf-8 (e.g. json), which is then written as is, 'b' when the payload is written as url-safe base64 without
+ * padding (like the <code>byte[]</code> values of a {@link JsonObject}) and '-' when
+ * there is no payload. A json item never starts with the marker, so both representations can be read
+ * with {@link #read(String)} while a queue is migrated.
+ */
+public final class QueuedRequestEnvelope {
+
+    static final char MARKER = '\u0001';
+    static final char VERSION = '1';
+
+    private static final char SEPARATOR = ':';
+    private static final String TEXT = "t";
+    private static final String BASE64 = "b";
+    private static final String NONE = "-";
+
+    private final HttpRequest request;
+    private final Long queueTimestamp;
+
+    private QueuedRequestEnvelope(HttpRequest request, Long queueTimestamp) {
+        this.request = request;
+        this.queueTimestamp = queueTimestamp;
+    }
+
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the time the request was enqueued, or <code>null</code> when unknown
+     */
+    public Long getQueueTimestamp() {
+        return queueTimestamp;
+    }
+
+    /**
+     * @param item the queue item
+     * @return <code>true</code> when the item is an envelope, <code>false</code> when it is json
+     */
+    public static boolean isEnvelope(String item) {
+        return item != null && !item.isEmpty() && item.charAt(0) == MARKER;
+    }
+
+    /**
+     * Encodes the request into an envelope.
+     *
+     * @param request        the request
+     * @param queueTimestamp the time the request is enqueued
+     * @return the envelope
+     */
+    public static String encode(HttpRequest request, long queueTimestamp) {
+        byte[] payload = request.getPayload();
+        int payloadLength = payload == null ? 0 : payload.length;
+        StringBuilder sb = new StringBuilder(request.getUri().length() + payloadLength + 256);
+        sb.append(MARKER).append(VERSION);
+        appendField(sb, request.getMethod().name());
+        appendField(sb, request.getUri());
+        appendField(sb, Long.toString(queueTimestamp));
+        MultiMap headers = request.getHeaders();
+        if (headers == null) {
+            appendField(sb, "-1");
+        } else {
+            appendField(sb, Integer.toString(headers.size()));
+            for (Map.Entry<String, String> header : headers.entries()) {
+                appendField(sb, header.getKey());
+                appendField(sb, header.getValue());
+            }
+        }
+        if (payload == null) {
+            appendField(sb, NONE);
+            appendField(sb, "");
+            return sb.toString();
+        }
+        // a payload shared by several requests (e.g. of hook listeners) is decoded or encoded only once
+        SharedPayload sharedPayload = request.getSharedPayload();
+        String text = sharedPayload != null ? sharedPayload.getText() : decodeUtf8(payload);
+        if (text != null) {
+            appendField(sb, TEXT);
+            appendField(sb, text);
+        } else {
+            appendField(sb, BASE64);
+            appendField(sb, sharedPayload != null ? sharedPayload.getBase64() : Base64.getUrlEncoder().withoutPadding().encodeToString(payload));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes an envelope.
+     *
+     * @param item the envelope
+     * @return the decoded request with its queue timestamp
+     * @throws IllegalArgumentException when the item is not a valid envelope or contains a method not allowed for queued requests
+     */
+    public static QueuedRequestEnvelope decode(String item) {
+        if (!isEnvelope(item) || item.length() < 2) {
+            throw new IllegalArgumentException("Queue item is not an envelope");
+        }
+        if (item.charAt(1) != VERSION) {
+            throw new IllegalArgumentException("Unsupported envelope version " + item.charAt(1));
+        }
+        Reader reader = new Reader(item, 2);
+        HttpMethod method = HttpMethod.valueOf(reader.next());
+        if (!QueueProcessor.httpMethodIsQueueable(method)) {
+            throw new IllegalArgumentException("Request method must be one of GET, HEAD, PUT, POST, DELETE, OPTIONS or PATCH");
+        }
+        String uri = reader.next();
+        String queueTimestamp = reader.next();
+        int headerCount = reader.nextInt();
+        MultiMap headers = null;
+        if (headerCount >= 0) {
+            headers = MultiMap.caseInsensitiveMultiMap();
+            for (int i = 0; i < headerCount; i++) {
+                headers.add(reader.next(), reader.next());
+            }
+        }
+        String encoding = reader.next();
+        String payload = reader.next();
+        byte[] bytes;
+        if (TEXT.equals(encoding)) {
+            bytes = payload.getBytes(StandardCharsets.UTF_8);
+        } else if (BASE64.equals(encoding)) {
+            bytes = Base64.getUrlDecoder().decode(payload);
+        } else if (NONE.equals(encoding)) {
+            bytes = null;
+        } else {
+            throw new IllegalArgumentException("Unknown payload encoding '" + encoding + "'");
+        }
+        if (!reader.atEnd()) {
+            throw new IllegalArgumentException("Unexpected content after the payload of the envelope");
+        }
+        HttpRequest request = new HttpRequest(method, uri, headers, bytes);
+        return new QueuedRequestEnvelope(request, queueTimestamp.isEmpty() ? null : Long.valueOf(queueTimestamp));
+    }
+
+    /**
+     * Reads a queue item written either as envelope or as json.
+     *
+     * @param item the queue item
+     * @return the request with its queue timestamp
+     * @throws IllegalArgumentException when the item cannot be read
+     */
+    public static QueuedRequestEnvelope read(String item) {
+        if (isEnvelope(item)) {
+            return decode(item);
+        }
+        JsonObject jsonRequest = new JsonObject(item);
+        return new QueuedRequestEnvelope(new HttpRequest(jsonRequest), jsonRequest.getLong(QueueClient.QUEUE_TIMESTAMP));
+    }
+
+    private static void appendField(StringBuilder sb, String value) {
+        sb.append(value.length()).append(SEPARATOR).append(value);
+    }
+
+    private static String decodeUtf8(byte[] bytes) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    private static final class Reader {
+        private final String item;
+        private int position;
+
+        Reader(String item, int position) {
+            this.item = item;
+            this.position = position;
+        }
+
+        String next() {
+            int separator = item.indexOf(SEPARATOR, position);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Truncated envelope");
+            }
+            int length;
+            try {
+                length = Integer.parseInt(item.substring(position, separator));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid field length in envelope at position " + position);
+            }
+            int start = separator + 1;
+            if (length < 0 || start + length > item.length()) {
+                throw new IllegalArgumentException("Invalid field length in envelope at position " + position);
+            }
+            position = start + length;
+            return item.substring(start, position);
+        }
+
+        int nextInt() {
+            String value = next();
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number '" + value + "' in envelope");
+            }
+        }
+
+        boolean atEnd() {
+            return position == item.length();
+        }
+    }
+}
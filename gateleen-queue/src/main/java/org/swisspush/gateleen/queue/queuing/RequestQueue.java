@@ -1,5 +1,6 @@
 package org.swisspush.gateleen.queue.queuing;
 
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
@@ -7,6 +8,8 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServerRequest;
 import org.swisspush.gateleen.core.http.HttpRequest;
 
+import java.util.List;
+
 /**
  * @author bovetl
  */
@@ -26,4 +29,13 @@ public interface RequestQueue {
     Future<Void> deleteAllQueueItems(String queue, boolean unlock);
 
     Future<Void> enqueueFuture(HttpRequest queuedRequest, String queue);
+
+    /**
+     * Enqueues all given entries at once, e.g. the requests of a hook fan-out.
+     *
+     * @param entries the requests with their queues
+     * @return a future completed when all entries are processed. The result of each entry is available with
+     * {@link CompositeFuture#succeeded(int)} and {@link CompositeFuture#cause(int)} using the index of the entry.
+     */
+    CompositeFuture enqueueBatch(List<EnqueueBatchEntry> entries);
 }
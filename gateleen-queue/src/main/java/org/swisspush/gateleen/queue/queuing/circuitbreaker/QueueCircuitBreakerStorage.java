@@ -5,7 +5,6 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.redis.client.Response;
 import org.swisspush.gateleen.queue.queuing.circuitbreaker.util.PatternAndCircuitHash;
 import org.swisspush.gateleen.queue.queuing.circuitbreaker.util.QueueCircuitState;
-import org.swisspush.gateleen.queue.queuing.circuitbreaker.util.QueueResponseType;
 import org.swisspush.gateleen.queue.queuing.circuitbreaker.util.UpdateStatisticsResult;
 
 /**
@@ -52,8 +51,7 @@ public interface QueueCircuitBreakerStorage {
      * <p>Updates the statistics of the corresponding circuit based on the provided patternAndCircuitHash.</p>
      * <p>Updating the statistics includes the following steps:
      * <ul>
-     *     <li>Record uniqueRequestID as failed when queueResponseType equals {@link QueueResponseType#FAILURE}</li>
-     *     <li>Record uniqueRequestID as success when queueResponseType equals {@link QueueResponseType#SUCCESS}</li>
+     *     <li>Add successCount and failureCount to the success/failure records of the time bucket of the timestamp</li>
      *     <li>Calculate failRatio based on fail/success records not older than entriesMaxAgeMS</li>
      *     <li>Change status of corresponding circuit to 'OPEN' when minQueueSampleCount and errorThresholdPercentage is reached</li>
      *     <li>Remove oldest fail/success records when maxQueueSampleCount is reached</li>
@@ -61,16 +59,16 @@ public interface QueueCircuitBreakerStorage {
      *
      *
      * @param patternAndCircuitHash the information of the circuit
-     * @param uniqueRequestID the unique identifier of the queued request
+     * @param successCount the amount of successful queued requests to record
+     * @param failureCount the amount of failed queued requests to record
      * @param timestamp the current timestamp
      * @param errorThresholdPercentage the threshold to change status to 'OPEN' when reached
      * @param entriesMaxAgeMS the maximum age of fail/success records to respect to calculate the failRatio
-     * @param minQueueSampleCount the minimum amount of records (unique uniqueRequestIDs) to reach before status can be changed
+     * @param minQueueSampleCount the minimum amount of records to reach before status can be changed
      * @param maxQueueSampleCount the maximum amount of fail/success records to keep
-     * @param queueResponseType the {@link QueueResponseType} representing the execution result of the queuedRequest
      * @return returns an {@link UpdateStatisticsResult} object representing the result of the statistics update
      */
-    Future<UpdateStatisticsResult> updateStatistics(PatternAndCircuitHash patternAndCircuitHash, String uniqueRequestID, long timestamp, int errorThresholdPercentage, long entriesMaxAgeMS, long minQueueSampleCount, long maxQueueSampleCount, QueueResponseType queueResponseType);
+    Future<UpdateStatisticsResult> updateStatistics(PatternAndCircuitHash patternAndCircuitHash, long successCount, long failureCount, long timestamp, int errorThresholdPercentage, long entriesMaxAgeMS, long minQueueSampleCount, long maxQueueSampleCount);
 
     /**
      * Mark the queueName as a locked queue of the circuit representing the provided patternAndCircuitHash.
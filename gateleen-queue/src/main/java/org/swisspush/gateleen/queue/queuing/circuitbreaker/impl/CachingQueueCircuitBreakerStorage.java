@@ -0,0 +1,237 @@
+package org.swisspush.gateleen.queue.queuing.circuitbreaker.impl;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.redis.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.swisspush.gateleen.core.util.Address;
+import org.swisspush.gateleen.queue.queuing.circuitbreaker.QueueCircuitBreakerStorage;
+import org.swisspush.gateleen.queue.queuing.circuitbreaker.util.PatternAndCircuitHash;
+import org.swisspush.gateleen.queue.queuing.circuitbreaker.util.QueueCircuitState;
+import org.swisspush.gateleen.queue.queuing.circuitbreaker.util.UpdateStatisticsResult;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link QueueCircuitBreakerStorage} keeping the circuit states in memory, so that checking the state of a circuit
+ * for every queued request does not need a round trip to the delegate storage.
+ * <p>
+ * Every state change made through this storage is published to all instances on the event bus, and the cached states
+ * are periodically reconciled with the states of the delegate storage, e.g. to catch up with missed events. The
+ * published changes carry the id of the publishing instance, which has already applied them and therefore ignores them.
+ */
+public class CachingQueueCircuitBreakerStorage implements QueueCircuitBreakerStorage {
+
+    public static final long DEFAULT_RECONCILIATION_INTERVAL_MS = 10000;
+
+    static final String FIELD_CIRCUIT = "circuit";
+    static final String FIELD_STATE = "state";
+    static final String FIELD_ORIGIN = "origin";
+
+    private final Logger log = LoggerFactory.getLogger(CachingQueueCircuitBreakerStorage.class);
+
+    private final Vertx vertx;
+    private final QueueCircuitBreakerStorage delegate;
+    private final Map<String, QueueCircuitState> states = new ConcurrentHashMap<>();
+    private final AtomicLong stamp = new AtomicLong();
+    private final String originId = UUID.randomUUID().toString();
+
+    public CachingQueueCircuitBreakerStorage(Vertx vertx, QueueCircuitBreakerStorage delegate) {
+        this(vertx, delegate, DEFAULT_RECONCILIATION_INTERVAL_MS);
+    }
+
+    /**
+     * @param vertx                    vertx
+     * @param delegate                 the storage holding the circuits
+     * @param reconciliationIntervalMs the interval to reconcile the cached states with the delegate storage
+     */
+    public CachingQueueCircuitBreakerStorage(Vertx vertx, QueueCircuitBreakerStorage delegate, long reconciliationIntervalMs) {
+        this.vertx = vertx;
+        this.delegate = delegate;
+        vertx.eventBus().consumer(Address.QUEUE_CIRCUIT_STATE_CHANGED_ADDRESS, (Message<JsonObject> message) -> {
+            // the changes of this instance are already applied when they are published
+            if (!originId.equals(message.body().getString(FIELD_ORIGIN))) {
+                applyChange(message.body());
+            }
+        });
+        vertx.setPeriodic(reconciliationIntervalMs, timerId -> reconcile());
+    }
+
+    @Override
+    public Future<QueueCircuitState> getQueueCircuitState(PatternAndCircuitHash patternAndCircuitHash) {
+        String circuitHash = patternAndCircuitHash.getCircuitHash();
+        QueueCircuitState state = states.get(circuitHash);
+        if (state != null) {
+            return Future.succeededFuture(state);
+        }
+        long currentStamp = stamp.get();
+        return delegate.getQueueCircuitState(patternAndCircuitHash).onSuccess(result -> cache(circuitHash, result, currentStamp));
+    }
+
+    @Override
+    public Future<QueueCircuitState> getQueueCircuitState(String circuitHash) {
+        QueueCircuitState state = states.get(circuitHash);
+        if (state != null) {
+            return Future.succeededFuture(state);
+        }
+        long currentStamp = stamp.get();
+        return delegate.getQueueCircuitState(circuitHash).onSuccess(result -> cache(circuitHash, result, currentStamp));
+    }
+
+    @Override
+    public Future<JsonObject> getQueueCircuitInformation(String circuitHash) {
+        return delegate.getQueueCircuitInformation(circuitHash);
+    }
+
+    @Override
+    public Future<JsonObject> getAllCircuits() {
+        return delegate.getAllCircuits();
+    }
+
+    @Override
+    public Future<UpdateStatisticsResult> updateStatistics(PatternAndCircuitHash patternAndCircuitHash, long successCount,
+                                                           long failureCount, long timestamp, int errorThresholdPercentage,
+                                                           long entriesMaxAgeMS, long minQueueSampleCount, long maxQueueSampleCount) {
+        return delegate.updateStatistics(patternAndCircuitHash, successCount, failureCount, timestamp, errorThresholdPercentage,
+                entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount).onSuccess(result -> {
+            if (UpdateStatisticsResult.OPENED == result) {
+                publishChange(patternAndCircuitHash.getCircuitHash(), QueueCircuitState.OPEN);
+            }
+        });
+    }
+
+    @Override
+    public Future<Void> lockQueue(String queueName, PatternAndCircuitHash patternAndCircuitHash) {
+        return delegate.lockQueue(queueName, patternAndCircuitHash);
+    }
+
+    @Override
+    public Future<String> popQueueToUnlock() {
+        return delegate.popQueueToUnlock();
+    }
+
+    @Override
+    public Future<Void> closeCircuit(PatternAndCircuitHash patternAndCircuitHash) {
+        return delegate.closeCircuit(patternAndCircuitHash)
+                .onSuccess(nothing -> publishChange(patternAndCircuitHash.getCircuitHash(), QueueCircuitState.CLOSED));
+    }
+
+    @Override
+    public Future<Void> closeAndRemoveCircuit(PatternAndCircuitHash patternAndCircuitHash) {
+        return delegate.closeAndRemoveCircuit(patternAndCircuitHash)
+                .onSuccess(nothing -> publishChange(patternAndCircuitHash.getCircuitHash(), null));
+    }
+
+    @Override
+    public Future<Void> closeAllCircuits() {
+        return delegate.closeAllCircuits().onSuccess(nothing -> publishChange(null, null));
+    }
+
+    @Override
+    public Future<Void> reOpenCircuit(PatternAndCircuitHash patternAndCircuitHash) {
+        return delegate.reOpenCircuit(patternAndCircuitHash)
+                .onSuccess(nothing -> publishChange(patternAndCircuitHash.getCircuitHash(), QueueCircuitState.OPEN));
+    }
+
+    @Override
+    public Future<Long> setOpenCircuitsToHalfOpen() {
+        return delegate.setOpenCircuitsToHalfOpen().onSuccess(count -> {
+            if (count != null && count > 0) {
+                // the changed circuits are not known, so the cached states are reloaded
+                publishChange(null, null);
+            }
+        });
+    }
+
+    @Override
+    public Future<Response> unlockSampleQueues() {
+        return delegate.unlockSampleQueues();
+    }
+
+    /**
+     * Applies the change locally and publishes it to all instances.
+     *
+     * @param circuitHash the changed circuit or <code>null</code> when all circuits have to be reloaded
+     * @param state       the new state or <code>null</code> when the state has to be reloaded
+     */
+    private void publishChange(String circuitHash, QueueCircuitState state) {
+        JsonObject change = new JsonObject();
+        if (circuitHash != null) {
+            change.put(FIELD_CIRCUIT, circuitHash);
+        }
+        if (state != null) {
+            change.put(FIELD_STATE, state.name());
+        }
+        applyChange(change);
+        vertx.eventBus().publish(Address.QUEUE_CIRCUIT_STATE_CHANGED_ADDRESS, change.put(FIELD_ORIGIN, originId));
+    }
+
+    synchronized void applyChange(JsonObject change) {
+        stamp.incrementAndGet();
+        String circuitHash = change.getString(FIELD_CIRCUIT);
+        if (circuitHash == null) {
+            states.clear();
+            return;
+        }
+        QueueCircuitState state = QueueCircuitState.fromString(change.getString(FIELD_STATE), null);
+        if (state == null) {
+            states.remove(circuitHash);
+        } else {
+            states.put(circuitHash, state);
+        }
+    }
+
+    /**
+     * Replaces the cached states with the states of the delegate storage, unless a change was applied meanwhile.
+     */
+    void reconcile() {
+        if (states.isEmpty()) {
+            return;
+        }
+        long currentStamp = stamp.get();
+        delegate.getAllCircuits().onComplete(event -> {
+            if (event.failed()) {
+                log.warn("Could not reconcile the cached circuit states: {}", event.cause().getMessage());
+                return;
+            }
+            Map<String, QueueCircuitState> stored = new HashMap<>();
+            for (Map.Entry<String, Object> circuit : event.result()) {
+                if (circuit.getValue() instanceof JsonObject) {
+                    String status = ((JsonObject) circuit.getValue()).getString("status");
+                    stored.put(circuit.getKey(), QueueCircuitState.fromString(status, QueueCircuitState.CLOSED));
+                }
+            }
+            synchronized (this) {
+                if (stamp.get() != currentStamp) {
+                    log.debug("Circuit states changed during reconciliation, skipping it");
+                    return;
+                }
+                for (Map.Entry<String, QueueCircuitState> cached : states.entrySet()) {
+                    QueueCircuitState state = stored.getOrDefault(cached.getKey(), QueueCircuitState.CLOSED);
+                    if (state != cached.getValue()) {
+                        log.info("Reconciled state of circuit {} from {} to {}", cached.getKey(), cached.getValue(), state);
+                        cached.setValue(state);
+                    }
+                }
+            }
+        });
+    }
+
+    private synchronized void cache(String circuitHash, QueueCircuitState state, long loadStamp) {
+        // a change applied while loading the state may have made the loaded state stale
+        if (state != null && stamp.get() == loadStamp) {
+            states.putIfAbsent(circuitHash, state);
+        }
+    }
+
+    int size() {
+        return states.size();
+    }
+}
@@ -24,7 +24,11 @@ import org.swisspush.gateleen.routing.RuleProvider;
 import org.swisspush.gateleen.routing.RuleProvider.RuleChangesObserver;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.swisspush.gateleen.core.util.LockUtil.acquireLock;
@@ -50,11 +54,19 @@ public class QueueCircuitBreakerImpl implements QueueCircuitBreaker, RuleChanges
     public static final String UNLOCK_QUEUES_TASK_LOCK = "unlockQueuesTask";
     public static final String UNLOCK_SAMPLE_QUEUES_TASK_LOCK = "unlockSampleQueuesTask";
 
+    /**
+     * Interval to write the locally aggregated statistics updates to the storage
+     */
+    public static final long STATISTICS_FLUSH_INTERVAL_MS = 1000;
+
     private final String redisquesAddress;
 
     private long openToHalfOpenTimerId = -1;
     private long unlockQueuesTimerId = -1;
     private long unlockSampleQueuesTimerId = -1;
+    private final long statisticsFlushTimerId;
+
+    private final Map<String, PendingStatistics> pendingStatistics = new ConcurrentHashMap<>();
 
     /**
      * Constructor for the QueueCircuitBreakerImpl.
@@ -93,6 +105,7 @@ public class QueueCircuitBreakerImpl implements QueueCircuitBreaker, RuleChanges
         this.configResourceManager.addRefreshable(this);
 
         registerPeriodicTasks();
+        statisticsFlushTimerId = vertx.setPeriodic(STATISTICS_FLUSH_INTERVAL_MS, event -> flushStatistics());
 
         // in Vert.x 2x 100-continues was activated per default, in vert.x 3x it is off per default.
         HttpServerOptions options = new HttpServerOptions().setHandle100ContinueAutomatically(true);
@@ -106,6 +119,19 @@ public class QueueCircuitBreakerImpl implements QueueCircuitBreaker, RuleChanges
         });
     }
 
+    /**
+     * Stops the periodic tasks and writes the statistics updates not yet written to the storage.
+     *
+     * @return returns a void future when the pending statistics updates have been written
+     */
+    public Future<Void> stop() {
+        vertx.cancelTimer(statisticsFlushTimerId);
+        vertx.cancelTimer(openToHalfOpenTimerId);
+        vertx.cancelTimer(unlockQueuesTimerId);
+        vertx.cancelTimer(unlockSampleQueuesTimerId);
+        return flushStatistics();
+    }
+
     private void registerPeriodicTasks() {
         registerOpenToHalfOpenTask();
         registerUnlockQueuesTask();
@@ -272,38 +298,69 @@ public class QueueCircuitBreakerImpl implements QueueCircuitBreaker, RuleChanges
         return promise.future();
     }
 
+    /**
+     * Records the execution result of the queued request. The results are aggregated per circuit and written to the
+     * storage every {@link #STATISTICS_FLUSH_INTERVAL_MS} by {@link #flushStatistics()}. Within this interval, the
+     * result of a request (identified by its unique id) is recorded only once.
+     */
     @Override
     public Future<Void> updateStatistics(String queueName, HttpRequest queuedRequest, QueueResponseType queueResponseType) {
         Promise<Void> promise = Promise.promise();
-        String requestId = getRequestUniqueId(queuedRequest);
-        long currentTS = System.currentTimeMillis();
-
         PatternAndCircuitHash patternAndCircuitHash = getPatternAndCircuitHashFromRequest(queuedRequest);
         if (patternAndCircuitHash != null) {
-            int errorThresholdPercentage = getConfig().getErrorThresholdPercentage();
-            int entriesMaxAgeMS = getConfig().getEntriesMaxAgeMS();
-            int minQueueSampleCount = getConfig().getMinQueueSampleCount();
-            int maxQueueSampleCount = getConfig().getMaxQueueSampleCount();
-
-            this.queueCircuitBreakerStorage.updateStatistics(patternAndCircuitHash, requestId, currentTS,
-                    errorThresholdPercentage, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount,
-                    queueResponseType).onComplete(event -> {
-                if (event.failed()) {
-                    promise.fail(event.cause());
-                } else {
-                    if (UpdateStatisticsResult.OPENED == event.result()) {
-                        log.warn("circuit '{}' has been opened", patternAndCircuitHash.getPattern().pattern());
-                        lockQueueSync(queueName, queuedRequest);
-                    }
-                    promise.complete();
+            pendingStatistics.compute(patternAndCircuitHash.getCircuitHash(), (circuitHash, statistics) -> {
+                if (statistics == null) {
+                    statistics = new PendingStatistics(patternAndCircuitHash);
                 }
+                statistics.record(queueName, queuedRequest, getRequestUniqueId(queuedRequest), queueResponseType);
+                return statistics;
             });
+            promise.complete();
         } else {
             failWithNoRuleToCircuitMappingMessage(promise, queueName, queuedRequest);
         }
         return promise.future();
     }
 
+    /**
+     * Writes the aggregated statistics updates of all circuits to the storage, one update per circuit. When a circuit
+     * has been opened by the update, the queue of the last recorded request of this circuit is locked.
+     *
+     * @return returns a void future when all statistics updates have been written
+     */
+    @SuppressWarnings("rawtypes") //https://github.com/eclipse-vertx/vert.x/issues/2627
+    Future<Void> flushStatistics() {
+        if (pendingStatistics.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        long currentTS = System.currentTimeMillis();
+        int errorThresholdPercentage = getConfig().getErrorThresholdPercentage();
+        int entriesMaxAgeMS = getConfig().getEntriesMaxAgeMS();
+        int minQueueSampleCount = getConfig().getMinQueueSampleCount();
+        int maxQueueSampleCount = getConfig().getMaxQueueSampleCount();
+
+        List<Future> futures = new ArrayList<>();
+        for (String circuitHash : new ArrayList<>(pendingStatistics.keySet())) {
+            PendingStatistics statistics = pendingStatistics.remove(circuitHash);
+            if (statistics == null) {
+                continue;
+            }
+            PatternAndCircuitHash patternAndCircuitHash = statistics.patternAndCircuitHash;
+            futures.add(queueCircuitBreakerStorage.updateStatistics(patternAndCircuitHash, statistics.successCount,
+                    statistics.failureCount, currentTS, errorThresholdPercentage, entriesMaxAgeMS, minQueueSampleCount,
+                    maxQueueSampleCount).onComplete(event -> {
+                if (event.failed()) {
+                    log.error("Unable to update statistics of circuit '{}'. Message: {}",
+                            patternAndCircuitHash.getPattern().pattern(), event.cause().getMessage());
+                } else if (UpdateStatisticsResult.OPENED == event.result()) {
+                    log.warn("circuit '{}' has been opened", patternAndCircuitHash.getPattern().pattern());
+                    lockQueueSync(statistics.lastQueueName, statistics.lastQueuedRequest);
+                }
+            }));
+        }
+        return CompositeFuture.join(futures).mapEmpty();
+    }
+
     @Override
     public Future<Void> closeCircuit(HttpRequest queuedRequest) {
         Promise<Void> promise = Promise.promise();
@@ -519,4 +576,33 @@ public class QueueCircuitBreakerImpl implements QueueCircuitBreaker, RuleChanges
     private QueueCircuitBreakerConfigurationResource getConfig() {
         return configResourceManager.getConfigurationResource();
     }
+
+    /**
+     * Statistics updates of a circuit not yet written to the storage
+     */
+    private static class PendingStatistics {
+        private final PatternAndCircuitHash patternAndCircuitHash;
+        private long successCount;
+        private long failureCount;
+        private final Set<String> successRequestIds = new HashSet<>();
+        private final Set<String> failureRequestIds = new HashSet<>();
+        private String lastQueueName;
+        private HttpRequest lastQueuedRequest;
+
+        PendingStatistics(PatternAndCircuitHash patternAndCircuitHash) {
+            this.patternAndCircuitHash = patternAndCircuitHash;
+        }
+
+        void record(String queueName, HttpRequest queuedRequest, String uniqueRequestId, QueueResponseType queueResponseType) {
+            if (QueueResponseType.FAILURE == queueResponseType) {
+                if (failureRequestIds.add(uniqueRequestId)) {
+                    failureCount++;
+                }
+            } else if (successRequestIds.add(uniqueRequestId)) {
+                successCount++;
+            }
+            lastQueueName = queueName;
+            lastQueuedRequest = queuedRequest;
+        }
+    }
 }
@@ -41,6 +41,12 @@ public class RedisQueueCircuitBreakerStorage implements QueueCircuitBreakerStora
     public static final String FIELD_FAILRATIO = "failRatio";
     public static final String FIELD_CIRCUIT = "circuit";
 
+    /**
+     * The success/failure records of a circuit are counted in time buckets. The age range (entriesMaxAgeMS) is split
+     * into this amount of buckets.
+     */
+    public static final long STATS_BUCKETS_PER_AGE_RANGE = 100;
+
     private final LuaScriptState openCircuitLuaScriptState;
     private final LuaScriptState closeCircuitLuaScriptState;
     private final LuaScriptState reOpenCircuitLuaScriptState;
@@ -139,29 +145,30 @@ public class RedisQueueCircuitBreakerStorage implements QueueCircuitBreakerStora
     }
 
     @Override
-    public Future<UpdateStatisticsResult> updateStatistics(PatternAndCircuitHash patternAndCircuitHash, String uniqueRequestID, long timestamp,
-                                                           int errorThresholdPercentage, long entriesMaxAgeMS, long minQueueSampleCount,
-                                                           long maxQueueSampleCount, QueueResponseType queueResponseType) {
+    public Future<UpdateStatisticsResult> updateStatistics(PatternAndCircuitHash patternAndCircuitHash, long successCount,
+                                                           long failureCount, long timestamp, int errorThresholdPercentage,
+                                                           long entriesMaxAgeMS, long minQueueSampleCount, long maxQueueSampleCount) {
         Promise<UpdateStatisticsResult> promise = Promise.promise();
         String circuitHash = patternAndCircuitHash.getCircuitHash();
         List<String> keys = Arrays.asList(
                 buildInfosKey(circuitHash),
                 buildStatsKey(circuitHash, QueueResponseType.SUCCESS),
                 buildStatsKey(circuitHash, QueueResponseType.FAILURE),
-                buildStatsKey(circuitHash, queueResponseType),
                 STORAGE_OPEN_CIRCUITS,
                 STORAGE_ALL_CIRCUITS
         );
 
         List<String> arguments = Arrays.asList(
-                uniqueRequestID,
                 patternAndCircuitHash.getPattern().pattern(),
                 patternAndCircuitHash.getCircuitHash(),
                 String.valueOf(timestamp),
                 String.valueOf(errorThresholdPercentage),
                 String.valueOf(entriesMaxAgeMS),
                 String.valueOf(minQueueSampleCount),
-                String.valueOf(maxQueueSampleCount)
+                String.valueOf(maxQueueSampleCount),
+                String.valueOf(getStatsBucketSize(entriesMaxAgeMS)),
+                String.valueOf(successCount),
+                String.valueOf(failureCount)
         );
 
         UpdateStatsRedisCommand cmd = new UpdateStatsRedisCommand(openCircuitLuaScriptState,
@@ -219,7 +226,9 @@ public class RedisQueueCircuitBreakerStorage implements QueueCircuitBreakerStora
                 STORAGE_ALL_CIRCUITS,
                 STORAGE_HALFOPEN_CIRCUITS,
                 STORAGE_OPEN_CIRCUITS,
-                STORAGE_QUEUES_TO_UNLOCK
+                STORAGE_QUEUES_TO_UNLOCK,
+                buildLegacyStatsKey(circuitHash, QueueResponseType.SUCCESS),
+                buildLegacyStatsKey(circuitHash, QueueResponseType.FAILURE)
         );
 
         List<String> arguments = Arrays.asList(
@@ -338,6 +347,18 @@ public class RedisQueueCircuitBreakerStorage implements QueueCircuitBreakerStora
     }
 
     private String buildStatsKey(String circuitHash, QueueResponseType queueResponseType) {
+        return STORAGE_PREFIX + circuitHash + queueResponseType.getBucketsKeySuffix();
+    }
+
+    /*
+     * The sorted sets of request ids written by previous versions. They use other keys than the buckets, so that
+     * instances of both versions can run side by side. They are removed when the circuit is closed.
+     */
+    private String buildLegacyStatsKey(String circuitHash, QueueResponseType queueResponseType) {
         return STORAGE_PREFIX + circuitHash + queueResponseType.getKeySuffix();
     }
+
+    static long getStatsBucketSize(long entriesMaxAgeMS) {
+        return Math.max(1, entriesMaxAgeMS / STATS_BUCKETS_PER_AGE_RANGE);
+    }
 }
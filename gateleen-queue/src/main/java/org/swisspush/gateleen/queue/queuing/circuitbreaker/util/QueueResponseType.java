@@ -6,15 +6,27 @@ package org.swisspush.gateleen.queue.queuing.circuitbreaker.util;
  * @author https://github.com/mcweba [Marc-Andre Weber]
  */
 public enum QueueResponseType {
-    SUCCESS(":success"), FAILURE(":failure");
+    SUCCESS(":success", ":success-buckets"), FAILURE(":failure", ":failure-buckets");
 
     private String keySuffix;
+    private String bucketsKeySuffix;
 
-    QueueResponseType(String keySuffix){
+    QueueResponseType(String keySuffix, String bucketsKeySuffix){
         this.keySuffix = keySuffix;
+        this.bucketsKeySuffix = bucketsKeySuffix;
     }
 
+    /**
+     * @return the suffix of the sorted set of request ids used by previous versions to record the results
+     */
     public String getKeySuffix() {
         return keySuffix;
     }
+
+    /**
+     * @return the suffix of the hash counting the results per time bucket
+     */
+    public String getBucketsKeySuffix() {
+        return bucketsKeySuffix;
+    }
 }
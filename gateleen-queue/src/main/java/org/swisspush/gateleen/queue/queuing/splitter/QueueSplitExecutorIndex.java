@@ -0,0 +1,102 @@
+package org.swisspush.gateleen.queue.queuing.splitter;
+
+import org.swisspush.gateleen.queue.queuing.splitter.executors.QueueSplitExecutor;
+import org.swisspush.gateleen.queue.queuing.splitter.executors.QueueSplitExecutorBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the {@link QueueSplitExecutor}s by the literal prefix of their queue pattern. Only the executors whose
+ * prefix matches the start of a queue name have to evaluate their pattern, so a queue not matching any prefix is
+ * resolved with a few map lookups instead of evaluating every pattern.
+ * <p>
+ * When several executors match a queue, the first configured one is used.
+ */
+class QueueSplitExecutorIndex {
+
+    private static final String REGEX_META_CHARS = "\\[](){}.*+?^$|";
+
+    private final Map<String, List<IndexedExecutor>> executorsByPrefix = new HashMap<>();
+    private final int[] prefixLengths;
+
+    QueueSplitExecutorIndex(List<QueueSplitExecutor> executors) {
+        TreeSet<Integer> lengths = new TreeSet<>();
+        for (int i = 0; i < executors.size(); i++) {
+            QueueSplitExecutor executor = executors.get(i);
+            String prefix = executor instanceof QueueSplitExecutorBase
+                    ? literalPrefix(((QueueSplitExecutorBase) executor).getConfiguration().getQueue())
+                    : "";
+            executorsByPrefix.computeIfAbsent(prefix, p -> new ArrayList<>()).add(new IndexedExecutor(i, executor));
+            lengths.add(prefix.length());
+        }
+        prefixLengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static QueueSplitExecutorIndex empty() {
+        return new QueueSplitExecutorIndex(Collections.emptyList());
+    }
+
+    /**
+     * @param queue the queue name
+     * @return the first configured executor matching the queue or <code>null</code> when no executor matches
+     */
+    QueueSplitExecutor find(String queue) {
+        IndexedExecutor found = null;
+        for (int length : prefixLengths) {
+            if (length > queue.length()) {
+                break;
+            }
+            List<IndexedExecutor> candidates = executorsByPrefix.get(queue.substring(0, length));
+            if (candidates == null) {
+                continue;
+            }
+            for (IndexedExecutor candidate : candidates) {
+                if (found != null && found.order < candidate.order) {
+                    break;
+                }
+                if (candidate.executor.matches(queue)) {
+                    found = candidate;
+                    break;
+                }
+            }
+        }
+        return found == null ? null : found.executor;
+    }
+
+    /**
+     * Returns the literal start of the pattern, which every matching queue name starts with. A pattern containing
+     * an alternation or flags has no literal prefix.
+     */
+    static String literalPrefix(Pattern pattern) {
+        String regex = pattern.pattern();
+        if (pattern.flags() != 0 || regex.indexOf('|') >= 0) {
+            return "";
+        }
+        int start = regex.startsWith("^") ? 1 : 0;
+        int end = start;
+        while (end < regex.length() && REGEX_META_CHARS.indexOf(regex.charAt(end)) < 0) {
+            end++;
+        }
+        // a quantifier makes the preceding char optional
+        if (end < regex.length() && end > start && "*?{".indexOf(regex.charAt(end)) >= 0) {
+            end--;
+        }
+        return regex.substring(start, end);
+    }
+
+    private static class IndexedExecutor {
+        private final int order;
+        private final QueueSplitExecutor executor;
+
+        IndexedExecutor(int order, QueueSplitExecutor executor) {
+            this.order = order;
+            this.executor = executor;
+        }
+    }
+}
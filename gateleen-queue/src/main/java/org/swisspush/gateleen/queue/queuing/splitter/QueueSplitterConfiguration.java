@@ -26,6 +26,12 @@ public class QueueSplitterConfiguration {
     @Nullable
     private final Pattern postfixFromUrl;
 
+    /**
+     * Amount of sub-queues to spread the requests over by the hash of the header and/or url groups, or 0 when the
+     * header and/or url groups are used as postfix directly
+     */
+    private final int hashBuckets;
+
 
     public QueueSplitterConfiguration(
             Pattern queue,
@@ -33,11 +39,22 @@ public class QueueSplitterConfiguration {
             @Nullable List<String> postfixFromStatic,
             @Nullable String postfixFromHeader,
             @Nullable Pattern postfixFromUrl) {
+        this(queue, postfixDelimiter, postfixFromStatic, postfixFromHeader, postfixFromUrl, 0);
+    }
+
+    public QueueSplitterConfiguration(
+            Pattern queue,
+            String postfixDelimiter,
+            @Nullable List<String> postfixFromStatic,
+            @Nullable String postfixFromHeader,
+            @Nullable Pattern postfixFromUrl,
+            int hashBuckets) {
         this.queue = queue;
         this.postfixDelimiter = postfixDelimiter;
         this.postfixFromStatic = postfixFromStatic;
         this.postfixFromHeader = postfixFromHeader;
         this.postfixFromUrl = postfixFromUrl;
+        this.hashBuckets = hashBuckets;
     }
 
     public Pattern getQueue() {
@@ -63,6 +80,10 @@ public class QueueSplitterConfiguration {
         return postfixFromUrl;
     }
 
+    public int getHashBuckets() {
+        return hashBuckets;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -72,12 +93,13 @@ public class QueueSplitterConfiguration {
                 Objects.equals(postfixDelimiter, that.postfixDelimiter) &&
                 Objects.equals(postfixFromStatic, that.postfixFromStatic) &&
                 Objects.equals(postfixFromHeader, that.postfixFromHeader) &&
-                Objects.equals(postfixFromUrl, that.postfixFromUrl);
+                Objects.equals(postfixFromUrl, that.postfixFromUrl) &&
+                hashBuckets == that.hashBuckets;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(queue, postfixDelimiter, postfixFromStatic, postfixFromHeader, postfixFromUrl);
+        return Objects.hash(queue, postfixDelimiter, postfixFromStatic, postfixFromHeader, postfixFromUrl, hashBuckets);
     }
 
     @Override
@@ -88,6 +110,7 @@ public class QueueSplitterConfiguration {
                 ", postfixFromStatic=" + postfixFromStatic +
                 ", postfixFromHeader='" + postfixFromHeader + '\'' +
                 ", postfixFromUrl='" + postfixFromUrl + '\'' +
+                ", hashBuckets=" + hashBuckets +
                 '}';
     }
 
@@ -96,6 +119,10 @@ public class QueueSplitterConfiguration {
     }
 
     public boolean isSplitFromRequest() {
-        return postfixFromHeader != null || postfixFromUrl != null;
+        return !isSplitFromHash() && (postfixFromHeader != null || postfixFromUrl != null);
+    }
+
+    public boolean isSplitFromHash() {
+        return hashBuckets > 0 && (postfixFromHeader != null || postfixFromUrl != null);
     }
 }
@@ -25,6 +25,8 @@ public class QueueSplitterConfigurationParser {
     private static final Logger log = LoggerFactory.getLogger(QueueSplitterConfigurationParser.class);
     public static final String POSTFIX_FROM_STATIC_KEY = "postfixFromStatic";
     public static final String POSTFIX_FROM_REQUEST_KEY = "postfixFromRequest";
+    public static final String POSTFIX_FROM_HASH_KEY = "postfixFromHash";
+    public static final String POSTFIX_FROM_HASH_BUCKETS_KEY = "buckets";
     public static final String POSTFIX_FROM_HEADER_KEY = "header";
     public static final String POSTFIX_FROM_URL_KEY = "url";
     public static final String POSTFIX_DELIMITER_KEY = "postfixDelimiter";
@@ -60,6 +62,23 @@ public class QueueSplitterConfigurationParser {
                             null,
                             null
                     ));
+                } else if (queueConfig.containsKey(POSTFIX_FROM_HASH_KEY)) {
+                    JsonObject postfixFromHash = queueConfig.getJsonObject(POSTFIX_FROM_HASH_KEY);
+                    String hashFromHeader = postfixFromHash.getString(POSTFIX_FROM_HEADER_KEY);
+                    String hashFromUrl = postfixFromHash.getString(POSTFIX_FROM_URL_KEY);
+                    int buckets = postfixFromHash.getInteger(POSTFIX_FROM_HASH_BUCKETS_KEY, 0);
+                    if ((hashFromHeader != null || hashFromUrl != null) && buckets > 0) {
+                        queueSplitterConfigurations.add(new QueueSplitterConfiguration(
+                                pattern,
+                                queueConfig.getString(POSTFIX_DELIMITER_KEY, DEFAULT_POSTFIX_DELIMITER),
+                                null,
+                                hashFromHeader,
+                                hashFromUrl != null ? Pattern.compile(hashFromUrl) : null,
+                                buckets
+                        ));
+                    } else {
+                        log.warn("Queue splitter configuration '{}' without a hash key or a positive amount of buckets", queuePattern);
+                    }
                 } else {
                     JsonObject postfixFromRequest = queueConfig.getJsonObject(POSTFIX_FROM_REQUEST_KEY);
                     String postfixFromHeader = postfixFromRequest != null ? postfixFromRequest.getString(POSTFIX_FROM_HEADER_KEY) : null;
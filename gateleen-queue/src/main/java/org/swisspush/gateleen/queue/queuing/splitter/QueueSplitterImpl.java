@@ -9,10 +9,13 @@ import org.slf4j.LoggerFactory;
 import org.swisspush.gateleen.core.configuration.ConfigurationResourceConsumer;
 import org.swisspush.gateleen.core.configuration.ConfigurationResourceManager;
 import org.swisspush.gateleen.queue.queuing.splitter.executors.QueueSplitExecutor;
+import org.swisspush.gateleen.queue.queuing.splitter.executors.QueueSplitExecutorFromHash;
 import org.swisspush.gateleen.queue.queuing.splitter.executors.QueueSplitExecutorFromRequest;
 import org.swisspush.gateleen.queue.queuing.splitter.executors.QueueSplitExecutorFromStaticList;
 
-import java.util.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -24,7 +27,7 @@ public class QueueSplitterImpl extends ConfigurationResourceConsumer implements
 
     private final Map<String, Object> properties;
 
-    private List<QueueSplitExecutor> queueSplitExecutors = new ArrayList<>();
+    private volatile QueueSplitExecutorIndex queueSplitExecutors = QueueSplitExecutorIndex.empty();
 
     public QueueSplitterImpl(
             ConfigurationResourceManager configurationResourceManager,
@@ -58,14 +61,16 @@ public class QueueSplitterImpl extends ConfigurationResourceConsumer implements
 
     private void initializeQueueSplitterConfiguration(Buffer configuration) {
         final List<QueueSplitterConfiguration> configurations = QueueSplitterConfigurationParser.parse(configuration, properties);
-        queueSplitExecutors.clear();
-        queueSplitExecutors = configurations.stream().map(queueSplitterConfiguration -> {
+        List<QueueSplitExecutor> executors = configurations.stream().map(queueSplitterConfiguration -> {
             if (queueSplitterConfiguration.isSplitStatic()) {
                 return new QueueSplitExecutorFromStaticList(queueSplitterConfiguration);
+            } else if (queueSplitterConfiguration.isSplitFromHash()) {
+                return new QueueSplitExecutorFromHash(queueSplitterConfiguration);
             } else {
                 return new QueueSplitExecutorFromRequest(queueSplitterConfiguration);
             }
         }).collect(Collectors.toList());
+        queueSplitExecutors = new QueueSplitExecutorIndex(executors);
     }
 
     /**
@@ -73,8 +78,8 @@ public class QueueSplitterImpl extends ConfigurationResourceConsumer implements
      */
     @Override
     public String convertToSubQueue(final String queue, HttpServerRequest request) {
-        Optional<QueueSplitExecutor> executor = queueSplitExecutors.stream().filter(splitExecutor -> splitExecutor.matches(queue)).findFirst();
-        return executor.isPresent() ? executor.get().executeSplit(queue, request) : queue;
+        QueueSplitExecutor executor = queueSplitExecutors.find(queue);
+        return executor != null ? executor.executeSplit(queue, request) : queue;
     }
 
     @Override
@@ -89,7 +94,7 @@ public class QueueSplitterImpl extends ConfigurationResourceConsumer implements
     public void resourceRemoved(String resourceUri) {
         if (configResourceUri() != null && configResourceUri().equals(resourceUri)) {
             log.info("Queue splitter configuration resource {} was removed. Going to release all executors", resourceUri);
-            queueSplitExecutors.clear();
+            queueSplitExecutors = QueueSplitExecutorIndex.empty();
         }
     }
 }
@@ -10,6 +10,10 @@ public abstract class QueueSplitExecutorBase implements QueueSplitExecutor {
         this.configuration = configuration;
     }
 
+    public QueueSplitterConfiguration getConfiguration() {
+        return configuration;
+    }
+
     @Override
     public boolean matches(String queue) {
         return configuration.getQueue().matcher(queue).matches();
@@ -0,0 +1,55 @@
+package org.swisspush.gateleen.queue.queuing.splitter.executors;
+
+import com.google.common.hash.Hashing;
+import io.vertx.core.http.HttpServerRequest;
+import org.swisspush.gateleen.queue.queuing.splitter.QueueSplitterConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+
+/**
+ * Spreads the requests of a queue over a fixed amount of sub-queues by the consistent hash of a key taken from the
+ * request (header and/or url groups). Requests with the same key always end up in the same sub-queue, so their order
+ * is preserved while the sub-queues are processed in parallel.
+ */
+public class QueueSplitExecutorFromHash extends QueueSplitExecutorBase {
+
+    public QueueSplitExecutorFromHash(QueueSplitterConfiguration configuration) {
+        super(configuration);
+    }
+
+    @Override
+    public String executeSplit(String queue, HttpServerRequest request) {
+        if (!matches(queue)) {
+            return queue;
+        }
+        String key = extractKey(request);
+        if (key == null) {
+            return queue;
+        }
+        int bucket = Hashing.consistentHash(Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8),
+                configuration.getHashBuckets());
+        return queue + configuration.getPostfixDelimiter() + bucket;
+    }
+
+    private String extractKey(HttpServerRequest request) {
+        StringBuilder key = new StringBuilder();
+        if (configuration.getPostfixFromUrl() != null) {
+            Matcher matcher = configuration.getPostfixFromUrl().matcher(request.uri());
+            if (matcher.matches()) {
+                for (int i = 0; i < matcher.groupCount(); i++) {
+                    key.append(configuration.getPostfixDelimiter());
+                    key.append(matcher.group(i + 1));
+                }
+            }
+        }
+        if (configuration.getPostfixFromHeader() != null) {
+            String headerValue = request.headers().get(configuration.getPostfixFromHeader());
+            if (headerValue != null) {
+                key.append(configuration.getPostfixDelimiter());
+                key.append(headerValue);
+            }
+        }
+        return key.length() == 0 ? null : key.toString();
+    }
+}
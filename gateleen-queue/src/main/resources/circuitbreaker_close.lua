@@ -9,6 +9,8 @@ local allCircuitsKey = KEYS[5]
 local halfOpenCircuitsKey = KEYS[6]
 local openCircuitsKey = KEYS[7]
 local queuesToUnlockKey = KEYS[8]
+local legacyCircuitSuccessKey = KEYS[9]
+local legacyCircuitFailureKey = KEYS[10]
 
 local circuitHash = ARGV[1]
 local removeCircuit = ARGV[2]
@@ -29,10 +31,16 @@ else
     redis.call('hset',circuitInfoKey,failRatioField,0)
 end
 
--- clear success/failure sets
+-- clear success/failure buckets
 redis.call('del',circuitSuccessKey)
 redis.call('del',circuitFailureKey)
 
+-- clear success/failure sets written by previous versions
+if legacyCircuitSuccessKey and legacyCircuitFailureKey then
+    redis.call('del',legacyCircuitSuccessKey)
+    redis.call('del',legacyCircuitFailureKey)
+end
+
 -- remove circuit from half-open-circuits and open-circuits set
 redis.call('srem',halfOpenCircuitsKey, circuitHash)
 redis.call('srem',openCircuitsKey, circuitHash)
@@ -4,36 +4,65 @@ local circuitField = "circuit"
 local circuitInfoKey = KEYS[1]
 local circuitSuccessKey = KEYS[2]
 local circuitFailureKey = KEYS[3]
-local circuitKeyToUpdate = KEYS[4]
-local openCircuitsKey = KEYS[5]
-local allCircuitsKey = KEYS[6]
-
-local requestID = ARGV[1]
-local circuit = ARGV[2]
-local circuitHash = ARGV[3]
-local requestTS = tonumber(ARGV[4])
-local errorThresholdPercentage = tonumber(ARGV[5])
-local entriesMaxAgeMS = tonumber(ARGV[6])
-local minQueueSampleCount = tonumber(ARGV[7])
-local maxQueueSampleCount = tonumber(ARGV[8])
+local openCircuitsKey = KEYS[4]
+local allCircuitsKey = KEYS[5]
+
+local circuit = ARGV[1]
+local circuitHash = ARGV[2]
+local requestTS = tonumber(ARGV[3])
+local errorThresholdPercentage = tonumber(ARGV[4])
+local entriesMaxAgeMS = tonumber(ARGV[5])
+local minQueueSampleCount = tonumber(ARGV[6])
+local maxQueueSampleCount = tonumber(ARGV[7])
+local bucketSizeMS = tonumber(ARGV[8])
+local successIncrement = tonumber(ARGV[9])
+local failureIncrement = tonumber(ARGV[10])
 
 local return_value = "OK"
-local minScore = requestTS - entriesMaxAgeMS
+local currentBucket = string.format("%.0f", math.floor(requestTS / bucketSizeMS))
+local minBucket = math.floor((requestTS - entriesMaxAgeMS) / bucketSizeMS)
+
+local function addToBucket(bucketsKey, increment)
+    if increment > 0 then
+        redis.call('hincrby',bucketsKey,currentBucket,increment)
+    end
+end
 
--- add request to circuit to update
-redis.call('zadd',circuitKeyToUpdate,requestTS,requestID)
+-- add the outcomes to the bucket of the current timestamp
+addToBucket(circuitSuccessKey, successIncrement)
+addToBucket(circuitFailureKey, failureIncrement)
 -- write circuit pattern to infos
 redis.call('hsetnx',circuitInfoKey, circuitField, circuit)
 -- add circuit to all circuits set
 redis.call('sadd',allCircuitsKey,circuitHash)
 
-redis.log(redis.LOG_NOTICE, "minScore: "..minScore)
-local successCount = redis.call('zcount',circuitSuccessKey,minScore,'+inf')
-redis.log(redis.LOG_NOTICE, "successCount: "..successCount)
-local failureCount = redis.call('zcount',circuitFailureKey,minScore,'+inf')
-redis.log(redis.LOG_NOTICE, "failureCount: "..failureCount)
+-- sums up the buckets within the age range (newest first) and removes the buckets which are either
+-- out of the age range or exceed the maxQueueSampleCount
+local function countSamples(bucketsKey)
+    local fields = redis.call('hgetall',bucketsKey)
+    local buckets = {}
+    for i = 1, #fields, 2 do
+        table.insert(buckets, { field = fields[i], bucket = tonumber(fields[i]), count = tonumber(fields[i + 1]) })
+    end
+    table.sort(buckets, function(a, b) return a.bucket > b.bucket end)
+
+    local count = 0
+    for _, entry in ipairs(buckets) do
+        if entry.bucket < minBucket or count >= maxQueueSampleCount then
+            redis.call('hdel',bucketsKey,entry.field)
+        elseif count + entry.count > maxQueueSampleCount then
+            redis.call('hset',bucketsKey,entry.field,maxQueueSampleCount - count)
+            count = maxQueueSampleCount
+        else
+            count = count + entry.count
+        end
+    end
+    return count
+end
+
+local successCount = countSamples(circuitSuccessKey)
+local failureCount = countSamples(circuitFailureKey)
 local totalSamples = successCount + failureCount
-redis.log(redis.LOG_NOTICE, "total samples count is "..totalSamples)
 
 local function setCircuitState(state)
     redis.call('hset',circuitInfoKey,stateField,state)
@@ -53,7 +82,6 @@ local function calculateFailurePercentage()
     if failureCount > 0 then
         percentage = math.floor((failureCount / totalSamples)*100)
     end
-    redis.log(redis.LOG_NOTICE, "percentage: "..percentage.."%")
     return percentage
 end
 
@@ -61,14 +89,6 @@ local function sampleCountThresholdReached()
     return totalSamples >= minQueueSampleCount
 end
 
-local function preserveSetSize(setToCleanup)
-    local cardinality = redis.call('zcard',setToCleanup)
-    if cardinality > maxQueueSampleCount then
-        local entriesToRemove = cardinality - maxQueueSampleCount
-        redis.call('zremrangebyrank',setToCleanup,0, entriesToRemove-1)
-    end
-end
-
 local function updateFailurePercentage()
     local failPercentage = calculateFailurePercentage()
     redis.call('hset',circuitInfoKey,failRatioField,failPercentage)
@@ -88,8 +108,4 @@ if getCircuitState() == "closed" and sampleCountThresholdReached() and failPerce
     openCircuit()
 end
 
--- cleanup set when too much entries
-preserveSetSize(circuitSuccessKey)
-preserveSetSize(circuitFailureKey)
-
-return return_value
\ No newline at end of file
+return return_value
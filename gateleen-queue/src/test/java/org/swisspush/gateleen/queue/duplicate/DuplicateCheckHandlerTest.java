@@ -0,0 +1,126 @@
+package org.swisspush.gateleen.queue.duplicate;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.core.tracing.TracingPolicy;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.Timeout;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.redis.client.PoolOptions;
+import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.RedisStandaloneConnectOptions;
+import io.vertx.redis.client.impl.RedisClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.gateleen.core.redis.RedisProvider;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the {@link DuplicateCheckHandler} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class DuplicateCheckHandlerTest {
+
+    private static final int CONCURRENT_REQUESTS = 20;
+
+    private static Vertx vertx;
+    private static RedisProvider redisProvider;
+    private Jedis jedis;
+
+    @org.junit.Rule
+    public Timeout rule = Timeout.seconds(5);
+
+    @BeforeClass
+    public static void setupRedis() {
+        vertx = Vertx.vertx();
+        RedisAPI redisAPI = RedisAPI.api(new RedisClient(vertx, new NetClientOptions(), new PoolOptions(), new RedisStandaloneConnectOptions(), TracingPolicy.IGNORE));
+        redisProvider = () -> Future.succeededFuture(redisAPI);
+    }
+
+    @Before
+    public void setUp() {
+        jedis = new Jedis("localhost");
+        try {
+            jedis.flushAll();
+        } catch (JedisConnectionException e) {
+            org.junit.Assume.assumeNoException("Ignoring this test because no running redis is available. This is the case during release", e);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        DuplicateCheckHandler.setPrefilter(null);
+    }
+
+    @Test
+    public void testDuplicateRequest(TestContext context) {
+        Async async = context.async();
+        Buffer payload = Buffer.buffer("{\"key\": 1}");
+        DuplicateCheckHandler.checkDuplicateRequest(redisProvider, "/some/resource", payload, "10", isDuplicate -> {
+            context.assertFalse(isDuplicate);
+            DuplicateCheckHandler.checkDuplicateRequest(redisProvider, "/some/resource", payload, "10", isDuplicate1 -> {
+                context.assertTrue(isDuplicate1);
+                DuplicateCheckHandler.checkDuplicateRequest(redisProvider, "/some/resource", Buffer.buffer("{\"key\": 2}"), "10", isDuplicate2 -> {
+                    context.assertFalse(isDuplicate2, "request with other payload should not be a duplicate");
+                    async.complete();
+                });
+            });
+        });
+    }
+
+    @Test
+    public void testEntryExpires(TestContext context) {
+        Async async = context.async();
+        DuplicateCheckHandler.checkDuplicateRequest(redisProvider, "/some/resource", Buffer.buffer("{}"), "1", isDuplicate -> {
+            context.assertFalse(isDuplicate);
+            vertx.setTimer(1100, timerId -> DuplicateCheckHandler.checkDuplicateRequest(redisProvider, "/some/resource",
+                    Buffer.buffer("{}"), "1", isDuplicate1 -> {
+                        context.assertFalse(isDuplicate1);
+                        async.complete();
+                    }));
+        });
+    }
+
+    @Test
+    public void testExactlyOneOfConcurrentDuplicatesIsAccepted(TestContext context) {
+        assertExactlyOneAccepted(context);
+    }
+
+    @Test
+    public void testExactlyOneOfConcurrentDuplicatesIsAcceptedWithPrefilter(TestContext context) {
+        Async async = context.async();
+        DuplicateCheckHandler.setPrefilter(new DuplicateCheckPrefilter(1000, 0.01));
+        // the prefilter is used when it is older than the time to live of the requests
+        vertx.setTimer(1100, timerId -> {
+            assertExactlyOneAccepted(context);
+            async.complete();
+        });
+    }
+
+    private void assertExactlyOneAccepted(TestContext context) {
+        Async async = context.async();
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger answered = new AtomicInteger();
+        Buffer payload = Buffer.buffer("{\"key\": \"concurrent\"}");
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            DuplicateCheckHandler.checkDuplicateRequest(redisProvider, "/some/resource", payload, "1", isDuplicate -> {
+                if (!isDuplicate) {
+                    accepted.incrementAndGet();
+                }
+                if (answered.incrementAndGet() == CONCURRENT_REQUESTS) {
+                    context.assertEquals(1, accepted.get());
+                    async.complete();
+                }
+            });
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.swisspush.gateleen.queue.queuing;
 
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
@@ -21,6 +22,8 @@ import org.swisspush.gateleen.core.util.Address;
 import org.swisspush.gateleen.monitoring.MonitoringHandler;
 import org.swisspush.redisques.util.RedisquesAPI;
 
+import java.util.List;
+
 import static org.mockito.ArgumentMatchers.eq;
 import static org.swisspush.redisques.util.RedisquesAPI.*;
 
@@ -255,6 +258,56 @@ public class QueueClientTest {
         Mockito.verifyNoInteractions(monitoringHandler);
     }
 
+    @Test
+    public void testEnqueueBatch(TestContext context){
+        Async async = context.async();
+
+        /*
+         * consume event bus messages directed to redisques and reply with 'failure' for the queue 'failingQueue'
+         */
+        vertx.eventBus().localConsumer(Address.redisquesAddress(), (Handler<Message<JsonObject>>) message -> {
+            String queue = message.body().getJsonObject(RedisquesAPI.PAYLOAD).getString(RedisquesAPI.QUEUENAME);
+            if ("failingQueue".equals(queue)) {
+                message.reply(new JsonObject().put(STATUS, ERROR).put(MESSAGE, "enqueue:boom"));
+            } else {
+                message.reply(new JsonObject().put(STATUS, OK));
+            }
+        });
+
+        HttpRequest request = new HttpRequest(HttpMethod.PUT, "/targetUri", MultiMap.caseInsensitiveMultiMap(), Buffer.buffer("{\"key\":\"value\"}").getBytes());
+        List<EnqueueBatchEntry> entries = List.of(
+                EnqueueBatchEntry.of(request, "myQueue"),
+                EnqueueBatchEntry.of(request, "failingQueue"),
+                EnqueueBatchEntry.locked(request, "myQueue", "LockRequester"));
+        CompositeFuture batch = queueClient.enqueueBatch(entries);
+        batch.onComplete(event -> {
+            context.assertTrue(event.failed());
+            context.assertTrue(batch.succeeded(0));
+            context.assertEquals("enqueue:boom", batch.cause(1).getMessage());
+            context.assertTrue(batch.succeeded(2));
+            async.complete();
+        });
+
+        // like for single enqueues, the monitoring is updated for each successful entry
+        Mockito.verify(monitoringHandler, Mockito.timeout(1000).times(2)).updateEnqueue();
+        Mockito.verify(monitoringHandler, Mockito.timeout(1000).times(2)).updateLastUsedQueueSizeInformation(eq("myQueue"));
+        Mockito.verify(monitoringHandler, Mockito.never()).updateLastUsedQueueSizeInformation(eq("failingQueue"));
+    }
+
+    @Test
+    public void testEnqueueBatchWithUnsupportedMethod(TestContext context){
+        Async async = context.async();
+
+        HttpRequest request = new HttpRequest(HttpMethod.TRACE, "/targetUri", MultiMap.caseInsensitiveMultiMap(), Buffer.buffer("{\"key\":\"value\"}").getBytes());
+        CompositeFuture batch = queueClient.enqueueBatch(List.of(EnqueueBatchEntry.of(request, "myQueue")));
+        batch.onComplete(event -> {
+            context.assertTrue(batch.failed(0));
+            async.complete();
+        });
+
+        Mockito.verify(monitoringHandler, Mockito.after(500).never()).updateEnqueue();
+    }
+
     private void validateMessage(TestContext context, Message<JsonObject> message, RedisquesAPI.QueueOperation expectedOperation, String queue){
         String opString = message.body().getString(RedisquesAPI.OPERATION);
         context.assertEquals(expectedOperation, RedisquesAPI.QueueOperation.fromString(opString));
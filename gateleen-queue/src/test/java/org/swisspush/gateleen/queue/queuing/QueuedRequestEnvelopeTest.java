@@ -0,0 +1,166 @@
+package org.swisspush.gateleen.queue.queuing;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.gateleen.core.http.HttpRequest;
+import org.swisspush.gateleen.core.http.SharedPayload;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tests for the {@link QueuedRequestEnvelope} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class QueuedRequestEnvelopeTest {
+
+    private static final String PAYLOAD = "{\"key\":\"value with some bytes äöü\",\"other\":\"1:2:3\"}";
+
+    @Test
+    public void testTextPayloadRoundTrip(TestContext context) {
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+                .add("x-foo", "bar")
+                .add("x-foo", "baz")
+                .add("Content-Type", "application/json; charset=utf-8");
+        HttpRequest request = new HttpRequest(HttpMethod.PUT, "/gateleen/server/resource?a=1:2", headers, Buffer.buffer(PAYLOAD).getBytes());
+
+        String item = QueuedRequestEnvelope.encode(request, 1234567890L);
+        context.assertTrue(QueuedRequestEnvelope.isEnvelope(item));
+        context.assertTrue(item.endsWith(PAYLOAD), "utf-8 payload should be written as is");
+
+        QueuedRequestEnvelope envelope = QueuedRequestEnvelope.read(item);
+        HttpRequest decoded = envelope.getRequest();
+        context.assertEquals(1234567890L, envelope.getQueueTimestamp());
+        context.assertEquals(HttpMethod.PUT, decoded.getMethod());
+        context.assertEquals("/gateleen/server/resource?a=1:2", decoded.getUri());
+        context.assertEquals(Arrays.asList("bar", "baz"), decoded.getHeaders().getAll("x-foo"));
+        context.assertEquals("application/json; charset=utf-8", decoded.getHeaders().get("content-type"));
+        context.assertTrue(Arrays.equals(Buffer.buffer(PAYLOAD).getBytes(), decoded.getPayload()));
+    }
+
+    @Test
+    public void testBinaryPayloadRoundTrip(TestContext context) {
+        byte[] payload = new byte[256];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        HttpRequest request = new HttpRequest(HttpMethod.POST, "/binary", null, payload);
+
+        QueuedRequestEnvelope envelope = QueuedRequestEnvelope.read(QueuedRequestEnvelope.encode(request, 1L));
+        context.assertNull(envelope.getRequest().getHeaders());
+        context.assertTrue(Arrays.equals(payload, envelope.getRequest().getPayload()));
+    }
+
+    @Test
+    public void testSharedPayloadSameAsCopiedPayload(TestContext context) {
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap().add("x-foo", "bar");
+        byte[] binary = new byte[]{(byte) 0xff, 0, 1, (byte) 0xfe};
+        for (byte[] payload : Arrays.asList(Buffer.buffer(PAYLOAD).getBytes(), binary)) {
+            HttpRequest copied = new HttpRequest(HttpMethod.PUT, "/resource", headers, payload);
+            HttpRequest shared = HttpRequest.withSharedPayload(HttpMethod.PUT, "/resource", headers,
+                    SharedPayload.of(Buffer.buffer(payload)));
+
+            context.assertEquals(QueuedRequestEnvelope.encode(copied, 1L), QueuedRequestEnvelope.encode(shared, 1L));
+        }
+    }
+
+    @Test
+    public void testEmptyPayload(TestContext context) {
+        HttpRequest request = new HttpRequest(HttpMethod.DELETE, "/resource", MultiMap.caseInsensitiveMultiMap(), null);
+
+        QueuedRequestEnvelope envelope = QueuedRequestEnvelope.read(QueuedRequestEnvelope.encode(request, 1L));
+        context.assertEquals(HttpMethod.DELETE, envelope.getRequest().getMethod());
+        context.assertTrue(envelope.getRequest().getHeaders().isEmpty());
+        context.assertEquals(0, envelope.getRequest().getPayload().length);
+    }
+
+    @Test
+    public void testReadJsonItem(TestContext context) {
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap().add("x-foo", "bar");
+        HttpRequest request = new HttpRequest(HttpMethod.PUT, "/resource", headers, Buffer.buffer(PAYLOAD).getBytes());
+        String item = request.toJsonObject().put(QueueClient.QUEUE_TIMESTAMP, 42L).encode();
+        context.assertFalse(QueuedRequestEnvelope.isEnvelope(item));
+
+        QueuedRequestEnvelope envelope = QueuedRequestEnvelope.read(item);
+        context.assertEquals(42L, envelope.getQueueTimestamp());
+        context.assertEquals("/resource", envelope.getRequest().getUri());
+        context.assertEquals("bar", envelope.getRequest().getHeaders().get("x-foo"));
+        context.assertTrue(Arrays.equals(Buffer.buffer(PAYLOAD).getBytes(), envelope.getRequest().getPayload()));
+    }
+
+    @Test
+    public void testEnvelopeSmallerThanJson(TestContext context) {
+        HttpRequest request = largeJsonRequest();
+
+        int jsonSize = request.toJsonObject().put(QueueClient.QUEUE_TIMESTAMP, 1L).encode().getBytes(StandardCharsets.UTF_8).length;
+        int envelopeSize = QueuedRequestEnvelope.encode(request, 1L).getBytes(StandardCharsets.UTF_8).length;
+        context.assertTrue(envelopeSize < jsonSize * 0.8, "envelope " + envelopeSize + " bytes, json " + jsonSize + " bytes");
+    }
+
+    @Test
+    public void testEnvelopeCheaperThanJson(TestContext context) {
+        HttpRequest request = largeJsonRequest();
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        context.assertTrue(threadMXBean.isCurrentThreadCpuTimeSupported(), "cpu time is not measurable");
+
+        // warm up both paths before measuring
+        long jsonCpu = 0;
+        long envelopeCpu = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = threadMXBean.getCurrentThreadCpuTime();
+            for (int i = 0; i < 500; i++) {
+                String item = request.toJsonObject().put(QueueClient.QUEUE_TIMESTAMP, 1L).encode();
+                new HttpRequest(new JsonObject(item));
+            }
+            jsonCpu = threadMXBean.getCurrentThreadCpuTime() - start;
+
+            start = threadMXBean.getCurrentThreadCpuTime();
+            for (int i = 0; i < 500; i++) {
+                QueuedRequestEnvelope.read(QueuedRequestEnvelope.encode(request, 1L));
+            }
+            envelopeCpu = threadMXBean.getCurrentThreadCpuTime() - start;
+        }
+        context.assertTrue(envelopeCpu < jsonCpu, "envelope " + envelopeCpu / 1000000 + " ms cpu, json "
+                + jsonCpu / 1000000 + " ms cpu for encoding and decoding 500 requests");
+    }
+
+    @Test
+    public void testInvalidEnvelopes(TestContext context) {
+        HttpRequest request = new HttpRequest(HttpMethod.PUT, "/resource", null, Buffer.buffer(PAYLOAD).getBytes());
+        String item = QueuedRequestEnvelope.encode(request, 1L);
+
+        assertInvalid(context, item.substring(0, item.length() - 1));
+        assertInvalid(context, item + "x");
+        assertInvalid(context, QueuedRequestEnvelope.MARKER + "9" + item.substring(2));
+        assertInvalid(context, QueuedRequestEnvelope.MARKER + "1" + "5:TRACE1:/1:10:-11:t0:");
+    }
+
+    private static HttpRequest largeJsonRequest() {
+        StringBuilder payload = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            payload.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i).append("\"},");
+        }
+        payload.append("{}]");
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+                .add("x-server-timestamp", "2024-01-01T00:00:00.000+01:00")
+                .add("x-queue-expire-after", "60");
+        return new HttpRequest(HttpMethod.PUT, "/gateleen/server/resource", headers, Buffer.buffer(payload.toString()).getBytes());
+    }
+
+    private void assertInvalid(TestContext context, String item) {
+        try {
+            QueuedRequestEnvelope.read(item);
+            context.fail("Expected an IllegalArgumentException for " + item);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
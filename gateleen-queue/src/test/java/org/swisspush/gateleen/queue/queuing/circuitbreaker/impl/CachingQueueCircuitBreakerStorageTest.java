@@ -0,0 +1,154 @@
+package org.swisspush.gateleen.queue.queuing.circuitbreaker.impl;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.Timeout;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.swisspush.gateleen.core.util.Address;
+import org.swisspush.gateleen.queue.queuing.circuitbreaker.QueueCircuitBreakerStorage;
+import org.swisspush.gateleen.queue.queuing.circuitbreaker.util.PatternAndCircuitHash;
+import org.swisspush.gateleen.queue.queuing.circuitbreaker.util.QueueCircuitState;
+import org.swisspush.gateleen.queue.queuing.circuitbreaker.util.UpdateStatisticsResult;
+
+import java.util.regex.Pattern;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for the {@link CachingQueueCircuitBreakerStorage} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class CachingQueueCircuitBreakerStorageTest {
+
+    private static final PatternAndCircuitHash CIRCUIT = new PatternAndCircuitHash(Pattern.compile("/path/to/.*"), "circuitHash");
+
+    private Vertx vertx;
+    private QueueCircuitBreakerStorage delegate;
+    private CachingQueueCircuitBreakerStorage storage;
+
+    @org.junit.Rule
+    public Timeout rule = Timeout.seconds(5);
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        delegate = Mockito.mock(QueueCircuitBreakerStorage.class);
+        Mockito.when(delegate.getQueueCircuitState(any(PatternAndCircuitHash.class))).thenReturn(Future.succeededFuture(QueueCircuitState.CLOSED));
+        storage = new CachingQueueCircuitBreakerStorage(vertx, delegate, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void testClosedStateIsReadOnlyOnce(TestContext context) {
+        for (int i = 0; i < 10; i++) {
+            context.assertEquals(QueueCircuitState.CLOSED, storage.getQueueCircuitState(CIRCUIT).result());
+        }
+        verify(delegate, times(1)).getQueueCircuitState(any(PatternAndCircuitHash.class));
+    }
+
+    @Test
+    public void testOpenedByStatisticsUpdate(TestContext context) {
+        Mockito.when(delegate.updateStatistics(any(), anyLong(), anyLong(), anyLong(), anyInt(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(Future.succeededFuture(UpdateStatisticsResult.OPENED));
+        storage.getQueueCircuitState(CIRCUIT);
+
+        storage.updateStatistics(CIRCUIT, 0, 1, 1L, 50, 1000, 1, 10);
+
+        context.assertEquals(QueueCircuitState.OPEN, storage.getQueueCircuitState(CIRCUIT).result());
+        verify(delegate, times(1)).getQueueCircuitState(any(PatternAndCircuitHash.class));
+    }
+
+    @Test
+    public void testCloseAndReOpen(TestContext context) {
+        Mockito.when(delegate.closeCircuit(any())).thenReturn(Future.succeededFuture());
+        Mockito.when(delegate.reOpenCircuit(any())).thenReturn(Future.succeededFuture());
+
+        storage.reOpenCircuit(CIRCUIT);
+        context.assertEquals(QueueCircuitState.OPEN, storage.getQueueCircuitState(CIRCUIT).result());
+        storage.closeCircuit(CIRCUIT);
+        context.assertEquals(QueueCircuitState.CLOSED, storage.getQueueCircuitState(CIRCUIT).result());
+        verify(delegate, Mockito.never()).getQueueCircuitState(any(PatternAndCircuitHash.class));
+    }
+
+    @Test
+    public void testOpenToHalfOpenReloadsStates(TestContext context) {
+        Mockito.when(delegate.setOpenCircuitsToHalfOpen()).thenReturn(Future.succeededFuture(1L));
+        storage.getQueueCircuitState(CIRCUIT);
+        context.assertEquals(1, storage.size());
+
+        storage.setOpenCircuitsToHalfOpen();
+
+        context.assertEquals(0, storage.size());
+    }
+
+    @Test
+    public void testChangeFromOtherInstance(TestContext context) {
+        Async async = context.async();
+        storage.getQueueCircuitState(CIRCUIT);
+
+        vertx.eventBus().publish(Address.QUEUE_CIRCUIT_STATE_CHANGED_ADDRESS,
+                new JsonObject().put("circuit", "circuitHash").put("state", "open"));
+
+        vertx.setTimer(100, id -> {
+            context.assertEquals(QueueCircuitState.OPEN, storage.getQueueCircuitState(CIRCUIT).result());
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testOwnChangeIsAppliedOnce(TestContext context) {
+        Async async = context.async();
+        Mockito.when(delegate.setOpenCircuitsToHalfOpen()).thenReturn(Future.succeededFuture(1L));
+
+        storage.setOpenCircuitsToHalfOpen();
+        storage.getQueueCircuitState(CIRCUIT);
+        context.assertEquals(1, storage.size());
+
+        // the published change must not clear the state loaded after the change again
+        vertx.setTimer(100, id -> {
+            context.assertEquals(1, storage.size());
+            verify(delegate, times(1)).getQueueCircuitState(any(PatternAndCircuitHash.class));
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testReconcile(TestContext context) {
+        storage.getQueueCircuitState(CIRCUIT);
+        JsonObject allCircuits = new JsonObject()
+                .put("circuitHash", new JsonObject().put("status", "half_open").put("infos", new JsonObject()));
+        Mockito.when(delegate.getAllCircuits()).thenReturn(Future.succeededFuture(allCircuits));
+
+        storage.reconcile();
+
+        context.assertEquals(QueueCircuitState.HALF_OPEN, storage.getQueueCircuitState(CIRCUIT).result());
+    }
+
+    @Test
+    public void testStaleLoadIsNotCached(TestContext context) {
+        Mockito.when(delegate.reOpenCircuit(any())).thenReturn(Future.succeededFuture());
+        Promise<QueueCircuitState> load = Promise.promise();
+        Mockito.when(delegate.getQueueCircuitState(any(PatternAndCircuitHash.class))).thenReturn(load.future());
+
+        storage.getQueueCircuitState(CIRCUIT);
+        storage.reOpenCircuit(CIRCUIT);
+        load.complete(QueueCircuitState.CLOSED);
+
+        context.assertEquals(QueueCircuitState.OPEN, storage.getQueueCircuitState(CIRCUIT).result());
+    }
+}
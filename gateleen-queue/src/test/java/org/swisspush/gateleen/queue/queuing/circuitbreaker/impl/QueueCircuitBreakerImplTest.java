@@ -277,13 +277,18 @@ public class QueueCircuitBreakerImplTest {
                 .thenReturn(new PatternAndCircuitHash(Pattern.compile("/someCircuit"), "someCircuitHash"));
 
         Mockito.when(queueCircuitBreakerStorage.updateStatistics(any(PatternAndCircuitHash.class),
-                anyString(), anyLong(), anyInt(), anyLong(), anyLong(), anyLong(), any(QueueResponseType.class)))
+                anyLong(), anyLong(), anyLong(), anyInt(), anyLong(), anyLong(), anyLong()))
                 .thenReturn(Future.succeededFuture(UpdateStatisticsResult.OK));
 
         queueCircuitBreaker.updateStatistics("someQueue", req, SUCCESS).onComplete(event -> {
             context.assertTrue(event.succeeded());
-            verify(queueCircuitBreaker, never()).lockQueue(anyString(), any(HttpRequest.class));
-            async.complete();
+            queueCircuitBreaker.flushStatistics().onComplete(flushEvent -> {
+                context.assertTrue(flushEvent.succeeded());
+                verify(queueCircuitBreakerStorage, times(1)).updateStatistics(any(PatternAndCircuitHash.class),
+                        eq(1L), eq(0L), anyLong(), anyInt(), anyLong(), anyLong(), anyLong());
+                verify(queueCircuitBreaker, never()).lockQueue(anyString(), any(HttpRequest.class));
+                async.complete();
+            });
         });
         async.awaitSuccess();
     }
@@ -314,7 +319,7 @@ public class QueueCircuitBreakerImplTest {
                 .thenReturn(new PatternAndCircuitHash(Pattern.compile("/someCircuit"), "someCircuitHash"));
 
         Mockito.when(queueCircuitBreakerStorage.updateStatistics(any(PatternAndCircuitHash.class),
-                anyString(), anyLong(), anyInt(), anyLong(), anyLong(), anyLong(), any(QueueResponseType.class)))
+                anyLong(), anyLong(), anyLong(), anyInt(), anyLong(), anyLong(), anyLong()))
                 .thenReturn(Future.succeededFuture(UpdateStatisticsResult.OPENED));
 
         Mockito.when(queueCircuitBreakerStorage.lockQueue(anyString(), any(PatternAndCircuitHash.class)))
@@ -322,7 +327,72 @@ public class QueueCircuitBreakerImplTest {
 
         queueCircuitBreaker.updateStatistics("someQueue", req, SUCCESS).onComplete(event -> {
             context.assertTrue(event.succeeded());
-            verify(queueCircuitBreaker, times(1)).lockQueue("someQueue", req);
+            queueCircuitBreaker.flushStatistics().onComplete(flushEvent -> {
+                context.assertTrue(flushEvent.succeeded());
+                verify(queueCircuitBreaker, times(1)).lockQueue("someQueue", req);
+                async.complete();
+            });
+        });
+        async.awaitSuccess();
+    }
+
+    @Test
+    public void testUpdateStatisticsAggregatedPerCircuit(TestContext context) {
+        Async async = context.async();
+        HttpRequest req = new HttpRequest(HttpMethod.PUT, "/playground/circuitBreaker/test",
+                MultiMap.caseInsensitiveMultiMap().add("x-rp-unique-id", "req_1"), null);
+        HttpRequest otherReq = new HttpRequest(HttpMethod.PUT, "/playground/circuitBreaker/test",
+                MultiMap.caseInsensitiveMultiMap().add("x-rp-unique-id", "req_2"), null);
+
+        Mockito.when(ruleToCircuitMapping.getCircuitFromRequestUri(anyString()))
+                .thenReturn(new PatternAndCircuitHash(Pattern.compile("/someCircuit"), "someCircuitHash"));
+
+        Mockito.when(queueCircuitBreakerStorage.updateStatistics(any(PatternAndCircuitHash.class),
+                anyLong(), anyLong(), anyLong(), anyInt(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(Future.succeededFuture(UpdateStatisticsResult.OK));
+
+        queueCircuitBreaker.updateStatistics("someQueue", req, SUCCESS);
+        queueCircuitBreaker.updateStatistics("someQueue", req, QueueResponseType.FAILURE);
+        queueCircuitBreaker.updateStatistics("otherQueue", otherReq, SUCCESS);
+        // the same request is recorded only once
+        queueCircuitBreaker.updateStatistics("someQueue", req, SUCCESS);
+        queueCircuitBreaker.updateStatistics("someQueue", req, QueueResponseType.FAILURE);
+
+        queueCircuitBreaker.flushStatistics().onComplete(event -> {
+            context.assertTrue(event.succeeded());
+            verify(queueCircuitBreakerStorage, times(1)).updateStatistics(any(PatternAndCircuitHash.class),
+                    anyLong(), anyLong(), anyLong(), anyInt(), anyLong(), anyLong(), anyLong());
+            verify(queueCircuitBreakerStorage, times(1)).updateStatistics(any(PatternAndCircuitHash.class),
+                    eq(2L), eq(1L), anyLong(), anyInt(), anyLong(), anyLong(), anyLong());
+
+            // nothing left to flush
+            queueCircuitBreaker.flushStatistics().onComplete(event1 -> {
+                verify(queueCircuitBreakerStorage, times(1)).updateStatistics(any(PatternAndCircuitHash.class),
+                        anyLong(), anyLong(), anyLong(), anyInt(), anyLong(), anyLong(), anyLong());
+                async.complete();
+            });
+        });
+        async.awaitSuccess();
+    }
+
+    @Test
+    public void testStopFlushesStatistics(TestContext context) {
+        Async async = context.async();
+        HttpRequest req = new HttpRequest(HttpMethod.PUT, "/playground/circuitBreaker/test", MultiMap.caseInsensitiveMultiMap(), null);
+
+        Mockito.when(ruleToCircuitMapping.getCircuitFromRequestUri(anyString()))
+                .thenReturn(new PatternAndCircuitHash(Pattern.compile("/someCircuit"), "someCircuitHash"));
+
+        Mockito.when(queueCircuitBreakerStorage.updateStatistics(any(PatternAndCircuitHash.class),
+                anyLong(), anyLong(), anyLong(), anyInt(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(Future.succeededFuture(UpdateStatisticsResult.OK));
+
+        queueCircuitBreaker.updateStatistics("someQueue", req, SUCCESS);
+
+        queueCircuitBreaker.stop().onComplete(event -> {
+            context.assertTrue(event.succeeded());
+            verify(queueCircuitBreakerStorage, times(1)).updateStatistics(any(PatternAndCircuitHash.class),
+                    eq(1L), eq(0L), anyLong(), anyInt(), anyLong(), anyLong(), anyLong());
             async.complete();
         });
         async.awaitSuccess();
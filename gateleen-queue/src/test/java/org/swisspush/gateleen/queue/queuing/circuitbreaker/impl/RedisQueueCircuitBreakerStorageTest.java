@@ -192,23 +192,23 @@ public class RedisQueueCircuitBreakerStorageTest {
         long minQueueSampleCount = 1;
         long maxQueueSampleCount = 3;
 
-        storage.updateStatistics(patternAndCircuitHash, "req_1", 1, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount, QueueResponseType.SUCCESS).onComplete(event -> {
+        storage.updateStatistics(patternAndCircuitHash, 1, 0, 1, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount).onComplete(event -> {
             context.assertTrue(event.succeeded());
             context.assertTrue(jedis.exists(key(circuitHash, QueueResponseType.SUCCESS)));
             context.assertFalse(jedis.exists(key(circuitHash, QueueResponseType.FAILURE)));
-            context.assertEquals(1L, jedis.zcard(key(circuitHash, QueueResponseType.SUCCESS)));
+            context.assertEquals(1L, sampleCount(key(circuitHash, QueueResponseType.SUCCESS)));
             context.assertEquals(UpdateStatisticsResult.OK, event.result());
-            storage.updateStatistics(patternAndCircuitHash, "req_2", 2, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount, QueueResponseType.SUCCESS).onComplete(event1 -> {
+            storage.updateStatistics(patternAndCircuitHash, 1, 0, 2, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount).onComplete(event1 -> {
                 context.assertFalse(jedis.exists(key(circuitHash, QueueResponseType.FAILURE)));
-                context.assertEquals(2L, jedis.zcard(key(circuitHash, QueueResponseType.SUCCESS)));
+                context.assertEquals(2L, sampleCount(key(circuitHash, QueueResponseType.SUCCESS)));
                 context.assertEquals(UpdateStatisticsResult.OK, event1.result());
-                storage.updateStatistics(patternAndCircuitHash, "req_3", 3, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount, QueueResponseType.SUCCESS).onComplete(event2 -> {
+                storage.updateStatistics(patternAndCircuitHash, 1, 0, 3, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount).onComplete(event2 -> {
                     context.assertFalse(jedis.exists(key(circuitHash, QueueResponseType.FAILURE)));
-                    context.assertEquals(3L, jedis.zcard(key(circuitHash, QueueResponseType.SUCCESS)));
+                    context.assertEquals(3L, sampleCount(key(circuitHash, QueueResponseType.SUCCESS)));
                     context.assertEquals(UpdateStatisticsResult.OK, event2.result());
-                    storage.updateStatistics(patternAndCircuitHash, "req_4", 4, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount, QueueResponseType.SUCCESS).onComplete(event3 -> {
+                    storage.updateStatistics(patternAndCircuitHash, 1, 0, 4, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount).onComplete(event3 -> {
                         context.assertFalse(jedis.exists(key(circuitHash, QueueResponseType.FAILURE)));
-                        context.assertEquals(3L, jedis.zcard(key(circuitHash, QueueResponseType.SUCCESS)));
+                        context.assertEquals(3L, sampleCount(key(circuitHash, QueueResponseType.SUCCESS)));
                         context.assertEquals(UpdateStatisticsResult.OK, event3.result());
                         async.complete();
                     });
@@ -233,27 +233,27 @@ public class RedisQueueCircuitBreakerStorageTest {
         long minQueueSampleCount = 3;
         long maxQueueSampleCount = 5;
 
-        Future<UpdateStatisticsResult> f1 = storage.updateStatistics(patternAndCircuitHash, "req_1", 1, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount, QueueResponseType.SUCCESS);
-        Future<UpdateStatisticsResult> f2 = storage.updateStatistics(patternAndCircuitHash, "req_2", 2, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount, QueueResponseType.FAILURE);
-        Future<UpdateStatisticsResult> f3 = storage.updateStatistics(patternAndCircuitHash, "req_3", 3, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount, QueueResponseType.FAILURE);
+        Future<UpdateStatisticsResult> f1 = storage.updateStatistics(patternAndCircuitHash, 1, 0, 1, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount);
+        Future<UpdateStatisticsResult> f2 = storage.updateStatistics(patternAndCircuitHash, 0, 1, 2, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount);
+        Future<UpdateStatisticsResult> f3 = storage.updateStatistics(patternAndCircuitHash, 0, 1, 3, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount);
 
         CompositeFuture.all(f1, f2, f3).onComplete(event -> {
             context.assertTrue(event.succeeded());
-            context.assertEquals(1L, jedis.zcard(key(circuitHash, QueueResponseType.SUCCESS)));
-            context.assertEquals(2L, jedis.zcard(key(circuitHash, QueueResponseType.FAILURE)));
+            context.assertEquals(1L, sampleCount(key(circuitHash, QueueResponseType.SUCCESS)));
+            context.assertEquals(2L, sampleCount(key(circuitHash, QueueResponseType.FAILURE)));
 
             storage.getQueueCircuitState(patternAndCircuitHash).onComplete(event1 -> {
                 context.assertEquals(CLOSED, event1.result());
                 assertStateAndErroPercentage(context, circuitHash, CLOSED, 66);
                 context.assertFalse(jedis.exists(STORAGE_OPEN_CIRCUITS));
-                storage.updateStatistics(patternAndCircuitHash, "req_4", 4, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount, QueueResponseType.FAILURE).onComplete(event2 -> {
+                storage.updateStatistics(patternAndCircuitHash, 0, 1, 4, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount).onComplete(event2 -> {
                     storage.getQueueCircuitState(patternAndCircuitHash).onComplete(event3 -> {
                         assertStateAndErroPercentage(context, circuitHash, OPEN, 75);
                         context.assertEquals(OPEN, event3.result());
                         context.assertTrue(jedis.exists(STORAGE_OPEN_CIRCUITS));
                         assertHashInOpenCircuitsSet(context, circuitHash, 1);
-                        context.assertEquals(1L, jedis.zcard(key(circuitHash, QueueResponseType.SUCCESS)));
-                        context.assertEquals(3L, jedis.zcard(key(circuitHash, QueueResponseType.FAILURE)));
+                        context.assertEquals(1L, sampleCount(key(circuitHash, QueueResponseType.SUCCESS)));
+                        context.assertEquals(3L, sampleCount(key(circuitHash, QueueResponseType.FAILURE)));
                         async.complete();
                     });
                 });
@@ -261,6 +261,60 @@ public class RedisQueueCircuitBreakerStorageTest {
         });
     }
 
+    @Test
+    public void testUpdateStatisticsWithAggregatedCounts(TestContext context){
+        Async async = context.async();
+        String circuitHash = "anotherCircuitHash";
+
+        PatternAndCircuitHash patternAndCircuitHash = buildPatternAndCircuitHash("/anotherCircuit", circuitHash);
+
+        int errorThreshold = 70;
+        long entriesMaxAgeMS = 10000;
+        long minQueueSampleCount = 3;
+        long maxQueueSampleCount = 5;
+
+        storage.updateStatistics(patternAndCircuitHash, 1, 1, 1000, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount).onComplete(event -> {
+            context.assertEquals(UpdateStatisticsResult.OK, event.result());
+            context.assertEquals(1L, (long) jedis.hlen(key(circuitHash, QueueResponseType.SUCCESS)));
+            assertStateAndErroPercentage(context, circuitHash, CLOSED, 50);
+            storage.updateStatistics(patternAndCircuitHash, 0, 3, 1150, errorThreshold, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount).onComplete(event1 -> {
+                context.assertEquals(UpdateStatisticsResult.OPENED, event1.result());
+                context.assertEquals(1L, sampleCount(key(circuitHash, QueueResponseType.SUCCESS)));
+                context.assertEquals(4L, sampleCount(key(circuitHash, QueueResponseType.FAILURE)));
+                context.assertEquals(2L, (long) jedis.hlen(key(circuitHash, QueueResponseType.FAILURE)));
+                assertStateAndErroPercentage(context, circuitHash, OPEN, 80);
+                assertHashInOpenCircuitsSet(context, circuitHash, 1);
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testUpdateStatisticsWithLegacySets(TestContext context){
+        Async async = context.async();
+        String circuitHash = "anotherCircuitHash";
+
+        PatternAndCircuitHash patternAndCircuitHash = buildPatternAndCircuitHash("/anotherCircuit", circuitHash);
+
+        // sorted sets written by previous versions
+        jedis.zadd(legacyKey(circuitHash, QueueResponseType.SUCCESS), 1, "req_1");
+        jedis.zadd(legacyKey(circuitHash, QueueResponseType.FAILURE), 2, "req_2");
+
+        storage.updateStatistics(patternAndCircuitHash, 1, 1, 1000, 50, 10000, 1, 5).onComplete(event -> {
+            context.assertTrue(event.succeeded());
+            context.assertEquals(1L, sampleCount(key(circuitHash, QueueResponseType.SUCCESS)));
+            context.assertEquals(1L, sampleCount(key(circuitHash, QueueResponseType.FAILURE)));
+            context.assertEquals(1L, jedis.zcard(legacyKey(circuitHash, QueueResponseType.SUCCESS)));
+            storage.closeCircuit(patternAndCircuitHash).onComplete(event1 -> {
+                context.assertTrue(event1.succeeded());
+                context.assertFalse(jedis.exists(key(circuitHash, QueueResponseType.SUCCESS)));
+                context.assertFalse(jedis.exists(legacyKey(circuitHash, QueueResponseType.SUCCESS)));
+                context.assertFalse(jedis.exists(legacyKey(circuitHash, QueueResponseType.FAILURE)));
+                async.complete();
+            });
+        });
+    }
+
     @Test
     public void testLockQueue(TestContext context){
         Async async = context.async();
@@ -817,9 +871,17 @@ public class RedisQueueCircuitBreakerStorageTest {
     }
 
     private String key(String circuitHash, QueueResponseType queueResponseType){
+        return STORAGE_PREFIX + circuitHash + queueResponseType.getBucketsKeySuffix();
+    }
+
+    private String legacyKey(String circuitHash, QueueResponseType queueResponseType){
         return STORAGE_PREFIX + circuitHash + queueResponseType.getKeySuffix();
     }
 
+    private long sampleCount(String statsKey){
+        return jedis.hvals(statsKey).stream().mapToLong(Long::parseLong).sum();
+    }
+
     private String queuesKey(String circuitHash){
         return STORAGE_PREFIX + circuitHash + STORAGE_QUEUES_SUFFIX;
     }
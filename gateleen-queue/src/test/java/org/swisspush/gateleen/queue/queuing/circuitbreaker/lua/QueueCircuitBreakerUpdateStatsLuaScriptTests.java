@@ -8,6 +8,7 @@ import org.swisspush.gateleen.testhelper.AbstractLuaScriptTest;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -34,9 +35,6 @@ public class QueueCircuitBreakerUpdateStatsLuaScriptTests extends AbstractLuaScr
     private final String openCircuitsKey = "open_circuits";
     private final String allCircuitsKey = "all_circuits";
 
-    private final String update_success = circuitSuccessKey;
-    private final String update_fail = circuitFailureKey;
-
     @Test
     public void testCalculateErrorPercentage(){
         assertThat(jedis.exists(circuitInfoKey), is(false));
@@ -46,9 +44,9 @@ public class QueueCircuitBreakerUpdateStatsLuaScriptTests extends AbstractLuaScr
         assertThat(jedis.exists(allCircuitsKey), is(false));
 
         // adding 3 failing requests
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_1", "url_pattern", 0, 50, 10, 4, 10);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_2", "url_pattern", 1, 50, 10, 4, 10);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_3", "url_pattern", 2, 50, 10, 4, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 0, 50, 10, 4, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 1, 50, 10, 4, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 2, 50, 10, 4, 10);
 
         // asserts
         assertThat(jedis.exists(circuitInfoKey), is(true));
@@ -57,7 +55,7 @@ public class QueueCircuitBreakerUpdateStatsLuaScriptTests extends AbstractLuaScr
         assertStateAndErroPercentage(CLOSED, 100); // state should still be 'closed' because the minSampleThreshold (4) is not yet reached
 
         // add 1 successful request => now the minSampleThreshold is reached
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_4", "url_pattern", 3, 50, 10, 4, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 3, 50, 10, 4, 10);
 
         assertThat(jedis.exists(circuitInfoKey), is(true));
         assertThat(jedis.exists(circuitSuccessKey), is(true));
@@ -69,28 +67,28 @@ public class QueueCircuitBreakerUpdateStatsLuaScriptTests extends AbstractLuaScr
         assertHashInAllCircuitsSet("url_patternHash", 1);
 
         // add 2 more successful requests => failurePercentage should drop
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_5", "url_pattern", 4, 50, 10, 4, 10);
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_6", "url_pattern", 5, 50, 10, 4, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 4, 50, 10, 4, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 5, 50, 10, 4, 10);
         assertStateAndErroPercentage(OPEN, 50);
         assertHashInOpenCircuitsSet("url_patternHash", 1);
         assertHashInAllCircuitsSet("url_patternHash", 1);
 
         // add 1 more successful request => failurePercentage should drop and state should switch to 'half_open'
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_7", "url_pattern", 6, 50, 10, 4, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 6, 50, 10, 4, 10);
         assertStateAndErroPercentage(OPEN, 42);
         assertHashInOpenCircuitsSet("url_patternHash", 1);
         assertHashInAllCircuitsSet("url_patternHash", 1);
 
         // add 1 more failing request => failurePercentage should raise again but state should remain 'half_open'
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_8", "url_pattern", 7, 50, 10, 4, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 7, 50, 10, 4, 10);
         assertStateAndErroPercentage(OPEN, 50);
         assertHashInOpenCircuitsSet("url_patternHash", 1);
         assertHashInAllCircuitsSet("url_patternHash", 1);
 
         // add 3 more failing request => failurePercentage should raise again but state should remain 'half_open'
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_9", "url_pattern", 8, 50, 10, 4, 10);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_10", "url_pattern", 9, 50, 10, 4, 10);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_11", "url_pattern", 10, 50, 10, 4, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 8, 50, 10, 4, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 9, 50, 10, 4, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 10, 50, 10, 4, 10);
         assertStateAndErroPercentage(OPEN, 63);
         assertHashInOpenCircuitsSet("url_patternHash", 1);
         assertHashInAllCircuitsSet("url_patternHash", 1);
@@ -100,70 +98,105 @@ public class QueueCircuitBreakerUpdateStatsLuaScriptTests extends AbstractLuaScr
 
 
     @Test
-    public void testDontExceedMaxSetSize(){
-        long maxSetSize = 10;
+    public void testDontExceedMaxSampleCount(){
+        long maxSampleCount = 10;
 
-        assertSizeSizeNotExceedingLimit(circuitSuccessKey, maxSetSize);
         for (int i = 1; i <= 20; i++) {
-            evalScriptUpdateQueueCircuitBreakerStats("q:success", "req_"+i, "url_pattern", i, 50, 10, 4, maxSetSize);
+            evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", i, 50, 100, 4, maxSampleCount);
         }
-        assertSizeSizeNotExceedingLimit(circuitSuccessKey, maxSetSize);
+        assertThat(sampleCount(circuitSuccessKey, 0), equalTo(maxSampleCount));
 
-        // assert that the 'oldest' entries have been removed
-        Set<String> remainingSetEntries = jedis.zrangeByScore(circuitSuccessKey, Long.MIN_VALUE, Long.MAX_VALUE);
-        assertThat(remainingSetEntries.size(), equalTo(10));
+        // assert that the 'oldest' buckets have been removed
+        Set<String> remainingBuckets = jedis.hkeys(circuitSuccessKey);
+        assertThat(remainingBuckets.size(), equalTo(10));
         for(int i = 1; i <= 10; i++){
-            assertThat(remainingSetEntries.contains("req_"+i), is(false));
+            assertThat(remainingBuckets.contains(String.valueOf(i)), is(false));
         }
         for(int i = 11; i <= 20; i++){
-            assertThat(remainingSetEntries.contains("req_"+i), is(true));
+            assertThat(remainingBuckets.contains(String.valueOf(i)), is(true));
         }
 
+        // an aggregated update exceeding the maxSampleCount replaces all older buckets
+        evalScriptUpdateQueueCircuitBreakerStats(15, 0, "url_pattern", 21, 50, 100, 4, maxSampleCount);
+        assertThat(jedis.hkeys(circuitSuccessKey).size(), equalTo(1));
+        assertThat(jedis.hget(circuitSuccessKey, "21"), equalTo("10"));
+
         assertCircuit("url_pattern");
     }
 
+    @Test
+    public void testAggregatedUpdates(){
+        evalScriptUpdateQueueCircuitBreakerStats(3, 1, "url_pattern", 1, 50, 10, 4, 100);
+        assertSampleCount(1, 10, 3, 1);
+        assertStateAndErroPercentage(CLOSED, 25);
+
+        evalScriptUpdateQueueCircuitBreakerStats(0, 2, "url_pattern", 1, 50, 10, 4, 100);
+        assertSampleCount(1, 10, 3, 3);
+        assertThat(jedis.hget(circuitFailureKey, "1"), equalTo("3"));
+        assertStateAndErroPercentage(OPEN, 50);
+        assertHashInOpenCircuitsSet("url_patternHash", 1);
+    }
+
+    @Test
+    public void testBucketsRespectBucketSize(){
+        // buckets of 10ms, so timestamps 20 and 29 are counted in the same bucket
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 20, 50, 100, 10, 100, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 29, 50, 100, 10, 100, 10);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 35, 50, 100, 10, 100, 10);
+        assertThat(jedis.hget(circuitSuccessKey, "2"), equalTo("1"));
+        assertThat(jedis.hget(circuitSuccessKey, "3"), equalTo("1"));
+        assertThat(jedis.hget(circuitFailureKey, "2"), equalTo("1"));
+        assertStateAndErroPercentage(CLOSED, 33);
+
+        // bucket 2 is out of the age range of timestamp 135
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 135, 50, 100, 10, 100, 10);
+        assertThat(jedis.hexists(circuitSuccessKey, "2"), is(false));
+        assertThat(jedis.exists(circuitFailureKey), is(false));
+        assertStateAndErroPercentage(CLOSED, 0);
+    }
+
     @Test
     public void testOnlyRespectEntriesWithinAgeRange(){
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_1", "url_pattern", 1, 50, 3, 1, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 1, 50, 3, 1, 100);
         assertStateAndErroPercentage(CLOSED, 0);
         assertSampleCount(1, 3, 1, 0);
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_2", "url_pattern", 2, 50, 3, 1, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 2, 50, 3, 1, 100);
         assertSampleCount(2, 3, 2, 0);
         assertStateAndErroPercentage(CLOSED, 0);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_3", "url_pattern", 3, 50, 3, 1, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 3, 50, 3, 1, 100);
         assertSampleCount(3, 3, 2, 1);
         assertStateAndErroPercentage(CLOSED, 33);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_4", "url_pattern", 4, 50, 3, 1, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 4, 50, 3, 1, 100);
         assertSampleCount(4, 3, 2, 2);
         assertStateAndErroPercentage(OPEN, 50);
         assertHashInOpenCircuitsSet("url_patternHash", 1);
         assertHashInAllCircuitsSet("url_patternHash", 1);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_5", "url_pattern", 5, 50, 3, 1, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 5, 50, 3, 1, 100);
         assertSampleCount(5, 3, 1, 3);
         assertStateAndErroPercentage(OPEN, 75); // req_1 is out of range by now
         assertHashInOpenCircuitsSet("url_patternHash", 1);
         assertHashInAllCircuitsSet("url_patternHash", 1);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_6", "url_pattern", 6, 50, 3, 1, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 6, 50, 3, 1, 100);
         assertSampleCount(6, 3, 0, 4);
         assertStateAndErroPercentage(OPEN, 100); // req_2 is out of range by now
         assertHashInOpenCircuitsSet("url_patternHash", 1);
         assertHashInAllCircuitsSet("url_patternHash", 1);
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_7", "url_pattern", 7, 50, 3, 1, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 7, 50, 3, 1, 100);
         assertSampleCount(7, 3, 1, 3);
         assertStateAndErroPercentage(OPEN, 75); // req_3 is out of range by now
         assertHashInOpenCircuitsSet("url_patternHash", 1);
         assertHashInAllCircuitsSet("url_patternHash", 1);
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_8", "url_pattern", 8, 50, 3, 1, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 8, 50, 3, 1, 100);
         assertSampleCount(8, 3, 2, 2);
         assertStateAndErroPercentage(OPEN, 50); // req_4 is out of range by now
         assertHashInOpenCircuitsSet("url_patternHash", 1);
         assertHashInAllCircuitsSet("url_patternHash", 1);
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_9", "url_pattern", 9, 50, 3, 1, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 9, 50, 3, 1, 100);
         assertSampleCount(9, 3, 3, 1);
         assertStateAndErroPercentage(OPEN, 25); // req_5 is out of range by now
         assertHashInOpenCircuitsSet("url_patternHash", 1);
         assertHashInAllCircuitsSet("url_patternHash", 1);
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_10", "url_pattern", 10, 50, 3, 1, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 10, 50, 3, 1, 100);
         assertSampleCount(10, 3, 4, 0);
         assertStateAndErroPercentage(OPEN, 0); // req_6 is out of range by now
         assertHashInOpenCircuitsSet("url_patternHash", 1);
@@ -174,27 +207,27 @@ public class QueueCircuitBreakerUpdateStatsLuaScriptTests extends AbstractLuaScr
 
     @Test
     public void testSampleCountThresholdReachedRespectingEntriesMaxAgeMS(){
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_1", "url_pattern", 1, 50, 3, 3, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 1, 50, 3, 3, 100);
         assertSampleCountThreshold(1, 2,3, false,1);
         assertStateAndErroPercentage(CLOSED, 0);
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_2", "url_pattern", 2, 50, 3, 3, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 2, 50, 3, 3, 100);
         assertSampleCountThreshold(2, 2, 3, false, 2);
         assertStateAndErroPercentage(CLOSED, 0);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_3", "url_pattern", 3, 50, 3, 3, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 3, 50, 3, 3, 100);
         assertSampleCountThreshold(3, 2, 3, true, 3);
         assertSampleCountThreshold(4, 2, 3, false, 2);
         assertStateAndErroPercentage(CLOSED, 33);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_4", "url_pattern", 5, 50, 3, 3, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 5, 50, 3, 3, 100);
         assertSampleCountThreshold(5, 2, 3, false, 2);
         assertSampleCountThreshold(6, 2, 3, false, 1);
         assertStateAndErroPercentage(OPEN, 66);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_5", "url_pattern", 7, 50, 3, 3, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 7, 50, 3, 3, 100);
         assertSampleCountThreshold(7, 2, 3, false, 2);
         assertStateAndErroPercentage(OPEN, 100);
-        evalScriptUpdateQueueCircuitBreakerStats(update_fail, "req_6", "url_pattern", 8, 50, 3, 3, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(0, 1, "url_pattern", 8, 50, 3, 3, 100);
         assertSampleCountThreshold(8, 2, 3, false, 2);
         assertStateAndErroPercentage(OPEN, 100);
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_7", "url_pattern", 9, 50, 3, 3, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 9, 50, 3, 3, 100);
         assertStateAndErroPercentage(OPEN, 66);
         assertSampleCountThreshold(9, 2, 3, true, 3);
         assertSampleCountThreshold(10, 2, 3, false, 2);
@@ -202,15 +235,15 @@ public class QueueCircuitBreakerUpdateStatsLuaScriptTests extends AbstractLuaScr
         assertSampleCountThreshold(12, 2, 3, false, 0);
         assertSampleCountThreshold(13, 2, 3, false, 0);
 
-        evalScriptUpdateQueueCircuitBreakerStats(update_success, "req_8", "url_pattern", 15, 50, 3, 3, 100);
+        evalScriptUpdateQueueCircuitBreakerStats(1, 0, "url_pattern", 15, 50, 3, 3, 100);
 
         assertStateAndErroPercentage(OPEN, 0); //state is closed by another lua script, therefore it's still open here
     }
 
     private void assertSampleCountThreshold(long timestamp, long entriesMaxAgeMS, long minQueueSampleCount, boolean thresholdReached, long entriesRespected){
-        long minScore = timestamp - entriesMaxAgeMS;
-        Long successCount = jedis.zcount(circuitSuccessKey, String.valueOf(minScore), "+inf");
-        Long failureCount = jedis.zcount(circuitFailureKey, String.valueOf(minScore), "+inf");
+        long minBucket = timestamp - entriesMaxAgeMS;
+        long successCount = sampleCount(circuitSuccessKey, minBucket);
+        long failureCount = sampleCount(circuitFailureKey, minBucket);
         assertThat(successCount + failureCount, equalTo(entriesRespected));
         if(thresholdReached) {
             assertThat(successCount + failureCount, greaterThanOrEqualTo(minQueueSampleCount));
@@ -220,11 +253,22 @@ public class QueueCircuitBreakerUpdateStatsLuaScriptTests extends AbstractLuaScr
     }
 
     private void assertSampleCount(long timestamp, long entriesMaxAgeMS, long successEntryCount, long failureEntryCount){
-        long minScore = timestamp - entriesMaxAgeMS;
-        Long successCount = jedis.zcount(circuitSuccessKey, String.valueOf(minScore), "+inf");
-        Long failureCount = jedis.zcount(circuitFailureKey, String.valueOf(minScore), "+inf");
-        assertThat(successCount, equalTo(successEntryCount));
-        assertThat(failureCount, equalTo(failureEntryCount));
+        long minBucket = timestamp - entriesMaxAgeMS;
+        assertThat(sampleCount(circuitSuccessKey, minBucket), equalTo(successEntryCount));
+        assertThat(sampleCount(circuitFailureKey, minBucket), equalTo(failureEntryCount));
+    }
+
+    /**
+     * Sums up the buckets not older than minBucket. The buckets are 1ms wide, unless configured otherwise in the test.
+     */
+    private long sampleCount(String bucketsKey, long minBucket){
+        long count = 0;
+        for (Map.Entry<String, String> bucket : jedis.hgetAll(bucketsKey).entrySet()) {
+            if (Long.parseLong(bucket.getKey()) >= minBucket) {
+                count += Long.parseLong(bucket.getValue());
+            }
+        }
+        return count;
     }
 
     private void assertStateAndErroPercentage(QueueCircuitState state, int percentage){
@@ -249,34 +293,39 @@ public class QueueCircuitBreakerUpdateStatsLuaScriptTests extends AbstractLuaScr
         assertThat(jedis.hget(circuitInfoKey, "circuit"), equalTo(circuit));
     }
 
-    private void assertSizeSizeNotExceedingLimit(String setKey, long maxSetSize){
-        assertThat(jedis.zcard(setKey) <= maxSetSize, is(true));
+    private Object evalScriptUpdateQueueCircuitBreakerStats(long successIncrement, long failureIncrement,
+                                                            String circuit, long timestamp, int errorThresholdPercentage,
+                                                            long entriesMaxAgeMS, long minQueueSampleCount, long maxQueueSampleCount) {
+        return evalScriptUpdateQueueCircuitBreakerStats(successIncrement, failureIncrement, circuit, timestamp,
+                errorThresholdPercentage, entriesMaxAgeMS, minQueueSampleCount, maxQueueSampleCount, 1);
     }
 
-    private Object evalScriptUpdateQueueCircuitBreakerStats(String circuitKeyToUpdate, String uniqueRequestID,
+    private Object evalScriptUpdateQueueCircuitBreakerStats(long successIncrement, long failureIncrement,
                                                             String circuit, long timestamp, int errorThresholdPercentage,
-                                                            long entriesMaxAgeMS, long minQueueSampleCount, long maxQueueSampleCount) {
+                                                            long entriesMaxAgeMS, long minQueueSampleCount, long maxQueueSampleCount,
+                                                            long bucketSizeMS) {
 
         String script = readScript(QueueCircuitBreakerLuaScripts.UPDATE_CIRCUIT.getFilename());
         List<String> keys = Arrays.asList(
                 circuitInfoKey,
                 circuitSuccessKey,
                 circuitFailureKey,
-                circuitKeyToUpdate,
                 openCircuitsKey,
                 allCircuitsKey
         );
 
         List<String> arguments = Arrays.asList(
-                uniqueRequestID,
                 circuit,
                 circuit+"Hash",
                 String.valueOf(timestamp),
                 String.valueOf(errorThresholdPercentage),
                 String.valueOf(entriesMaxAgeMS),
                 String.valueOf(minQueueSampleCount),
-                String.valueOf(maxQueueSampleCount)
+                String.valueOf(maxQueueSampleCount),
+                String.valueOf(bucketSizeMS),
+                String.valueOf(successIncrement),
+                String.valueOf(failureIncrement)
         );
         return jedis.eval(script, keys, arguments);
     }
-}
+}
\ No newline at end of file
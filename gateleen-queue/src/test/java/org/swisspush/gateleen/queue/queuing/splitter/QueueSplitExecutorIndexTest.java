@@ -0,0 +1,94 @@
+package org.swisspush.gateleen.queue.queuing.splitter;
+
+import org.junit.Test;
+import org.swisspush.gateleen.queue.queuing.splitter.executors.QueueSplitExecutor;
+import org.swisspush.gateleen.queue.queuing.splitter.executors.QueueSplitExecutorFromRequest;
+import org.swisspush.gateleen.queue.queuing.splitter.executors.QueueSplitExecutorFromStaticList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link QueueSplitExecutorIndex} class
+ */
+public class QueueSplitExecutorIndexTest {
+
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("my-queue-1", QueueSplitExecutorIndex.literalPrefix(Pattern.compile("my-queue-1")));
+        assertEquals("my-queue-", QueueSplitExecutorIndex.literalPrefix(Pattern.compile("my-queue-[0-9]+")));
+        assertEquals("my-queue-", QueueSplitExecutorIndex.literalPrefix(Pattern.compile("^my-queue-.*")));
+        assertEquals("my-queue", QueueSplitExecutorIndex.literalPrefix(Pattern.compile("my-queues?")));
+        assertEquals("my-queu", QueueSplitExecutorIndex.literalPrefix(Pattern.compile("my-queue{2}")));
+        assertEquals("", QueueSplitExecutorIndex.literalPrefix(Pattern.compile("my-queue-1|other-queue")));
+        assertEquals("", QueueSplitExecutorIndex.literalPrefix(Pattern.compile("(my|other)-queue")));
+        assertEquals("", QueueSplitExecutorIndex.literalPrefix(Pattern.compile(".*-queue")));
+        assertEquals("", QueueSplitExecutorIndex.literalPrefix(Pattern.compile("my-queue", Pattern.CASE_INSENSITIVE)));
+    }
+
+    @Test
+    public void testFindFirstConfiguredMatch() {
+
+        // Given
+        QueueSplitExecutor wildcard = fromRequest("my-queue-[0-9]+");
+        QueueSplitExecutor specific = fromStatic("my-queue-1");
+        QueueSplitExecutor anyQueue = fromRequest(".*");
+        QueueSplitExecutorIndex index = new QueueSplitExecutorIndex(List.of(wildcard, specific, anyQueue));
+
+        // Then
+        assertSame(wildcard, index.find("my-queue-1"));
+        assertSame(wildcard, index.find("my-queue-22"));
+        assertSame(anyQueue, index.find("my-queue-a"));
+        assertSame(anyQueue, index.find("other-queue"));
+    }
+
+    @Test
+    public void testFindFirstConfiguredMatchWithLongerPrefixFirst() {
+
+        // Given
+        QueueSplitExecutor specific = fromStatic("my-queue-1");
+        QueueSplitExecutor wildcard = fromRequest("my-queue-[0-9]+");
+        QueueSplitExecutorIndex index = new QueueSplitExecutorIndex(List.of(specific, wildcard));
+
+        // Then
+        assertSame(specific, index.find("my-queue-1"));
+        assertSame(wildcard, index.find("my-queue-11"));
+        assertNull(index.find("my-queue"));
+        assertNull(index.find("other-queue"));
+    }
+
+    @Test
+    public void testFindInEmptyIndex() {
+        assertNull(QueueSplitExecutorIndex.empty().find("my-queue-1"));
+    }
+
+    @Test
+    public void testFindWithManyExecutors() {
+
+        // Given
+        List<QueueSplitExecutor> executors = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            executors.add(fromRequest("queue-" + i + "-[a-z]+"));
+        }
+        QueueSplitExecutorIndex index = new QueueSplitExecutorIndex(executors);
+
+        // Then
+        assertSame(executors.get(0), index.find("queue-0-abc"));
+        assertSame(executors.get(999), index.find("queue-999-abc"));
+        assertNull(index.find("queue-1000-abc"));
+        assertNull(index.find("queue-1-123"));
+    }
+
+    private QueueSplitExecutor fromRequest(String queue) {
+        return new QueueSplitExecutorFromRequest(new QueueSplitterConfiguration(
+                Pattern.compile(queue), "-", null, "x-rp-deviceid", null));
+    }
+
+    private QueueSplitExecutor fromStatic(String queue) {
+        return new QueueSplitExecutorFromStaticList(new QueueSplitterConfiguration(
+                Pattern.compile(queue), "-", List.of("A", "B"), null, null));
+    }
+}
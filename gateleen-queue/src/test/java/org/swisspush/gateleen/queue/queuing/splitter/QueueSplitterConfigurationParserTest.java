@@ -35,6 +35,11 @@ public class QueueSplitterConfigurationParserTest {
             true
     );
 
+    private final String CONFIGURATION_HASH = ResourcesUtils.loadResource(
+            "testresource_queuesplitter_configuration_hash",
+            true
+    );
+
     private final String CONFIGURATION_WITH_PROPS = ResourcesUtils.loadResource(
             "testresource_queuesplitter_configuration_with_props",
             true
@@ -166,4 +171,39 @@ public class QueueSplitterConfigurationParserTest {
         // Then
         context.assertEquals(0, configurations.size());
     }
+
+    @Test
+    public void parseWithHash(TestContext context) {
+
+        // Given
+        Buffer configurationResourceBuffer = Buffer.buffer(CONFIGURATION_HASH);
+        HashMap<String, Object> properties = new HashMap<>();
+
+        // When
+        List<QueueSplitterConfiguration> configurations = QueueSplitterConfigurationParser.parse(
+                configurationResourceBuffer,
+                properties
+        );
+
+        // Then
+        context.assertEquals(2, configurations.size());
+
+        QueueSplitterConfiguration config_1 = configurations.get(0);
+        context.assertEquals(Pattern.compile("my-hot-queue").pattern(), config_1.getQueue().pattern());
+        context.assertEquals("+", config_1.getPostfixDelimiter());
+        context.assertEquals("x-rp-deviceid", config_1.getPostfixFromHeader());
+        context.assertNull(config_1.getPostfixFromUrl());
+        context.assertEquals(8, config_1.getHashBuckets());
+        context.assertTrue(config_1.isSplitFromHash());
+        context.assertFalse(config_1.isSplitFromRequest());
+        context.assertFalse(config_1.isSplitStatic());
+
+        QueueSplitterConfiguration config_2 = configurations.get(1);
+        context.assertEquals("-", config_2.getPostfixDelimiter());
+        context.assertNull(config_2.getPostfixFromHeader());
+        context.assertEquals(Pattern.compile(".*/path1/(.*)/path3/path4/.*").pattern(),
+                config_2.getPostfixFromUrl().pattern());
+        context.assertEquals(4, config_2.getHashBuckets());
+        context.assertTrue(config_2.isSplitFromHash());
+    }
 }
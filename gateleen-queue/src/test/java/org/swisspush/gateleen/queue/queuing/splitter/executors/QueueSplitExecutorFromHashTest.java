@@ -0,0 +1,134 @@
+package org.swisspush.gateleen.queue.queuing.splitter.executors;
+
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.impl.headers.HeadersMultiMap;
+import org.junit.Test;
+import org.swisspush.gateleen.queue.queuing.splitter.QueueSplitterConfiguration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class QueueSplitExecutorFromHashTest {
+
+    private static final int BUCKETS = 8;
+
+    @Test
+    public void testExecuteSplitWithHeader() {
+
+        // Given
+        QueueSplitExecutorFromHash executor = new QueueSplitExecutorFromHash(headerConfiguration());
+
+        // When
+        String subQueue = executor.executeSplit("queue-1", requestWithDeviceId("A1B2C3D4E5F6"));
+
+        // Then
+        assertTrue(subQueue.startsWith("queue-1-"));
+        int bucket = Integer.parseInt(subQueue.substring("queue-1-".length()));
+        assertTrue(bucket >= 0 && bucket < BUCKETS);
+    }
+
+    @Test
+    public void testExecuteSplitIsStableForSameKey() {
+
+        // Given
+        QueueSplitExecutorFromHash executor = new QueueSplitExecutorFromHash(headerConfiguration());
+        QueueSplitExecutorFromHash otherExecutor = new QueueSplitExecutorFromHash(headerConfiguration());
+
+        // Then
+        String subQueue = executor.executeSplit("queue-1", requestWithDeviceId("A1B2C3D4E5F6"));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(subQueue, executor.executeSplit("queue-1", requestWithDeviceId("A1B2C3D4E5F6")));
+            assertEquals(subQueue, otherExecutor.executeSplit("queue-1", requestWithDeviceId("A1B2C3D4E5F6")));
+        }
+    }
+
+    @Test
+    public void testExecuteSplitSpreadsKeysOverAllBuckets() {
+
+        // Given
+        QueueSplitExecutorFromHash executor = new QueueSplitExecutorFromHash(headerConfiguration());
+        int keys = 8000;
+
+        // When
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < keys; i++) {
+            counts.merge(executor.executeSplit("queue-1", requestWithDeviceId("device-" + i)), 1, Integer::sum);
+        }
+
+        // Then
+        assertEquals(BUCKETS, counts.size());
+        int expected = keys / BUCKETS;
+        for (int count : counts.values()) {
+            assertTrue("unevenly distributed: " + counts, Math.abs(count - expected) < expected / 5);
+        }
+    }
+
+    @Test
+    public void testExecuteSplitWithUrl() {
+
+        // Given
+        QueueSplitExecutorFromHash executor = new QueueSplitExecutorFromHash(new QueueSplitterConfiguration(
+                Pattern.compile("queue-1"),
+                "-",
+                null,
+                null,
+                Pattern.compile("/path1/(.+)/path3/(.+)"),
+                BUCKETS
+        ));
+        HttpServerRequest request = mock(HttpServerRequest.class);
+        when(request.headers()).thenReturn(new HeadersMultiMap());
+        when(request.uri()).thenReturn("/path1/path2/path3/path4");
+        HttpServerRequest otherRequest = mock(HttpServerRequest.class);
+        when(otherRequest.headers()).thenReturn(new HeadersMultiMap());
+        when(otherRequest.uri()).thenReturn("/path1/path2/path3/path4");
+
+        // Then
+        String subQueue = executor.executeSplit("queue-1", request);
+        assertNotEquals("queue-1", subQueue);
+        assertEquals(subQueue, executor.executeSplit("queue-1", otherRequest));
+    }
+
+    @Test
+    public void testExecuteSplitWithHeaderButMissingInRequest() {
+
+        // Given
+        QueueSplitExecutorFromHash executor = new QueueSplitExecutorFromHash(headerConfiguration());
+        HttpServerRequest request = mock(HttpServerRequest.class);
+        when(request.headers()).thenReturn(new HeadersMultiMap());
+
+        // Then
+        assertEquals("queue-1", executor.executeSplit("queue-1", request));
+    }
+
+    @Test
+    public void testExecuteSplitForWrongQueue() {
+
+        // Given
+        QueueSplitExecutorFromHash executor = new QueueSplitExecutorFromHash(headerConfiguration());
+
+        // Then
+        assertEquals("queue-2", executor.executeSplit("queue-2", requestWithDeviceId("A1B2C3D4E5F6")));
+    }
+
+    private QueueSplitterConfiguration headerConfiguration() {
+        return new QueueSplitterConfiguration(
+                Pattern.compile("queue-1"),
+                "-",
+                null,
+                "x-rp-deviceid",
+                null,
+                BUCKETS
+        );
+    }
+
+    private HttpServerRequest requestWithDeviceId(String deviceId) {
+        HttpServerRequest request = mock(HttpServerRequest.class);
+        when(request.headers()).thenReturn(new HeadersMultiMap().add("x-rp-deviceid", deviceId));
+        return request;
+    }
+}
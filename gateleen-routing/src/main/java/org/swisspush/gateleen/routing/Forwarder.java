@@ -43,6 +43,8 @@ public class Forwarder extends AbstractForwarder {
     private final String userProfilePath;
     private final HttpClient client;
     private final Pattern urlPattern;
+    @Nullable
+    private final UriRewriteTemplate pathTemplate;
     private String target;
     private int port;
     private final Rule rule;
@@ -53,6 +55,10 @@ public class Forwarder extends AbstractForwarder {
     @Nullable
     private final AuthStrategy authStrategy;
     private final Vertx vertx;
+    @Nullable
+    private final ProfileHeaderCache profileHeaderCache;
+    @Nullable
+    private final String profileKey;
 
     private static final String ON_BEHALF_OF_HEADER = "x-on-behalf-of";
     private static final String USER_HEADER = "x-rp-usr";
@@ -68,6 +74,13 @@ public class Forwarder extends AbstractForwarder {
     public Forwarder(Vertx vertx, HttpClient client, Rule rule, final ResourceStorage storage,
                      LoggingResourceManager loggingResourceManager, LogAppenderRepository logAppenderRepository, MonitoringHandler monitoringHandler,
                      String userProfilePath, @Nullable AuthStrategy authStrategy) {
+        this(vertx, client, rule, storage, loggingResourceManager, logAppenderRepository, monitoringHandler,
+                userProfilePath, authStrategy, null);
+    }
+
+    public Forwarder(Vertx vertx, HttpClient client, Rule rule, final ResourceStorage storage,
+                     LoggingResourceManager loggingResourceManager, LogAppenderRepository logAppenderRepository, MonitoringHandler monitoringHandler,
+                     String userProfilePath, @Nullable AuthStrategy authStrategy, @Nullable ProfileHeaderCache profileHeaderCache) {
         super(rule, loggingResourceManager, logAppenderRepository, monitoringHandler);
         this.vertx = vertx;
         this.client = client;
@@ -77,9 +90,12 @@ public class Forwarder extends AbstractForwarder {
         this.monitoringHandler = monitoringHandler;
         this.storage = storage;
         this.urlPattern = Pattern.compile(rule.getUrlPattern());
+        this.pathTemplate = rule.getPathTemplate();
         this.target = rule.getHost() + ":" + rule.getPort();
         this.userProfilePath = userProfilePath;
         this.authStrategy = authStrategy;
+        this.profileHeaderCache = profileHeaderCache;
+        this.profileKey = rule.getProfile() != null ? ProfileHeaderCache.profileKey(rule.getProfile()) : null;
     }
 
     private Map<String, String> createProfileHeaderValues(JsonObject profile, Logger log) {
@@ -150,7 +166,7 @@ public class Forwarder extends AbstractForwarder {
         target = rule.getHost() + ":" + port;
         monitoringHandler.updateRequestsMeter(target, req.uri());
         monitoringHandler.updateRequestPerRuleMonitoring(req, rule.getMetricName());
-        final String targetUri = urlPattern.matcher(req.uri()).replaceFirst(rule.getPath()).replaceAll("\\/\\/", "/");
+        final String targetUri = rewriteUri(req.uri());
         log.debug("Forwarding request: {} to {}://{} with rule {}", req.uri(), rule.getScheme(), target + targetUri, rule.getRuleIdentifier());
         final String userId = extractUserId(req, log);
         req.pause(); // pause the request to avoid problems with starting another async request (storage)
@@ -164,8 +180,17 @@ public class Forwarder extends AbstractForwarder {
             }
             Optional<AuthHeader> authHeader = event.result();
             if (userId != null && rule.getProfile() != null && userProfilePath != null) {
+                if (profileHeaderCache != null) {
+                    Map<String, String> cachedProfileHeaderMap = profileHeaderCache.get(userId, profileKey);
+                    if (cachedProfileHeaderMap != null) {
+                        log.debug("Going to send cached parts of the profile of user '{}' in header: {}", userId, cachedProfileHeaderMap);
+                        handleRequest(req, bodyData, targetUri, log, cachedProfileHeaderMap, authHeader, afterHandler);
+                        return;
+                    }
+                }
                 log.debug("Get profile information for user '{}' to append to headers", userId);
                 String userProfileKey = String.format(userProfilePath, userId);
+                final long profileCacheStamp = profileHeaderCache != null ? profileHeaderCache.stamp() : 0;
                 storage.get(userProfileKey, buffer -> {
                     Map<String, String> profileHeaderMap = new HashMap<>();
                     if (buffer != null) {
@@ -176,6 +201,9 @@ public class Forwarder extends AbstractForwarder {
                     } else {
                         log.debug("No profile information found in local storage for user '{}'", userId);
                     }
+                    if (profileHeaderCache != null) {
+                        profileHeaderCache.put(userId, profileKey, profileHeaderMap, profileCacheStamp);
+                    }
                     handleRequest(req, bodyData, targetUri, log, profileHeaderMap, authHeader, afterHandler);
                 });
             } else {
@@ -184,6 +212,13 @@ public class Forwarder extends AbstractForwarder {
         });
     }
 
+    private String rewriteUri(String uri) {
+        if (pathTemplate != null) {
+            return pathTemplate.rewriteFirst(uri);
+        }
+        return urlPattern.matcher(uri).replaceFirst(rule.getPath()).replaceAll("\\/\\/", "/");
+    }
+
     /**
      * Returns the userId defined in the on-behalf-of-header if provided, the userId from user-header otherwise.
      *
@@ -0,0 +1,220 @@
+package org.swisspush.gateleen.routing;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.swisspush.gateleen.core.http.HttpClientFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide registry of upstream {@link HttpClient}s.
+ * <p>
+ * Clients are keyed by their {@link HttpClientOptions} (host, port, TLS, pool and timeout settings) and the
+ * {@link HttpClientFactory} creating them, so routing rules and hook routes pointing to the same endpoint with the same
+ * options share one connection pool instead of opening their own. Clients acquired without a factory are created by
+ * the default factory of the registry, a custom factory gets its own pools. Every acquire returns a lease which must
+ * be closed when it is not used anymore. The underlying client is only closed when the last lease was closed and no
+ * more requests are in progress (same idea as in {@link DeferCloseHttpClient}). A pool which is acquired again before
+ * that moment is reused with its warm connections.
+ */
+public class HttpClientRegistry implements Shareable {
+
+    private static final String SHARED_DATA_MAP = "gateleen_http_client_registry";
+    private static final String SHARED_DATA_KEY = "registry";
+    private static final long CLOSE_ANYWAY_AFTER_MS = 86_400_000; // 24 hours
+    private static final Logger log = LoggerFactory.getLogger(HttpClientRegistry.class);
+
+    private final Vertx vertx;
+    private final HttpClientFactory defaultFactory;
+    private final Map<PoolKey, Pool> pools = new HashMap<>();
+
+    /**
+     * @param vertx vertx, its {@link HttpClientFactory} is the default factory of the registry
+     */
+    public HttpClientRegistry(Vertx vertx) {
+        this(vertx, HttpClientFactory.of(vertx));
+    }
+
+    /**
+     * @param vertx          vertx
+     * @param defaultFactory the factory creating the clients acquired without a factory
+     */
+    public HttpClientRegistry(Vertx vertx, HttpClientFactory defaultFactory) {
+        this.vertx = vertx;
+        this.defaultFactory = defaultFactory;
+    }
+
+    /**
+     * Gets the registry shared by all components of the given vertx instance.
+     *
+     * @param vertx vertx
+     * @return the shared registry
+     */
+    public static HttpClientRegistry shared(Vertx vertx) {
+        LocalMap<String, HttpClientRegistry> map = vertx.sharedData().getLocalMap(SHARED_DATA_MAP);
+        HttpClientRegistry registry = map.get(SHARED_DATA_KEY);
+        if (registry == null) {
+            HttpClientRegistry created = new HttpClientRegistry(vertx);
+            registry = map.putIfAbsent(SHARED_DATA_KEY, created);
+            if (registry == null) {
+                registry = created;
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Acquires a client for the given options, created by the default factory of the registry.
+     *
+     * @param options the client options
+     * @return a lease on the pooled client, must be closed when not used anymore
+     */
+    public HttpClient acquire(HttpClientOptions options) {
+        return acquire(options, defaultFactory);
+    }
+
+    /**
+     * Acquires a client for the given options. A new pool is only created (through the given factory) when
+     * there is no pool with equal options created by the same factory yet.
+     *
+     * @param options the client options
+     * @param factory the factory used to create the client of a new pool
+     * @return a lease on the pooled client, must be closed when not used anymore
+     */
+    public synchronized HttpClient acquire(HttpClientOptions options, HttpClientFactory factory) {
+        PoolKey key = new PoolKey(options, factory);
+        Pool pool = pools.get(key);
+        if (pool == null) {
+            pool = new Pool(key, options, factory.createHttpClient(options));
+            pools.put(key, pool);
+            log.info("Created http client pool for {}", pool.endpoint());
+        } else {
+            log.debug("Reusing http client pool for {}", pool.endpoint());
+        }
+        pool.references++;
+        return new SharedHttpClient(this, pool);
+    }
+
+    /**
+     * @return the number of pools currently held by the registry
+     */
+    public synchronized int size() {
+        return pools.size();
+    }
+
+    /**
+     * @return the in-use and wait-queue counters of every pool
+     */
+    public synchronized JsonArray getStatistics() {
+        JsonArray statistics = new JsonArray();
+        for (Pool pool : pools.values()) {
+            statistics.add(new JsonObject()
+                    .put("endpoint", pool.endpoint())
+                    .put("maxPoolSize", pool.options.getMaxPoolSize())
+                    .put("references", pool.references)
+                    .put("inUse", pool.inUse.get())
+                    .put("waiting", pool.waiting.get()));
+        }
+        return statistics;
+    }
+
+    synchronized void release(Pool pool) {
+        pool.references--;
+        closeIfUnused(pool);
+        if (pool.references == 0 && pools.get(pool.key) == pool) {
+            // Still use a timer. A request which was created but never sent nor reset keeps the pool in use.
+            vertx.setTimer(CLOSE_ANYWAY_AFTER_MS, timerId -> closeAnyway(pool));
+        }
+    }
+
+    synchronized void closeIfUnused(Pool pool) {
+        if (pool.references > 0 || pool.inUse.get() > 0 || pool.waiting.get() > 0) {
+            return;
+        }
+        close(pool);
+    }
+
+    private synchronized void closeAnyway(Pool pool) {
+        if (pool.references == 0 && pools.get(pool.key) == pool) {
+            log.warn("Requests of http client pool for {} still in progress after {} ms. Will close now to prevent " +
+                    "resource leaks.", pool.endpoint(), CLOSE_ANYWAY_AFTER_MS);
+            close(pool);
+        }
+    }
+
+    private void close(Pool pool) {
+        if (pools.remove(pool.key, pool)) {
+            log.info("Closing unused http client pool for {}", pool.endpoint());
+            try {
+                pool.client.close();
+            } catch (Exception e) {
+                log.warn("Failed to close http client pool for {}", pool.endpoint(), e);
+            }
+        }
+    }
+
+    /**
+     * The options of a pool and the factory which created its client. Factories are compared by identity.
+     */
+    private static class PoolKey {
+        private final String options;
+        private final HttpClientFactory factory;
+
+        private PoolKey(HttpClientOptions options, HttpClientFactory factory) {
+            this.options = options.toJson().encode();
+            this.factory = factory;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) o;
+            return factory == other.factory && options.equals(other.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * options.hashCode() + System.identityHashCode(factory);
+        }
+    }
+
+    /**
+     * A pooled client with its reference and request counters.
+     */
+    static class Pool {
+        private final PoolKey key;
+        private final HttpClientOptions options;
+        private final HttpClient client;
+        private int references;
+        final AtomicInteger inUse = new AtomicInteger();
+        final AtomicInteger waiting = new AtomicInteger();
+
+        private Pool(PoolKey key, HttpClientOptions options, HttpClient client) {
+            this.key = key;
+            this.options = new HttpClientOptions(options);
+            this.client = client;
+        }
+
+        HttpClient client() {
+            return client;
+        }
+
+        String endpoint() {
+            return (options.isSsl() ? "https://" : "http://") + options.getDefaultHost() + ":" + options.getDefaultPort();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.swisspush.gateleen.routing;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded near-cache for the profile header values sent by the {@link Forwarder}.
+ * <p>
+ * For every user the already extracted <code>x-user-*</code> header values are kept per set of profile properties
+ * (see {@link Rule#getProfile()}), so rules requesting the same properties share an entry. Entries are dropped when
+ * the profile of the user is written (see {@link org.swisspush.gateleen.core.util.Address#USER_PROFILE_UPDATE_ADDRESS}),
+ * when they are older than the configured time-to-live, or when the least recently used users have to make room
+ * for new ones.
+ * <p>
+ * Values read from the storage are only cached when no invalidation happened while they were read, see
+ * {@link #stamp()}.
+ */
+public class ProfileHeaderCache {
+
+    private final int maxEntries;
+    private final long timeToLiveMs;
+    private final LongSupplier clock;
+    private final Map<String, CacheEntry> entries;
+    private long invalidations = 0;
+
+    private static class CacheEntry {
+        private final long expiresAt;
+        private final Map<String, Map<String, String>> headerValues = new HashMap<>();
+
+        private CacheEntry(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @param maxEntries   the maximum number of users to keep in the cache
+     * @param timeToLiveMs how long the header values of a user are kept at most
+     */
+    public ProfileHeaderCache(int maxEntries, long timeToLiveMs) {
+        this(maxEntries, timeToLiveMs, System::currentTimeMillis);
+    }
+
+    ProfileHeaderCache(int maxEntries, long timeToLiveMs, LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0 but was " + maxEntries);
+        }
+        if (timeToLiveMs <= 0) {
+            throw new IllegalArgumentException("timeToLiveMs must be greater than 0 but was " + timeToLiveMs);
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveMs = timeToLiveMs;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > ProfileHeaderCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Builds the key of the given profile properties.
+     *
+     * @param profile the profile properties of a rule
+     * @return the key used for {@link #get(String, String)} and {@link #put(String, String, Map, long)}
+     */
+    public static String profileKey(String[] profile) {
+        return String.join(",", profile);
+    }
+
+    /**
+     * Gets the cached header values.
+     *
+     * @param userId     the user
+     * @param profileKey the key of the requested profile properties
+     * @return the header values or <code>null</code> when not cached (or expired)
+     */
+    public synchronized Map<String, String> get(String userId, String profileKey) {
+        CacheEntry entry = entries.get(userId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= clock.getAsLong()) {
+            entries.remove(userId);
+            return null;
+        }
+        return entry.headerValues.get(profileKey);
+    }
+
+    /**
+     * @return the current stamp, to be passed to {@link #put(String, String, Map, long)} for values read afterwards
+     */
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    /**
+     * Caches the header values unless an invalidation happened since the given stamp was taken.
+     *
+     * @param userId       the user
+     * @param profileKey   the key of the profile properties
+     * @param headerValues the extracted header values
+     * @param stamp        the {@link #stamp()} taken before the profile was read
+     */
+    public synchronized void put(String userId, String profileKey, Map<String, String> headerValues, long stamp) {
+        if (stamp != invalidations) {
+            return;
+        }
+        long now = clock.getAsLong();
+        CacheEntry entry = entries.get(userId);
+        if (entry == null || entry.expiresAt <= now) {
+            entry = new CacheEntry(now + timeToLiveMs);
+            entries.put(userId, entry);
+        }
+        entry.headerValues.put(profileKey, Collections.unmodifiableMap(new HashMap<>(headerValues)));
+    }
+
+    /**
+     * Drops the cached header values of the given user.
+     *
+     * @param userId the user whose profile was written
+     */
+    public synchronized void invalidate(String userId) {
+        invalidations++;
+        entries.remove(userId);
+    }
+
+    /**
+     * Drops all cached header values.
+     */
+    public synchronized void clear() {
+        invalidations++;
+        entries.clear();
+    }
+
+    /**
+     * @return the number of cached users
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -10,7 +10,6 @@ import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.shareddata.LocalMap;
-import io.vertx.ext.web.RoutingContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.swisspush.gateleen.core.configuration.ConfigurationResourceManager;
@@ -46,7 +45,8 @@ import static org.swisspush.gateleen.routing.Router.DefaultRouteType.*;
 public class Router implements Refreshable, LoggableResource, ConfigurationResourceObserver {
 
     /**
-     * How long to let the http clients live before closing them after a re-configuration
+     * How long to let the http clients live before closing them after a re-configuration. The clients are
+     * leases of the {@link HttpClientRegistry}, so pools still used by the new rules are not closed.
      */
     private static final int GRACE_PERIOD = 30000;
     public static final int DEFAULT_ROUTER_MULTIPLIER = 1;
@@ -58,19 +58,22 @@ public class Router implements Refreshable, LoggableResource, ConfigurationResou
     private final String userProfileUri;
     private final String serverUri;
     private final GateleenExceptionFactory exceptionFactory;
-    private io.vertx.ext.web.Router router;
+    private volatile io.vertx.ext.web.Router router;
     private final LoggingResourceManager loggingResourceManager;
     private final LogAppenderRepository logAppenderRepository;
     private final MonitoringHandler monitoringHandler;
     private final Logger log = LoggerFactory.getLogger(Router.class);
     private final Logger cleanupLogger = LoggerFactory.getLogger(Router.class.getName() + "Cleanup");
     private final Vertx vertx;
-    private final Set<HttpClient> httpClients = new HashSet<>();
+    private Map<String, RoutedRule> routedRules = new HashMap<>();
     private final HttpClient selfClient;
     private final ResourceStorage storage;
     private final JsonObject info;
     private final Map<String, Object> properties;
     private final HttpClientFactory httpClientFactory;
+    private final HttpClientRegistry httpClientRegistry;
+    @Nullable
+    private final ProfileHeaderCache profileHeaderCache;
     private final Handler<Void>[] doneHandlers;
     private final LocalMap<String, Object> sharedData;
     private boolean initialized = false;
@@ -119,6 +122,7 @@ public class Router implements Refreshable, LoggableResource, ConfigurationResou
            HttpClientFactory httpClientFactory,
            int routeMultiplier,
            @Nullable OAuthProvider oAuthProvider,
+           @Nullable ProfileHeaderCache profileHeaderCache,
            GateleenExceptionFactory exceptionFactory,
            Handler<Void>... doneHandlers) {
         this.storage = storage;
@@ -135,10 +139,12 @@ public class Router implements Refreshable, LoggableResource, ConfigurationResou
         this.info = info;
         this.defaultRouteTypes = defaultRouteTypes;
         this.httpClientFactory = httpClientFactory;
+        this.httpClientRegistry = HttpClientRegistry.shared(vertx);
         this.doneHandlers = doneHandlers;
         this.routeMultiplier = routeMultiplier;
         this.oAuthProvider = oAuthProvider;
         this.exceptionFactory =  exceptionFactory;
+        this.profileHeaderCache = profileHeaderCache;
 
         if (oAuthProvider != null) {
             this.oAuthStrategy = new OAuthStrategy(oAuthProvider);
@@ -187,6 +193,17 @@ public class Router implements Refreshable, LoggableResource, ConfigurationResou
             }
         }));
 
+        if (profileHeaderCache != null) {
+            vertx.eventBus().consumer(Address.USER_PROFILE_UPDATE_ADDRESS, (Handler<Message<String>>) event -> {
+                log.debug("Dropping cached profile header values of user '{}'", event.body());
+                if (event.body() == null) {
+                    profileHeaderCache.clear();
+                } else {
+                    profileHeaderCache.invalidate(event.body());
+                }
+            });
+        }
+
         vertx.eventBus().consumer(ROUTE_MULTIPLIER_ADDRESS, (Handler<Message<String>>) event -> {
             log.debug("Updating router's pool size multiplier: {}", (event.body() == null ? "<null>" : event.body()));
             this.routeMultiplier = Integer.parseInt(event.body());
@@ -314,38 +331,68 @@ public class Router implements Refreshable, LoggableResource, ConfigurationResou
         return sharedData;
     }
 
-    private void createForwarders(List<Rule> rules, io.vertx.ext.web.Router newRouter, Set<HttpClient> newClients) {
+    /**
+     * A rule with its forwarder and the (leased) http client of the forwarder, if any.
+     */
+    private static class RoutedRule {
+        private final Rule rule;
+        private final AbstractForwarder forwarder;
+        private final HttpClient client;
+
+        private RoutedRule(Rule rule, AbstractForwarder forwarder, HttpClient client) {
+            this.rule = rule;
+            this.forwarder = forwarder;
+            this.client = client;
+        }
+    }
+
+    private RoutingTable createForwarders(List<Rule> rules, Map<String, RoutedRule> newRoutedRules) {
+        List<RoutingTable.Entry> entries = new ArrayList<>(rules.size());
         for (Rule rule : rules) {
-            /*
-             * in case of a null - routing
-             * the host field of the rule
-             * is null.
-             */
-            AuthStrategy authStrategy = selectAuthStrategy(rule);
-            Handler<RoutingContext> forwarder;
-            if (rule.getPath() == null) {
-                forwarder = new NullForwarder(rule, loggingResourceManager, logAppenderRepository, monitoringHandler,
-                        vertx.eventBus());
-            } else if (rule.getStorage() != null) {
-                forwarder = new StorageForwarder(vertx.eventBus(), rule, loggingResourceManager, logAppenderRepository,
-                        monitoringHandler, exceptionFactory);
-            } else if (rule.getScheme().equals("local")) {
-                forwarder = new Forwarder(vertx, selfClient, rule, this.storage, loggingResourceManager, logAppenderRepository,
-                        monitoringHandler, userProfileUri, authStrategy);
+            RoutedRule routedRule = routedRules.get(rule.getUrlPattern());
+            if (routedRule != null && routedRule.rule.hasSameDefinition(rule)) {
+                // unchanged rule, keep the forwarder and its warm http client
+                log.debug("Keeping {} forwarder of unchanged rule: {}", rule.getScheme().toUpperCase(), rule.getUrlPattern());
             } else {
-                HttpClient client = httpClientFactory.createHttpClient(rule.buildHttpClientOptions());
-                forwarder = new Forwarder(vertx, client, rule, this.storage, loggingResourceManager, logAppenderRepository,
-                        monitoringHandler, userProfileUri, authStrategy);
-                newClients.add(client);
+                routedRule = createRoutedRule(rule);
             }
+            newRoutedRules.put(rule.getUrlPattern(), routedRule);
+            rule = routedRule.rule;
+            AbstractForwarder forwarder = routedRule.forwarder;
 
             if (rule.getMethods() == null) {
                 log.info("Installing {} forwarder for all methods: {}", rule.getScheme().toUpperCase(), rule.getUrlPattern());
-                newRouter.routeWithRegex(rule.getUrlPattern()).handler(forwarder);
+                entries.add(new RoutingTable.Entry(rule.getUrlPattern(), null, forwarder));
             } else {
-                installMethodForwarder(newRouter, rule, forwarder);
+                installMethodForwarder(entries, rule, forwarder);
             }
         }
+        return new RoutingTable(entries);
+    }
+
+    private RoutedRule createRoutedRule(Rule rule) {
+        /*
+         * in case of a null - routing
+         * the host field of the rule
+         * is null.
+         */
+        AuthStrategy authStrategy = selectAuthStrategy(rule);
+        if (rule.getPath() == null) {
+            return new RoutedRule(rule, new NullForwarder(rule, loggingResourceManager, logAppenderRepository,
+                    monitoringHandler, vertx.eventBus()), null);
+        } else if (rule.getStorage() != null) {
+            return new RoutedRule(rule, new StorageForwarder(vertx.eventBus(), rule, loggingResourceManager,
+                    logAppenderRepository, monitoringHandler, exceptionFactory), null);
+        } else if (rule.getScheme().equals("local")) {
+            return new RoutedRule(rule, new Forwarder(vertx, selfClient, rule, this.storage, loggingResourceManager,
+                    logAppenderRepository, monitoringHandler, userProfileUri, authStrategy, profileHeaderCache), null);
+        } else {
+            HttpClient client = httpClientFactory != null
+                    ? httpClientRegistry.acquire(rule.buildHttpClientOptions(), httpClientFactory)
+                    : httpClientRegistry.acquire(rule.buildHttpClientOptions());
+            return new RoutedRule(rule, new Forwarder(vertx, client, rule, this.storage, loggingResourceManager,
+                    logAppenderRepository, monitoringHandler, userProfileUri, authStrategy, profileHeaderCache), client);
+        }
     }
 
     private AuthStrategy selectAuthStrategy(Rule rule) {
@@ -363,28 +410,35 @@ public class Router implements Refreshable, LoggableResource, ConfigurationResou
         }
     }
 
-    private void installMethodForwarder(io.vertx.ext.web.Router newRouter, Rule rule, Handler<RoutingContext> forwarder) {
+    private void installMethodForwarder(List<RoutingTable.Entry> entries, Rule rule, AbstractForwarder forwarder) {
+        Set<HttpMethod> methods = new HashSet<>();
         for (String method : rule.getMethods()) {
             log.info("Installing {} forwarder for methods {} to {}", rule.getScheme().toUpperCase(), method, rule.getUrlPattern());
             switch (method) {
                 case "GET":
-                    newRouter.getWithRegex(rule.getUrlPattern()).handler(forwarder);
-                    break;
                 case "PUT":
-                    newRouter.putWithRegex(rule.getUrlPattern()).handler(forwarder);
-                    break;
                 case "POST":
-                    newRouter.postWithRegex(rule.getUrlPattern()).handler(forwarder);
-                    break;
                 case "DELETE":
-                    newRouter.deleteWithRegex(rule.getUrlPattern()).handler(forwarder);
+                    methods.add(HttpMethod.valueOf(method));
                     break;
             }
         }
+        if (!methods.isEmpty()) {
+            entries.add(new RoutingTable.Entry(rule.getUrlPattern(), methods, forwarder));
+        }
     }
 
-    private void cleanup() {
-        final HashSet<HttpClient> clientsToClose = new HashSet<>(httpClients);
+    private void cleanup(Map<String, RoutedRule> oldRoutedRules, Map<String, RoutedRule> newRoutedRules) {
+        final Set<HttpClient> clientsToClose = new HashSet<>();
+        for (Map.Entry<String, RoutedRule> entry : oldRoutedRules.entrySet()) {
+            RoutedRule oldRoutedRule = entry.getValue();
+            if (oldRoutedRule.client != null && newRoutedRules.get(entry.getKey()) != oldRoutedRule) {
+                clientsToClose.add(oldRoutedRule.client);
+            }
+        }
+        if (clientsToClose.isEmpty()) {
+            return;
+        }
         log.debug("setTimeout({}ms) to close {} clients later", GRACE_PERIOD, clientsToClose.size());
         vertx.setTimer(GRACE_PERIOD, event -> {
             cleanupLogger.debug("GRACE_PERIOD of {} expired. Cleaning up {} clients", GRACE_PERIOD, clientsToClose.size());
@@ -474,14 +528,15 @@ public class Router implements Refreshable, LoggableResource, ConfigurationResou
             });
         }
 
-        Set<HttpClient> newClients = new HashSet<>();
+        Map<String, RoutedRule> newRoutedRules = new HashMap<>();
 
-        createForwarders(rules, newRouter, newClients);
+        // all rules are dispatched by a single route backed by the routing table
+        newRouter.route().handler(createForwarders(rules, newRoutedRules));
 
+        // swap the routing in one step, clients of removed or changed rules are closed after the grace period
         router = newRouter;
-        cleanup();
-        httpClients.clear();
-        httpClients.addAll(newClients);
+        cleanup(routedRules, newRoutedRules);
+        routedRules = newRoutedRules;
 
         // the first time the update is performed, the
         // router is initialized and the doneHandlers
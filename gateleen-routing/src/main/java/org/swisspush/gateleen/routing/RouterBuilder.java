@@ -51,6 +51,7 @@ public class RouterBuilder {
     private ArrayList<Handler<Void>> doneHandlers;
     private HttpClientFactory httpClientFactory;
     private int routeMultiplier = Router.DEFAULT_ROUTER_MULTIPLIER;
+    private ProfileHeaderCache profileHeaderCache;
 
     private OAuthProvider oAuthProvider;
     private GateleenExceptionFactory exceptionFactory;
@@ -83,9 +84,9 @@ public class RouterBuilder {
         }
 
         if (httpClientFactory == null) {
-            // Implicitly use the factory from vertx. This way we stay backward compatible.
+            // Implicitly use the factory from vertx (the default factory of the client registry). This way we stay
+            // backward compatible and share the pools with the hook routes.
             logger.debug("No httpClientFactory specified. Use factory from vertx");
-            httpClientFactory = HttpClientFactory.of(vertx);
         } else {
             logger.debug("Use custom httpClientFactory.");
         }
@@ -108,6 +109,7 @@ public class RouterBuilder {
                 httpClientFactory,
                 routeMultiplier,
                 oAuthProvider,
+                profileHeaderCache,
                 exceptionFactory,
                 doneHandlersArray
         );
@@ -281,6 +283,20 @@ public class RouterBuilder {
         return this;
     }
 
+    /**
+     * Enables the near-cache for the profile header values sent to the backends. Cached values of a user are
+     * dropped when the UserProfileHandler writes the profile, the time-to-live
+     * limits the staleness of profiles written by other means.
+     *
+     * @param maxEntries   the maximum number of users to keep in the cache
+     * @param timeToLiveMs how long the header values of a user are kept at most
+     */
+    public RouterBuilder withProfileHeaderCache(int maxEntries, long timeToLiveMs) {
+        ensureNotBuilt();
+        this.profileHeaderCache = new ProfileHeaderCache(maxEntries, timeToLiveMs);
+        return this;
+    }
+
     public RouterBuilder withExceptionFactory(GateleenExceptionFactory exceptionFactory) {
         this.exceptionFactory = exceptionFactory;
         return this;
@@ -0,0 +1,209 @@
+package org.swisspush.gateleen.routing;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.RoutingContext;
+import org.swisspush.gateleen.core.util.StatusCode;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the routing rules which replaces the linear walk over one vert.x regex route per rule.
+ * <p>
+ * Every rule is attached to the trie node addressed by the literal path segments its url pattern starts with.
+ * Rules without such a literal prefix (or using alternations) are attached to the root node and are therefore
+ * evaluated for every request. Each node holds the candidates of itself and all its ancestors in rule order,
+ * so a lookup only has to walk the segments of the request path and then evaluate the regexes of the few
+ * remaining candidates. The first matching candidate wins, exactly like the vert.x router did.
+ * <p>
+ * The table is immutable and built once per rule update.
+ */
+public class RoutingTable implements Handler<RoutingContext> {
+
+    private static final String REGEX_META_CHARS = ".[](){}*+?^$|";
+
+    private final Entry[] entries;
+    private final Node root = new Node();
+
+    /**
+     * A single routing entry. Entries must be passed to the {@link RoutingTable} in the order defined
+     * by {@link RuleFactory#parseRules(io.vertx.core.buffer.Buffer, int)}.
+     */
+    public static class Entry {
+        private final Pattern pattern;
+        private final Set<HttpMethod> methods;
+        private final AbstractForwarder forwarder;
+
+        /**
+         * @param urlPattern the url pattern of the rule
+         * @param methods    the methods handled by the rule or <code>null</code> for all methods
+         * @param forwarder  the forwarder handling the matching requests
+         */
+        public Entry(String urlPattern, Set<HttpMethod> methods, AbstractForwarder forwarder) {
+            this.pattern = Pattern.compile(urlPattern);
+            this.methods = methods;
+            this.forwarder = forwarder;
+        }
+
+        public Pattern getPattern() {
+            return pattern;
+        }
+
+        public AbstractForwarder getForwarder() {
+            return forwarder;
+        }
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<Integer> own = new ArrayList<>();
+        private int[] candidates;
+    }
+
+    public RoutingTable(List<Entry> entries) {
+        this.entries = entries.toArray(new Entry[0]);
+        for (int i = 0; i < this.entries.length; i++) {
+            Node node = root;
+            for (String segment : literalPrefixSegments(this.entries[i].pattern.pattern())) {
+                node = node.children.computeIfAbsent(segment, s -> new Node());
+            }
+            node.own.add(i);
+        }
+        buildCandidates(root, new int[0]);
+    }
+
+    private static void buildCandidates(Node node, int[] inherited) {
+        int[] merged = new int[inherited.length + node.own.size()];
+        int i = 0, j = 0, k = 0;
+        while (i < inherited.length || j < node.own.size()) {
+            if (j >= node.own.size() || (i < inherited.length && inherited[i] < node.own.get(j))) {
+                merged[k++] = inherited[i++];
+            } else {
+                merged[k++] = node.own.get(j++);
+            }
+        }
+        node.candidates = merged;
+        for (Node child : node.children.values()) {
+            buildCandidates(child, merged);
+        }
+    }
+
+    /**
+     * Extracts the complete literal path segments the given regex starts with. A path can only be
+     * matched by the regex when it starts with these segments (each followed by a slash).
+     *
+     * @param regex the url pattern of a rule
+     * @return the literal segments, an empty list when the regex has no usable literal prefix
+     */
+    static List<String> literalPrefixSegments(String regex) {
+        if (regex.indexOf('|') >= 0) {
+            // alternations may start with a different literal, do not index them at all
+            return Collections.emptyList();
+        }
+        StringBuilder literal = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    break; // character classes, quotations and back references
+                }
+                literal.append(regex.charAt(i + 1));
+                i += 2;
+            } else if (REGEX_META_CHARS.indexOf(c) >= 0) {
+                if ((c == '*' || c == '?' || c == '{') && literal.length() > 0) {
+                    // the quantifier makes the preceding character optional
+                    literal.setLength(literal.length() - 1);
+                }
+                break;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+
+        int lastSlash = literal.lastIndexOf("/");
+        if (literal.length() == 0 || literal.charAt(0) != '/' || lastSlash <= 0) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(literal.substring(1, lastSlash).split("/", -1));
+    }
+
+    /**
+     * Walks the trie along the segments of the given path.
+     *
+     * @param path the (normalized) request path
+     * @return the candidate entry indexes in rule order
+     */
+    int[] candidates(String path) {
+        Node node = root;
+        int start = 1;
+        if (path.isEmpty() || path.charAt(0) != '/') {
+            return node.candidates;
+        }
+        while (true) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                return node.candidates;
+            }
+            Node child = node.children.get(path.substring(start, end));
+            if (child == null) {
+                return node.candidates;
+            }
+            node = child;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Looks up the first entry matching the given path and method.
+     *
+     * @param path   the (normalized) request path
+     * @param method the request method
+     * @return the matching entry or <code>null</code>
+     */
+    Entry lookup(String path, HttpMethod method) {
+        for (int index : candidates(path)) {
+            Entry entry = entries[index];
+            if ((entry.methods == null || entry.methods.contains(method)) && entry.pattern.matcher(path).matches()) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void handle(RoutingContext ctx) {
+        final String path = ctx.normalizedPath();
+        final HttpMethod method = ctx.request().method();
+        boolean methodMismatch = false;
+        for (int index : candidates(path)) {
+            Entry entry = entries[index];
+            if (!entry.pattern.matcher(path).matches()) {
+                continue;
+            }
+            if (entry.methods != null && !entry.methods.contains(method)) {
+                methodMismatch = true;
+                continue;
+            }
+            AbstractForwarder forwarder = entry.forwarder;
+            if (forwarder.rule.hasHeadersFilterPattern() && !forwarder.doHeadersFilterMatch(ctx.request())) {
+                // the forwarder would pass the request on to the next matching rule
+                continue;
+            }
+            forwarder.handle(ctx);
+            return;
+        }
+        if (methodMismatch) {
+            // same as the vert.x router when a route matched the path but not the method
+            ctx.fail(StatusCode.METHOD_NOT_ALLOWED.getStatusCode());
+        } else {
+            ctx.next();
+        }
+    }
+
+    public int size() {
+        return entries.length;
+    }
+}
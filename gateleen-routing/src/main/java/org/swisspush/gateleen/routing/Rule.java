@@ -1,6 +1,7 @@
 package org.swisspush.gateleen.routing;
 
 import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.ProxyOptions;
 import org.swisspush.gateleen.core.http.HeaderFunction;
 import org.swisspush.gateleen.core.http.HeaderFunctions;
@@ -8,6 +9,7 @@ import org.swisspush.gateleen.core.http.HeaderFunctions;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.regex.Pattern;
 
 public class Rule {
@@ -23,6 +25,8 @@ public class Rule {
     private int port;
     private String portWildcard;
     private String path;
+    private UriRewriteTemplate pathTemplate;
+    private boolean pathTemplateCompiled;
     private int poolSize;
     private int maxWaitQueueSize;
     private boolean keepAlive;
@@ -44,6 +48,7 @@ public class Rule {
     private ProxyOptions proxyOptions;
 
     private String storage;
+    private JsonObject definition;
 
     public String getRuleIdentifier() {
         if(metricName != null){
@@ -102,6 +107,28 @@ public class Rule {
 
     public void setPath(String path) {
         this.path = path;
+        this.pathTemplateCompiled = false;
+    }
+
+    /**
+     * Compiles the path of this rule against the url pattern, see {@link UriRewriteTemplate}.
+     */
+    public void compilePathTemplate() {
+        this.pathTemplate = UriRewriteTemplate.compile(urlPattern, path);
+        this.pathTemplateCompiled = true;
+    }
+
+    /**
+     * Gets the compiled path of this rule. The template is compiled on first access when
+     * {@link #compilePathTemplate()} was not called before.
+     *
+     * @return the compiled path or <code>null</code> if there is no (valid) path
+     */
+    public UriRewriteTemplate getPathTemplate() {
+        if (!pathTemplateCompiled) {
+            compilePathTemplate();
+        }
+        return pathTemplate;
     }
 
     public int getPoolSize() {
@@ -164,6 +191,7 @@ public class Rule {
 
     public void setUrlPattern(String urlPattern) {
         this.urlPattern = urlPattern;
+        this.pathTemplateCompiled = false;
     }
 
     public Pattern getHeadersFilterPattern() {
@@ -258,6 +286,33 @@ public class Rule {
         this.storage = storage;
     }
 
+    /**
+     * Gets the json definition (with resolved properties) this rule was created from.
+     *
+     * @return the definition or <code>null</code> when the rule was not created by the {@link RuleFactory}
+     */
+    public JsonObject getDefinition() {
+        return definition;
+    }
+
+    public void setDefinition(JsonObject definition) {
+        this.definition = definition;
+    }
+
+    /**
+     * Checks whether the given rule was created from the same definition as this rule. Such rules
+     * result in equal forwarders and http clients, so they can be kept when the routing is reloaded.
+     *
+     * @param other the rule to compare with
+     * @return true when both rules have equal url patterns, definitions and pool sizes
+     */
+    public boolean hasSameDefinition(Rule other) {
+        return other != null && definition != null
+                && Objects.equals(urlPattern, other.urlPattern)
+                && definition.equals(other.definition)
+                && poolSize == other.poolSize;
+    }
+
     public ProxyOptions getProxyOptions() {
         return proxyOptions;
     }
@@ -58,6 +58,7 @@ public class RuleFactory {
             Rule ruleObj = new Rule();
             ruleObj.setUrlPattern(urlPattern);
             JsonObject rule = rules.getJsonObject(urlPattern);
+            ruleObj.setDefinition(rule.copy());
 
             String headersFilter = rule.getString("headersFilter");
             if(headersFilter != null) {
@@ -69,6 +70,7 @@ public class RuleFactory {
             String path = rule.getString("path");
 
             prepareUrl(urlPattern, ruleObj, targetUrl, path);
+            ruleObj.compilePathTemplate();
 
             String metricName = rule.getString("metricName");
             if (metricName != null) {
@@ -0,0 +1,204 @@
+package org.swisspush.gateleen.routing;
+
+import io.vertx.core.*;
+import io.vertx.core.http.*;
+import io.vertx.core.net.SSLOptions;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A lease on a pooled client of the {@link HttpClientRegistry}.
+ * <p>
+ * Requests are delegated to the pooled client while the in-use and wait-queue counters of the pool are maintained.
+ * Closing the lease only releases the reference, the pooled client is closed by the registry once it is unused.
+ * <p>
+ * HINT: The pooled client is shared, so {@link #connectionHandler(Handler)} and {@link #redirectHandler(Function)}
+ * affect all leases of the same pool.
+ */
+class SharedHttpClient implements HttpClient {
+
+    private final HttpClientRegistry registry;
+    private final HttpClientRegistry.Pool pool;
+    private final HttpClient delegate;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    SharedHttpClient(HttpClientRegistry registry, HttpClientRegistry.Pool pool) {
+        this.registry = registry;
+        this.pool = pool;
+        this.delegate = pool.client();
+    }
+
+    private Future<HttpClientRequest> track(Supplier<Future<HttpClientRequest>> requestSupplier) {
+        pool.waiting.incrementAndGet();
+        Future<HttpClientRequest> request;
+        try {
+            request = requestSupplier.get();
+        } catch (RuntimeException e) {
+            requestDone(pool.waiting);
+            throw e;
+        }
+        return request.onComplete(event -> {
+            if (event.failed()) {
+                requestDone(pool.waiting);
+                return;
+            }
+            pool.inUse.incrementAndGet();
+            requestDone(pool.waiting);
+            // The response future also fails when the request fails or is reset before a response arrived, so every
+            // request leaves the in-use count exactly once. Requests never sent are covered by the registry timer.
+            AtomicBoolean inUse = new AtomicBoolean(true);
+            event.result().response().onComplete(response -> {
+                if (response.failed()) {
+                    requestDone(inUse);
+                } else {
+                    response.result().end().onComplete(end -> requestDone(inUse));
+                }
+            });
+        });
+    }
+
+    private void requestDone(AtomicBoolean inUse) {
+        if (inUse.getAndSet(false)) {
+            requestDone(pool.inUse);
+        }
+    }
+
+    private void requestDone(AtomicInteger counter) {
+        if (counter.decrementAndGet() == 0) {
+            registry.closeIfUnused(pool);
+        }
+    }
+
+    @Override
+    public Future<HttpClientRequest> request(RequestOptions options) {
+        return track(() -> delegate.request(options));
+    }
+
+    @Override
+    public void request(RequestOptions options, Handler<AsyncResult<HttpClientRequest>> handler) {
+        request(options).onComplete(handler);
+    }
+
+    @Override
+    public Future<HttpClientRequest> request(HttpMethod method, int port, String host, String requestURI) {
+        return track(() -> delegate.request(method, port, host, requestURI));
+    }
+
+    @Override
+    public void request(HttpMethod method, int port, String host, String requestURI, Handler<AsyncResult<HttpClientRequest>> handler) {
+        request(method, port, host, requestURI).onComplete(handler);
+    }
+
+    @Override
+    public Future<HttpClientRequest> request(HttpMethod method, String host, String requestURI) {
+        return track(() -> delegate.request(method, host, requestURI));
+    }
+
+    @Override
+    public void request(HttpMethod method, String host, String requestURI, Handler<AsyncResult<HttpClientRequest>> handler) {
+        request(method, host, requestURI).onComplete(handler);
+    }
+
+    @Override
+    public Future<HttpClientRequest> request(HttpMethod method, String requestURI) {
+        return track(() -> delegate.request(method, requestURI));
+    }
+
+    @Override
+    public void request(HttpMethod method, String requestURI, Handler<AsyncResult<HttpClientRequest>> handler) {
+        request(method, requestURI).onComplete(handler);
+    }
+
+    @Override
+    public Future<Void> close() {
+        if (released.compareAndSet(false, true)) {
+            registry.release(pool);
+        }
+        return Future.succeededFuture();
+    }
+
+    @Override
+    public void close(Handler<AsyncResult<Void>> handler) {
+        close().onComplete(handler);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////
+    // Below are only the remaining methods which all just delegate.
+    ///////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void webSocket(int port, String host, String requestURI, Handler<AsyncResult<WebSocket>> handler) {
+        delegate.webSocket(port, host, requestURI, handler);
+    }
+
+    @Override
+    public Future<WebSocket> webSocket(int port, String host, String requestURI) {
+        return delegate.webSocket(port, host, requestURI);
+    }
+
+    @Override
+    public void webSocket(String host, String requestURI, Handler<AsyncResult<WebSocket>> handler) {
+        delegate.webSocket(host, requestURI, handler);
+    }
+
+    @Override
+    public Future<WebSocket> webSocket(String host, String requestURI) {
+        return delegate.webSocket(host, requestURI);
+    }
+
+    @Override
+    public void webSocket(String requestURI, Handler<AsyncResult<WebSocket>> handler) {
+        delegate.webSocket(requestURI, handler);
+    }
+
+    @Override
+    public Future<WebSocket> webSocket(String requestURI) {
+        return delegate.webSocket(requestURI);
+    }
+
+    @Override
+    public void webSocket(WebSocketConnectOptions options, Handler<AsyncResult<WebSocket>> handler) {
+        delegate.webSocket(options, handler);
+    }
+
+    @Override
+    public Future<WebSocket> webSocket(WebSocketConnectOptions options) {
+        return delegate.webSocket(options);
+    }
+
+    @Override
+    public void webSocketAbs(String url, MultiMap headers, WebsocketVersion version, List<String> subProtocols, Handler<AsyncResult<WebSocket>> handler) {
+        delegate.webSocketAbs(url, headers, version, subProtocols, handler);
+    }
+
+    @Override
+    public Future<WebSocket> webSocketAbs(String url, MultiMap headers, WebsocketVersion version, List<String> subProtocols) {
+        return delegate.webSocketAbs(url, headers, version, subProtocols);
+    }
+
+    @Override
+    public Future<Boolean> updateSSLOptions(SSLOptions options, boolean force) {
+        return delegate.updateSSLOptions(options, force);
+    }
+
+    @Override
+    public HttpClient connectionHandler(Handler<HttpConnection> handler) {
+        delegate.connectionHandler(handler);
+        return this;
+    }
+
+    @Override
+    public HttpClient redirectHandler(Function<HttpClientResponse, Future<RequestOptions>> handler) {
+        delegate.redirectHandler(handler);
+        return this;
+    }
+
+    @Override
+    public Function<HttpClientResponse, Future<RequestOptions>> redirectHandler() {
+        return delegate.redirectHandler();
+    }
+}
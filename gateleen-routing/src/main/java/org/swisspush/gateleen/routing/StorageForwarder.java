@@ -39,6 +39,7 @@ public class StorageForwarder extends AbstractForwarder {
 
     private EventBus eventBus;
     private Pattern urlPattern;
+    private UriRewriteTemplate pathTemplate;
     private String address;
     private CORSHandler corsHandler;
     private GateleenExceptionFactory gateleenExceptionFactory;
@@ -50,6 +51,7 @@ public class StorageForwarder extends AbstractForwarder {
         this.eventBus = eventBus;
         this.address = Address.storageAddress() + "-" + rule.getStorage();
         urlPattern = Pattern.compile(rule.getUrlPattern());
+        pathTemplate = rule.getPathTemplate();
         corsHandler = new CORSHandler();
         this.gateleenExceptionFactory = gateleenExceptionFactory;
     }
@@ -57,7 +59,8 @@ public class StorageForwarder extends AbstractForwarder {
     @Override
     public void handle(final RoutingContext ctx) {
         final LoggingHandler loggingHandler = new LoggingHandler(loggingResourceManager, logAppenderRepository, ctx.request(), this.eventBus);
-        final String targetUri = urlPattern.matcher(ctx.request().uri()).replaceAll(rule.getPath()).replaceAll("\\/\\/", "/");
+        final String targetUri = pathTemplate != null ? pathTemplate.rewriteAll(ctx.request().uri())
+                : urlPattern.matcher(ctx.request().uri()).replaceAll(rule.getPath()).replaceAll("\\/\\/", "/");
         final Logger log = RequestLoggerFactory.getLogger(StorageForwarder.class, ctx.request());
 
         if (rule.hasHeadersFilterPattern() && !doHeadersFilterMatch(ctx.request())) {
@@ -0,0 +1,206 @@
+package org.swisspush.gateleen.routing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Precompiled form of a rule's target path.
+ * <p>
+ * The path is parsed once into literal parts and capture group references (using the same syntax as
+ * {@link Matcher#appendReplacement(StringBuilder, String)}), so building the target uri only needs a single
+ * matcher pass. Double slashes are collapsed while appending, which gives the same result as the former
+ * <code>replaceFirst(path).replaceAll("\\/\\/", "/")</code>.
+ */
+public class UriRewriteTemplate {
+
+    private static final Logger log = LoggerFactory.getLogger(UriRewriteTemplate.class);
+
+    private final Pattern pattern;
+    private final Part[] parts;
+
+    private static class Part {
+        private final String literal;
+        private final int group;
+        private final String groupName;
+
+        private Part(String literal, int group, String groupName) {
+            this.literal = literal;
+            this.group = group;
+            this.groupName = groupName;
+        }
+    }
+
+    private UriRewriteTemplate(Pattern pattern, Part[] parts) {
+        this.pattern = pattern;
+        this.parts = parts;
+    }
+
+    /**
+     * Compiles the given replacement template against the url pattern.
+     *
+     * @param urlPattern the url pattern of the rule
+     * @param template   the replacement (usually the path of the rule)
+     * @return the compiled template or <code>null</code> when the template is invalid for the pattern
+     */
+    public static UriRewriteTemplate compile(String urlPattern, String template) {
+        if (urlPattern == null || template == null) {
+            return null;
+        }
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(urlPattern);
+        } catch (PatternSyntaxException e) {
+            log.warn("Invalid url pattern '{}': {}", urlPattern, e.getMessage());
+            return null;
+        }
+        int groupCount = pattern.matcher("").groupCount();
+        List<Part> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            if (c == '\\') {
+                i++;
+                if (i >= template.length()) {
+                    log.warn("Invalid template '{}' for pattern '{}': character to be escaped is missing", template, urlPattern);
+                    return null;
+                }
+                literal.append(template.charAt(i++));
+            } else if (c == '$') {
+                i++;
+                if (i >= template.length()) {
+                    log.warn("Invalid template '{}' for pattern '{}': illegal group reference", template, urlPattern);
+                    return null;
+                }
+                if (literal.length() > 0) {
+                    parts.add(new Part(literal.toString(), -1, null));
+                    literal.setLength(0);
+                }
+                if (template.charAt(i) == '{') {
+                    int end = template.indexOf('}', i);
+                    if (end < 0 || end == i + 1) {
+                        log.warn("Invalid template '{}' for pattern '{}': illegal named group reference", template, urlPattern);
+                        return null;
+                    }
+                    parts.add(new Part(null, -1, template.substring(i + 1, end)));
+                    i = end + 1;
+                } else {
+                    int group = template.charAt(i) - '0';
+                    if (group < 0 || group > 9) {
+                        log.warn("Invalid template '{}' for pattern '{}': illegal group reference", template, urlPattern);
+                        return null;
+                    }
+                    i++;
+                    // same as Matcher: take more digits as long as the group exists
+                    while (i < template.length()) {
+                        int next = template.charAt(i) - '0';
+                        if (next < 0 || next > 9 || group * 10 + next > groupCount) {
+                            break;
+                        }
+                        group = group * 10 + next;
+                        i++;
+                    }
+                    if (group > groupCount) {
+                        log.warn("Invalid template '{}' for pattern '{}': no group {}", template, urlPattern, group);
+                        return null;
+                    }
+                    parts.add(new Part(null, group, null));
+                }
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        if (literal.length() > 0) {
+            parts.add(new Part(literal.toString(), -1, null));
+        }
+        return new UriRewriteTemplate(pattern, parts.toArray(new Part[0]));
+    }
+
+    /**
+     * Replaces the first match of the url pattern in the given uri and collapses double slashes.
+     *
+     * @param uri the request uri
+     * @return the target uri
+     */
+    public String rewriteFirst(String uri) {
+        return rewrite(uri, false);
+    }
+
+    /**
+     * Replaces all matches of the url pattern in the given uri and collapses double slashes.
+     *
+     * @param uri the request uri
+     * @return the target uri
+     */
+    public String rewriteAll(String uri) {
+        return rewrite(uri, true);
+    }
+
+    private String rewrite(String uri, boolean all) {
+        Matcher matcher = pattern.matcher(uri);
+        SlashCollapsingBuilder result = new SlashCollapsingBuilder(uri.length() + 16);
+        int position = 0;
+        while (matcher.find()) {
+            result.append(uri, position, matcher.start());
+            for (Part part : parts) {
+                if (part.literal != null) {
+                    result.append(part.literal, 0, part.literal.length());
+                } else {
+                    String value = part.groupName != null ? matcher.group(part.groupName) : matcher.group(part.group);
+                    if (value != null) {
+                        result.append(value, 0, value.length());
+                    }
+                }
+            }
+            position = matcher.end();
+            if (!all) {
+                break;
+            }
+        }
+        if (position < uri.length()) {
+            result.append(uri, position, uri.length());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Collapses every non-overlapping pair of slashes into a single slash while appending,
+     * which is what <code>replaceAll("\\/\\/", "/")</code> does on the complete string.
+     */
+    private static class SlashCollapsingBuilder {
+        private final StringBuilder builder;
+        private boolean pendingSlash = false;
+
+        private SlashCollapsingBuilder(int capacity) {
+            this.builder = new StringBuilder(capacity);
+        }
+
+        private void append(CharSequence s, int start, int end) {
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (c == '/') {
+                    if (pendingSlash) {
+                        pendingSlash = false;
+                        continue;
+                    }
+                    pendingSlash = true;
+                } else {
+                    pendingSlash = false;
+                }
+                builder.append(c);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.swisspush.gateleen.routing;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.swisspush.gateleen.core.http.HttpClientFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the HttpClientRegistry class
+ */
+@RunWith(VertxUnitRunner.class)
+public class HttpClientRegistryTest {
+
+    private Vertx vertx;
+    private HttpClientRegistry registry;
+    private List<HttpClient> createdClients;
+    private HttpClientFactory factory;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        createdClients = new ArrayList<>();
+        factory = options -> {
+            HttpClient client = Mockito.mock(HttpClient.class);
+            createdClients.add(client);
+            return client;
+        };
+        registry = new HttpClientRegistry(vertx, factory);
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private HttpClientOptions options(String host, int port) {
+        Rule rule = new Rule();
+        rule.setHost(host);
+        rule.setPort(port);
+        rule.setScheme("http");
+        rule.setPoolSize(50);
+        rule.setTimeout(30000);
+        rule.setKeepAlive(true);
+        rule.setMaxWaitQueueSize(-1);
+        return rule.buildHttpClientOptions();
+    }
+
+    @Test
+    public void testSameEndpointSharesPool(TestContext context) {
+        HttpClient first = registry.acquire(options("backend", 8080), factory);
+        HttpClient second = registry.acquire(options("backend", 8080), factory);
+
+        context.assertNotEquals(first, second);
+        context.assertEquals(1, createdClients.size());
+        context.assertEquals(1, registry.size());
+
+        JsonObject statistics = registry.getStatistics().getJsonObject(0);
+        context.assertEquals("http://backend:8080", statistics.getString("endpoint"));
+        context.assertEquals(2, statistics.getInteger("references"));
+        context.assertEquals(0, statistics.getInteger("inUse"));
+        context.assertEquals(0, statistics.getInteger("waiting"));
+    }
+
+    @Test
+    public void testDifferentOptionsUseSeparatePools(TestContext context) {
+        registry.acquire(options("backend", 8080), factory);
+        registry.acquire(options("backend", 8081), factory);
+        HttpClientOptions biggerPool = options("backend", 8080).setMaxPoolSize(100);
+        registry.acquire(biggerPool, factory);
+
+        context.assertEquals(3, createdClients.size());
+        context.assertEquals(3, registry.size());
+    }
+
+    @Test
+    public void testDifferentFactoriesUseSeparatePools(TestContext context) {
+        List<HttpClientOptions> customClients = new ArrayList<>();
+        HttpClientFactory customFactory = options -> {
+            customClients.add(options);
+            return Mockito.mock(HttpClient.class);
+        };
+
+        registry.acquire(options("backend", 8080));
+        registry.acquire(options("backend", 8080), factory);
+        registry.acquire(options("backend", 8080), customFactory);
+        registry.acquire(options("backend", 8080), customFactory);
+
+        context.assertEquals(1, createdClients.size(), "the default factory should share the pool");
+        context.assertEquals(1, customClients.size(), "the custom factory should not be bypassed");
+        context.assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void testPoolClosedWhenLastLeaseReleased(TestContext context) {
+        HttpClient first = registry.acquire(options("backend", 8080), factory);
+        HttpClient second = registry.acquire(options("backend", 8080), factory);
+
+        first.close();
+        first.close(); // releasing a lease twice must not release the other lease
+        verify(createdClients.get(0), never()).close();
+        context.assertEquals(1, registry.size());
+
+        second.close();
+        verify(createdClients.get(0), times(1)).close();
+        context.assertEquals(0, registry.size());
+
+        registry.acquire(options("backend", 8080), factory);
+        context.assertEquals(2, createdClients.size());
+    }
+
+    @Test
+    public void testSharedRegistryPerVertx(TestContext context) {
+        context.assertTrue(HttpClientRegistry.shared(vertx) == HttpClientRegistry.shared(vertx));
+    }
+}
@@ -0,0 +1,82 @@
+package org.swisspush.gateleen.routing;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for the ProfileHeaderCache class
+ */
+@RunWith(VertxUnitRunner.class)
+public class ProfileHeaderCacheTest {
+
+    private static final String PROFILE_KEY = ProfileHeaderCache.profileKey(new String[]{"lang", "department"});
+
+    private AtomicLong now;
+    private ProfileHeaderCache cache;
+
+    @Before
+    public void setUp() {
+        now = new AtomicLong(1000);
+        cache = new ProfileHeaderCache(2, 500, now::get);
+    }
+
+    @Test
+    public void testGetCachedValues(TestContext context) {
+        context.assertNull(cache.get("user1", PROFILE_KEY));
+
+        cache.put("user1", PROFILE_KEY, Map.of("x-user-lang", "de"), cache.stamp());
+        context.assertEquals(Map.of("x-user-lang", "de"), cache.get("user1", PROFILE_KEY));
+        context.assertNull(cache.get("user1", ProfileHeaderCache.profileKey(new String[]{"lang"})));
+        context.assertNull(cache.get("user2", PROFILE_KEY));
+    }
+
+    @Test
+    public void testTimeToLive(TestContext context) {
+        cache.put("user1", PROFILE_KEY, Map.of("x-user-lang", "de"), cache.stamp());
+        now.addAndGet(499);
+        context.assertNotNull(cache.get("user1", PROFILE_KEY));
+        now.addAndGet(1);
+        context.assertNull(cache.get("user1", PROFILE_KEY));
+        context.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidate(TestContext context) {
+        cache.put("user1", PROFILE_KEY, Map.of("x-user-lang", "de"), cache.stamp());
+        cache.put("user2", PROFILE_KEY, Map.of("x-user-lang", "fr"), cache.stamp());
+
+        cache.invalidate("user1");
+        context.assertNull(cache.get("user1", PROFILE_KEY));
+        context.assertNotNull(cache.get("user2", PROFILE_KEY));
+
+        cache.clear();
+        context.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testValuesReadBeforeInvalidationAreNotCached(TestContext context) {
+        long stamp = cache.stamp();
+        cache.invalidate("user1"); // profile written while the old one was read from the storage
+        cache.put("user1", PROFILE_KEY, Map.of("x-user-lang", "de"), stamp);
+        context.assertNull(cache.get("user1", PROFILE_KEY));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedUserIsEvicted(TestContext context) {
+        cache.put("user1", PROFILE_KEY, Map.of("x-user-lang", "de"), cache.stamp());
+        cache.put("user2", PROFILE_KEY, Map.of("x-user-lang", "fr"), cache.stamp());
+        cache.get("user1", PROFILE_KEY);
+        cache.put("user3", PROFILE_KEY, Map.of("x-user-lang", "it"), cache.stamp());
+
+        context.assertEquals(2, cache.size());
+        context.assertNotNull(cache.get("user1", PROFILE_KEY));
+        context.assertNull(cache.get("user2", PROFILE_KEY));
+        context.assertNotNull(cache.get("user3", PROFILE_KEY));
+    }
+}
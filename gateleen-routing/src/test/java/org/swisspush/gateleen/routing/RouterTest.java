@@ -6,7 +6,9 @@ import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
 import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
@@ -17,19 +19,23 @@ import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.swisspush.gateleen.core.configuration.ConfigurationResourceManager;
 import org.swisspush.gateleen.core.http.DummyHttpServerRequest;
 import org.swisspush.gateleen.core.http.DummyHttpServerResponse;
 import org.swisspush.gateleen.core.storage.MockResourceStorage;
 import org.swisspush.gateleen.core.storage.ResourceStorage;
+import org.swisspush.gateleen.core.util.Address;
 import org.swisspush.gateleen.core.util.StatusCode;
 import org.swisspush.gateleen.logging.LoggingResource;
 import org.swisspush.gateleen.logging.LoggingResourceManager;
 import org.swisspush.gateleen.monitoring.MonitoringHandler;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -124,6 +130,43 @@ public class RouterTest {
             "  }\n" +
             "}";
 
+    private final String RULES_BEFORE_RELOAD = "{\n" +
+            "  \"/gateleen/server/backend1/(.*)\": {\n" +
+            "    \"url\": \"http://backend1/$1\"\n" +
+            "  },\n" +
+            "  \"/gateleen/server/backend2/(.*)\": {\n" +
+            "    \"url\": \"http://backend2/$1\"\n" +
+            "  },\n" +
+            "  \"/gateleen/server/local/(.*)\": {\n" +
+            "    \"path\": \"/gateleen/server/local_v1/$1\"\n" +
+            "  }\n" +
+            "}";
+
+    private final String RULES_AFTER_RELOAD_UNRELATED_CHANGES = "{\n" +
+            "  \"/gateleen/server/backend1/(.*)\": {\n" +
+            "    \"url\": \"http://backend1/$1\"\n" +
+            "  },\n" +
+            "  \"/gateleen/server/nowhere/(.*)\": {\n" +
+            "    \"description\": \"new null rule\"\n" +
+            "  },\n" +
+            "  \"/gateleen/server/backend2/(.*)\": {\n" +
+            "    \"url\": \"http://backend2/$1\"\n" +
+            "  },\n" +
+            "  \"/gateleen/server/local/(.*)\": {\n" +
+            "    \"path\": \"/gateleen/server/local_v2/$1\"\n" +
+            "  }\n" +
+            "}";
+
+    private final String RULES_AFTER_RELOAD_CHANGED_BACKEND = "{\n" +
+            "  \"/gateleen/server/backend1/(.*)\": {\n" +
+            "    \"url\": \"http://backend1/$1\"\n" +
+            "  },\n" +
+            "  \"/gateleen/server/backend2/(.*)\": {\n" +
+            "    \"url\": \"http://backend2/$1\",\n" +
+            "    \"timeout\": 10\n" +
+            "  }\n" +
+            "}";
+
     private final String RANDOM_RESOURCE = "{\n"
             + "  \"randomkey1\": 123,\n"
             + "  \"randomkey2\": 456\n"
@@ -988,6 +1031,37 @@ public class RouterTest {
         context.assertEquals(StatusCode.NOT_FOUND.getStatusCode(), request.response().getStatusCode(), "StatusCode should be 404");
     }
 
+    @Test
+    public void testReloadWithUnrelatedChangesCreatesNoNewClients(TestContext context) {
+        MockResourceStorage mockStorage = new MockResourceStorage(ImmutableMap.of(rulesPath, RULES_BEFORE_RELOAD));
+        List<HttpClientOptions> createdClients = new ArrayList<>();
+        routerBuilder().withStorage(mockStorage).withHttpClientFactory(options -> {
+            createdClients.add(options);
+            return Mockito.mock(HttpClient.class);
+        }).build();
+        context.assertEquals(2, createdClients.size(), "One client per backend expected");
+
+        Handler<Message<Boolean>> ruleUpdateHandler = captureRuleUpdateHandler();
+
+        mockStorage.putMockData(rulesPath, RULES_AFTER_RELOAD_UNRELATED_CHANGES);
+        ruleUpdateHandler.handle(Mockito.mock(Message.class));
+        context.assertEquals(2, createdClients.size(), "No new clients expected for unchanged backends");
+        Mockito.verify(vertx, Mockito.never()).setTimer(Mockito.anyLong(), Mockito.any());
+
+        mockStorage.putMockData(rulesPath, RULES_AFTER_RELOAD_CHANGED_BACKEND);
+        ruleUpdateHandler.handle(Mockito.mock(Message.class));
+        context.assertEquals(3, createdClients.size(), "Only the changed backend should get a new client");
+        context.assertEquals("backend2", createdClients.get(2).getDefaultHost());
+        Mockito.verify(vertx, Mockito.times(1)).setTimer(Mockito.anyLong(), Mockito.any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Handler<Message<Boolean>> captureRuleUpdateHandler() {
+        ArgumentCaptor<Handler> captor = ArgumentCaptor.forClass(Handler.class);
+        Mockito.verify(vertx.eventBus()).consumer(Mockito.eq(Address.RULE_UPDATE_ADDRESS), captor.capture());
+        return captor.getValue();
+    }
+
     private DummyHttpServerRequest buildRequest(HttpMethod method, String uri, MultiMap headers, Buffer body, DummyHttpServerResponse response) {
         return new DummyHttpServerRequest() {
             @Override
@@ -0,0 +1,87 @@
+package org.swisspush.gateleen.routing;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.util.*;
+
+/**
+ * Tests for the RoutingTable class
+ */
+@RunWith(VertxUnitRunner.class)
+public class RoutingTableTest {
+
+    @Test
+    public void testLiteralPrefixSegments(TestContext context) {
+        context.assertEquals(Arrays.asList("gateleen", "server"), RoutingTable.literalPrefixSegments("/gateleen/server/(.*)"));
+        context.assertEquals(Arrays.asList("gateleen", "server"), RoutingTable.literalPrefixSegments("^/gateleen/server/foo.*"));
+        context.assertEquals(Arrays.asList("gateleen", "server"), RoutingTable.literalPrefixSegments("\\/gateleen\\/server\\/x"));
+        context.assertEquals(List.of("gateleen"), RoutingTable.literalPrefixSegments("/gateleen/server/?"));
+        context.assertEquals(List.of("gateleen"), RoutingTable.literalPrefixSegments("/gateleen/s/*"));
+        context.assertEquals(Collections.emptyList(), RoutingTable.literalPrefixSegments("/gateleen"));
+        context.assertEquals(Collections.emptyList(), RoutingTable.literalPrefixSegments("/(.*)"));
+        context.assertEquals(Collections.emptyList(), RoutingTable.literalPrefixSegments("(?i)/gateleen/server/.*"));
+        context.assertEquals(Collections.emptyList(), RoutingTable.literalPrefixSegments("/gateleen/a/.*|/gateleen/b/.*"));
+        context.assertEquals(Collections.emptyList(), RoutingTable.literalPrefixSegments("\\d/gateleen/.*"));
+    }
+
+    @Test
+    public void testFirstMatchInRuleOrder(TestContext context) {
+        RoutingTable.Entry catchAll = entry("/(.*)", null);
+        RoutingTable.Entry server = entry("/gateleen/server/(.*)", null);
+        RoutingTable.Entry specific = entry("/gateleen/server/users/(.*)", null);
+        RoutingTable table = new RoutingTable(List.of(server, specific, catchAll));
+
+        context.assertEquals(server, table.lookup("/gateleen/server/users/123", HttpMethod.GET));
+        context.assertEquals(server, table.lookup("/gateleen/server/other", HttpMethod.GET));
+        context.assertEquals(catchAll, table.lookup("/gateleen/other", HttpMethod.GET));
+
+        table = new RoutingTable(List.of(specific, catchAll, server));
+        context.assertEquals(specific, table.lookup("/gateleen/server/users/123", HttpMethod.GET));
+        context.assertEquals(catchAll, table.lookup("/gateleen/server/other", HttpMethod.GET));
+    }
+
+    @Test
+    public void testMethodRestriction(TestContext context) {
+        RoutingTable.Entry getOnly = entry("/gateleen/server/(.*)", Set.of(HttpMethod.GET));
+        RoutingTable.Entry fallback = entry("/gateleen/(.*)", null);
+        RoutingTable table = new RoutingTable(List.of(getOnly, fallback));
+
+        context.assertEquals(getOnly, table.lookup("/gateleen/server/x", HttpMethod.GET));
+        context.assertEquals(fallback, table.lookup("/gateleen/server/x", HttpMethod.PUT));
+    }
+
+    @Test
+    public void testNoMatch(TestContext context) {
+        RoutingTable table = new RoutingTable(List.of(entry("/gateleen/server/(.*)", null), entry("/other/[a-z]+", null)));
+
+        context.assertNull(table.lookup("/gateleen/serverx/a", HttpMethod.GET));
+        context.assertNull(table.lookup("/gateleen/server", HttpMethod.GET));
+        context.assertNull(table.lookup("/other/123", HttpMethod.GET));
+        context.assertNull(table.lookup("*", HttpMethod.OPTIONS));
+        context.assertEquals(0, table.candidates("/unknown/path").length);
+    }
+
+    @Test
+    public void testLargeRuleSetOnlyEvaluatesCandidates(TestContext context) {
+        List<RoutingTable.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            entries.add(entry("/gateleen/service" + i + "/(.*)", null));
+        }
+        RoutingTable.Entry catchAll = entry("/(.*)", null);
+        entries.add(catchAll);
+        RoutingTable table = new RoutingTable(entries);
+
+        context.assertEquals(2, table.candidates("/gateleen/service1234/resource").length);
+        context.assertEquals(entries.get(1234), table.lookup("/gateleen/service1234/resource", HttpMethod.GET));
+        context.assertEquals(catchAll, table.lookup("/gateleen/service9999/resource", HttpMethod.GET));
+    }
+
+    private RoutingTable.Entry entry(String urlPattern, Set<HttpMethod> methods) {
+        return new RoutingTable.Entry(urlPattern, methods, Mockito.mock(AbstractForwarder.class));
+    }
+}
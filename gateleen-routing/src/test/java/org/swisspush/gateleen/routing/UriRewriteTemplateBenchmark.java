@@ -0,0 +1,63 @@
+package org.swisspush.gateleen.routing;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Micro-benchmark comparing the former regex based target uri rewrite of the {@link Forwarder}
+ * with the precompiled {@link UriRewriteTemplate}. Run it manually by removing the {@link Ignore}.
+ */
+@Ignore("micro-benchmark, run manually")
+public class UriRewriteTemplateBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(UriRewriteTemplateBenchmark.class);
+
+    private static final String URL_PATTERN = "/gateleen/server/backend/(.*)";
+    private static final String PATH = "/backend/v1/$1";
+    private static final String[] URIS = {
+            "/gateleen/server/backend/some/resource",
+            "/gateleen/server/backend/some//collection/?expand=1",
+            "/gateleen/server/backend/items/12345/children/67890?delta=42&limit=100"
+    };
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 10;
+    private static final int OPERATIONS_PER_ITERATION = 1_000_000;
+
+    private static volatile Object blackhole;
+
+    @Test
+    public void compareRewriteThroughput() {
+        final Pattern urlPattern = Pattern.compile(URL_PATTERN);
+        final UriRewriteTemplate template = UriRewriteTemplate.compile(URL_PATTERN, PATH);
+
+        double regex = measure("regex replaceFirst", uri -> urlPattern.matcher(uri).replaceFirst(PATH).replaceAll("\\/\\/", "/"));
+        double compiled = measure("compiled template", template::rewriteFirst);
+        log.info("compiled template is {} times faster", String.format("%.2f", compiled / regex));
+    }
+
+    private double measure(String name, UnaryOperator<String> rewrite) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(rewrite);
+        }
+        double total = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            runIteration(rewrite);
+            total += OPERATIONS_PER_ITERATION / ((System.nanoTime() - start) / 1_000_000_000d);
+        }
+        double opsPerSecond = total / MEASUREMENT_ITERATIONS;
+        log.info("{}: {} ops/s", name, String.format("%.0f", opsPerSecond));
+        return opsPerSecond;
+    }
+
+    private void runIteration(UnaryOperator<String> rewrite) {
+        for (int i = 0; i < OPERATIONS_PER_ITERATION; i++) {
+            blackhole = rewrite.apply(URIS[i % URIS.length]);
+        }
+    }
+}
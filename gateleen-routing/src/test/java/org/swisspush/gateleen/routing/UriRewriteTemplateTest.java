@@ -0,0 +1,65 @@
+package org.swisspush.gateleen.routing;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.regex.Pattern;
+
+/**
+ * Tests for the UriRewriteTemplate class
+ */
+@RunWith(VertxUnitRunner.class)
+public class UriRewriteTemplateTest {
+
+    private static final String[][] CASES = {
+            {"/gateleen/(.*)", "/backend/$1", "/gateleen/a/b?x=1"},
+            {"/gateleen/(.*)", "/backend//$1", "/gateleen//a///b"},
+            {"/gateleen/(?<rest>.*)", "/b/${rest}/c", "/gateleen/q"},
+            {"/g/(a)?(.*)", "/$1/$2", "/g/zz"},
+            {"/g/(a)(b)(c)(d)(e)(f)(g)(h)(i)(j)(k)", "/$11/$10/$1\\$", "/g/abcdefghijk"},
+            {"/g/(a)", "/$12", "/g/a"},
+            {"x", "y", "axbxc"},
+            {"/nomatch/(.*)", "/a/$1", "//foo//bar"},
+            {"/(.*)", "/$1", "/"},
+            {"/gateleen/server/(.*)", "/gateleen/server/", "/gateleen/server/some/resource"}
+    };
+
+    @Test
+    public void testSameResultAsReplaceFirst(TestContext context) {
+        for (String[] c : CASES) {
+            String expected = Pattern.compile(c[0]).matcher(c[2]).replaceFirst(c[1]).replaceAll("\\/\\/", "/");
+            context.assertEquals(expected, UriRewriteTemplate.compile(c[0], c[1]).rewriteFirst(c[2]));
+        }
+    }
+
+    @Test
+    public void testSameResultAsReplaceAll(TestContext context) {
+        for (String[] c : CASES) {
+            String expected = Pattern.compile(c[0]).matcher(c[2]).replaceAll(c[1]).replaceAll("\\/\\/", "/");
+            context.assertEquals(expected, UriRewriteTemplate.compile(c[0], c[1]).rewriteAll(c[2]));
+        }
+    }
+
+    @Test
+    public void testInvalidTemplates(TestContext context) {
+        context.assertNull(UriRewriteTemplate.compile("/g/(.*)", "/$2"));
+        context.assertNull(UriRewriteTemplate.compile("/g/(.*)", "/$"));
+        context.assertNull(UriRewriteTemplate.compile("/g/(.*)", "/$x"));
+        context.assertNull(UriRewriteTemplate.compile("/g/(.*)", "/\\"));
+        context.assertNull(UriRewriteTemplate.compile("/g/(.*", "/$1"));
+        context.assertNull(UriRewriteTemplate.compile("/g/(.*)", null));
+    }
+
+    @Test
+    public void testRuleCompilesTemplateLazily(TestContext context) {
+        Rule rule = new Rule();
+        rule.setUrlPattern("/gateleen/(.*)");
+        rule.setPath("/backend/$1");
+        context.assertEquals("/backend/x", rule.getPathTemplate().rewriteFirst("/gateleen/x"));
+
+        rule.setPath("/other/$1");
+        context.assertEquals("/other/x", rule.getPathTemplate().rewriteFirst("/gateleen/x"));
+    }
+}
@@ -109,6 +109,7 @@ public class RunConfig {
     private final MergeHandler mergeHandler;
     private final KafkaHandler kafkaHandler;
     private final CustomHttpResponseHandler customHttpResponseHandler;
+    private final PackingHandler packingHandler;
 
     public RunConfig(Vertx vertx, RedisProvider redisProvider, Class verticleClass, Router router, MonitoringHandler monitoringHandler,
                      CORSHandler corsHandler, SchedulerResourceManager schedulerResourceManager,
@@ -121,7 +122,7 @@ public class RunConfig {
                      QoSHandler qosHandler, PropertyHandler propertyHandler, ZipExtractHandler zipExtractHandler,
                      DelegateHandler delegateHandler, MergeHandler mergeHandler, KafkaHandler kafkaHandler,
                      CustomHttpResponseHandler customHttpResponseHandler, ContentTypeConstraintHandler contentTypeConstraintHandler,
-                     CacheHandler cacheHandler) {
+                     CacheHandler cacheHandler, PackingHandler packingHandler) {
         this.vertx = vertx;
         this.redisProvider = redisProvider;
         this.verticleClass = verticleClass;
@@ -152,6 +153,7 @@ public class RunConfig {
         this.customHttpResponseHandler = customHttpResponseHandler;
         this.contentTypeConstraintHandler = contentTypeConstraintHandler;
         this.cacheHandler = cacheHandler;
+        this.packingHandler = packingHandler;
         init();
     }
 
@@ -185,7 +187,8 @@ public class RunConfig {
                 builder.kafkaHandler,
                 builder.customHttpResponseHandler,
                 builder.contentTypeConstraintHandler,
-                builder.cacheHandler
+                builder.cacheHandler,
+                builder.packingHandler
         );
     }
 
@@ -243,6 +246,7 @@ public class RunConfig {
         private DelegateHandler delegateHandler;
         private MergeHandler mergeHandler;
         private CacheHandler cacheHandler;
+        private PackingHandler packingHandler;
 
         public RunConfigBuilder() {
         }
@@ -372,6 +376,11 @@ public class RunConfig {
             return this;
         }
 
+        public RunConfigBuilder packingHandler(PackingHandler packingHandler) {
+            this.packingHandler = packingHandler;
+            return this;
+        }
+
         public RunConfig build(Vertx vertx, RedisProvider redisProvider, Class verticleClass, Router router, MonitoringHandler monitoringHandler) {
             this.vertx = vertx;
             this.redisProvider = redisProvider;
@@ -600,17 +609,8 @@ public class RunConfig {
                     request.response().end();
                     return;
                 }
-                if (PackingHandler.isPacked(request)) {
-                    request.bodyHandler(new PackingHandler(
-                            request,
-                            new QueuingHandler(
-                                    vertx,
-                                    redisProvider,
-                                    request,
-                                    monitoringHandler,
-                                    queueSplitter
-                            )
-                    ));
+                if (packingHandler != null && PackingHandler.isPacked(request)) {
+                    packingHandler.handle(request);
                 } else {
                     if (QueuingHandler.isQueued(request)) {
                         setISO8601Timestamps(request);
@@ -1,10 +1,7 @@
 package org.swisspush.gateleen.scheduler;
 
-import io.vertx.core.AsyncResult;
-import io.vertx.core.Handler;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Vertx;
-import io.vertx.core.eventbus.Message;
-import io.vertx.core.json.JsonObject;
 import org.quartz.CronExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,17 +10,17 @@ import org.swisspush.gateleen.core.http.HttpRequest;
 import org.swisspush.gateleen.core.redis.RedisProvider;
 import org.swisspush.gateleen.monitoring.MonitoringHandler;
 import org.swisspush.gateleen.queue.expiry.ExpiryCheckHandler;
+import org.swisspush.gateleen.queue.queuing.EnqueueBatchEntry;
 import org.swisspush.gateleen.queue.queuing.QueueClient;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Random;
 
-import static org.swisspush.redisques.util.RedisquesAPI.*;
-
 /**
  * Schedules requests to be queued. Synchronizes using redis to ensure only one instance is fired.
  *
@@ -40,6 +37,7 @@ public class Scheduler {
     private List<HttpRequest> requests;
     private long timer;
     private MonitoringHandler monitoringHandler;
+    private final QueueClient queueClient;
     private long randomOffset = 0L;
     private boolean executeOnStartup = false;
     private boolean executeOnReload = false;
@@ -69,6 +67,12 @@ public class Scheduler {
         this.requests = requests;
         this.log = LoggerFactory.getLogger(Scheduler.class.getName() + ".scheduler-" + name);
         this.monitoringHandler = monitoringHandler;
+        this.queueClient = new QueueClient(vertx, monitoringHandler) {
+            @Override
+            protected String getRedisquesAddress() {
+                return redisquesAddress;
+            }
+        };
         calcRandomOffset(maxRandomOffset);
         this.executeOnStartup = executeOnStartup;
         this.executeOnReload = executeOnReload;
@@ -137,9 +141,9 @@ public class Scheduler {
     }
 
     private void trigger() {
+        String queueName = "scheduler-" + name;
+        List<EnqueueBatchEntry> entries = new ArrayList<>(requests.size());
         for (final HttpRequest request : requests) {
-            monitoringHandler.updateEnqueue();
-
             if (log.isTraceEnabled()) {
                 log.trace("Triggering request " + request.toJsonObject().encodePrettily());
             }
@@ -149,22 +153,23 @@ public class Scheduler {
             }
 
             ExpiryCheckHandler.updateServerTimestampHeader(request);
+            entries.add(EnqueueBatchEntry.of(request, queueName));
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
 
-            String queueName = "scheduler-" + name;
-            JsonObject enqueOp = buildEnqueueOperation(queueName, request.toJsonObject().put(QueueClient.QUEUE_TIMESTAMP, System.currentTimeMillis()).encode());
-            vertx.eventBus().request(redisquesAddress, enqueOp, (Handler<AsyncResult<Message<JsonObject>>>) event -> {
-                if (event.failed()) {
-                    if (log.isWarnEnabled()) {
-                        log.warn("Could not enqueue request '{}' '{}'", queueName, request.getUri(),
-                            exceptionFactory.newException("eventBus.request('" + redisquesAddress + "', enqueOp) failed", event.cause()));
-                    }
-                    return;
-                }
-                if (!OK.equals(event.result().body().getString(STATUS))) {
-                    log.error("Could not enqueue request {}", request.toJsonObject().encodePrettily());
+        // all requests of the scheduler go to the same queue, enqueue them at once
+        CompositeFuture batch = queueClient.enqueueBatch(entries);
+        batch.onComplete(event -> {
+            for (int i = 0; i < entries.size(); i++) {
+                if (batch.failed(i) && log.isWarnEnabled()) {
+                    HttpRequest request = entries.get(i).getRequest();
+                    log.warn("Could not enqueue request '{}' '{}'", queueName, request.getUri(),
+                        exceptionFactory.newException("enqueue into '" + redisquesAddress + "' failed", batch.cause(i)));
                 }
-            });
-        }
+            }
+        });
     }
 
     private long nextRunTime() {
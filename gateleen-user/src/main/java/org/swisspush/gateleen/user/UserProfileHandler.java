@@ -16,6 +16,7 @@ import org.swisspush.gateleen.core.http.RequestLoggerFactory;
 import org.swisspush.gateleen.core.logging.LoggableResource;
 import org.swisspush.gateleen.core.logging.RequestLogger;
 import org.swisspush.gateleen.core.storage.ResourceStorage;
+import org.swisspush.gateleen.core.util.Address;
 import org.swisspush.gateleen.core.util.ResponseStatusCodeLogUtil;
 import org.swisspush.gateleen.core.util.RoleExtractor;
 import org.swisspush.gateleen.core.util.StatusCode;
@@ -113,7 +114,10 @@ public class UserProfileHandler implements LoggableResource {
                     } else {
                         // Special case: Something updated in profile
                         log.debug("Updated the profile in a GET request (special case). Request path is {}.", request.path());
-                        storage.put(request.path(), Buffer.buffer(profile.encode()), status -> request.response().end(mergedProfile.encode()));
+                        storage.put(request.path(), Buffer.buffer(profile.encode()), status -> {
+                            publishProfileUpdate(userId);
+                            request.response().end(mergedProfile.encode());
+                        });
                     }
                 } else {
                     // Not Found, returns the initial profile.
@@ -125,6 +129,7 @@ public class UserProfileHandler implements LoggableResource {
                     // NEMO-3200, store the profile, otherwise the next request will fail,
                     // cause the server cannot enrich the request create the profile data
                     storage.put(request.path(), Buffer.buffer(profile.encode()), status -> {
+                        publishProfileUpdate(userId);
                         logPayload(request, status, Buffer.buffer(mergedProfile.encode()), request.response().headers());
                         ResponseStatusCodeLogUtil.info(request, StatusCode.OK, UserProfileHandler.class);
                         request.response().end(mergedProfile.encode());
@@ -160,6 +165,7 @@ public class UserProfileHandler implements LoggableResource {
                     return;
                 }
                 cleanupUserProfile(profile, updatedProfile -> storage.put(request.uri() + "?merge=true", Buffer.buffer(updatedProfile.encode()), status -> {
+                    publishProfileUpdate(userProfileConfiguration.extractUserIdFromProfileUri(request.path()));
                     logPayload(request, status, Buffer.buffer(updatedProfile.encode()), MultiMap.caseInsensitiveMultiMap());
                     ResponseStatusCodeLogUtil.info(request, StatusCode.fromCode(status), UserProfileHandler.class);
                     request.response().setStatusCode(status);
@@ -169,6 +175,7 @@ public class UserProfileHandler implements LoggableResource {
             break;
         case "DELETE":
             storage.delete(request.path(), status -> {
+                publishProfileUpdate(userProfileConfiguration.extractUserIdFromProfileUri(request.path()));
                 ResponseStatusCodeLogUtil.info(request, StatusCode.fromCode(status), UserProfileHandler.class);
                 request.response().setStatusCode(status);
                 request.response().end();
@@ -244,6 +251,15 @@ public class UserProfileHandler implements LoggableResource {
         roleProfiles.put(role, roleProfile);
     }
 
+    /**
+     * Notifies all instances (e.g. the profile header cache of the routing) that the profile of the user changed.
+     */
+    private void publishProfileUpdate(String userId) {
+        if (userId != null) {
+            vertx.eventBus().publish(Address.USER_PROFILE_UPDATE_ADDRESS, userId);
+        }
+    }
+
     private void logPayload(final HttpServerRequest request, final Integer status, Buffer data, final MultiMap responseHeaders) {
         if(logUserProfileChanges){
             RequestLogger.logRequest(vertx.eventBus(), request, status, data, responseHeaders);